@@ -0,0 +1,77 @@
+package com.gpak.tools.textminator.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gpak.tools.textminator.core.BuiltinRule;
+
+/**
+ * Finding all matches of a default rule in typical log lines with its regex
+ * versus the builtin scanner.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BuiltinRuleBenchmark {
+
+    private static final String[] LINES = {
+        "2024-05-01T12:00:01.123Z INFO  [http-nio-8080-exec-7] c.e.api.OrderController - GET /api/v1/orders/42 status=200 took=12ms",
+        "2024-05-01T12:00:01.456Z WARN  [scheduler-1] c.e.jobs.Cleanup - retrying request 123e4567-e89b-12d3-a456-426614174000 from 10.20.30.40",
+        "2024-05-01T12:00:02.001Z DEBUG [main] c.e.net.Client - connected to fe80::1ff:fe23:4567:890a port 443 after 3 attempts",
+        "2024-05-01T12:00:02.500Z INFO  [http-nio-8080-exec-2] c.e.api.UserController - user john.doe@example.com logged in",
+    };
+
+    @Param({"email", "uuid", "ipv4", "ipv6"})
+    public String rule;
+
+    private BuiltinRule builtin;
+    private Matcher matcher;
+    private final int[] span = new int[2];
+
+    @Setup
+    public void setUp() {
+        builtin = BuiltinRule.of(rule);
+        matcher = Pattern.compile(builtin.getRegex()).matcher("");
+    }
+
+    @Benchmark
+    public int regex() {
+        int matches = 0;
+        for (String line : LINES) {
+            matcher.reset(line);
+            while (matcher.find()) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int builtin() {
+        int matches = 0;
+        for (String line : LINES) {
+            int from = 0;
+            while (builtin.find(line, from, span)) {
+                matches++;
+                from = span[1];
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,95 @@
+package com.gpak.tools.textminator.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gpak.tools.textminator.core.CandidateScanner;
+
+/**
+ * Finding all matches of a default rule in typical log lines with
+ * Matcher.find() versus trying the matcher only at the offsets of a
+ * CandidateScanner.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CandidateScanBenchmark {
+
+    private static final String[] LINES = {
+        "2024-05-01T12:00:01.123Z INFO  [http-nio-8080-exec-7] c.e.api.OrderController - GET /api/v1/orders/42 status=200 took=12ms",
+        "2024-05-01T12:00:01.456Z WARN  [scheduler-1] c.e.jobs.Cleanup - retrying request 123e4567-e89b-12d3-a456-426614174000 from 10.20.30.40",
+        "2024-05-01T12:00:02.001Z DEBUG [main] c.e.net.Client - connected to fe80::1ff:fe23:4567:890a port 443 after 3 attempts",
+        "2024-05-01T12:00:02.500Z INFO  [http-nio-8080-exec-2] c.e.api.UserController - user john.doe@example.com logged in",
+    };
+
+    @Param({"uuid", "ipv4", "ipv6"})
+    public String rule;
+
+    private Matcher matcher;
+    private CandidateScanner scanner;
+
+    @Setup
+    public void setUp() {
+        String regex;
+        switch (rule) {
+            case "uuid":
+                regex = "\\b[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[1-5][0-9a-fA-F]{3}-[89abAB][0-9a-fA-F]{3}-[0-9a-fA-F]{12}\\b";
+                break;
+            case "ipv4":
+                regex = "\\b(?:(?:25[0-5]|2[0-4]\\d|1\\d{2}|[1-9]?\\d)\\.){3}(?:25[0-5]|2[0-4]\\d|1\\d{2}|[1-9]?\\d)\\b";
+                break;
+            default:
+                regex = "\\b(?=[0-9A-Fa-f:]{2,39}\\b)(?=(?:.*:){2,})[0-9A-Fa-f:]+\\b";
+        }
+        Pattern pattern = Pattern.compile(regex);
+        matcher = pattern.matcher("").useTransparentBounds(true).useAnchoringBounds(false);
+        scanner = CandidateScanner.of(pattern);
+    }
+
+    @Benchmark
+    public int matcherFind() {
+        int matches = 0;
+        for (String line : LINES) {
+            matcher.reset(line);
+            while (matcher.find()) {
+                matches++;
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public int candidateScan() {
+        int matches = 0;
+        for (String line : LINES) {
+            matcher.reset(line);
+            int len = line.length();
+            int p = scanner.next(line, 0);
+            while (p >= 0) {
+                if (matcher.region(p, len).lookingAt()) {
+                    matches++;
+                    p = scanner.next(line, matcher.end());
+                } else {
+                    p = scanner.next(line, p + 1);
+                }
+            }
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,121 @@
+package com.gpak.tools.textminator.bench;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gpak.tools.textminator.io.TextEncoding;
+
+/**
+ * Reading lines from and writing lines to 4 MB of log text, through
+ * InputStreamReader/OutputStreamWriter (CharsetDecoder/CharsetEncoder) versus
+ * the readers and writers of TextEncoding.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodingBenchmark {
+
+    private static final int SIZE = 4 << 20;
+
+    @Param({"utf-8", "iso-8859-1", "windows-1252", "utf-16le"})
+    public String encoding;
+
+    private Charset charset;
+    private TextEncoding textEncoding;
+    private byte[] bytes;
+    private List<String> lines;
+
+    @Setup
+    public void setUp() {
+        charset = Charset.forName(encoding);
+        textEncoding = TextEncoding.of(encoding);
+
+        StringBuilder text = new StringBuilder(SIZE);
+        lines = new ArrayList<>();
+        for (int i = 0; text.length() < SIZE; i++) {
+            String line = "2024-05-01 12:00:" + (i % 60) + " INFO user=jürgen.müller@example.com ip=10.0.0." + (i % 256)
+                + " msg=\"Café order #" + i + " processed\"";
+            lines.add(line);
+            text.append(line).append('\n');
+        }
+        bytes = text.toString().getBytes(charset);
+    }
+
+    @Benchmark
+    public long readCharsetDecoder() throws IOException {
+        return readLines(new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes), charset)));
+    }
+
+    @Benchmark
+    public long readTextEncoding() throws IOException {
+        return readLines(new BufferedReader(textEncoding.newReader(new ByteArrayInputStream(bytes))));
+    }
+
+    @Benchmark
+    public long writeCharsetEncoder() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        return writeLines(new OutputStreamWriter(out, charset), out);
+    }
+
+    @Benchmark
+    public long writeTextEncoding() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        return writeLines(textEncoding.newWriter(out), out);
+    }
+
+    private static long readLines(BufferedReader reader) throws IOException {
+        long chars = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            chars += line.length();
+        }
+        return chars;
+    }
+
+    private long writeLines(Writer writer, CountingOutputStream out) throws IOException {
+        for (String line : lines) {
+            writer.write(line);
+            writer.write('\n');
+        }
+        writer.flush();
+        return out.count;
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
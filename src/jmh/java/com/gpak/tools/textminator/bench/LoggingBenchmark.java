@@ -0,0 +1,90 @@
+package com.gpak.tools.textminator.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.core.LoggerContext;
+import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilder;
+import org.apache.logging.log4j.core.config.builder.api.ConfigurationBuilderFactory;
+import org.apache.logging.log4j.core.config.builder.impl.BuiltConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Log4j2 throughput through a Null appender, with and without the
+ * TextminatorRewritePolicy in front of it. Uses the built-in rules.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class LoggingBenchmark {
+
+    private static final String CLEAN = "GET /api/v1/health status=200 took={}ms";
+    private static final String PII = "login ok user={} from 192.168.10.42 session 123e4567-e89b-12d3-a456-426614174000";
+
+    private LoggerContext loggerContext;
+    private Logger plain;
+    private Logger sanitized;
+
+    @Setup
+    public void setUp() {
+        ConfigurationBuilder<BuiltConfiguration> builder = ConfigurationBuilderFactory.newConfigurationBuilder();
+        builder.setPackages("com.gpak.tools.textminator.logging");
+        builder.add(builder.newAppender("null", "Null"));
+        builder.add(builder.newAppender("rewrite", "Rewrite")
+            .addComponent(builder.newComponent("TextminatorRewritePolicy"))
+            .addComponent(builder.newAppenderRef("null")));
+        builder.add(builder.newLogger("plain", Level.INFO)
+            .add(builder.newAppenderRef("null"))
+            .addAttribute("additivity", false));
+        builder.add(builder.newLogger("sanitized", Level.INFO)
+            .add(builder.newAppenderRef("rewrite"))
+            .addAttribute("additivity", false));
+        builder.add(builder.newRootLogger(Level.OFF));
+
+        loggerContext = Configurator.initialize(builder.build());
+        plain = loggerContext.getLogger("plain");
+        sanitized = loggerContext.getLogger("sanitized");
+    }
+
+    @TearDown
+    public void tearDown() {
+        Configurator.shutdown(loggerContext);
+    }
+
+    @Benchmark
+    public void plainClean() {
+        plain.info(CLEAN, 12);
+    }
+
+    @Benchmark
+    public void sanitizedClean() {
+        sanitized.info(CLEAN, 12);
+    }
+
+    @Benchmark
+    public void plainPii() {
+        plain.info(PII, "john.doe@example.com");
+    }
+
+    @Benchmark
+    public void sanitizedPii() {
+        sanitized.info(PII, "john.doe@example.com");
+    }
+}
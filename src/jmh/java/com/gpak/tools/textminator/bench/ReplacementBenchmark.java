@@ -0,0 +1,74 @@
+package com.gpak.tools.textminator.bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.gpak.tools.textminator.core.ReplacementTemplate;
+
+/**
+ * Replacing every match of a line with Matcher.appendReplacement (replacement
+ * parsed on every match) versus a precompiled ReplacementTemplate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplacementBenchmark {
+
+    private static final String LINE = "user=john.doe@example.com cc=alice@example.org "
+        + "bcc=bob.smith@corp.example.net reply-to=noreply@example.com";
+
+    @Param({"<EMAIL>", "<EMAIL:$2>", "$1@<DOMAIN>"})
+    public String replacement;
+
+    private Matcher matcher;
+    private ReplacementTemplate template;
+    private final StringBuilder out = new StringBuilder(256);
+
+    @Setup
+    public void setUp() {
+        Pattern pattern = Pattern.compile("([\\w.+-]+)@([\\w-]+\\.[\\w.-]+)");
+        matcher = pattern.matcher("");
+        template = ReplacementTemplate.compile(replacement, pattern);
+    }
+
+    @Benchmark
+    public StringBuilder appendReplacement() {
+        out.setLength(0);
+        matcher.reset(LINE);
+        while (matcher.find()) {
+            matcher.appendReplacement(out, replacement);
+        }
+        matcher.appendTail(out);
+        return out;
+    }
+
+    @Benchmark
+    public StringBuilder template() {
+        out.setLength(0);
+        matcher.reset(LINE);
+        int copied = 0;
+        while (matcher.find()) {
+            out.append(LINE, copied, matcher.start());
+            template.appendTo(out, LINE, matcher, null);
+            copied = matcher.end();
+        }
+        out.append(LINE, copied, LINE.length());
+        return out;
+    }
+}
@@ -0,0 +1,219 @@
+package com.gpak.tools.textminator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import com.gpak.tools.textminator.core.RuleSet;
+import com.gpak.tools.textminator.core.Sanitizer;
+import com.gpak.tools.textminator.core.ToolContext;
+import com.gpak.tools.textminator.model.BenchResult;
+import com.gpak.tools.textminator.model.LengthDistribution;
+import com.gpak.tools.textminator.model.Rule;
+import com.gpak.tools.textminator.util.ConfigUtil;
+import com.gpak.tools.textminator.util.Console;
+import com.gpak.tools.textminator.util.CorpusGenerator;
+import com.gpak.tools.textminator.util.PrintUtil;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * {@code textminator bench}: runs the loaded rules over a synthetic corpus
+ * and reports throughput, per-line latency and the cost of each rule, without
+ * a JMH build. The same parameters and seed always give the same corpus.
+ */
+@Command(
+    name = "bench",
+    header = "Measures the throughput of the loaded rules on a synthetic log corpus.",
+    synopsisHeading = "usage: ",
+    descriptionHeading = "%n@|bold Description:|@%n",
+    description = "Generates log lines with a given share of personal data (emails, UUIDs, IPv4 and IPv6 " +
+        "addresses), runs the rules over them for the warm-up and measured iterations and prints " +
+        "lines/s, MB/s, p50/p99 latency per line and the cost of each rule on its own.%n" +
+        "%n" +
+        "The corpus depends only on the corpus options, the seed and the corpus version shown in the " +
+        "report, so numbers can be compared across releases, configs and machines.",
+    optionListHeading = "%n@|bold Options:|@%n",
+    sortOptions = false,
+    footerHeading = "%n@|bold Examples:|@%n",
+    footer = {
+        "  Benchmark the default rules",
+        "    @|bold textminator bench|@",
+        "",
+        "  Benchmark a custom config on 1 million long, PII-heavy lines",
+        "    @|bold textminator bench|@ -c myrules.properties --lines 1000000 --pii-density 0.5 --line-length 300",
+    },
+    exitCodeOnSuccess = 0,
+    exitCodeOnUsageHelp = 0,
+    exitCodeOnInvalidInput = 1,
+    exitCodeOnExecutionException = 1
+)
+public class BenchCommand implements Callable<Integer> {
+
+    @Option(names = {"-c", "--config"},
+        paramLabel = "<file>",
+        description = {"rules to measure", "  default: same resolution as the main command"})
+    File configFile;
+
+    @Option(names = {"--lines"},
+        paramLabel = "<n>",
+        description = {"number of generated lines", "  default: ${DEFAULT-VALUE}"})
+    int lines = 100_000;
+
+    @Option(names = {"--pii-density"},
+        paramLabel = "<fraction>",
+        description = {"share of lines with personal data, 0-1", "  default: ${DEFAULT-VALUE}"})
+    double piiDensity = 0.2;
+
+    @Option(names = {"--line-length"},
+        paramLabel = "<chars>",
+        description = {"mean line length", "  default: ${DEFAULT-VALUE}"})
+    int lineLength = 120;
+
+    @Option(names = {"--length-dist"},
+        description = {"line length distribution: ${COMPLETION-CANDIDATES}", "  default: ${DEFAULT-VALUE}"})
+    LengthDistribution lengthDistribution = LengthDistribution.LOGNORMAL;
+
+    @Option(names = {"--seed"},
+        paramLabel = "<seed>",
+        description = {"random seed of the corpus", "  default: ${DEFAULT-VALUE}"})
+    long seed = 42;
+
+    @Option(names = {"--warmup"},
+        paramLabel = "<n>",
+        description = {"passes over the corpus before measuring", "  default: ${DEFAULT-VALUE}"})
+    int warmup = 3;
+
+    @Option(names = {"--iterations"},
+        paramLabel = "<n>",
+        description = {"measured passes over the corpus", "  default: ${DEFAULT-VALUE}"})
+    int iterations = 5;
+
+    @Option(names = {"--save-corpus"},
+        paramLabel = "<file>",
+        description = "also write the generated corpus to a file, e.g. to run other tools on it")
+    File corpusFile;
+
+    @Option(names = "-v",
+        description = "specify multiple -v options to increase verbosity")
+    boolean[] verbose;
+
+    @Option(names = {"-h", "--help"},
+        usageHelp = true,
+        description = "print this help and exit")
+    private boolean printHelp;
+
+    @Override
+    public Integer call() {
+        Console.setVerbose(verbose);
+        try {
+            return execute();
+        } catch (Exception e) {
+            Console.error(e.getMessage());
+            Console.debug(e);
+            return ToolContext.EXIT_ERR;
+        }
+    }
+
+    private int execute() throws IOException {
+        if (lines < 1 || warmup < 0 || iterations < 1) {
+            throw new IllegalStateException("--lines and --iterations must be positive, --warmup must not be negative");
+        }
+
+        List<Rule> rules = ConfigUtil.loadConfigFile(configFile);
+        RuleSet ruleSet = RuleSet.of(rules).withHashKey(ConfigUtil.loadHashKey(null, rules, false));
+
+        Console.info("Generating " + lines + " lines");
+        List<String> corpus = new CorpusGenerator(seed, piiDensity, lineLength, lengthDistribution).generate(lines);
+        long bytes = 0;
+        for (String line : corpus) {
+            bytes += line.getBytes(StandardCharsets.UTF_8).length + 1;
+        }
+        if (corpusFile != null) {
+            Files.write(corpusFile.toPath(), corpus, StandardCharsets.UTF_8);
+            Console.info("Corpus written to: " + corpusFile);
+        }
+
+        Sanitizer sanitizer = ruleSet.newSanitizer(false);
+        for (int i = 0; i < warmup; i++) {
+            Console.info("Warm-up iteration " + (i + 1));
+            run(sanitizer, corpus, null);
+        }
+
+        long[] iterationNanos = new long[iterations];
+        long[] lineNanos = new long[iterations * lines];
+        long changed = 0;
+        for (int i = 0; i < iterations; i++) {
+            Console.info("Iteration " + (i + 1));
+            long start = System.nanoTime();
+            changed = run(sanitizer, corpus, lineNanos, i * lines);
+            iterationNanos[i] = System.nanoTime() - start;
+        }
+
+        BenchResult result = new BenchResult(lines, bytes, changed, iterationNanos, lineNanos, measureRules(ruleSet, corpus));
+        String description = String.format("seed %d, PII density %.2f, line length %s %d, corpus v%d",
+                                           seed, piiDensity, lengthDistribution.name().toLowerCase(), lineLength,
+                                           CorpusGenerator.VERSION);
+        PrintUtil.printBenchSummary(result, description, warmup);
+        return ToolContext.EXIT_OK;
+    }
+
+    /**
+     * Runs every enabled rule on its own over the corpus, after one warm-up
+     * pass, so that each cost is independent of the rules before it.
+     *
+     * @return nanoseconds per line by rule name, in execution order
+     */
+    private Map<String, Double> measureRules(RuleSet ruleSet, List<String> corpus) {
+        Map<String, Double> costs = new LinkedHashMap<>();
+        for (Rule rule : ruleSet.getRules()) {
+            if (!rule.isEnabled()) {
+                continue;
+            }
+            Console.info("Measuring rule: " + rule.getName());
+            Sanitizer single = RuleSet.of(List.of(rule)).withHashKey(ruleSet.getHashKey()).newSanitizer(false);
+            run(single, corpus, null);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                run(single, corpus, null);
+            }
+            costs.merge(rule.getName(), (System.nanoTime() - start) / (double) iterations / corpus.size(), Double::sum);
+        }
+        return costs;
+    }
+
+    private static long run(Sanitizer sanitizer, List<String> corpus, long[] lineNanos) {
+        return run(sanitizer, corpus, lineNanos, 0);
+    }
+
+    /**
+     * @param lineNanos receives the time of each line from offset, or null
+     * @return the number of changed lines
+     */
+    private static long run(Sanitizer sanitizer, List<String> corpus, long[] lineNanos, int offset) {
+        long changed = 0;
+        for (int i = 0; i < corpus.size(); i++) {
+            if (lineNanos == null) {
+                if (sanitizer.sanitizeLine(corpus.get(i)).isChanged()) {
+                    changed++;
+                }
+                continue;
+            }
+            long start = System.nanoTime();
+            boolean isChanged = sanitizer.sanitizeLine(corpus.get(i)).isChanged();
+            lineNanos[offset + i] = System.nanoTime() - start;
+            if (isChanged) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+}
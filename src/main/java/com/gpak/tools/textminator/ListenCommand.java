@@ -0,0 +1,218 @@
+package com.gpak.tools.textminator;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import com.gpak.tools.textminator.core.RuleSet;
+import com.gpak.tools.textminator.core.ToolContext;
+import com.gpak.tools.textminator.io.RollingFileWriter;
+import com.gpak.tools.textminator.io.SyslogListener;
+import com.gpak.tools.textminator.model.OverflowPolicy;
+import com.gpak.tools.textminator.model.Rule;
+import com.gpak.tools.textminator.util.ConfigUtil;
+import com.gpak.tools.textminator.util.Console;
+import com.gpak.tools.textminator.util.PrintUtil;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * {@code textminator listen}: receives syslog over UDP and/or TCP, sanitizes
+ * the messages and writes them to rolling files until it is stopped.
+ */
+@Command(
+    name = "listen",
+    header = "Receives syslog messages, sanitizes them and writes them to rolling files.",
+    synopsisHeading = "usage: ",
+    descriptionHeading = "%n@|bold Description:|@%n",
+    description = "Listens for RFC 5424 and RFC 3164 syslog messages over UDP and TCP (octet counted or " +
+        "line feed framed) and writes one sanitized message per line. The syslog header (priority, " +
+        "timestamp, host, app) is kept as is; the rules run on the rest.%n" +
+        "%n" +
+        "The current file is written as <output>.tmp and moved to <name>-<yyyyMMdd-HHmmss>.<ext> " +
+        "when it is rolled or the listener stops (Ctrl+C or SIGTERM). Queued messages are written " +
+        "before exiting.",
+    optionListHeading = "%n@|bold Options:|@%n",
+    sortOptions = false,
+    footerHeading = "%n@|bold Examples:|@%n",
+    footer = {
+        "  Receive UDP and TCP syslog on the standard port, roll every 64 MB or hour",
+        "    @|bold textminator listen|@ --udp 514 --tcp 514 -o /var/log/clean/messages.log",
+        "",
+        "  Forward from rsyslog (omfwd) to an unprivileged port, drop when overloaded",
+        "    @|bold textminator listen|@ --tcp 10514 --overflow drop -o clean.log -s",
+    },
+    exitCodeOnSuccess = 0,
+    exitCodeOnUsageHelp = 0,
+    exitCodeOnInvalidInput = 1,
+    exitCodeOnExecutionException = 1
+)
+public class ListenCommand implements Callable<Integer> {
+
+    @Option(names = {"-c", "--config"},
+        paramLabel = "<file>",
+        description = {"rules to apply", "  default: same resolution as the main command"})
+    File configFile;
+
+    @Option(names = {"--udp"},
+        paramLabel = "<port>",
+        description = "receive syslog datagrams on this port")
+    Integer udpPort;
+
+    @Option(names = {"--tcp"},
+        paramLabel = "<port>",
+        description = "accept syslog connections on this port")
+    Integer tcpPort;
+
+    @Option(names = {"--bind"},
+        paramLabel = "<address>",
+        description = {"address to listen on", "  default: ${DEFAULT-VALUE}"})
+    String bindAddress = "127.0.0.1";
+
+    @Option(names = {"-o", "--output"},
+        paramLabel = "<file>",
+        required = true,
+        description = "base name of the output files, e.g. /var/log/clean/messages.log")
+    File outputFile;
+
+    @Option(names = {"--roll-size"},
+        paramLabel = "<size>",
+        description = {"roll the output file at this size, e.g. 64m", "  default: ${DEFAULT-VALUE}"})
+    String rollSize = "64m";
+
+    @Option(names = {"--roll-interval"},
+        paramLabel = "<duration>",
+        description = {"roll the output file at this age, e.g. 15m or 1h", "  default: ${DEFAULT-VALUE}"})
+    String rollInterval = "1h";
+
+    @Option(names = {"--queue-size"},
+        paramLabel = "<n>",
+        description = {"messages received but not yet sanitized", "  default: ${DEFAULT-VALUE}"})
+    int queueSize = SyslogListener.DEFAULT_QUEUE_SIZE;
+
+    @Option(names = {"--overflow"},
+        paramLabel = "<policy>",
+        description = {"when the queue is full: ${COMPLETION-CANDIDATES}", "  default: ${DEFAULT-VALUE}"})
+    OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+    @Option(names = {"--workers"},
+        paramLabel = "<n>",
+        description = {"sanitizing threads", "  default: number of processors"})
+    int workers = Runtime.getRuntime().availableProcessors();
+
+    @Option(names = {"--batch-size"},
+        paramLabel = "<n>",
+        description = {"messages a worker sanitizes and writes at once", "  default: ${DEFAULT-VALUE}"})
+    int batchSize = SyslogListener.DEFAULT_BATCH_SIZE;
+
+    @Option(names = {"--max-message-size"},
+        paramLabel = "<size>",
+        description = {"longer messages are cut, e.g. 64k", "  default: ${DEFAULT-VALUE}"})
+    String maxMessageSize = "64k";
+
+    @Option(names = {"-s", "--stats"},
+        description = "print message counters and per-rule statistics when stopped")
+    boolean printStats;
+
+    @Option(names = "-v",
+        description = "specify multiple -v options to increase verbosity")
+    boolean[] verbose;
+
+    @Option(names = {"-h", "--help"},
+        usageHelp = true,
+        description = "print this help and exit")
+    private boolean printHelp;
+
+    private SyslogListener listener;
+    private long startNanos;
+    private Integer exitCode;
+
+    @Override
+    public Integer call() {
+        Console.setVerbose(verbose);
+        try {
+            return execute();
+        } catch (Exception e) {
+            Console.error(e.getMessage());
+            Console.debug(e);
+            return ToolContext.EXIT_ERR;
+        }
+    }
+
+    private int execute() throws IOException, InterruptedException {
+        if (udpPort == null && tcpPort == null) {
+            throw new IllegalStateException("listen requires --udp and/or --tcp");
+        }
+        long maxMessageBytes = ConfigUtil.parseSize(maxMessageSize, "--max-message-size");
+        if (maxMessageBytes > Integer.MAX_VALUE / 2) {
+            throw new IllegalStateException("--max-message-size is too large: " + maxMessageSize);
+        }
+
+        List<Rule> rules = ConfigUtil.loadConfigFile(configFile);
+        RuleSet ruleSet = RuleSet.of(rules).withHashKey(ConfigUtil.loadHashKey(null, rules, false));
+        RollingFileWriter output = new RollingFileWriter(outputFile,
+                                                         ConfigUtil.parseSize(rollSize, "--roll-size"),
+                                                         ConfigUtil.parseDuration(rollInterval, "--roll-interval"));
+        listener = new SyslogListener(ruleSet, output, queueSize, overflowPolicy, workers, batchSize,
+                                      (int) maxMessageBytes);
+        try {
+            if (udpPort != null) {
+                int port = listener.bindUdp(new InetSocketAddress(bindAddress, udpPort));
+                Console.info("Listening on udp " + bindAddress + ":" + port);
+            }
+            if (tcpPort != null) {
+                int port = listener.bindTcp(new InetSocketAddress(bindAddress, tcpPort));
+                Console.info("Listening on tcp " + bindAddress + ":" + port);
+            }
+        } catch (IOException e) {
+            listener.close();
+            throw new IOException("Failed to listen on " + bindAddress + ": " + e.getMessage());
+        }
+
+        startNanos = System.nanoTime();
+        listener.start();
+
+        // The JVM only runs shutdown hooks on Ctrl+C/SIGTERM, so stopping and
+        // reporting happens there; the main thread returns when the hook is done
+        Thread hook = new Thread(this::stop, "textminator-listen-shutdown");
+        Runtime.getRuntime().addShutdownHook(hook);
+        listener.await();
+
+        try {
+            Runtime.getRuntime().removeShutdownHook(hook);
+        } catch (IllegalStateException e) {
+            // Shutting down already, the hook stops the listener
+        }
+        return stop();
+    }
+
+    /**
+     * Stops the listener once and prints the statistics.
+     *
+     * @return the exit code
+     */
+    private synchronized int stop() {
+        if (exitCode != null) {
+            return exitCode;
+        }
+
+        exitCode = ToolContext.EXIT_OK;
+        try {
+            Console.info("Stopping listener");
+            listener.close();
+        } catch (IOException e) {
+            Console.error(e.getMessage());
+            exitCode = ToolContext.EXIT_ERR;
+        }
+
+        if (printStats) {
+            Map<String, Long> statistics = listener.getStatistics();
+            PrintUtil.printListenSummary(listener, statistics, System.nanoTime() - startNanos);
+        }
+        return exitCode;
+    }
+}
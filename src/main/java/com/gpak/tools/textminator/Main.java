@@ -1,9 +1,17 @@
 package com.gpak.tools.textminator;
 
 import java.io.File;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.concurrent.Callable;
 
+import com.gpak.tools.textminator.core.RuleAnalyzer;
 import com.gpak.tools.textminator.core.ToolContext;
+import com.gpak.tools.textminator.io.LineIndexWriter;
+import com.gpak.tools.textminator.io.RecordReader;
+import com.gpak.tools.textminator.model.AuditFormat;
+import com.gpak.tools.textminator.model.InputFormat;
+import com.gpak.tools.textminator.model.RecordMode;
 import com.gpak.tools.textminator.util.Console;
 import com.gpak.tools.textminator.util.VersionProvider;
 
@@ -15,6 +23,7 @@ import picocli.CommandLine.Option;
 @Command(
     name = "textminator",
     versionProvider = VersionProvider.class,
+    subcommands = { BenchCommand.class, ListenCommand.class },
     header = "Replaces sensitive data from files or from stdin.",
     synopsisHeading = "usage: ",
     synopsisSubcommandLabel = "",
@@ -27,8 +36,8 @@ import picocli.CommandLine.Option;
         "The tool is fully extensible through a configuration file, allowing "+
         "users to define custom regex patterns and replacement values for any type of text.%n" +
         "%n" +
-        "Input and output are processed as UTF-8 encoded text. Support for " +
-        "additional encodings may be added in a future release.\n" +
+        "Input is read as UTF-8 unless a byte order mark or --encoding says otherwise; " +
+        "output is written in the same encoding.%n" +
         "%n" +
         "@|bold Configuration:|@%n" +
         "Configuration loading order (highest priority first):" +
@@ -75,6 +84,24 @@ import picocli.CommandLine.Option;
         "  Use a custom configuration file",
         "    @|bold ${COMMAND-NAME}|@ --config-file myrules.properties -i input.txt",
         "",
+        "  Check a configuration for slow rules before deploying it",
+        "    @|bold ${COMMAND-NAME}|@ --config myrules.properties --config-analyze",
+        "",
+        "  Sanitize only string values of JSON-lines input",
+        "    @|bold ${COMMAND-NAME}|@ --format jsonl -i events.jsonl",
+        "",
+        "  Sanitize only two columns of a CSV export",
+        "    @|bold ${COMMAND-NAME}|@ --format csv --columns email,client_ip -i export.csv",
+        "",
+        "  Treat stack traces as one record (new record on each timestamp)",
+        "    @|bold ${COMMAND-NAME}|@ --record-start '^\\d{4}-\\d{2}-\\d{2}' -i app.log",
+        "",
+        "  Measure the throughput of a config on a synthetic corpus",
+        "    @|bold ${COMMAND-NAME}|@ bench --config myrules.properties",
+        "",
+        "  Receive syslog on localhost and write sanitized rolling files",
+        "    @|bold ${COMMAND-NAME}|@ listen --udp 10514 --tcp 10514 -o clean.log",
+        "",
     },
     exitCodeListHeading = "%n@|bold Exit Codes:|@%n",
     exitCodeList = {
@@ -116,6 +143,27 @@ public class Main implements Callable<Integer> {
         @Option(names = {"--config-info"},
             description = "print the effective configuration and exit")
         boolean printConfigInfo;
+
+        @Option(names = {"--config-analyze"},
+            description = {"analyze rule performance (backtracking risks and ns/char on adversarial input) and exit",
+                            "  exits with 1 if a rule exceeds the threshold"})
+        boolean analyzeConfig;
+
+        @Option(names = {"--analyze-threshold"},
+            paramLabel = "<ns/char>",
+            description = {"cost per input char above which --config-analyze warns", "  default: ${DEFAULT-VALUE}"})
+        double analyzeThreshold = RuleAnalyzer.DEFAULT_THRESHOLD_NS_PER_CHAR;
+
+        @Option(names = {"--watch-config"},
+            description = {"reload the --config file when it changes, without restarting",
+                            "  invalid changes are reported and the previous rules stay active"})
+        boolean watchConfig;
+
+        @Option(names = {"--hash-key-file"},
+            paramLabel = "<file>",
+            description = {"file with the secret key of ${hash:N} and the audit hashes (HMAC-SHA-256)",
+                            "  default: the TEXTMINATOR_HASH_KEY environment variable"})
+        File hashKeyFile;
     }
 
     public static class IOGroup {
@@ -130,6 +178,83 @@ public class Main implements Callable<Integer> {
         @Option(names = {"-f", "--force"},
             description = {"overwrite output file if exists"})
         boolean overwriteOutputFile;
+
+        @Option(names = {"--format"},
+            description = {"input format: ${COMPLETION-CANDIDATES}", "  default: ${DEFAULT-VALUE}"})
+        InputFormat format = InputFormat.TEXT;
+
+        @Option(names = {"--columns"},
+            split = ",",
+            paramLabel = "<column>",
+            description = {"csv/tsv columns to sanitize, by header name or 1-based index",
+                            "  default: columns from rule fields, or all"})
+        Set<String> columns = new LinkedHashSet<>();
+
+        @Option(names = {"--no-header"},
+            description = "csv/tsv input has no header row")
+        boolean noHeader;
+
+        @Option(names = {"--record-separator"},
+            paramLabel = "<mode>",
+            description = {"split text input into multi-line records: ${COMPLETION-CANDIDATES}", "  default: ${DEFAULT-VALUE}"})
+        RecordMode recordMode = RecordMode.LINE;
+
+        @Option(names = {"--record-start"},
+            paramLabel = "<regex>",
+            description = "start a new multi-line record on each line matching the regex")
+        String recordStart;
+
+        @Option(names = {"--max-record-size"},
+            paramLabel = "<chars>",
+            description = {"maximum size of a multi-line record, larger records are split", "  default: ${DEFAULT-VALUE}"})
+        int maxRecordSize = RecordReader.DEFAULT_MAX_RECORD_SIZE;
+
+        @Option(names = {"--encoding"},
+            paramLabel = "<charset>",
+            description = {"input and output encoding, e.g. iso-8859-1, windows-1252, utf-16le",
+                            "  default: utf-8, or as given by a byte order mark"})
+        String encoding;
+
+        @Option(names = {"--audit-file"},
+            paramLabel = "<file>",
+            description = {"write a record per replacement (line, column, rule, hash of the original value)",
+                            "  the original value itself is never written"})
+        File auditFile;
+
+        @Option(names = {"--audit-format"},
+            description = {"audit file format: ${COMPLETION-CANDIDATES}", "  default: ${DEFAULT-VALUE}"})
+        AuditFormat auditFormat = AuditFormat.JSONL;
+
+        @Option(names = {"--index-file"},
+            paramLabel = "<file>",
+            description = {"write a sidecar index of the output: line, byte offset and matches of every block",
+                            "  for parallel readers that seek to a line range or skip blocks without redactions"})
+        File indexFile;
+
+        @Option(names = {"--index-interval"},
+            paramLabel = "<lines>",
+            description = {"lines per --index-file block", "  default: ${DEFAULT-VALUE}"})
+        int indexInterval = LineIndexWriter.DEFAULT_INTERVAL;
+
+        @Option(names = {"--manifest"},
+            paramLabel = "<file>",
+            description = {"sanitize incrementally: copy the output of input chunks that are unchanged since the run",
+                            "  that wrote <file>, and only sanitize new or changed chunks; <file> is then updated"})
+        File manifestFile;
+
+        @Option(names = {"--profiles"},
+            paramLabel = "<names>",
+            arity = "0..1",
+            fallbackValue = "all",
+            description = {"write the profiles of the config (profile.<name>.rules/output) in one pass",
+                            "  comma separated names; all profiles if none are given"})
+        String profiles;
+
+        @Option(names = {"--line-cache"},
+            paramLabel = "<size>",
+            description = {"reuse the result of repeated lines and field values, within about <size> of memory",
+                            "  e.g. 64m; hit rate and memory use are shown with --stats"})
+        String lineCache;
     }
 
     public static class DiagnosticsGroup {
@@ -141,6 +266,17 @@ public class Main implements Callable<Integer> {
             description = "same with --stats but WITHOUT processing")
         boolean isDryRun;
 
+        @Option(names = {"--sample"},
+            paramLabel = "<n|fraction>",
+            description = {"estimate per-rule matches and runtime from randomly sampled lines of --input and exit",
+                            "  a line count (e.g. 2000) or a fraction (e.g. 0.001 or 0.1%%)"})
+        String sample;
+
+        @Option(names = {"--sample-seed"},
+            paramLabel = "<seed>",
+            description = "random seed for --sample, for reproducible estimates")
+        Long sampleSeed;
+
         @Option(names = {"-q", "--quiet"},
             description = "suppress all diagnostic print (including --stats and --config-info). Overrides -v")
         boolean isQuiet;
@@ -166,7 +302,9 @@ public class Main implements Callable<Integer> {
     }
 
     public static void main(String[] args) {
-        int exitCode = new CommandLine(new Main()).execute(args);
+        int exitCode = new CommandLine(new Main())
+            .setCaseInsensitiveEnumValuesAllowed(true)
+            .execute(args);
         System.exit(exitCode);
     }
 
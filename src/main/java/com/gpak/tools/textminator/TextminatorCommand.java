@@ -1,32 +1,82 @@
 package com.gpak.tools.textminator;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.CopyOption;
-import java.nio.file.Files;
-import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
+import com.gpak.tools.textminator.core.CsvLineSanitizer;
+import com.gpak.tools.textminator.core.JsonLineSanitizer;
+import com.gpak.tools.textminator.core.KeyedHash;
+import com.gpak.tools.textminator.core.LineCache;
+import com.gpak.tools.textminator.core.LineSanitizer;
+import com.gpak.tools.textminator.core.ProfileSanitizer;
+import com.gpak.tools.textminator.core.RuleAnalyzer;
+import com.gpak.tools.textminator.core.RuleSet;
+import com.gpak.tools.textminator.core.RuleSetReloader;
+import com.gpak.tools.textminator.core.SampleEstimator;
 import com.gpak.tools.textminator.core.Sanitizer;
 import com.gpak.tools.textminator.core.ToolContext;
+import com.gpak.tools.textminator.io.AuditWriter;
+import com.gpak.tools.textminator.io.CountingOutputStream;
+import com.gpak.tools.textminator.io.IncrementalPlan;
+import com.gpak.tools.textminator.io.IoUtil;
+import com.gpak.tools.textminator.io.LineIndexWriter;
+import com.gpak.tools.textminator.io.LineSampler;
+import com.gpak.tools.textminator.io.RecordReader;
+import com.gpak.tools.textminator.io.StallTimingInputStream;
+import com.gpak.tools.textminator.io.StallTimingOutputStream;
+import com.gpak.tools.textminator.io.TextEncoding;
+import com.gpak.tools.textminator.jfr.BatchRecorder;
+import com.gpak.tools.textminator.model.InputFormat;
 import com.gpak.tools.textminator.model.LineResult;
+import com.gpak.tools.textminator.model.Profile;
+import com.gpak.tools.textminator.model.RecordMode;
 import com.gpak.tools.textminator.model.Rule;
+import com.gpak.tools.textminator.model.RuleAnalysis;
 import com.gpak.tools.textminator.util.ConfigUtil;
 import com.gpak.tools.textminator.util.Console;
 import com.gpak.tools.textminator.util.PrintUtil;
 
 public class TextminatorCommand {
 
+    /** Records processed between two checks for a reloaded rule set. */
+    private static final int RELOAD_CHECK_INTERVAL = 256;
+
+    // JIT warm-up before --sample measures time
+    private static final int SAMPLE_WARMUP_LINES = 1000;
+    private static final int SAMPLE_WARMUP_CALLS = 200_000;
+    private static final long SAMPLE_WARMUP_NANOS = 2_000_000_000L;
+    private static final int SAMPLE_TIMING_RUNS = 3;
+
     private ToolContext context;
     private boolean matchFound = false;
+    private TextEncoding encoding = TextEncoding.UTF_8;
+    private CountingOutputStream outputCounter;
+
+    // Sanitizers of the single-output run, replaced when the rule set is reloaded
+    private Sanitizer sanitizer;
+    private LineSanitizer lineSanitizer;
+    private int sinceReloadCheck;
 
     public TextminatorCommand(ToolContext context) {
         this.context = context;
@@ -43,88 +93,601 @@ public class TextminatorCommand {
         }
 
         ConfigUtil.validateInputOptions(context.getIoGroup().outputFile, context.getIoGroup().overwriteOutputFile);
+        ConfigUtil.validateIndexOptions(context.getIoGroup().indexFile, context.getIoGroup().overwriteOutputFile,
+                                        context.getDiagnosticsGroup().isDryRun);
+        RecordMode recordMode = ConfigUtil.validateRecordOptions(context.getIoGroup().recordMode,
+                                                                 context.getIoGroup().recordStart,
+                                                                 context.getIoGroup().maxRecordSize,
+                                                                 context.getIoGroup().format);
+        ConfigUtil.validateProfileOptions(context.getIoGroup().profiles, context.getIoGroup().outputFile,
+                                          context.getIoGroup().auditFile, context.getIoGroup().indexFile,
+                                          context.getIoGroup().manifestFile, context.getIoGroup().lineCache,
+                                          context.getConfigGroup().watchConfig);
+        ConfigUtil.validateManifestOptions(context.getIoGroup().manifestFile, context.getIoGroup().inputFile,
+                                           context.getIoGroup().outputFile, context.getDiagnosticsGroup().isDryRun,
+                                           recordMode, context.getConfigGroup().watchConfig,
+                                           context.getIoGroup().auditFile, context.getIoGroup().indexFile);
         List<Rule> rules = ConfigUtil.loadConfigFile(context.getConfigGroup().userConfigFile);
+        KeyedHash hashKey = ConfigUtil.loadHashKey(context.getConfigGroup().hashKeyFile, rules,
+                                                   context.getIoGroup().auditFile != null);
+        ConfigUtil.validateAuditOptions(context.getIoGroup().auditFile, context.getIoGroup().overwriteOutputFile, hashKey);
 
         if (context.getConfigGroup().printConfigInfo) {
             PrintUtil.printRules(rules, context.getConfigGroup().userConfigFile);
             return ToolContext.EXIT_OK;
         }
 
+        if (context.getConfigGroup().analyzeConfig) {
+            List<RuleAnalysis> analysis = RuleAnalyzer.analyze(rules);
+            boolean slow = PrintUtil.printRuleAnalysis(analysis, context.getConfigGroup().analyzeThreshold);
+            return slow ? ToolContext.EXIT_ERR : ToolContext.EXIT_OK;
+        }
+
+        if (context.getDiagnosticsGroup().sample != null) {
+            double sample = ConfigUtil.parseSample(context.getDiagnosticsGroup().sample,
+                                                   context.getIoGroup().inputFile,
+                                                   recordMode);
+            return executeSample(RuleSet.of(rules).withHashKey(hashKey), sample);
+        }
+
+        if (context.getConfigGroup().watchConfig && context.getConfigGroup().userConfigFile == null) {
+            throw new IllegalStateException("--watch-config requires --config");
+        }
+
         context.setStartNanos(System.nanoTime());
 
-        Sanitizer sanitizer = new Sanitizer(rules,
-                                            context.getDiagnosticsGroup().isDryRun,
-                                            context.getDiagnosticsGroup().printStats);
-        try (BufferedReader reader = createReader(context.getIoGroup().inputFile);
+        Function<List<Rule>, RuleSet> ruleSetFactory = loaded -> {
+            RuleSet ruleSet = RuleSet.of(loaded).withHashKey(hashKey);
+            if (recordMode != RecordMode.LINE) {
+                // ^ and $ keep matching at line boundaries inside a record
+                ruleSet = ruleSet.withFlags(Pattern.MULTILINE);
+            }
+            return ruleSet;
+        };
+
+        if (context.getIoGroup().profiles != null) {
+            return executeProfiles(ruleSetFactory.apply(rules), recordMode);
+        }
+
+        boolean calculateStatistics = context.getDiagnosticsGroup().isDryRun
+                                        || context.getDiagnosticsGroup().printStats;
+        sanitizer = ruleSetFactory.apply(rules).newSanitizer(calculateStatistics);
+        LineCache lineCache = createLineCache(sanitizer);
+        lineSanitizer = createLineSanitizer(sanitizer, context.getIoGroup().format);
+        Map<Long, Map<String, Long>> statistics = new LinkedHashMap<>();
+        IncrementalPlan plan = createIncrementalPlan(sanitizer.getRuleSet());
+
+        try (plan;
+            RuleSetReloader reloader = createReloader(sanitizer.getRuleSet(), ruleSetFactory);
+            AuditWriter audit = createAuditWriter(sanitizer);
+            RecordReader reader = createRecordReader(context.getIoGroup().inputFile, recordMode, plan);
             PrintWriter writer = createWriter(context.getIoGroup().outputFile)) {
             Console.info("Start processing");
+            LineIndexWriter index = createIndexWriter(writer);
+            if (plan != null) {
+                plan.start(writer, outputCounter);
+            }
 
-            String line;
-            while ((line = reader.readLine()) != null) {
-                context.incrementTotalNumberOfLines();
+            // Interactive input arrives line by line, so check on every line
+            int reloadCheckInterval = context.isInteractive() ? 1 : RELOAD_CHECK_INTERVAL;
+            sinceReloadCheck = 0;
+
+            processRecords(reader, record -> {
+                // Swap rule sets between batches only; the per-line path never locks
+                if (reloader != null && ++sinceReloadCheck >= reloadCheckInterval) {
+                    sinceReloadCheck = 0;
+                    switchRuleSet(reloader.current(), audit, lineCache, statistics, calculateStatistics,
+                                  context.getTotalNumberOfLines() - reader.getLinesInRecord() + 1);
+                }
+
+                if (audit != null) {
+                    // A multi-line record is audited at its first line
+                    audit.setLine(context.getTotalNumberOfLines() - reader.getLinesInRecord() + 1);
+                }
 
-                Console.trace("Sanitizing line: " + context.getTotalNumberOfLines());
-                LineResult lineResult = sanitizer.sanitizeLine(line);
+                if (Console.isTrace()) {
+                    Console.trace("Sanitizing line: " + context.getTotalNumberOfLines());
+                }
+                long matchesBefore = (index != null || plan != null) ? sanitizer.getMatchCount() : 0;
+                LineResult lineResult = lineSanitizer.sanitizeLine(record);
 
                 if (!context.getDiagnosticsGroup().isDryRun) {
-                    writer.println(lineResult.getLine());
+                    writeRecord(writer, lineResult.getLine(), reader);
+                }
+                if (index != null) {
+                    index.add(reader.getLinesInRecord(), sanitizer.getMatchCount() - matchesBefore);
+                }
+                if (plan != null) {
+                    plan.add(reader.getLinesInRecord(), sanitizer.getMatchCount() - matchesBefore);
                 }
+                return lineResult.isChanged();
+            });
+            sanitizer.flushEvents();
 
-                if (lineResult.isChanged()) {
+            if (plan != null) {
+                plan.finish();
+                context.addTotalNumberOfLines(plan.getReusedLines());
+                if (plan.getReusedMatches() > 0) {
                     matchFound = true;
                 }
             }
 
-            if (context.getTotalNumberOfLines() == 0 && !context.isInteractive()) {
-                throw new IllegalStateException("Input was empty!");
-            }
+            checkResult();
 
-            if (!matchFound) {
-                throw new IllegalStateException("No match found!");
+            if (index != null) {
+                index.finish();
+                Console.info("Index written: " + index.getBlocks() + " blocks");
             }
 
             Console.info("Processing finished");
         }
 
-        if (context.getIoGroup().outputFile != null && !context.getDiagnosticsGroup().isDryRun) {
-            Console.info("Writing output file: " + context.getIoGroup().outputFile.getName());
+        moveToOutputs(Collections.singletonList(context.getIoGroup().outputFile));
+        if (plan != null) {
+            // --manifest requires --output and no --dry-run
+            plan.writeManifest(context.getIoGroup().manifestFile, context.getIoGroup().outputFile);
+        }
 
+        if (calculateStatistics) {
+            collectStatistics(statistics, sanitizer);
+            long elapsedNanos = System.nanoTime() - context.getStartNanos();
+            PrintUtil.printStatsSummary(statistics, elapsedNanos, context.getTotalNumberOfLines(), lineCache, plan);
+        }
+
+        return ToolContext.EXIT_OK;
+    }
+
+    /**
+     * Reads the input once and writes a sanitized copy for every selected
+     * profile of the config (--profiles). For plain text the profiles share
+     * the results of their common rules, see {@link ProfileSanitizer}; for
+     * structured formats each profile parses the decoded line on its own.
+     */
+    private int executeProfiles(RuleSet ruleSet, RecordMode recordMode) throws IOException {
+        boolean isDryRun = context.getDiagnosticsGroup().isDryRun;
+        boolean calculateStatistics = isDryRun || context.getDiagnosticsGroup().printStats;
+        List<Profile> profiles = ConfigUtil.loadProfiles(context.getConfigGroup().userConfigFile, ruleSet.getRules(),
+                                                         context.getIoGroup().profiles);
+        if (!isDryRun) {
+            for (Profile profile : profiles) {
+                ConfigUtil.validateInputOptions(profile.getOutputFile(), context.getIoGroup().overwriteOutputFile);
+            }
+        }
+
+        List<RuleSet> ruleSets = profiles.stream().map(profile -> RuleSet.of(profile.getRules()).withHashKey(ruleSet.getHashKey())).collect(Collectors.toList());
+        ProfileSanitizer shared = (context.getIoGroup().format == InputFormat.TEXT) ? new ProfileSanitizer(ruleSets) : null;
+        List<Sanitizer> sanitizers = new ArrayList<>();
+        List<LineSanitizer> lineSanitizers = new ArrayList<>();
+        if (shared == null) {
+            for (RuleSet profileRules : ruleSets) {
+                Sanitizer sanitizer = profileRules.newSanitizer(calculateStatistics);
+                sanitizers.add(sanitizer);
+                lineSanitizers.add(createLineSanitizer(sanitizer, context.getIoGroup().format));
+            }
+        }
+
+        String[] results = new String[profiles.size()];
+        try (RecordReader reader = createRecordReader(context.getIoGroup().inputFile, recordMode, null)) {
+            List<PrintWriter> writers = new ArrayList<>();
             try {
-                CopyOption[] copyOptions = context.getIoGroup().overwriteOutputFile 
-                    ? new CopyOption[] { StandardCopyOption.REPLACE_EXISTING, 
-                                        StandardCopyOption.ATOMIC_MOVE }
-                    : new CopyOption[] { StandardCopyOption.ATOMIC_MOVE };
-                
-                Files.move(tempFileFor(context.getIoGroup().outputFile).toPath(), context.getIoGroup().outputFile.toPath(), copyOptions);
-            } catch (IOException e) {
-                throw new IOException("Failed to move temporary file to output: " + e.getMessage());
+                if (!isDryRun) {
+                    for (Profile profile : profiles) {
+                        writers.add(createWriter(profile.getOutputFile()));
+                    }
+                }
+                Console.info("Start processing " + profiles.size() + " profiles");
+
+                processRecords(reader, record -> {
+                    boolean changed = false;
+                    if (shared != null) {
+                        changed = shared.sanitizeLine(record, results);
+                    } else {
+                        for (int p = 0; p < results.length; p++) {
+                            LineResult lineResult = lineSanitizers.get(p).sanitizeLine(record);
+                            results[p] = lineResult.getLine();
+                            changed |= lineResult.isChanged();
+                        }
+                    }
+
+                    for (int p = 0; p < writers.size(); p++) {
+                        writeRecord(writers.get(p), results[p], reader);
+                    }
+                    return changed;
+                });
+                if (shared != null) {
+                    shared.flushEvents();
+                }
+                sanitizers.forEach(Sanitizer::flushEvents);
+            } finally {
+                for (PrintWriter writer : writers) {
+                    writer.close();
+                }
             }
+
+            checkResult();
+            Console.info("Processing finished");
         }
 
-        if (context.getDiagnosticsGroup().printStats || context.getDiagnosticsGroup().isDryRun) {
+        moveToOutputs(profiles.stream().map(Profile::getOutputFile).collect(Collectors.toList()));
+
+        if (calculateStatistics) {
+            List<Map<String, Long>> statistics = new ArrayList<>();
+            for (int p = 0; p < profiles.size(); p++) {
+                statistics.add((shared != null) ? shared.getStatistics(p) : sanitizers.get(p).getStatistics());
+            }
             long elapsedNanos = System.nanoTime() - context.getStartNanos();
-            PrintUtil.printStatsSummary(sanitizer.getStatistics(), elapsedNanos, context.getTotalNumberOfLines());
+            PrintUtil.printProfileSummary(profiles, statistics, elapsedNanos, context.getTotalNumberOfLines(), shared);
+        }
+
+        return ToolContext.EXIT_OK;
+    }
+
+    /**
+     * Sanitizes and writes one record.
+     */
+    @FunctionalInterface
+    private interface RecordHandler {
+
+        /**
+         * @return true if the record was changed
+         */
+        boolean handle(String record) throws IOException;
+    }
+
+    /**
+     * Reads every record of the input and passes it to the handler, counting
+     * the lines, the matches and the batches of the JFR events.
+     */
+    private void processRecords(RecordReader reader, RecordHandler handler) throws IOException {
+        BatchRecorder batches = new BatchRecorder();
+        String record;
+        while ((record = reader.readRecord()) != null) {
+            context.addTotalNumberOfLines(reader.getLinesInRecord());
+
+            boolean changed = handler.handle(record);
+            if (changed) {
+                matchFound = true;
+            }
+            batches.add(reader.getLinesInRecord(), record.length(), changed);
+        }
+        batches.finish();
+    }
+
+    private void checkResult() {
+        if (context.getTotalNumberOfLines() == 0 && !context.isInteractive()) {
+            throw new IllegalStateException("Input was empty!");
+        }
+
+        if (!matchFound) {
+            throw new IllegalStateException("No match found!");
+        }
+    }
+
+    /**
+     * Starts sanitizing with the latest rule set if it was reloaded.
+     */
+    private void switchRuleSet(RuleSet latest, AuditWriter audit, LineCache lineCache,
+                               Map<Long, Map<String, Long>> statistics, boolean calculateStatistics, long line) {
+        if (latest == sanitizer.getRuleSet()) {
+            return;
+        }
+
+        collectStatistics(statistics, sanitizer);
+        sanitizer.flushEvents();
+        sanitizer = latest.newSanitizer(calculateStatistics);
+        sanitizer.setMatchListener(audit);
+        if (lineCache != null) {
+            lineCache.clear();
+            sanitizer.setLineCache(lineCache);
+        }
+        lineSanitizer = lineSanitizer.withSanitizer(sanitizer);
+        Console.info("Switched to rule set version " + latest.getVersion() + " at line " + line);
+    }
+
+    private static void writeRecord(PrintWriter writer, String record, RecordReader reader) {
+        if (reader.getMode() == RecordMode.LINE) {
+            writer.println(record);
+        } else {
+            writer.print(record);
+            writer.print(reader.getTerminator());
+        }
+    }
+
+    /**
+     * Moves the temporary files into place, unless this is a dry run.
+     * Null stands for stdout and is skipped.
+     */
+    private void moveToOutputs(List<File> outputFiles) throws IOException {
+        if (context.getDiagnosticsGroup().isDryRun) {
+            return;
+        }
+        for (File outputFile : outputFiles) {
+            if (outputFile != null) {
+                moveToOutput(outputFile);
+            }
+        }
+    }
+
+    private void moveToOutput(File outputFile) throws IOException {
+        Console.info("Writing output file: " + outputFile.getName());
+
+        IoUtil.moveAtomically(IoUtil.tempFileFor(outputFile), outputFile, context.getIoGroup().overwriteOutputFile, "output");
+    }
+
+    /**
+     * Sanitizes lines picked at random byte offsets of the input file and
+     * prints the estimated totals. Nothing is written.
+     */
+    private int executeSample(RuleSet ruleSet, double sample) throws IOException {
+        context.setStartNanos(System.nanoTime());
+
+        Sanitizer sanitizer = ruleSet.newSanitizer(true);
+        LineSanitizer lineSanitizer = createLineSanitizer(sanitizer, context.getIoGroup().format);
+        boolean hasHeader = (context.getIoGroup().format == InputFormat.CSV || context.getIoGroup().format == InputFormat.TSV)
+                            && !context.getIoGroup().noHeader;
+
+        try (BufferedInputStream in = new BufferedInputStream(new FileInputStream(context.getIoGroup().inputFile))) {
+            encoding = TextEncoding.detect(in, requestedEncoding());
+        }
+        if (!encoding.isAsciiCompatible()) {
+            throw new IllegalStateException("--sample supports UTF-8 and single-byte encodings only, not " + encoding.getCharset().name());
+        }
+
+        try (LineSampler sampler = new LineSampler(context.getIoGroup().inputFile, context.getIoGroup().maxRecordSize, encoding)) {
+            long fileBytes = sampler.length();
+            if (fileBytes == 0) {
+                throw new IllegalStateException("Input was empty!");
+            }
+
+            long count = (sample >= 1)
+                ? (long) sample
+                : (long) Math.ceil(sample * fileBytes / sampler.averageLineBytes());
+            Console.info("Sampling " + count + " lines");
+
+            if (hasHeader) {
+                lineSanitizer.sanitizeLine(sampler.lineAt(0));
+            }
+
+            Random random = (context.getDiagnosticsGroup().sampleSeed != null)
+                ? new Random(context.getDiagnosticsGroup().sampleSeed)
+                : new Random();
+            long[] offsets = new long[(int) Math.min(count, Integer.MAX_VALUE - 8)];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = (long) (random.nextDouble() * fileBytes);
+            }
+            // Sorted offsets turn the seeks into one forward pass over the file
+            Arrays.sort(offsets);
+
+            LineSanitizer timingSanitizer = warmUp(ruleSet, sampler, offsets, hasHeader);
+
+            SampleEstimator estimator = new SampleEstimator(fileBytes);
+            List<String> ruleNames = new ArrayList<>(sanitizer.getStatistics().keySet());
+            long skipped = 0;
+
+            for (long offset : offsets) {
+                String line = sampler.lineAt(offset);
+                long lineBytes = sampler.getLineBytes();
+
+                if (line == null) {
+                    // Not a draw: counting it as zero would bias every estimate downwards, and
+                    // long lines are the likeliest to be drawn. The rest is scaled to the file.
+                    skipped++;
+                    continue;
+                }
+                estimator.nextSample();
+                if (hasHeader && sampler.isFirstLine()) {
+                    continue;
+                }
+
+                Map<String, Long> before = sanitizer.getStatistics();
+                LineResult lineResult = lineSanitizer.sanitizeLine(line);
+                Map<String, Long> after = sanitizer.getStatistics();
+
+                // Single timings are skewed by GC and JIT pauses; keep the fastest
+                long elapsed = Long.MAX_VALUE;
+                for (int run = 0; run < SAMPLE_TIMING_RUNS; run++) {
+                    long start = System.nanoTime();
+                    timingSanitizer.sanitizeLine(line);
+                    elapsed = Math.min(elapsed, System.nanoTime() - start);
+                }
+
+                estimator.add(SampleEstimator.LINES, 1, lineBytes);
+                estimator.add(SampleEstimator.CHANGED, lineResult.isChanged() ? 1 : 0, lineBytes);
+                estimator.add(SampleEstimator.NANOS, elapsed, lineBytes);
+                after.forEach((name, matches) -> estimator.add(name, matches - before.get(name), lineBytes));
+            }
+
+            PrintUtil.printSampleSummary(estimator, ruleNames, fileBytes, System.nanoTime() - context.getStartNanos(), skipped);
         }
 
         return ToolContext.EXIT_OK;
     }
 
-    private BufferedReader createReader(File inputFile) throws FileNotFoundException {
-        if (inputFile != null) {
-            return new BufferedReader(new InputStreamReader(new FileInputStream(inputFile), StandardCharsets.UTF_8));
+    /**
+     * Runs the rules on the first sampled lines until the JIT has compiled
+     * them, so that the measured time reflects a real run rather than the
+     * interpreter.
+     * 
+     * @return the warmed-up line sanitizer, used for timing only
+     */
+    private LineSanitizer warmUp(RuleSet ruleSet, LineSampler sampler, long[] offsets, boolean hasHeader) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < offsets.length && i < SAMPLE_WARMUP_LINES; i++) {
+            String line = sampler.lineAt(offsets[i]);
+            if (line != null && !(hasHeader && sampler.isFirstLine())) {
+                lines.add(line);
+            }
+        }
+
+        LineSanitizer warmUpSanitizer = createLineSanitizer(ruleSet.newSanitizer(false), context.getIoGroup().format);
+        if (hasHeader) {
+            warmUpSanitizer.sanitizeLine(sampler.lineAt(0));
+        }
+        if (lines.isEmpty()) {
+            return warmUpSanitizer;
         }
-        return new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+
+        long deadline = System.nanoTime() + SAMPLE_WARMUP_NANOS;
+        for (int calls = 0; calls < SAMPLE_WARMUP_CALLS && System.nanoTime() < deadline; calls++) {
+            warmUpSanitizer.sanitizeLine(lines.get(calls % lines.size()));
+        }
+        return warmUpSanitizer;
     }
 
-    private PrintWriter createWriter(File outputFile) throws FileNotFoundException {
-        if (outputFile != null) {
-            File tempOutputFile = tempFileFor(outputFile);
-            return new PrintWriter(new OutputStreamWriter(new FileOutputStream(tempOutputFile), StandardCharsets.UTF_8), false);
+    private AuditWriter createAuditWriter(Sanitizer sanitizer) throws IOException {
+        if (context.getIoGroup().auditFile == null) {
+            return null;
         }
-        return new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), true);
+        Console.info("Writing audit records to: " + context.getIoGroup().auditFile.getName());
+
+        AuditWriter audit = new AuditWriter(context.getIoGroup().auditFile, context.getIoGroup().auditFormat);
+        sanitizer.setMatchListener(audit);
+        return audit;
     }
 
-    private File tempFileFor(File outputFile) {
-        return new File(outputFile.getAbsolutePath() + ".tmp");
+    private LineIndexWriter createIndexWriter(PrintWriter writer) throws IOException {
+        if (context.getIoGroup().indexFile == null) {
+            return null;
+        }
+        Console.info("Writing line index to: " + context.getIoGroup().indexFile.getName());
+
+        return new LineIndexWriter(context.getIoGroup().indexFile, context.getIoGroup().indexInterval, writer, outputCounter);
+    }
+
+    /**
+     * Splits the input into chunks and decides which of them can be copied
+     * from the previous output (--manifest). Detects the encoding, which the
+     * reader and writer then reuse.
+     */
+    private IncrementalPlan createIncrementalPlan(RuleSet ruleSet) throws IOException {
+        if (context.getIoGroup().manifestFile == null) {
+            return null;
+        }
+
+        File inputFile = context.getIoGroup().inputFile;
+        InputFormat format = context.getIoGroup().format;
+        boolean isCsv = format == InputFormat.CSV || format == InputFormat.TSV;
+        boolean hasHeader = isCsv && !context.getIoGroup().noHeader;
+        String header = "none";
+        try (BufferedInputStream in = new BufferedInputStream(new FileInputStream(inputFile))) {
+            encoding = TextEncoding.detect(in, requestedEncoding());
+            if (hasHeader && encoding.isAsciiCompatible()) {
+                // The header decides the columns of every chunk, not only of the first
+                String headerLine = new BufferedReader(encoding.newReader(in)).readLine();
+                header = (headerLine != null) ? sha256(headerLine) : "empty";
+            }
+        }
+        if (!encoding.isAsciiCompatible()) {
+            throw new IllegalStateException("--manifest supports UTF-8 and single-byte encodings only, not " + encoding.getCharset().name());
+        }
+
+        // Everything besides the rules that changes the output
+        String settings = "format=" + format
+            + " encoding=" + encoding
+            + " header=" + header
+            + " columns=" + context.getIoGroup().columns
+            + " eol=" + System.lineSeparator().replace("\r", "CR").replace("\n", "LF");
+
+        IncrementalPlan plan = new IncrementalPlan(context.getIoGroup().manifestFile, inputFile,
+                                                   encoding.hasBom() ? 3 : 0,
+                                                   context.getIoGroup().outputFile, settings, ruleSet.fingerprint(),
+                                                   IncrementalPlan.DEFAULT_CHUNK_SIZE, hasHeader,
+                                                   isCsv ? (format == InputFormat.TSV ? '\t' : ',') : -1);
+        Console.info("Manifest: " + plan.getReusedChunks() + " of " + plan.getChunks() + " chunks unchanged");
+        return plan;
+    }
+
+    private static String sha256(String text) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available: " + e.getMessage());
+        }
+    }
+
+    private LineCache createLineCache(Sanitizer sanitizer) {
+        if (context.getIoGroup().lineCache == null) {
+            return null;
+        }
+
+        LineCache lineCache = new LineCache(ConfigUtil.parseSize(context.getIoGroup().lineCache, "--line-cache"));
+        Console.info("Line cache: " + lineCache.getMaxBytes() + " bytes");
+        sanitizer.setLineCache(lineCache);
+        return lineCache;
+    }
+
+    private RuleSetReloader createReloader(RuleSet ruleSet, Function<List<Rule>, RuleSet> ruleSetFactory) throws IOException {
+        if (!context.getConfigGroup().watchConfig) {
+            return null;
+        }
+        return new RuleSetReloader(context.getConfigGroup().userConfigFile, ruleSet, ruleSetFactory);
+    }
+
+    /**
+     * Keeps the counters of each rule set version apart, since a reload may
+     * rename, add or remove rules.
+     */
+    private void collectStatistics(Map<Long, Map<String, Long>> statistics, Sanitizer sanitizer) {
+        Map<String, Long> counters = sanitizer.getStatistics();
+        if (counters != null) {
+            statistics.merge(sanitizer.getRuleSet().getVersion(), counters, (a, b) -> {
+                Map<String, Long> merged = new LinkedHashMap<>(a);
+                b.forEach((name, count) -> merged.merge(name, count, Long::sum));
+                return merged;
+            });
+        }
+    }
+
+    private LineSanitizer createLineSanitizer(Sanitizer sanitizer, InputFormat format) {
+        Console.debug("Input format: " + format);
+
+        switch (format) {
+            case JSONL:
+                return new JsonLineSanitizer(sanitizer);
+            case CSV:
+                return new CsvLineSanitizer(sanitizer, ',', !context.getIoGroup().noHeader, context.getIoGroup().columns);
+            case TSV:
+                return new CsvLineSanitizer(sanitizer, '\t', !context.getIoGroup().noHeader, context.getIoGroup().columns);
+            case TEXT:
+            default:
+                return sanitizer;
+        }
+    }
+
+    private RecordReader createRecordReader(File inputFile, RecordMode recordMode, IncrementalPlan plan) throws IOException {
+        Pattern recordStart = (recordMode == RecordMode.START)
+            ? Pattern.compile(context.getIoGroup().recordStart)
+            : null;
+        BufferedReader reader = (plan != null)
+            ? new BufferedReader(encoding.newReader(plan.openInput()))
+            : createReader(inputFile);
+        return new RecordReader(reader, recordMode, recordStart, context.getIoGroup().maxRecordSize);
+    }
+
+    /**
+     * Opens the input and detects its encoding, which the writer then reuses.
+     */
+    private BufferedReader createReader(File inputFile) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(
+            new StallTimingInputStream((inputFile != null) ? new FileInputStream(inputFile) : System.in));
+        encoding = TextEncoding.detect(in, requestedEncoding());
+        Console.debug("Encoding: " + encoding);
+
+        return new BufferedReader(encoding.newReader(in));
+    }
+
+    private TextEncoding requestedEncoding() {
+        return (context.getIoGroup().encoding != null) ? TextEncoding.of(context.getIoGroup().encoding) : null;
+    }
+
+    private PrintWriter createWriter(File outputFile) throws IOException {
+        OutputStream out = new StallTimingOutputStream(
+            (outputFile != null) ? new FileOutputStream(IoUtil.tempFileFor(outputFile)) : System.out);
+        if (context.getIoGroup().indexFile != null || context.getIoGroup().manifestFile != null) {
+            // The index and the manifest take their byte offsets from here
+            outputCounter = new CountingOutputStream(out);
+            out = outputCounter;
+        }
+        return new PrintWriter(encoding.newWriter(out), outputFile == null);
     }
 }
@@ -0,0 +1,130 @@
+package com.gpak.tools.textminator.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import com.gpak.tools.textminator.model.Rule;
+import com.gpak.tools.textminator.util.Console;
+
+/**
+ * Runtime evaluation order for rules marked as independent.
+ * 
+ * Only runs of consecutive independent rules are reordered, so the user's
+ * order is kept around every dependent rule. During a warm-up window every
+ * call is timed; afterwards only every {@value #SAMPLE_INTERVAL}th call is,
+ * keeping the profiling overhead low. The order is recomputed at the end of
+ * the warm-up and then every {@value #REORDER_INTERVAL} calls: rules that
+ * matched in the last window run first (their replacements shorten the text
+ * for the rest), then by ascending average cost.
+ */
+final class AdaptiveOrder {
+
+    static final int WARMUP_CALLS = 1_000;
+    static final int REORDER_INTERVAL = 10_000;
+    static final int SAMPLE_INTERVAL = 64;
+
+    private final List<Rule> rules;
+    private final int[] order;
+    private final List<int[]> segments;
+
+    private final long[] nanos;
+    private final long[] runs;
+    private final long[] windowMatches;
+    private long calls;
+
+    private AdaptiveOrder(List<Rule> rules, List<int[]> segments) {
+        this.rules = rules;
+        this.segments = segments;
+        this.order = new int[rules.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        this.nanos = new long[rules.size()];
+        this.runs = new long[rules.size()];
+        this.windowMatches = new long[rules.size()];
+    }
+
+    /**
+     * @return null if no two consecutive rules are independent
+     */
+    static AdaptiveOrder create(List<Rule> rules) {
+        List<int[]> segments = new ArrayList<>();
+
+        int start = -1;
+        for (int i = 0; i <= rules.size(); i++) {
+            boolean independent = i < rules.size() && rules.get(i).isIndependent();
+            if (independent && start < 0) {
+                start = i;
+            } else if (!independent && start >= 0) {
+                if (i - start > 1) {
+                    segments.add(new int[] { start, i });
+                }
+                start = -1;
+            }
+        }
+
+        return segments.isEmpty() ? null : new AdaptiveOrder(rules, segments);
+    }
+
+    int[] order() {
+        return order;
+    }
+
+    /**
+     * Starts a new call.
+     * 
+     * @return whether this call should be timed
+     */
+    boolean startCall() {
+        calls++;
+        if (calls == WARMUP_CALLS || (calls > WARMUP_CALLS && calls % REORDER_INTERVAL == 0)) {
+            reorder();
+        }
+        return calls <= WARMUP_CALLS || calls % SAMPLE_INTERVAL == 0;
+    }
+
+    void record(int rule, long elapsedNanos, long matches, boolean timed) {
+        if (timed) {
+            nanos[rule] += elapsedNanos;
+            runs[rule]++;
+        }
+        windowMatches[rule] += matches;
+    }
+
+    private void reorder() {
+        Comparator<Integer> comparator = Comparator
+            .comparing((Integer i) -> windowMatches[i] == 0)
+            .thenComparingDouble(i -> runs[i] == 0 ? 0 : (double) nanos[i] / runs[i]);
+
+        int[] previous = order.clone();
+        for (int[] segment : segments) {
+            Integer[] indexes = new Integer[segment[1] - segment[0]];
+            for (int k = 0; k < indexes.length; k++) {
+                indexes[k] = order[segment[0] + k];
+            }
+
+            Arrays.sort(indexes, comparator);
+
+            for (int k = 0; k < indexes.length; k++) {
+                order[segment[0] + k] = indexes[k];
+            }
+        }
+
+        // Decay so that the order follows changes in the input
+        for (int i = 0; i < rules.size(); i++) {
+            nanos[i] /= 2;
+            runs[i] /= 2;
+            windowMatches[i] = 0;
+        }
+
+        if (!Arrays.equals(previous, order) && Console.isDebug()) {
+            StringBuilder sb = new StringBuilder("Adaptive rule order:");
+            for (int i : order) {
+                sb.append(' ').append(rules.get(i).getName());
+            }
+            Console.debug(sb.toString());
+        }
+    }
+}
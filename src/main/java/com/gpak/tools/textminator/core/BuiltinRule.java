@@ -0,0 +1,355 @@
+package com.gpak.tools.textminator.core;
+
+import java.util.regex.Pattern;
+
+/**
+ * Hand-written scanners for the rules shipped in textminator.properties,
+ * selected with {@code <name>.type=builtin}.
+ *
+ * Each scanner finds exactly the matches that {@link java.util.regex.Matcher#find()}
+ * finds with the shipped regex ({@link #getRegex()}), including the
+ * leftmost-first choice and the backtracking of greedy quantifiers, but
+ * decides them in one forward pass without backtracking. Word boundaries
+ * follow the running JDK's definition of {@code \b}. Immutable and
+ * thread-safe.
+ */
+public enum BuiltinRule implements MatchFinder {
+
+    /**
+     * {@code [\w.+-]+@[\w-]+\.[\w.-]+}
+     * <p>
+     * None of the classes contains '@', so the local part is the run of
+     * local chars right before an '@'. Neither does the domain class contain
+     * '.', so greedy backtracking can only succeed with whole runs: a match is
+     * local-run '@' domain-run '.' tld-run, each non-empty.
+     */
+    EMAIL("[\\w.+-]+@[\\w-]+\\.[\\w.-]+") {
+        @Override
+        public boolean find(CharSequence text, int from, int[] span) {
+            int len = text.length();
+            for (int at = indexOf(text, '@', from); at >= 0; at = indexOf(text, '@', at + 1)) {
+                int start = at;
+                while (start > from && isLocalChar(text.charAt(start - 1))) {
+                    start--;
+                }
+                if (start == at) {
+                    continue;
+                }
+
+                int dot = at + 1;
+                while (dot < len && isDomainChar(text.charAt(dot))) {
+                    dot++;
+                }
+                if (dot == at + 1 || dot >= len || text.charAt(dot) != '.') {
+                    continue;
+                }
+
+                int end = dot + 1;
+                while (end < len && isTldChar(text.charAt(end))) {
+                    end++;
+                }
+                if (end == dot + 1) {
+                    continue;
+                }
+
+                span[0] = start;
+                span[1] = end;
+                return true;
+            }
+            return false;
+        }
+    },
+
+    /**
+     * {@code \b[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[1-5][0-9a-fA-F]{3}-[89abAB][0-9a-fA-F]{3}-[0-9a-fA-F]{12}\b}
+     * <p>
+     * Fixed length, so every '-' is tried as the first dash of a match.
+     */
+    UUID("\\b[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[1-5][0-9a-fA-F]{3}-[89abAB][0-9a-fA-F]{3}-[0-9a-fA-F]{12}\\b") {
+        @Override
+        public boolean find(CharSequence text, int from, int[] span) {
+            int len = text.length();
+            for (int dash = indexOf(text, '-', from + 8); dash >= 0; dash = indexOf(text, '-', dash + 1)) {
+                int start = dash - 8;
+                if (start + 36 > len) {
+                    return false;
+                }
+                if (isUuid(text, start) && isBoundary(text, start) && isBoundary(text, start + 36)) {
+                    span[0] = start;
+                    span[1] = start + 36;
+                    return true;
+                }
+            }
+            return false;
+        }
+    },
+
+    /**
+     * {@code \b(?:(?:25[0-5]|2[0-4]\d|1\d{2}|[1-9]?\d)\.){3}(?:25[0-5]|2[0-4]\d|1\d{2}|[1-9]?\d)\b}
+     * <p>
+     * A digit is followed by '.' or another digit only at the end of a digit
+     * run, and \b can't separate two digits, so every octet is a whole run
+     * of 1-3 digits: 0-9, 10-99 or 100-255 without leading zeros.
+     */
+    IPV4("\\b(?:(?:25[0-5]|2[0-4]\\d|1\\d{2}|[1-9]?\\d)\\.){3}(?:25[0-5]|2[0-4]\\d|1\\d{2}|[1-9]?\\d)\\b") {
+        @Override
+        public boolean find(CharSequence text, int from, int[] span) {
+            int len = text.length();
+            for (int start = from; start < len; start++) {
+                if (!isDigit(text.charAt(start)) || !isBoundary(text, start)) {
+                    continue;
+                }
+
+                int end = octetEnd(text, start);
+                for (int octet = 1; octet < 4 && end > 0; octet++) {
+                    end = (end < len && text.charAt(end) == '.') ? octetEnd(text, end + 1) : -1;
+                }
+                if (end > 0 && isBoundary(text, end)) {
+                    span[0] = start;
+                    span[1] = end;
+                    return true;
+                }
+            }
+            return false;
+        }
+    },
+
+    /**
+     * {@code \b(?=[0-9A-Fa-f:]{2,39}\b)(?=(?:.*:){2,})[0-9A-Fa-f:]+\b}
+     * <p>
+     * At a boundary followed by a run of hex digits and colons: the first
+     * lookahead needs a boundary 2-39 chars into the run, the second two
+     * colons before the end of the line, and the match ends at the last
+     * boundary inside the run.
+     */
+    IPV6("\\b(?=[0-9A-Fa-f:]{2,39}\\b)(?=(?:.*:){2,})[0-9A-Fa-f:]+\\b") {
+        @Override
+        public boolean find(CharSequence text, int from, int[] span) {
+            int len = text.length();
+
+            // Both only move forward: end of the line and second colon from start
+            int lineEnd = -1;
+            int firstColon = -1;
+            int secondColon = -1;
+
+            for (int start = from; start < len; start++) {
+                if (!isHexOrColon(text.charAt(start)) || !isBoundary(text, start)) {
+                    continue;
+                }
+
+                int run = start + 1;
+                while (run < len && isHexOrColon(text.charAt(run))) {
+                    run++;
+                }
+                int last = lastBoundary(text, start, Math.min(run, start + 39));
+                if (last < start + 2) {
+                    continue;
+                }
+
+                if (lineEnd < start) {
+                    lineEnd = start;
+                    while (lineEnd < len && !isLineTerminator(text.charAt(lineEnd))) {
+                        lineEnd++;
+                    }
+                }
+                if (firstColon < start) {
+                    firstColon = (secondColon >= start) ? secondColon : indexOf(text, ':', start);
+                    secondColon = (firstColon < 0) ? len : indexOf(text, ':', firstColon + 1);
+                    if (firstColon < 0) {
+                        firstColon = len;
+                    }
+                    if (secondColon < 0) {
+                        secondColon = len;
+                    }
+                }
+                if (secondColon >= lineEnd) {
+                    continue;
+                }
+
+                span[0] = start;
+                span[1] = lastBoundary(text, start, run);
+                return true;
+            }
+            return false;
+        }
+    };
+
+    // Whether \b treats letters and digits beyond ASCII as word chars (JDK 17-18)
+    private static final boolean UNICODE_WORD_BOUNDARY = Pattern.compile("\\b").matcher("\u00e9").find();
+
+    private final String regex;
+
+    BuiltinRule(String regex) {
+        this.regex = regex;
+    }
+
+    /**
+     * @return the shipped regex this scanner implements
+     */
+    public String getRegex() {
+        return regex;
+    }
+
+    /**
+     * @return the builtin for a rule name (case-insensitive), or null if unknown
+     */
+    public static BuiltinRule of(String name) {
+        for (BuiltinRule builtin : values()) {
+            if (builtin.name().equalsIgnoreCase(name.trim())) {
+                return builtin;
+            }
+        }
+        return null;
+    }
+
+    private static int indexOf(CharSequence text, char c, int from) {
+        if (text instanceof String) {
+            return ((String) text).indexOf(c, from);
+        }
+        for (int i = Math.max(from, 0); i < text.length(); i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isHex(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private static boolean isHexOrColon(char c) {
+        return c == ':' || isHex(c);
+    }
+
+    // \w
+    private static boolean isAsciiWordChar(char c) {
+        return isDigit(c) || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    // [\w.+-]
+    private static boolean isLocalChar(char c) {
+        return isAsciiWordChar(c) || c == '.' || c == '+' || c == '-';
+    }
+
+    // [\w-]
+    private static boolean isDomainChar(char c) {
+        return isAsciiWordChar(c) || c == '-';
+    }
+
+    // [\w.-]
+    private static boolean isTldChar(char c) {
+        return isAsciiWordChar(c) || c == '.' || c == '-';
+    }
+
+    // Chars that '.' doesn't match
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    private static boolean isUuid(CharSequence text, int start) {
+        for (int i = 0; i < 36; i++) {
+            char c = text.charAt(start + i);
+            boolean valid;
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                valid = c == '-';
+            } else if (i == 14) {
+                valid = c >= '1' && c <= '5';
+            } else if (i == 19) {
+                valid = c == '8' || c == '9' || c == 'a' || c == 'b' || c == 'A' || c == 'B';
+            } else {
+                valid = isHex(c);
+            }
+            if (!valid) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the end of a valid octet (a whole digit run) at i, or -1
+     */
+    private static int octetEnd(CharSequence text, int i) {
+        int len = text.length();
+        int end = i;
+        int value = 0;
+        while (end < len && end < i + 4 && isDigit(text.charAt(end))) {
+            value = value * 10 + (text.charAt(end) - '0');
+            end++;
+        }
+
+        int digits = end - i;
+        if (digits == 0 || digits > 3 || (end < len && isDigit(text.charAt(end)))) {
+            return -1;
+        }
+        if (digits > 1 && text.charAt(i) == '0') {
+            return -1;
+        }
+        return (value <= 255) ? end : -1;
+    }
+
+    /**
+     * @return the largest end in (start, limit] with a boundary, or start if none
+     */
+    private static int lastBoundary(CharSequence text, int start, int limit) {
+        for (int end = limit; end > start; end--) {
+            if (isBoundary(text, end)) {
+                return end;
+            }
+        }
+        return start;
+    }
+
+    /**
+     * Same as {@code \b} at offset i, with the whole text visible.
+     */
+    static boolean isBoundary(CharSequence text, int i) {
+        boolean left = i > 0 && isWordBefore(text, i);
+        boolean right = i < text.length() && isWordAt(text, i);
+        return left != right;
+    }
+
+    private static boolean isWordAt(CharSequence text, int i) {
+        char c = text.charAt(i);
+        if (c < 0x80) {
+            return isAsciiWordChar(c);
+        }
+        int ch = Character.codePointAt(text, i);
+        return isWord(ch) || (Character.getType(ch) == Character.NON_SPACING_MARK && hasBaseCharacter(text, i));
+    }
+
+    private static boolean isWordBefore(CharSequence text, int i) {
+        char c = text.charAt(i - 1);
+        if (c < 0x80) {
+            return isAsciiWordChar(c);
+        }
+        int ch = Character.codePointBefore(text, i);
+        return isWord(ch) || (Character.getType(ch) == Character.NON_SPACING_MARK && hasBaseCharacter(text, i - 1));
+    }
+
+    private static boolean isWord(int ch) {
+        if (ch < 0x80) {
+            return isAsciiWordChar((char) ch);
+        }
+        return UNICODE_WORD_BOUNDARY && Character.isLetterOrDigit(ch);
+    }
+
+    // A combining mark counts as a word char if it follows a letter or digit
+    private static boolean hasBaseCharacter(CharSequence text, int i) {
+        for (int x = i; x >= 0; x--) {
+            int ch = Character.codePointAt(text, x);
+            if (Character.isLetterOrDigit(ch)) {
+                return true;
+            }
+            if (Character.getType(ch) != Character.NON_SPACING_MARK) {
+                return false;
+            }
+        }
+        return false;
+    }
+}
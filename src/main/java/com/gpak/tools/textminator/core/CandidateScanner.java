@@ -0,0 +1,404 @@
+package com.gpak.tools.textminator.core;
+
+import java.nio.CharBuffer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Offsets where a match of a pattern can start, so the matcher is only
+ * invoked there instead of at every position of the text.
+ *
+ * The set of chars that can begin a match is derived from the leading atoms
+ * of the regex: each char class, escape or literal is compiled on its own and
+ * tested against every char, lookarounds and other zero-width atoms are
+ * skipped, optional atoms add the chars of what follows. If the regex starts
+ * with {@code \b}, offsets between two ASCII chars that are both word or both
+ * non-word chars are skipped as well.
+ *
+ * Anything uncertain (back references, inline flags, \G, a pattern that can
+ * match the empty string, ...) gives no scanner. A scanner without \b is
+ * also dropped when most printable chars can begin a match, e.g. for the
+ * email rule, since scanning would then only add work.
+ */
+public final class CandidateScanner {
+
+    private static final int PRINTABLE = 0x7f - 0x20;
+
+    private final long[] firstChars;
+    private final boolean boundary;
+
+    private CandidateScanner(long[] firstChars, boolean boundary) {
+        this.firstChars = firstChars;
+        this.boundary = boundary;
+    }
+
+    /**
+     * @return the scanner of the pattern, or null if none can be derived or it
+     *         wouldn't skip enough offsets
+     */
+    public static CandidateScanner of(Pattern pattern) {
+        int flags = pattern.flags();
+        String regex = pattern.pattern();
+        if ((flags & (Pattern.COMMENTS | Pattern.CANON_EQ)) != 0 || regex.isEmpty()) {
+            return null;
+        }
+
+        First first;
+        if ((flags & Pattern.LITERAL) != 0) {
+            first = new First(charsOf(regex.substring(0, 1), flags), false, false);
+        } else {
+            first = new Analysis(regex, flags).alternatives(0, regex.length(), true);
+        }
+        if (first == null || first.nullable) {
+            return null;
+        }
+
+        // Surrogates are tested one char at a time, so keep them all
+        for (int c = Character.MIN_SURROGATE; c <= Character.MAX_SURROGATE; c++) {
+            set(first.chars, c);
+        }
+
+        int printable = 0;
+        for (int c = 0x20; c < 0x7f; c++) {
+            if (contains(first.chars, (char) c)) {
+                printable++;
+            }
+        }
+        if (!first.boundary && printable * 2 > PRINTABLE) {
+            return null;
+        }
+        return new CandidateScanner(first.chars, first.boundary);
+    }
+
+    /**
+     * @return the first offset at or after from where a match may start, or -1
+     */
+    public int next(CharSequence text, int from) {
+        int len = text.length();
+        for (int p = from; p < len; p++) {
+            char c = text.charAt(p);
+            if ((firstChars[c >>> 6] & (1L << c)) == 0) {
+                continue;
+            }
+            if (boundary && c < 0x80) {
+                // Same as \b for ASCII; other chars are left to the matcher
+                char before = (p > 0) ? text.charAt(p - 1) : ' ';
+                if (before < 0x80 && isAsciiWordChar(before) == isAsciiWordChar(c)) {
+                    continue;
+                }
+            }
+            return p;
+        }
+        return -1;
+    }
+
+    /**
+     * @return true if the char may begin a match
+     */
+    public boolean isFirstChar(char c) {
+        return contains(firstChars, c);
+    }
+
+    private static boolean isAsciiWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static boolean contains(long[] chars, char c) {
+        return (chars[c >>> 6] & (1L << c)) != 0;
+    }
+
+    private static void set(long[] chars, int c) {
+        chars[c >>> 6] |= 1L << c;
+    }
+
+    /**
+     * Tests every char against a single-atom regex.
+     */
+    private static long[] charsOf(String atom, int flags) {
+        long[] chars = new long[(Character.MAX_VALUE + 1) / 64];
+        char[] one = new char[1];
+        Matcher matcher = Pattern.compile(atom, flags).matcher(CharBuffer.wrap(one));
+
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            one[0] = (char) c;
+            if (matcher.reset().matches()) {
+                set(chars, c);
+            }
+        }
+        return chars;
+    }
+
+    /**
+     * Chars that can begin a (sub)sequence, whether it can be empty and
+     * whether it starts with \b.
+     */
+    private static final class First {
+        final long[] chars;
+        final boolean nullable;
+        final boolean boundary;
+
+        First(long[] chars, boolean nullable, boolean boundary) {
+            this.chars = chars;
+            this.nullable = nullable;
+            this.boundary = boundary;
+        }
+    }
+
+    private static final class Analysis {
+        private final String regex;
+        private final int flags;
+
+        Analysis(String regex, int flags) {
+            this.regex = regex;
+            this.flags = flags;
+        }
+
+        /**
+         * Union of the alternatives of regex[from, to).
+         */
+        First alternatives(int from, int to, boolean topLevel) {
+            long[] chars = new long[(Character.MAX_VALUE + 1) / 64];
+            boolean nullable = false;
+            boolean boundary = true;
+            int count = 0;
+
+            int start = from;
+            for (int i = from; i <= to; ) {
+                if (i == to || regex.charAt(i) == '|') {
+                    First alternative = sequence(start, i);
+                    if (alternative == null) {
+                        return null;
+                    }
+                    for (int w = 0; w < chars.length; w++) {
+                        chars[w] |= alternative.chars[w];
+                    }
+                    nullable |= alternative.nullable;
+                    boundary &= alternative.boundary;
+                    count++;
+                    start = ++i;
+                    continue;
+                }
+
+                int next = skip(i, to);
+                if (next < 0) {
+                    return null;
+                }
+                i = next;
+            }
+            return new First(chars, nullable, topLevel && count == 1 && boundary);
+        }
+
+        private First sequence(int from, int to) {
+            long[] chars = new long[(Character.MAX_VALUE + 1) / 64];
+            boolean boundary = false;
+            boolean consumed = false;
+
+            int i = from;
+            while (i < to) {
+                char c = regex.charAt(i);
+                int atomEnd;
+                First atom = null;
+                boolean zeroWidth = false;
+
+                switch (c) {
+                    case '\\': {
+                        if (i + 1 >= to) {
+                            return null;
+                        }
+                        char e = regex.charAt(i + 1);
+                        if ("QEkRXNG123456789".indexOf(e) >= 0) {
+                            return null;
+                        }
+                        if (e == 'b' && i + 2 < to && regex.charAt(i + 2) == '{') {
+                            // \b{g}
+                            return null;
+                        }
+                        if (e == 'b' || e == 'B' || e == 'A' || e == 'z' || e == 'Z') {
+                            zeroWidth = true;
+                            boundary |= (e == 'b') && !consumed;
+                            atomEnd = i + 2;
+                            break;
+                        }
+                        atomEnd = escapeEnd(i, to);
+                        if (atomEnd < 0) {
+                            return null;
+                        }
+                        atom = new First(charsOf(regex.substring(i, atomEnd), flags), false, false);
+                        break;
+                    }
+                    case '[':
+                        atomEnd = Prefilter.skipClass(regex, i);
+                        if (atomEnd < 0 || atomEnd > to) {
+                            return null;
+                        }
+                        atom = new First(charsOf(regex.substring(i, atomEnd), flags), false, false);
+                        break;
+                    case '(': {
+                        atomEnd = skip(i, to);
+                        if (atomEnd < 0) {
+                            return null;
+                        }
+                        int content = groupContent(i);
+                        if (content == -1) {
+                            return null;
+                        }
+                        if (content == -2) {
+                            zeroWidth = true;
+                            break;
+                        }
+                        atom = alternatives(content, atomEnd - 1, false);
+                        if (atom == null) {
+                            return null;
+                        }
+                        break;
+                    }
+                    case '^':
+                    case '$':
+                        zeroWidth = true;
+                        atomEnd = i + 1;
+                        break;
+                    case '|':
+                    case ')':
+                    case '*':
+                    case '+':
+                    case '?':
+                    case '{':
+                        return null;
+                    default: {
+                        atomEnd = Character.isHighSurrogate(c) ? i + 2 : i + 1;
+                        atom = new First(charsOf(regex.substring(i, atomEnd), flags), false, false);
+                    }
+                }
+
+                // Quantifier
+                int next = atomEnd;
+                boolean optional = false;
+                if (next < to) {
+                    char q = regex.charAt(next);
+                    if (q == '*' || q == '?') {
+                        optional = true;
+                        next++;
+                    } else if (q == '+') {
+                        next++;
+                    } else if (q == '{') {
+                        int close = regex.indexOf('}', next);
+                        if (close < 0 || close >= to) {
+                            return null;
+                        }
+                        String range = regex.substring(next + 1, close).trim();
+                        optional = range.startsWith("0") || range.startsWith(",");
+                        next = close + 1;
+                    }
+                    if (next > atomEnd && next < to && (regex.charAt(next) == '?' || regex.charAt(next) == '+')) {
+                        next++;
+                    }
+                }
+                i = next;
+
+                if (zeroWidth) {
+                    continue;
+                }
+
+                for (int w = 0; w < chars.length; w++) {
+                    chars[w] |= atom.chars[w];
+                }
+                consumed = true;
+                if (!optional && !atom.nullable) {
+                    return new First(chars, false, boundary);
+                }
+            }
+            return new First(chars, true, boundary);
+        }
+
+        /**
+         * @return the index where the content of the group at i starts, -2
+         *         for a lookaround (zero-width) or -1 if unsupported
+         */
+        private int groupContent(int i) {
+            if (i + 1 >= regex.length() || regex.charAt(i + 1) != '?') {
+                return i + 1;
+            }
+            if (regex.startsWith("(?=", i) || regex.startsWith("(?!", i)
+                    || regex.startsWith("(?<=", i) || regex.startsWith("(?<!", i)) {
+                return -2;
+            }
+            if (regex.startsWith("(?:", i) || regex.startsWith("(?>", i)) {
+                return i + 3;
+            }
+            if (regex.startsWith("(?<", i)) {
+                int close = regex.indexOf('>', i);
+                return (close < 0) ? -1 : close + 1;
+            }
+            // Inline flags change how the following atoms match
+            return -1;
+        }
+
+        /**
+         * @return index after the atom, class or group at i, or -1
+         */
+        private int skip(int i, int to) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                return (i + 1 < to) ? escapeEnd(i, to) : -1;
+            }
+            if (c == '[') {
+                return Prefilter.skipClass(regex, i);
+            }
+            if (c != '(') {
+                return i + 1;
+            }
+
+            int depth = 0;
+            for (int j = i; j < to; ) {
+                char d = regex.charAt(j);
+                if (d == '\\') {
+                    j += 2;
+                } else if (d == '[') {
+                    j = Prefilter.skipClass(regex, j);
+                    if (j < 0) {
+                        return -1;
+                    }
+                } else {
+                    if (d == '(') {
+                        depth++;
+                    } else if (d == ')' && --depth == 0) {
+                        return j + 1;
+                    }
+                    j++;
+                }
+            }
+            return -1;
+        }
+
+        private int escapeEnd(int i, int to) {
+            char e = regex.charAt(i + 1);
+            int end;
+            switch (e) {
+                case 'p':
+                case 'P':
+                case 'x':
+                    if (i + 2 < to && regex.charAt(i + 2) == '{') {
+                        int close = regex.indexOf('}', i);
+                        return (close < 0 || close >= to) ? -1 : close + 1;
+                    }
+                    end = (e == 'x') ? i + 4 : i + 3;
+                    break;
+                case 'u':
+                    end = i + 6;
+                    break;
+                case 'c':
+                    end = i + 3;
+                    break;
+                case '0':
+                    end = i + 2;
+                    while (end < to && end < i + 5 && regex.charAt(end) >= '0' && regex.charAt(end) <= '7') {
+                        end++;
+                    }
+                    break;
+                default:
+                    end = i + 2;
+            }
+            return (end <= to) ? end : -1;
+        }
+    }
+}
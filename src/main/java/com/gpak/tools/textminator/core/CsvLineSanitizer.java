@@ -0,0 +1,340 @@
+package com.gpak.tools.textminator.core;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.gpak.tools.textminator.model.LineResult;
+import com.gpak.tools.textminator.model.Rule;
+import com.gpak.tools.textminator.util.Console;
+
+/**
+ * Sanitizes delimiter separated input (CSV/TSV) column by column.
+ * 
+ * Fields are split following RFC 4180 quoting rules. Only the selected columns
+ * are sanitized and each field is sanitized on its own, so a match can never
+ * span a delimiter. Unselected fields and unchanged values are copied as is.
+ * 
+ * Columns are selected by header name or by 1-based index. When nothing is
+ * selected explicitly, the columns named in the rules' {@code fields} are used,
+ * or all columns if no rule has fields. Rule fields refer to header names, or
+ * to 1-based indexes when the input has no header.
+ * 
+ * A quoted field containing line breaks continues on the next line; each line
+ * fragment is sanitized separately.
+ */
+public class CsvLineSanitizer implements LineSanitizer {
+
+    private final Sanitizer sanitizer;
+    private final char delimiter;
+    private final Set<String> requestedColumns;
+
+    private boolean headerPending;
+    private String[] columnNames;
+    private boolean selectAll;
+    private final BitSet selected = new BitSet();
+    private final List<String> fieldPaths = new ArrayList<>();
+
+    // Record state carried across lines (quoted field with line breaks)
+    private boolean inQuotes;
+    private int column;
+
+    private final StringBuilder out = new StringBuilder();
+    private final StringBuilder value = new StringBuilder();
+
+    /**
+     * @param sanitizer the sanitizer to use per field
+     * @param delimiter field delimiter (',' or '\t')
+     * @param hasHeader whether the first line is a header row
+     * @param columns selected columns by name or 1-based index, empty for default
+     */
+    public CsvLineSanitizer(Sanitizer sanitizer, char delimiter, boolean hasHeader, Set<String> columns) {
+        this.sanitizer = sanitizer;
+        this.delimiter = delimiter;
+        this.headerPending = hasHeader;
+        this.requestedColumns = new LinkedHashSet<>();
+        if (columns != null) {
+            columns.forEach(c -> requestedColumns.add(c.trim()));
+        }
+
+        if (!hasHeader) {
+            resolveColumns(null);
+        }
+    }
+
+    private CsvLineSanitizer(CsvLineSanitizer source, Sanitizer sanitizer) {
+        this.sanitizer = sanitizer;
+        this.delimiter = source.delimiter;
+        this.requestedColumns = source.requestedColumns;
+        this.headerPending = source.headerPending;
+        this.inQuotes = source.inQuotes;
+        this.column = source.column;
+
+        if (!headerPending) {
+            resolveColumns(source.columnNames);
+        }
+    }
+
+    /**
+     * Keeps the header and the state of an open quoted field; the selected
+     * columns are resolved again against the new rules.
+     */
+    @Override
+    public LineSanitizer withSanitizer(Sanitizer sanitizer) {
+        return new CsvLineSanitizer(this, sanitizer);
+    }
+
+    @Override
+    public LineResult sanitizeLine(String line) {
+        if (line == null) {
+            return new LineResult(line, false);
+        }
+
+        if (headerPending) {
+            headerPending = false;
+            resolveColumns(splitHeader(line));
+            return new LineResult(line, false);
+        }
+
+        return sanitizeRecord(line);
+    }
+
+    // *************************************************************************
+    //
+    // Records
+    //
+    // *************************************************************************
+
+    private LineResult sanitizeRecord(String line) {
+        out.setLength(0);
+        int copied = 0;
+        boolean changed = false;
+        int len = line.length();
+        int pos = 0;
+
+        while (true) {
+            boolean quoted = inQuotes;
+            if (!quoted && pos < len && line.charAt(pos) == '"') {
+                quoted = true;
+                pos++;
+            }
+
+            int contentStart = pos;
+            int contentEnd;
+            boolean doubledQuotes = false;
+
+            if (quoted) {
+                inQuotes = true;
+                while (pos < len) {
+                    char c = line.charAt(pos);
+                    if (c == '"') {
+                        if (pos + 1 < len && line.charAt(pos + 1) == '"') {
+                            doubledQuotes = true;
+                            pos += 2;
+                            continue;
+                        }
+                        inQuotes = false;
+                        break;
+                    }
+                    pos++;
+                }
+                contentEnd = pos;
+
+                if (!inQuotes) {
+                    // Skip closing quote and anything up to the next delimiter (lenient)
+                    pos++;
+                    while (pos < len && line.charAt(pos) != delimiter) {
+                        pos++;
+                    }
+                }
+            } else {
+                while (pos < len && line.charAt(pos) != delimiter) {
+                    pos++;
+                }
+                contentEnd = pos;
+            }
+
+            if (contentEnd > contentStart && isSelected(column)) {
+                value.setLength(0);
+                if (doubledQuotes) {
+                    unquote(line, contentStart, contentEnd, value);
+                } else {
+                    value.append(line, contentStart, contentEnd);
+                }
+
+                CharSequence result = sanitizer.sanitizeField(value, fieldPath(column));
+                if (result != value) {
+                    changed = true;
+                    out.append(line, copied, contentStart);
+                    if (quoted) {
+                        quote(result, out);
+                    } else if (needsQuotes(result)) {
+                        out.append('"');
+                        quote(result, out);
+                        out.append('"');
+                    } else {
+                        out.append(result);
+                    }
+                    copied = contentEnd;
+                }
+            }
+
+            if (inQuotes) {
+                // Field continues on the next line
+                break;
+            }
+
+            if (pos < len) {
+                pos++;
+                column++;
+                continue;
+            }
+
+            column = 0;
+            break;
+        }
+
+        if (!changed) {
+            return new LineResult(line, false);
+        }
+
+        out.append(line, copied, len);
+        return new LineResult(out.toString(), true);
+    }
+
+    private static void unquote(String s, int start, int end, StringBuilder sb) {
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            sb.append(c);
+            if (c == '"') {
+                i++;
+            }
+        }
+    }
+
+    private static void quote(CharSequence s, StringBuilder sb) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"') {
+                sb.append('"');
+            }
+            sb.append(c);
+        }
+    }
+
+    private boolean needsQuotes(CharSequence s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == delimiter || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // *************************************************************************
+    //
+    // Columns
+    //
+    // *************************************************************************
+
+    private String[] splitHeader(String line) {
+        List<String> names = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    sb.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    sb.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                names.add(sb.toString().trim());
+                sb.setLength(0);
+            } else {
+                sb.append(c);
+            }
+        }
+        names.add(sb.toString().trim());
+
+        return names.toArray(new String[0]);
+    }
+
+    private void resolveColumns(String[] header) {
+        columnNames = header;
+
+        Set<String> wanted = new LinkedHashSet<>(requestedColumns);
+        if (wanted.isEmpty()) {
+            for (Rule rule : sanitizer.getRuleSet().getRules()) {
+                if (rule.isEnabled()) {
+                    if (rule.getFields().isEmpty()) {
+                        selectAll = true;
+                        break;
+                    }
+                    wanted.addAll(rule.getFields());
+                }
+            }
+        }
+
+        if (selectAll || wanted.isEmpty()) {
+            selectAll = true;
+            Console.debug("Sanitizing all columns");
+            return;
+        }
+
+        for (String name : wanted) {
+            int index = indexOf(name);
+            if (index < 0) {
+                throw new IllegalStateException("Column not found: " + name);
+            }
+            selected.set(index);
+        }
+
+        Console.debug("Sanitizing columns: " + wanted);
+    }
+
+    private int indexOf(String column) {
+        if (columnNames != null) {
+            for (int i = 0; i < columnNames.length; i++) {
+                if (columnNames[i].equals(column)) {
+                    return i;
+                }
+            }
+        }
+
+        try {
+            int index = Integer.parseInt(column) - 1;
+            if (index >= 0 && (columnNames == null || index < columnNames.length)) {
+                return index;
+            }
+        } catch (NumberFormatException e) {
+            // not an index
+        }
+
+        return -1;
+    }
+
+    private boolean isSelected(int index) {
+        return selectAll || selected.get(index);
+    }
+
+    private String fieldPath(int index) {
+        while (fieldPaths.size() <= index) {
+            int i = fieldPaths.size();
+            fieldPaths.add(columnNames != null && i < columnNames.length
+                ? columnNames[i]
+                : String.valueOf(i + 1));
+        }
+        return fieldPaths.get(index);
+    }
+}
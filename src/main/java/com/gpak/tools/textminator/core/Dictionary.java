@@ -0,0 +1,486 @@
+package com.gpak.tools.textminator.core;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+import com.gpak.tools.textminator.io.IoUtil;
+import com.gpak.tools.textminator.util.Console;
+
+/**
+ * Set of literal tokens (e.g. customer IDs or user names) that are matched as
+ * whole tokens in a single pass over the text.
+ *
+ * A token is a maximal run of letters, digits and {@code _ - . @ +}. A token
+ * matches if it is in the dictionary as is, or after stripping leading and
+ * trailing {@code .} and {@code -} (e.g. at the end of a sentence).
+ *
+ * The entries live off-heap in an index file that is memory-mapped. The index
+ * is built once next to the source list ({@code <file>.idx}) and rebuilt only
+ * when the list changes, so later runs map it without parsing anything. It
+ * holds a Bloom filter, an open-addressing table of {@code long} slots (32-bit
+ * hash tag and entry offset) and the UTF-8 bytes of the entries. Heap use
+ * doesn't depend on the dictionary size. Immutable and thread-safe.
+ */
+public final class Dictionary implements MatchFinder {
+
+    static final String INDEX_SUFFIX = ".idx";
+
+    private static final int MAGIC = 0x444d5854; // "TXMD"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 48;
+
+    private static final int BLOOM_BITS_PER_ENTRY = 10;
+    private static final int BLOOM_HASHES = 3;
+
+    private final ByteBuffer buffer;
+    private final int size;
+    private final int tableMask;
+    private final int bloomMask;
+    private final int tableOffset;
+    private final int dataOffset;
+
+    private Dictionary(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.size = buffer.getInt(8);
+        int tableSlots = buffer.getInt(12);
+        int bloomWords = buffer.getInt(16);
+
+        this.tableMask = tableSlots - 1;
+        this.bloomMask = (bloomWords << 6) - 1;
+        this.tableOffset = HEADER_BYTES + bloomWords * Long.BYTES;
+        this.dataOffset = tableOffset + tableSlots * Long.BYTES;
+    }
+
+    /**
+     * Maps the index of a UTF-8 file with one entry per line, building it first
+     * if it's missing or older than the file. Blank lines and lines starting
+     * with {@code #} are ignored, duplicates are stored once.
+     */
+    public static Dictionary load(File file) {
+        if (!file.exists()) {
+            throw new IllegalStateException("Dictionary file not found: " + file.getAbsolutePath());
+        }
+
+        File index = new File(file.getPath() + INDEX_SUFFIX);
+        try {
+            if (!isCurrent(index, file)) {
+                try {
+                    build(file, index);
+                } catch (IOException e) {
+                    // Read-only location: keep the index for this run only
+                    Console.warn("Can't write dictionary index " + index + ": " + e.getMessage());
+                    index = Files.createTempFile("textminator-", INDEX_SUFFIX).toFile();
+                    index.deleteOnExit();
+                    build(file, index);
+                }
+            }
+            return map(index);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to load dictionary " + file.getName() + ": " + e.getMessage());
+        }
+    }
+
+    // *************************************************************************
+    //
+    // Index file
+    //
+    // *************************************************************************
+
+    private static boolean isCurrent(File index, File source) throws IOException {
+        if (!index.exists()) {
+            return false;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(index.toPath(), StandardOpenOption.READ)) {
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // fill header
+            }
+        }
+
+        return !header.hasRemaining()
+            && header.getInt(0) == MAGIC
+            && header.getInt(4) == FORMAT_VERSION
+            && header.getLong(24) == source.length()
+            && header.getLong(32) == source.lastModified();
+    }
+
+    private static Dictionary map(File index) throws IOException {
+        try (FileChannel channel = FileChannel.open(index.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Invalid dictionary index " + index);
+            }
+            return new Dictionary(buffer);
+        }
+    }
+
+    /**
+     * Writes the index in two passes over the source: the first sizes the file,
+     * the second fills the mapped file directly. Nothing proportional to the
+     * dictionary is kept on the heap.
+     */
+    private static void build(File source, File index) throws IOException {
+        long sourceLength = source.length();
+        long sourceModified = source.lastModified();
+
+        long entries = 0;
+        long dataBytes = 0;
+        try (BufferedReader reader = Files.newBufferedReader(source.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                String entry = entry(line);
+                if (entry == null) {
+                    continue;
+                }
+                for (int i = 0; i < entry.length(); i++) {
+                    if (!isTokenChar(entry.charAt(i))) {
+                        throw new IllegalStateException("Dictionary entry is not a single token: "
+                            + source.getName() + ":" + lineNumber);
+                    }
+                }
+                entries++;
+                dataBytes += Short.BYTES + utf8Length(entry);
+            }
+        }
+
+        if (entries == 0) {
+            throw new IllegalStateException("Dictionary is empty: " + source.getName());
+        }
+
+        int tableSlots = tableCapacity(entries);
+        int bloomWords = bloomWords(entries);
+        long total = HEADER_BYTES + (long) bloomWords * Long.BYTES + (long) tableSlots * Long.BYTES + dataBytes;
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Dictionary too large: " + source.getName());
+        }
+
+        File temp = IoUtil.tempFileFor(index);
+        try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, total);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(12, tableSlots);
+            buffer.putInt(16, bloomWords);
+
+            Dictionary dictionary = new Dictionary(buffer);
+            int size = dictionary.fill(source);
+
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, FORMAT_VERSION);
+            buffer.putInt(8, size);
+            buffer.putLong(24, sourceLength);
+            buffer.putLong(32, sourceModified);
+            buffer.putLong(40, dataBytes);
+            buffer.force();
+        }
+
+        IoUtil.moveAtomically(temp, index, true, "dictionary index");
+    }
+
+    private int fill(File source) throws IOException {
+        int size = 0;
+        int position = dataOffset;
+
+        try (BufferedReader reader = Files.newBufferedReader(source.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String entry = entry(line);
+                if (entry == null || contains(entry, 0, entry.length())) {
+                    continue;
+                }
+
+                byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+                if (bytes.length > 0xffff) {
+                    throw new IllegalStateException("Dictionary entry too long: " + entry.substring(0, 32) + "...");
+                }
+
+                long hash = hash(entry, 0, entry.length());
+                int slot = (int) hash & tableMask;
+                while (buffer.getLong(tableOffset + slot * Long.BYTES) != 0) {
+                    slot = (slot + 1) & tableMask;
+                }
+
+                buffer.putShort(position, (short) bytes.length);
+                buffer.put(position + Short.BYTES, bytes);
+                buffer.putLong(tableOffset + slot * Long.BYTES, ((hash >>> 32) << 32) | (position - dataOffset + 1));
+                addToBloom(hash);
+
+                position += Short.BYTES + bytes.length;
+                size++;
+            }
+        }
+        return size;
+    }
+
+    private static String entry(String line) {
+        String entry = line.trim();
+        return (entry.isEmpty() || entry.startsWith("#")) ? null : entry;
+    }
+
+    // *************************************************************************
+    //
+    // Lookup
+    //
+    // *************************************************************************
+
+    /**
+     * Finds the next dictionary token starting at or after {@code from}.
+     *
+     * @param span receives the start (inclusive) and end (exclusive) of the match
+     * @return true if a token was found
+     */
+    @Override
+    public boolean find(CharSequence text, int from, int[] span) {
+        int len = text.length();
+        int pos = from;
+
+        while (pos < len) {
+            while (pos < len && !isTokenChar(text.charAt(pos))) {
+                pos++;
+            }
+            int start = pos;
+            while (pos < len && isTokenChar(text.charAt(pos))) {
+                pos++;
+            }
+            int end = pos;
+
+            if (start == end) {
+                break;
+            }
+
+            if (contains(text, start, end)) {
+                span[0] = start;
+                span[1] = end;
+                return true;
+            }
+
+            int s = start;
+            int e = end;
+            while (s < e && isTrimChar(text.charAt(s))) {
+                s++;
+            }
+            while (e > s && isTrimChar(text.charAt(e - 1))) {
+                e--;
+            }
+            if ((s != start || e != end) && s < e && contains(text, s, e)) {
+                span[0] = s;
+                span[1] = e;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the chars in [start, end) are a dictionary entry
+     */
+    public boolean contains(CharSequence text, int start, int end) {
+        long hash = hash(text, start, end);
+        if (!mightContain(hash)) {
+            return false;
+        }
+
+        int tag = (int) (hash >>> 32);
+        int slot = (int) hash & tableMask;
+        long value;
+        while ((value = buffer.getLong(tableOffset + slot * Long.BYTES)) != 0) {
+            if ((int) (value >>> 32) == tag && equals((int) value - 1 + dataOffset, text, start, end)) {
+                return true;
+            }
+            slot = (slot + 1) & tableMask;
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of distinct entries
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Size of the mapped index in bytes. This memory is outside the Java heap.
+     */
+    public long mappedBytes() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Adds the entries to a digest, see {@link RuleSet#fingerprint()}. The
+     * size and modification time of the source list are left out, so a
+     * touched but unchanged list gives the same result.
+     */
+    void updateDigest(MessageDigest digest) {
+        digest.update(buffer.duplicate().position(8).limit(20));
+        digest.update(buffer.duplicate().position(HEADER_BYTES));
+    }
+
+    // *************************************************************************
+    //
+    // Helpers
+    //
+    // *************************************************************************
+
+    static boolean isTokenChar(char c) {
+        if (c < 128) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '_' || c == '-' || c == '.' || c == '@' || c == '+';
+        }
+        return Character.isLetterOrDigit(c);
+    }
+
+    private static boolean isTrimChar(char c) {
+        return c == '.' || c == '-';
+    }
+
+    /**
+     * Compares the stored UTF-8 entry with the chars, encoding them on the fly.
+     */
+    private boolean equals(int position, CharSequence text, int start, int end) {
+        int length = buffer.getShort(position) & 0xffff;
+        int p = position + Short.BYTES;
+        int limit = p + length;
+
+        for (int i = start; i < end; i++) {
+            int cp = Character.codePointAt(text, i);
+            if (cp > 0xffff) {
+                i++;
+            }
+            int bytes = utf8Length(cp);
+            if (p + bytes > limit) {
+                return false;
+            }
+            int packed = utf8(cp);
+            for (int b = 0; b < bytes; b++) {
+                if (buffer.get(p++) != (byte) (packed >>> (b << 3))) {
+                    return false;
+                }
+            }
+        }
+        return p == limit;
+    }
+
+    private boolean mightContain(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= BLOOM_HASHES; i++) {
+            int bit = (h1 + i * h2) & bloomMask;
+            if ((buffer.getLong(HEADER_BYTES + (bit >>> 6) * Long.BYTES) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void addToBloom(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= BLOOM_HASHES; i++) {
+            int bit = (h1 + i * h2) & bloomMask;
+            int index = HEADER_BYTES + (bit >>> 6) * Long.BYTES;
+            buffer.putLong(index, buffer.getLong(index) | (1L << bit));
+        }
+    }
+
+    /**
+     * FNV-1a over the UTF-8 bytes of the chars, without encoding them into an
+     * array first.
+     */
+    private static long hash(CharSequence text, int start, int end) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                h = (h ^ c) * 0x100000001b3L;
+                continue;
+            }
+
+            int cp = Character.codePointAt(text, i);
+            if (cp > 0xffff) {
+                i++;
+            }
+            int packed = utf8(cp);
+            for (int b = 0, bytes = utf8Length(cp); b < bytes; b++) {
+                h = (h ^ ((packed >>> (b << 3)) & 0xff)) * 0x100000001b3L;
+            }
+        }
+        return mix(h);
+    }
+
+    // Spreads the FNV-1a result over all bits (MurmurHash3 finalizer)
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // Lone surrogates are encoded as '?', like String.getBytes does
+    private static int utf8Length(int cp) {
+        if (cp < 0x80 || Character.isSurrogate((char) cp) && cp <= 0xffff) {
+            return 1;
+        }
+        return cp < 0x800 ? 2 : cp <= 0xffff ? 3 : 4;
+    }
+
+    private static long utf8Length(String s) {
+        long length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            int cp = s.codePointAt(i);
+            if (cp > 0xffff) {
+                i++;
+            }
+            length += utf8Length(cp);
+        }
+        return length;
+    }
+
+    // UTF-8 bytes of the code point packed into an int, first byte lowest
+    private static int utf8(int cp) {
+        if (cp < 0x80) {
+            return cp;
+        }
+        if (cp <= 0xffff && Character.isSurrogate((char) cp)) {
+            return '?';
+        }
+        if (cp < 0x800) {
+            return (0xc0 | cp >>> 6) | (0x80 | cp & 0x3f) << 8;
+        }
+        if (cp <= 0xffff) {
+            return (0xe0 | cp >>> 12) | (0x80 | cp >>> 6 & 0x3f) << 8 | (0x80 | cp & 0x3f) << 16;
+        }
+        return (0xf0 | cp >>> 18) | (0x80 | cp >>> 12 & 0x3f) << 8 | (0x80 | cp >>> 6 & 0x3f) << 16
+            | (0x80 | cp & 0x3f) << 24;
+    }
+
+    // Power of two with at least BLOOM_BITS_PER_ENTRY bits per entry (~1% false positives)
+    private static int bloomWords(long entries) {
+        long bits = Long.highestOneBit(Math.max(64L, entries * BLOOM_BITS_PER_ENTRY - 1)) << 1;
+        return (int) (bits >>> 6);
+    }
+
+    // Power of two with a load factor of at most 0.5
+    private static int tableCapacity(long entries) {
+        long capacity = Long.highestOneBit(Math.max(2L, entries * 2 - 1)) << 1;
+        if (capacity > (1 << 28)) {
+            throw new IllegalStateException("Dictionary too large: " + entries + " entries");
+        }
+        return (int) capacity;
+    }
+}
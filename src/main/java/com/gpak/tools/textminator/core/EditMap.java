@@ -0,0 +1,80 @@
+package com.gpak.tools.textminator.core;
+
+import java.util.Arrays;
+
+/**
+ * Replacements made by the rules during one sanitize call, used to map an
+ * offset in the partially sanitized text back to the original input.
+ * 
+ * Each rule run is a pass; its edits are recorded in the coordinates of the
+ * text it produced, in ascending order.
+ */
+final class EditMap {
+
+    private int[] starts = new int[16];
+    private int[] oldLengths = new int[16];
+    private int[] newLengths = new int[16];
+    private int count;
+
+    private int[] passEnds = new int[8];
+    private int passes;
+
+    void reset() {
+        count = 0;
+        passes = 0;
+    }
+
+    /**
+     * Records a replacement of the current pass.
+     * 
+     * @param start offset of the replacement in the pass output
+     */
+    void add(int start, int oldLength, int newLength) {
+        if (count == starts.length) {
+            starts = Arrays.copyOf(starts, count * 2);
+            oldLengths = Arrays.copyOf(oldLengths, count * 2);
+            newLengths = Arrays.copyOf(newLengths, count * 2);
+        }
+        starts[count] = start;
+        oldLengths[count] = oldLength;
+        newLengths[count] = newLength;
+        count++;
+    }
+
+    void endPass() {
+        if (count == (passes == 0 ? 0 : passEnds[passes - 1])) {
+            return;
+        }
+        if (passes == passEnds.length) {
+            passEnds = Arrays.copyOf(passEnds, passes * 2);
+        }
+        passEnds[passes++] = count;
+    }
+
+    /**
+     * Maps an offset of the current text back to the input. Offsets inside a
+     * replacement map to the start (or, for an end offset, the end) of the
+     * text it replaced.
+     */
+    int toInput(int pos, boolean end) {
+        for (int p = passes - 1; p >= 0; p--) {
+            int from = (p == 0) ? 0 : passEnds[p - 1];
+            int shift = 0;
+            int inside = -1;
+
+            for (int e = from; e < passEnds[p]; e++) {
+                int s = starts[e];
+                if (pos >= s + newLengths[e]) {
+                    shift += oldLengths[e] - newLengths[e];
+                    continue;
+                }
+                if (pos > s) {
+                    inside = s + shift + (end ? oldLengths[e] : 0);
+                }
+                break;
+            }
+            pos = (inside >= 0) ? inside : pos + shift;
+        }
+        return pos;
+    }
+}
@@ -0,0 +1,425 @@
+package com.gpak.tools.textminator.core;
+
+import java.util.Arrays;
+
+import com.gpak.tools.textminator.model.LineResult;
+import com.gpak.tools.textminator.util.Console;
+
+/**
+ * Sanitizes JSON-lines input.
+ * 
+ * Each line is tokenized in a single pass that records the location of every
+ * string value. Only string values are sanitized; keys, numbers and structure
+ * are never touched. Unchanged parts of the line are copied as is, so the
+ * output differs from the input only inside replaced values.
+ * 
+ * Field paths are the object keys joined with '.', array levels are
+ * transparent (e.g. {@code user.emails} for {@code {"user":{"emails":["..."]}}}).
+ * 
+ * Lines that are not valid JSON fall back to plain line sanitization.
+ */
+public class JsonLineSanitizer implements LineSanitizer {
+
+    private static final int MAX_DEPTH = 256;
+
+    private final Sanitizer sanitizer;
+    private final boolean trackPaths;
+
+    // String values found by the tokenizer
+    private int[] valueStarts = new int[32];
+    private int[] valueEnds = new int[32];
+    private boolean[] valueEscaped = new boolean[32];
+    private String[] valuePaths = new String[32];
+    private int valueCount;
+
+    // Tokenizer state
+    private String line;
+    private int pos;
+    private int depth;
+    private final String[] keys = new String[MAX_DEPTH + 1];
+    private int lastStringStart;
+    private int lastStringEnd;
+    private boolean lastStringEscaped;
+
+    private final StringBuilder out = new StringBuilder();
+    private final StringBuilder value = new StringBuilder();
+    private final StringBuilder path = new StringBuilder();
+
+    public JsonLineSanitizer(Sanitizer sanitizer) {
+        this.sanitizer = sanitizer;
+        this.trackPaths = sanitizer.getRuleSet().getRules().stream()
+            .anyMatch(r -> !r.getFields().isEmpty());
+    }
+
+    @Override
+    public LineSanitizer withSanitizer(Sanitizer sanitizer) {
+        return new JsonLineSanitizer(sanitizer);
+    }
+
+    @Override
+    public LineResult sanitizeLine(String line) {
+        if (line == null || line.isEmpty()) {
+            return sanitizer.sanitizeLine(line);
+        }
+
+        if (!tokenize(line)) {
+            Console.debug("Line is not valid JSON, sanitizing as text");
+            return sanitizer.sanitizeLine(line);
+        }
+
+        return rewrite(line);
+    }
+
+    // *************************************************************************
+    //
+    // Rewrite
+    //
+    // *************************************************************************
+
+    private LineResult rewrite(String line) {
+        out.setLength(0);
+        int copied = 0;
+        boolean changed = false;
+
+        for (int i = 0; i < valueCount; i++) {
+            int start = valueStarts[i];
+            int end = valueEnds[i];
+
+            value.setLength(0);
+            if (valueEscaped[i]) {
+                unescape(line, start, end, value);
+            } else {
+                value.append(line, start, end);
+            }
+
+            CharSequence result = sanitizer.sanitizeField(value, valuePaths[i]);
+            if (result == value) {
+                continue;
+            }
+
+            changed = true;
+            out.append(line, copied, start);
+            escape(result, out);
+            copied = end;
+        }
+
+        if (!changed) {
+            return new LineResult(line, false);
+        }
+
+        out.append(line, copied, line.length());
+        return new LineResult(out.toString(), true);
+    }
+
+    private static void unescape(String s, int start, int end, StringBuilder sb) {
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+
+            char e = s.charAt(++i);
+            switch (e) {
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    sb.append((char) Integer.parseInt(s, i + 1, i + 5, 16));
+                    i += 4;
+                    break;
+                default: sb.append(e);
+            }
+        }
+    }
+
+    private static void escape(CharSequence s, StringBuilder sb) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+    }
+
+    // *************************************************************************
+    //
+    // Tokenizer
+    //
+    // *************************************************************************
+
+    private boolean tokenize(String s) {
+        line = s;
+        pos = 0;
+        depth = 0;
+        valueCount = 0;
+
+        skipWhitespace();
+        if (!parseValue()) {
+            return false;
+        }
+        skipWhitespace();
+
+        return pos == line.length();
+    }
+
+    private boolean parseValue() {
+        if (pos >= line.length()) {
+            return false;
+        }
+
+        char c = line.charAt(pos);
+        switch (c) {
+            case '{': return parseObject();
+            case '[': return parseArray();
+            case '"':
+                if (!parseString()) {
+                    return false;
+                }
+                addValue();
+                return true;
+            case 't': return parseLiteral("true");
+            case 'f': return parseLiteral("false");
+            case 'n': return parseLiteral("null");
+            default: return parseNumber();
+        }
+    }
+
+    private boolean parseObject() {
+        if (++depth > MAX_DEPTH) {
+            return false;
+        }
+
+        pos++;
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            keys[depth--] = null;
+            return true;
+        }
+
+        while (true) {
+            if (peek() != '"' || !parseString()) {
+                return false;
+            }
+            keys[depth] = trackPaths ? lastString() : null;
+
+            skipWhitespace();
+            if (peek() != ':') {
+                return false;
+            }
+            pos++;
+            skipWhitespace();
+
+            if (!parseValue()) {
+                return false;
+            }
+
+            skipWhitespace();
+            char c = peek();
+            pos++;
+            if (c == '}') {
+                keys[depth--] = null;
+                return true;
+            }
+            if (c != ',') {
+                return false;
+            }
+            skipWhitespace();
+        }
+    }
+
+    private boolean parseArray() {
+        if (++depth > MAX_DEPTH) {
+            return false;
+        }
+        keys[depth] = null;
+
+        pos++;
+        skipWhitespace();
+        if (peek() == ']') {
+            pos++;
+            depth--;
+            return true;
+        }
+
+        while (true) {
+            if (!parseValue()) {
+                return false;
+            }
+
+            skipWhitespace();
+            char c = peek();
+            pos++;
+            if (c == ']') {
+                depth--;
+                return true;
+            }
+            if (c != ',') {
+                return false;
+            }
+            skipWhitespace();
+        }
+    }
+
+    /**
+     * Scans a string token, leaving its content bounds in lastString*.
+     */
+    private boolean parseString() {
+        int start = ++pos;
+        boolean escaped = false;
+
+        while (pos < line.length()) {
+            char c = line.charAt(pos);
+            if (c == '"') {
+                lastStringStart = start;
+                lastStringEnd = pos;
+                lastStringEscaped = escaped;
+                pos++;
+                return true;
+            }
+            if (c < 0x20) {
+                return false;
+            }
+            if (c == '\\') {
+                escaped = true;
+                if (++pos >= line.length()) {
+                    return false;
+                }
+                char e = line.charAt(pos);
+                if (e == 'u') {
+                    if (pos + 4 >= line.length()) {
+                        return false;
+                    }
+                    for (int i = 1; i <= 4; i++) {
+                        if (Character.digit(line.charAt(pos + i), 16) < 0) {
+                            return false;
+                        }
+                    }
+                    pos += 4;
+                } else if ("\"\\/bfnrt".indexOf(e) < 0) {
+                    return false;
+                }
+            }
+            pos++;
+        }
+
+        return false;
+    }
+
+    private boolean parseNumber() {
+        int start = pos;
+        if (peek() == '-') {
+            pos++;
+        }
+
+        if (peek() == '0') {
+            pos++;
+        } else if (!digits()) {
+            return false;
+        }
+
+        if (peek() == '.') {
+            pos++;
+            if (!digits()) {
+                return false;
+            }
+        }
+
+        char c = peek();
+        if (c == 'e' || c == 'E') {
+            pos++;
+            c = peek();
+            if (c == '+' || c == '-') {
+                pos++;
+            }
+            if (!digits()) {
+                return false;
+            }
+        }
+
+        return pos > start;
+    }
+
+    private boolean digits() {
+        int start = pos;
+        while (pos < line.length() && line.charAt(pos) >= '0' && line.charAt(pos) <= '9') {
+            pos++;
+        }
+        return pos > start;
+    }
+
+    private boolean parseLiteral(String literal) {
+        if (!line.startsWith(literal, pos)) {
+            return false;
+        }
+        pos += literal.length();
+        return true;
+    }
+
+    private void skipWhitespace() {
+        while (pos < line.length()) {
+            char c = line.charAt(pos);
+            if (c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+                return;
+            }
+            pos++;
+        }
+    }
+
+    private char peek() {
+        return pos < line.length() ? line.charAt(pos) : 0;
+    }
+
+    private String lastString() {
+        if (!lastStringEscaped) {
+            return line.substring(lastStringStart, lastStringEnd);
+        }
+        StringBuilder sb = new StringBuilder();
+        unescape(line, lastStringStart, lastStringEnd, sb);
+        return sb.toString();
+    }
+
+    private void addValue() {
+        if (valueCount == valueStarts.length) {
+            int size = valueCount * 2;
+            valueStarts = Arrays.copyOf(valueStarts, size);
+            valueEnds = Arrays.copyOf(valueEnds, size);
+            valueEscaped = Arrays.copyOf(valueEscaped, size);
+            valuePaths = Arrays.copyOf(valuePaths, size);
+        }
+
+        valueStarts[valueCount] = lastStringStart;
+        valueEnds[valueCount] = lastStringEnd;
+        valueEscaped[valueCount] = lastStringEscaped;
+        valuePaths[valueCount] = trackPaths ? currentPath() : null;
+        valueCount++;
+    }
+
+    private String currentPath() {
+        path.setLength(0);
+        for (int i = 1; i <= depth; i++) {
+            if (keys[i] == null) {
+                continue;
+            }
+            if (path.length() > 0) {
+                path.append('.');
+            }
+            path.append(keys[i]);
+        }
+        return path.toString();
+    }
+
+}
@@ -0,0 +1,86 @@
+package com.gpak.tools.textminator.core;
+
+import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * HMAC-SHA-256 with a secret key, truncated to 64 bits. Used for the tokens of
+ * {@code ${hash:N}} and the value hashes of the audit trail.
+ *
+ * Without the key, a token can't be reversed by hashing candidate values:
+ * an unkeyed hash of an IPv4 address or a card number is found by trying all
+ * of them. The same key gives the same tokens across runs, so values can
+ * still be correlated. Immutable and thread-safe.
+ */
+public final class KeyedHash {
+
+    /** Environment variable read when no key is given explicitly. */
+    public static final String ENV_VAR = "TEXTMINATOR_HASH_KEY";
+
+    public static final int MIN_KEY_BYTES = 16;
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final SecretKeySpec key;
+    private final ThreadLocal<Mac> macs;
+
+    private KeyedHash(byte[] key) {
+        this.key = new SecretKeySpec(key, ALGORITHM);
+        this.macs = ThreadLocal.withInitial(this::newMac);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the key is shorter than
+     *         {@value #MIN_KEY_BYTES} bytes
+     */
+    public static KeyedHash of(byte[] key) {
+        if (key == null || key.length < MIN_KEY_BYTES) {
+            throw new IllegalArgumentException("Hash key must have at least " + MIN_KEY_BYTES + " bytes");
+        }
+        return new KeyedHash(Arrays.copyOf(key, key.length));
+    }
+
+    /**
+     * @return the key of {@value #ENV_VAR} (UTF-8), or null if it is not set
+     */
+    public static KeyedHash fromEnvironment() {
+        String value = System.getenv(ENV_VAR);
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return of(value.getBytes(StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(ENV_VAR + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Hashes the UTF-8 bytes of the chars between start and end.
+     *
+     * @return the first 8 bytes of the HMAC, big-endian
+     */
+    public long hash(CharSequence text, int start, int end) {
+        byte[] mac = macs.get().doFinal(text.subSequence(start, end).toString().getBytes(StandardCharsets.UTF_8));
+        long hash = 0;
+        for (int i = 0; i < 8; i++) {
+            hash = (hash << 8) | (mac[i] & 0xff);
+        }
+        return hash;
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.gpak.tools.textminator.core;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Bounded cache of sanitized lines (and field values), so that repeated input
+ * such as health checks, heartbeats or stack frames runs the rules once.
+ *
+ * Entries are found by a 64-bit hash of the text and the field path and
+ * confirmed by comparing the text. An entry keeps the output (nothing if the
+ * text was unchanged), the per-rule match counts and, if the sanitizer has a
+ * match listener, the matches to report again on a hit.
+ *
+ * A text is only stored the second time it is seen: the first time only its
+ * hash is noted in a small table. Input where nothing repeats therefore costs
+ * a hash per line, not an entry.
+ *
+ * The memory of each entry is estimated from its lengths. When the total
+ * exceeds the budget, entries are evicted in CLOCK order: an entry that was
+ * hit since the hand last passed gets a second chance, one that never was is
+ * dropped.
+ *
+ * Not thread-safe: use one cache per {@link Sanitizer}. The entries are only
+ * valid for the rules they were computed with, see {@link #clear()}.
+ */
+public final class LineCache {
+
+    // Entry object, array headers and the String objects (not their chars)
+    private static final int ENTRY_OVERHEAD = 160;
+
+    private static final int MAX_BUCKETS = 1 << 20;
+
+    private final long maxBytes;
+    private final Entry[] table;
+    private final long[] seen;
+    private final int mask;
+
+    private int hand;
+    private long bytes;
+    private long size;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * @param maxBytes approximate memory budget of the entries
+     */
+    public LineCache(long maxBytes) {
+        if (maxBytes < 1024) {
+            throw new IllegalStateException("Line cache size must be at least 1k");
+        }
+        this.maxBytes = maxBytes;
+
+        // About one bucket per 256 bytes of budget
+        int buckets = (int) Math.max(16, Math.min(MAX_BUCKETS, Long.highestOneBit(maxBytes / 256)));
+        this.table = new Entry[buckets];
+        this.seen = new long[buckets];
+        this.mask = buckets - 1;
+    }
+
+    /**
+     * Hash of a text and the field it belongs to (null for plain lines).
+     * Four chars are mixed per step, then the MurmurHash3 finalizer is
+     * applied.
+     */
+    static long hash(CharSequence text, String fieldPath) {
+        int len = text.length();
+        long h = (fieldPath == null) ? len : len ^ (fieldPath.hashCode() * 0x9e3779b97f4a7c15L);
+
+        int i = 0;
+        for (; i + 4 <= len; i += 4) {
+            long block = text.charAt(i)
+                | (long) text.charAt(i + 1) << 16
+                | (long) text.charAt(i + 2) << 32
+                | (long) text.charAt(i + 3) << 48;
+            h = Long.rotateLeft(h ^ (block * 0x87c37b91114253d5L), 31) * 0x4cf5ad432745937fL;
+        }
+        for (; i < len; i++) {
+            h = Long.rotateLeft(h ^ (text.charAt(i) * 0x87c37b91114253d5L), 31) * 0x4cf5ad432745937fL;
+        }
+
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * @return the entry for the text, or null
+     */
+    Entry get(CharSequence text, String fieldPath, long hash) {
+        for (Entry entry = table[(int) hash & mask]; entry != null; entry = entry.next) {
+            if (entry.hash == hash && Objects.equals(entry.fieldPath, fieldPath) && entry.text.contentEquals(text)) {
+                entry.referenced = true;
+                hits++;
+                return entry;
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Notes a miss.
+     *
+     * @return true if the text was seen before and should be stored
+     */
+    boolean admit(long hash) {
+        int slot = (int) (hash >>> 40) & mask;
+        if (seen[slot] == hash) {
+            return true;
+        }
+        seen[slot] = hash;
+        return false;
+    }
+
+    void put(Entry entry) {
+        // A single huge line must not flush everything else
+        if (entry.bytes > maxBytes / 8) {
+            return;
+        }
+
+        int bucket = (int) entry.hash & mask;
+        entry.next = table[bucket];
+        table[bucket] = entry;
+        bytes += entry.bytes;
+        size++;
+
+        while (bytes > maxBytes) {
+            evictBucket();
+        }
+    }
+
+    /**
+     * Advances the hand by one bucket: clears the hit flag of the entries
+     * there and drops those that had none.
+     */
+    private void evictBucket() {
+        Entry previous = null;
+        for (Entry entry = table[hand]; entry != null; entry = entry.next) {
+            if (entry.referenced) {
+                entry.referenced = false;
+                previous = entry;
+                continue;
+            }
+            if (previous == null) {
+                table[hand] = entry.next;
+            } else {
+                previous.next = entry.next;
+            }
+            bytes -= entry.bytes;
+            size--;
+            evictions++;
+        }
+        hand = (hand + 1) & mask;
+    }
+
+    /**
+     * Drops all entries, e.g. when the rules were reloaded. The hit and miss
+     * counters are kept.
+     */
+    public void clear() {
+        Arrays.fill(table, null);
+        Arrays.fill(seen, 0);
+        bytes = 0;
+        size = 0;
+        hand = 0;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * @return the estimated memory of the current entries
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return hits per lookup, 0 if nothing was looked up yet
+     */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return (lookups == 0) ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Result of sanitizing one text.
+     */
+    static final class Entry {
+        final long hash;
+        final String fieldPath;
+        final String text;
+        final String output;
+        final int[] counts;
+        final int[] matches;
+        final long[] valueHashes;
+        final long bytes;
+
+        boolean referenced;
+        Entry next;
+
+        /**
+         * @param output the sanitized text, or null if it was unchanged
+         * @param counts pairs of rule index and number of matches
+         * @param matches triples of rule index, column and length, or null
+         * @param valueHashes hash of each match, or null
+         */
+        Entry(long hash, String fieldPath, String text, String output, int[] counts, int[] matches, long[] valueHashes) {
+            this.hash = hash;
+            this.fieldPath = fieldPath;
+            this.text = text;
+            this.output = output;
+            this.counts = counts;
+            this.matches = matches;
+            this.valueHashes = valueHashes;
+            this.bytes = ENTRY_OVERHEAD
+                + 2L * text.length()
+                + ((output == null) ? 0 : 2L * output.length())
+                + 4L * counts.length
+                + ((matches == null) ? 0 : 4L * matches.length + 8L * valueHashes.length);
+        }
+    }
+}
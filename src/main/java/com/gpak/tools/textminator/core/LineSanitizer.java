@@ -0,0 +1,17 @@
+package com.gpak.tools.textminator.core;
+
+import com.gpak.tools.textminator.model.LineResult;
+
+/**
+ * Sanitizes one input line at a time. Implementations are not thread-safe.
+ */
+public interface LineSanitizer {
+
+    LineResult sanitizeLine(String line);
+
+    /**
+     * Returns a line sanitizer that continues where this one stopped but uses
+     * another sanitizer, e.g. after the rule set was reloaded.
+     */
+    LineSanitizer withSanitizer(Sanitizer sanitizer);
+}
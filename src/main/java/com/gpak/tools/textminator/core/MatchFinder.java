@@ -0,0 +1,16 @@
+package com.gpak.tools.textminator.core;
+
+/**
+ * Finds matches without a regex engine: dictionary lookups and builtin
+ * scanners.
+ */
+public interface MatchFinder {
+
+    /**
+     * Finds the next match starting at or after {@code from}.
+     *
+     * @param span receives the start (inclusive) and end (exclusive) of the match
+     * @return true if a match was found
+     */
+    boolean find(CharSequence text, int from, int[] span);
+}
@@ -0,0 +1,22 @@
+package com.gpak.tools.textminator.core;
+
+import com.gpak.tools.textminator.model.Rule;
+
+/**
+ * Receives every replaced match of a {@link Sanitizer}, e.g. to write an
+ * audit trail. Called on the sanitizing thread, so implementations should
+ * only record and return.
+ */
+public interface MatchListener {
+
+    /**
+     * @param rule the rule that matched
+     * @param fieldPath the field of a structured record, or null for plain lines
+     * @param column 0-based offset of the match in the line (or field value) as
+     *        it was before any rule ran
+     * @param length length of the original text covered by the match
+     * @param valueHash {@link KeyedHash} of the matched text, the same value
+     *        that {@code ${hash:16}} writes
+     */
+    void onMatch(Rule rule, String fieldPath, int column, int length, long valueHash);
+}
@@ -0,0 +1,266 @@
+package com.gpak.tools.textminator.core;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Cheap necessary condition for a pattern to match: characters that every
+ * match must contain.
+ * 
+ * The characters are derived conservatively from the top level of the regex
+ * (literal characters that are not optional). Whenever the regex uses a
+ * construct that makes this uncertain (alternation, inline case-insensitive or
+ * comments flags, quoting, ...) no prefilter is created. If the text doesn't
+ * contain one of the characters, the pattern can't match and can be skipped.
+ */
+public final class Prefilter {
+
+    private final char[] required;
+
+    private Prefilter(char[] required) {
+        this.required = required;
+    }
+
+    /**
+     * @return the prefilter of the pattern, or null if none can be derived
+     */
+    public static Prefilter of(Pattern pattern) {
+        int flags = pattern.flags();
+        boolean caseInsensitive = (flags & (Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE)) != 0;
+        String regex = pattern.pattern();
+        Set<Character> chars = new LinkedHashSet<>();
+
+        if ((flags & Pattern.CANON_EQ) != 0) {
+            return null;
+        }
+
+        if ((flags & Pattern.LITERAL) != 0) {
+            for (int i = 0; i < regex.length(); i++) {
+                addRequired(chars, regex.charAt(i), caseInsensitive);
+            }
+            return create(chars);
+        }
+
+        if ((flags & Pattern.COMMENTS) != 0) {
+            return null;
+        }
+
+        int i = 0;
+        int len = regex.length();
+        while (i < len) {
+            char c = regex.charAt(i);
+            int atomEnd;
+            boolean literal = false;
+            char literalChar = 0;
+
+            switch (c) {
+                case '\\':
+                    if (i + 1 >= len) {
+                        return null;
+                    }
+                    char e = regex.charAt(i + 1);
+                    if ("QExuUpPNkc0123456789".indexOf(e) >= 0) {
+                        return null;
+                    }
+                    if (!Character.isLetterOrDigit(e)) {
+                        literal = true;
+                        literalChar = e;
+                    }
+                    atomEnd = i + 2;
+                    break;
+                case '[':
+                    atomEnd = skipClass(regex, i);
+                    break;
+                case '(':
+                    if (hasUnsafeInlineFlags(regex, i)) {
+                        return null;
+                    }
+                    atomEnd = skipGroup(regex, i);
+                    break;
+                case '|':
+                case ')':
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                    return null;
+                case '.':
+                case '^':
+                case '$':
+                    atomEnd = i + 1;
+                    break;
+                default:
+                    literal = true;
+                    literalChar = c;
+                    atomEnd = i + 1;
+            }
+
+            if (atomEnd < 0) {
+                return null;
+            }
+
+            // Quantifier
+            int next = atomEnd;
+            boolean optional = false;
+            if (next < len) {
+                char q = regex.charAt(next);
+                if (q == '*' || q == '?') {
+                    optional = true;
+                    next++;
+                } else if (q == '+') {
+                    next++;
+                } else if (q == '{') {
+                    int close = regex.indexOf('}', next);
+                    if (close < 0) {
+                        return null;
+                    }
+                    String range = regex.substring(next + 1, close);
+                    optional = range.startsWith("0") || range.startsWith(",");
+                    next = close + 1;
+                }
+                if (next > atomEnd && next < len && (regex.charAt(next) == '?' || regex.charAt(next) == '+')) {
+                    next++;
+                }
+            }
+
+            if (literal && !optional) {
+                addRequired(chars, literalChar, caseInsensitive);
+            }
+            i = next;
+        }
+
+        return create(chars);
+    }
+
+    private static void addRequired(Set<Character> chars, char c, boolean caseInsensitive) {
+        if (caseInsensitive && Character.isLetter(c)) {
+            return;
+        }
+        chars.add(c);
+    }
+
+    private static Prefilter create(Set<Character> chars) {
+        if (chars.isEmpty()) {
+            return null;
+        }
+        char[] required = new char[chars.size()];
+        int i = 0;
+        for (char c : chars) {
+            required[i++] = c;
+        }
+        return new Prefilter(required);
+    }
+
+    /**
+     * Inline flags such as (?i) or (?x) change how later literals match.
+     */
+    private static boolean hasUnsafeInlineFlags(String regex, int i) {
+        if (i + 1 >= regex.length() || regex.charAt(i + 1) != '?') {
+            return false;
+        }
+        for (int j = i + 2; j < regex.length(); j++) {
+            char c = regex.charAt(j);
+            if (c == 'i' || c == 'x' || c == 'u' || c == 'U') {
+                return true;
+            }
+            if ("dms-".indexOf(c) < 0) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return index after the character class starting at i, or -1
+     */
+    static int skipClass(String regex, int i) {
+        int j = i + 1;
+        if (j < regex.length() && regex.charAt(j) == '^') {
+            j++;
+        }
+        if (j < regex.length() && regex.charAt(j) == ']') {
+            j++;
+        }
+
+        int depth = 1;
+        while (j < regex.length()) {
+            char c = regex.charAt(j);
+            if (c == '\\') {
+                j += 2;
+                continue;
+            }
+            if (c == '[') {
+                depth++;
+            } else if (c == ']' && --depth == 0) {
+                return j + 1;
+            }
+            j++;
+        }
+        return -1;
+    }
+
+    /**
+     * @return index after the group starting at i, or -1
+     */
+    private static int skipGroup(String regex, int i) {
+        int depth = 0;
+        int j = i;
+        while (j < regex.length()) {
+            char c = regex.charAt(j);
+            if (c == '\\') {
+                j += 2;
+                continue;
+            }
+            if (c == '[') {
+                j = skipClass(regex, j);
+                if (j < 0) {
+                    return -1;
+                }
+                continue;
+            }
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return j + 1;
+            }
+            j++;
+        }
+        return -1;
+    }
+
+    /**
+     * @return false if the text can't contain a match
+     */
+    public boolean mayMatch(CharSequence text) {
+        if (text instanceof String) {
+            String s = (String) text;
+            for (char c : required) {
+                if (s.indexOf(c) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        for (char c : required) {
+            if (!contains(text, c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean contains(CharSequence text, char c) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == c) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public char[] getRequiredChars() {
+        return required.clone();
+    }
+}
@@ -0,0 +1,166 @@
+package com.gpak.tools.textminator.core;
+
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.gpak.tools.textminator.model.Rule;
+
+/**
+ * Sanitizes each line for several rule sets (profiles) at once.
+ *
+ * Every distinct rule runs in its own single-rule {@link Sanitizer}, and its
+ * result is shared by all profiles that apply it to the same text. Profiles
+ * with a common prefix of rules therefore compute it once, and since a rule
+ * that matches nothing returns its input as is, the rules after it stay
+ * shared too: a strict and a lenient profile only part ways on the lines
+ * where a rule that only one of them has matches. The prefilter and candidate
+ * scanner of a rule run once per shared text as well.
+ *
+ * Rules run in the order of each profile, without adaptive reordering. Not
+ * thread-safe.
+ */
+public final class ProfileSanitizer {
+
+    private final Sanitizer[] sanitizers;
+    // Per profile, the index of each of its rules in sanitizers
+    private final int[][] profileRules;
+    private final long[][] counters;
+    private final List<RuleSet> ruleSets;
+
+    // Results of the current line, per rule: input, output and matches
+    private final String[][] inputs;
+    private final String[][] outputs;
+    private final long[][] matches;
+    private final int[] sizes;
+    private final long[] generations;
+    private long generation;
+
+    private long ruleRuns;
+    private long sharedRuns;
+
+    /**
+     * @param ruleSets the rules of each profile, in execution order. Rules are
+     *                 shared by identity, so build them from one loaded list.
+     *                 The hash key of the first rule set is used for all.
+     */
+    public ProfileSanitizer(List<RuleSet> ruleSets) {
+        this.ruleSets = List.copyOf(ruleSets);
+
+        Map<Rule, Integer> distinct = new IdentityHashMap<>();
+        this.profileRules = new int[ruleSets.size()][];
+        this.counters = new long[ruleSets.size()][];
+        for (int p = 0; p < ruleSets.size(); p++) {
+            List<Rule> rules = ruleSets.get(p).getRules();
+            profileRules[p] = new int[rules.size()];
+            counters[p] = new long[rules.size()];
+            for (int r = 0; r < rules.size(); r++) {
+                profileRules[p][r] = distinct.computeIfAbsent(rules.get(r), rule -> distinct.size());
+            }
+        }
+
+        this.sanitizers = new Sanitizer[distinct.size()];
+        KeyedHash hashKey = ruleSets.isEmpty() ? null : ruleSets.get(0).getHashKey();
+        distinct.forEach((rule, index) ->
+            sanitizers[index] = new Sanitizer(RuleSet.of(List.of(rule)).withHashKey(hashKey), false));
+
+        int profiles = ruleSets.size();
+        this.inputs = new String[sanitizers.length][profiles];
+        this.outputs = new String[sanitizers.length][profiles];
+        this.matches = new long[sanitizers.length][profiles];
+        this.sizes = new int[sanitizers.length];
+        this.generations = new long[sanitizers.length];
+    }
+
+    /**
+     * Sanitizes the line for every profile.
+     *
+     * @param results receives the output of each profile; the line itself if
+     *                nothing matched
+     * @return true if any profile changed the line
+     */
+    public boolean sanitizeLine(String line, String[] results) {
+        generation++;
+        boolean changed = false;
+        for (int p = 0; p < profileRules.length; p++) {
+            String text = line;
+            int[] rules = profileRules[p];
+            for (int r = 0; r < rules.length; r++) {
+                text = apply(rules[r], text, p, r);
+            }
+            results[p] = text;
+            changed |= text != line;
+        }
+        return changed;
+    }
+
+    private String apply(int rule, String text, int profile, int profileRule) {
+        if (generations[rule] != generation) {
+            generations[rule] = generation;
+            sizes[rule] = 0;
+        }
+
+        // A handful of profiles at most, so a linear search by identity
+        int size = sizes[rule];
+        for (int k = 0; k < size; k++) {
+            if (inputs[rule][k] == text) {
+                sharedRuns++;
+                counters[profile][profileRule] += matches[rule][k];
+                return outputs[rule][k];
+            }
+        }
+
+        Sanitizer sanitizer = sanitizers[rule];
+        long before = sanitizer.getMatchCount();
+        String output = sanitizer.sanitizeLine(text).getLine();
+        long found = sanitizer.getMatchCount() - before;
+        ruleRuns++;
+
+        inputs[rule][size] = text;
+        outputs[rule][size] = output;
+        matches[rule][size] = found;
+        sizes[rule] = size + 1;
+        counters[profile][profileRule] += found;
+        return output;
+    }
+
+    /**
+     * @see Sanitizer#flushEvents()
+     */
+    public void flushEvents() {
+        for (Sanitizer sanitizer : sanitizers) {
+            sanitizer.flushEvents();
+        }
+    }
+
+    public int getProfiles() {
+        return profileRules.length;
+    }
+
+    /**
+     * Returns the per-rule match counts of a profile in execution order.
+     */
+    public Map<String, Long> getStatistics(int profile) {
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        List<Rule> rules = ruleSets.get(profile).getRules();
+        for (int r = 0; r < rules.size(); r++) {
+            statistics.merge(rules.get(r).getName(), counters[profile][r], Long::sum);
+        }
+        return statistics;
+    }
+
+    /**
+     * @return rule applications that were computed
+     */
+    public long getRuleRuns() {
+        return ruleRuns;
+    }
+
+    /**
+     * @return rule applications taken from another profile
+     */
+    public long getSharedRuns() {
+        return sharedRuns;
+    }
+}
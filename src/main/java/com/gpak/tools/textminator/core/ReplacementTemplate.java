@@ -0,0 +1,320 @@
+package com.gpak.tools.textminator.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A rule's replacement, parsed once into segments that are appended straight
+ * into the output buffer.
+ *
+ * The syntax is the one of {@link Matcher#appendReplacement}: {@code $n} and
+ * {@code ${name}} refer to groups and {@code \} escapes the next character.
+ * On top of that, mask operations work on the whole match:
+ * <ul>
+ * <li>{@code ${last:N}} masks every character but the last N, keeping the length</li>
+ * <li>{@code ${mask:N}} writes N mask characters, hiding the length</li>
+ * <li>{@code ${hash:N}} writes the first N (1-16) hex digits of the
+ *     {@link KeyedHash} of the match; equal values give equal tokens. Needs a
+ *     secret key, see {@link #usesHash()}.</li>
+ * </ul>
+ * Immutable and thread-safe.
+ */
+public final class ReplacementTemplate {
+
+    public static final char MASK_CHAR = '*';
+
+    private static final Pattern NAMED_GROUP = Pattern.compile("\\(\\?<([a-zA-Z][a-zA-Z0-9]*)>");
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final int LITERAL = 0;
+    private static final int GROUP = 1;
+    private static final int NAMED = 2;
+    private static final int LAST = 3;
+    private static final int MASK = 4;
+    private static final int HASH = 5;
+
+    private final int[] kinds;
+    private final int[] args;
+    private final String[] texts;
+    private final String literal;
+    private final boolean usesHash;
+
+    private ReplacementTemplate(List<Integer> kinds, List<Integer> args, List<String> texts) {
+        this.kinds = kinds.stream().mapToInt(Integer::intValue).toArray();
+        this.args = args.stream().mapToInt(Integer::intValue).toArray();
+        this.texts = texts.toArray(new String[0]);
+        this.literal = (this.kinds.length == 1 && this.kinds[0] == LITERAL) ? this.texts[0]
+                     : (this.kinds.length == 0) ? "" : null;
+        this.usesHash = Arrays.stream(this.kinds).anyMatch(kind -> kind == HASH);
+    }
+
+    /**
+     * Parses the replacement of a rule.
+     *
+     * @param pattern the rule's regex, or null if only the whole match exists
+     *        (dictionary rules)
+     * @throws IllegalStateException if the replacement is malformed or refers
+     *         to a group the pattern doesn't have
+     */
+    public static ReplacementTemplate compile(String replacement, Pattern pattern) {
+        int groupCount = (pattern == null) ? 0 : pattern.matcher("").groupCount();
+        List<String> groupNames = namedGroups(pattern);
+
+        List<Integer> kinds = new ArrayList<>();
+        List<Integer> args = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+
+        int i = 0;
+        int len = replacement.length();
+        while (i < len) {
+            char c = replacement.charAt(i);
+
+            if (c == '\\') {
+                if (i + 1 >= len) {
+                    throw invalid(replacement, "character to be escaped is missing");
+                }
+                text.append(replacement.charAt(i + 1));
+                i += 2;
+                continue;
+            }
+
+            if (c != '$') {
+                text.append(c);
+                i++;
+                continue;
+            }
+
+            if (i + 1 >= len) {
+                throw invalid(replacement, "group index is missing");
+            }
+
+            if (text.length() > 0) {
+                kinds.add(LITERAL);
+                args.add(0);
+                texts.add(text.toString());
+                text.setLength(0);
+            }
+
+            char next = replacement.charAt(i + 1);
+            if (next == '{') {
+                int close = replacement.indexOf('}', i + 2);
+                if (close < 0) {
+                    throw invalid(replacement, "missing '}'");
+                }
+                String name = replacement.substring(i + 2, close);
+                int colon = name.indexOf(':');
+
+                if (colon >= 0) {
+                    addOperation(replacement, name.substring(0, colon), name.substring(colon + 1), kinds, args);
+                    texts.add(null);
+                } else {
+                    if (!groupNames.contains(name)) {
+                        throw invalid(replacement, "no group with name {" + name + "}");
+                    }
+                    kinds.add(NAMED);
+                    args.add(0);
+                    texts.add(name);
+                }
+                i = close + 1;
+                continue;
+            }
+
+            if (next < '0' || next > '9') {
+                throw invalid(replacement, "illegal group reference");
+            }
+
+            // Same as Matcher: take more digits while the group exists
+            int group = next - '0';
+            i += 2;
+            while (i < len) {
+                char d = replacement.charAt(i);
+                if (d < '0' || d > '9') {
+                    break;
+                }
+                int longer = group * 10 + (d - '0');
+                if (longer > groupCount) {
+                    break;
+                }
+                group = longer;
+                i++;
+            }
+            if (group > groupCount) {
+                throw invalid(replacement, "no group " + group);
+            }
+
+            kinds.add(GROUP);
+            args.add(group);
+            texts.add(null);
+        }
+
+        if (text.length() > 0) {
+            kinds.add(LITERAL);
+            args.add(0);
+            texts.add(text.toString());
+        }
+
+        return new ReplacementTemplate(kinds, args, texts);
+    }
+
+    private static void addOperation(String replacement, String op, String arg, List<Integer> kinds, List<Integer> args) {
+        int n;
+        try {
+            n = Integer.parseInt(arg.trim());
+        } catch (NumberFormatException e) {
+            throw invalid(replacement, "${" + op + ":N} needs a number");
+        }
+        if (n < 0) {
+            throw invalid(replacement, "${" + op + ":N} needs a positive number");
+        }
+
+        switch (op) {
+            case "last":
+                kinds.add(LAST);
+                break;
+            case "mask":
+                kinds.add(MASK);
+                break;
+            case "hash":
+                if (n < 1 || n > 16) {
+                    throw invalid(replacement, "${hash:N} needs 1-16 digits");
+                }
+                kinds.add(HASH);
+                break;
+            default:
+                throw invalid(replacement, "unknown operation '" + op + "' (supported: last, mask, hash)");
+        }
+        args.add(n);
+    }
+
+    private static List<String> namedGroups(Pattern pattern) {
+        List<String> names = new ArrayList<>();
+        if (pattern != null) {
+            Matcher m = NAMED_GROUP.matcher(pattern.pattern());
+            while (m.find()) {
+                names.add(m.group(1));
+            }
+        }
+        return names;
+    }
+
+    private static IllegalStateException invalid(String replacement, String reason) {
+        return new IllegalStateException("Invalid replacement '" + replacement + "': " + reason);
+    }
+
+    // *************************************************************************
+    //
+    // Apply
+    //
+    // *************************************************************************
+
+    /**
+     * @return the replacement if it has no references or operations, otherwise null
+     */
+    public String getLiteral() {
+        return literal;
+    }
+
+    /**
+     * @return whether the replacement has a {@code ${hash:N}}, which can only
+     *         be applied with a {@link KeyedHash}
+     */
+    public boolean usesHash() {
+        return usesHash;
+    }
+
+    /**
+     * Appends the replacement for the current match of the matcher.
+     *
+     * @param hashKey the key of {@code ${hash:N}}; may be null if the
+     *        replacement doesn't use it
+     */
+    public void appendTo(StringBuilder out, CharSequence input, Matcher matcher, KeyedHash hashKey) {
+        if (literal != null) {
+            out.append(literal);
+            return;
+        }
+
+        for (int k = 0; k < kinds.length; k++) {
+            switch (kinds[k]) {
+                case LITERAL:
+                    out.append(texts[k]);
+                    break;
+                case GROUP: {
+                    int start = matcher.start(args[k]);
+                    if (start >= 0) {
+                        out.append(input, start, matcher.end(args[k]));
+                    }
+                    break;
+                }
+                case NAMED: {
+                    int start = matcher.start(texts[k]);
+                    if (start >= 0) {
+                        out.append(input, start, matcher.end(texts[k]));
+                    }
+                    break;
+                }
+                default:
+                    appendOperation(out, kinds[k], args[k], input, matcher.start(), matcher.end(), hashKey);
+            }
+        }
+    }
+
+    /**
+     * Appends the replacement for a match without groups, e.g. a dictionary
+     * token. {@code $0} refers to the match.
+     */
+    public void appendTo(StringBuilder out, CharSequence input, int start, int end, KeyedHash hashKey) {
+        if (literal != null) {
+            out.append(literal);
+            return;
+        }
+
+        for (int k = 0; k < kinds.length; k++) {
+            switch (kinds[k]) {
+                case LITERAL:
+                    out.append(texts[k]);
+                    break;
+                case GROUP:
+                    out.append(input, start, end);
+                    break;
+                default:
+                    appendOperation(out, kinds[k], args[k], input, start, end, hashKey);
+            }
+        }
+    }
+
+    private static void appendOperation(StringBuilder out, int kind, int n, CharSequence input, int start, int end,
+            KeyedHash hashKey) {
+        switch (kind) {
+            case LAST: {
+                int keepFrom = Math.max(start, end - n);
+                for (int i = start; i < keepFrom; i++) {
+                    out.append(MASK_CHAR);
+                }
+                out.append(input, keepFrom, end);
+                break;
+            }
+            case MASK:
+                for (int i = 0; i < n; i++) {
+                    out.append(MASK_CHAR);
+                }
+                break;
+            case HASH: {
+                if (hashKey == null) {
+                    throw new IllegalStateException("${hash:N} needs a hash key");
+                }
+                long hash = hashKey.hash(input, start, end);
+                for (int shift = 60; shift > 60 - 4 * n; shift -= 4) {
+                    out.append(HEX[(int) (hash >>> shift) & 0xf]);
+                }
+                break;
+            }
+            default:
+                throw new IllegalStateException("Unknown template segment: " + kind);
+        }
+    }
+}
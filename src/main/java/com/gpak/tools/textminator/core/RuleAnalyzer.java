@@ -0,0 +1,379 @@
+package com.gpak.tools.textminator.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.gpak.tools.textminator.model.Rule;
+import com.gpak.tools.textminator.model.RuleAnalysis;
+
+/**
+ * Static and empirical performance analysis of rule patterns.
+ * 
+ * The static part looks for constructs known to cause heavy backtracking:
+ * nested unbounded quantifiers, lookarounds that contain an unbounded
+ * {@code .*} and a leading unanchored {@code .*}. The empirical part runs each
+ * pattern over generated adversarial inputs of two lengths and reports the
+ * worst cost per input character, and whether the cost grows with the length
+ * (i.e. the pattern is super-linear).
+ */
+public class RuleAnalyzer {
+
+    public static final double DEFAULT_THRESHOLD_NS_PER_CHAR = 200.0;
+
+    private static final int SHORT_LENGTH = 256;
+    private static final int LONG_LENGTH = 4096;
+    private static final long BUDGET_NANOS = 20_000_000L;
+    private static final long TIMEOUT_NANOS = 1_000_000_000L;
+
+    // Cost per char growing more than this between the two lengths is super-linear
+    private static final double SUPERLINEAR_RATIO = 4.0;
+
+    private static final String[] ADVERSARIAL_SEEDS = {
+        "a", "a1", "0:", "1.", "a-", "a@", "a.", " ", "a:b.", "ab12-:.@_ ",
+    };
+
+    private RuleAnalyzer() { }
+
+    public static List<RuleAnalysis> analyze(List<Rule> rules) {
+        // Let the JIT compile the regex engine before anything is recorded
+        String warmup = randomText(new Random(7), SHORT_LENGTH);
+        for (Rule rule : rules) {
+            if (rule.getPattern() != null) {
+                measure(rule.getPattern(), warmup);
+            }
+        }
+
+        List<RuleAnalysis> result = new ArrayList<>();
+        for (Rule rule : rules) {
+            // Dictionary lookups and builtin scanners are linear by construction
+            if (rule.getPattern() != null) {
+                result.add(analyze(rule));
+            }
+        }
+        return result;
+    }
+
+    public static RuleAnalysis analyze(Rule rule) {
+        List<String> issues = findIssues(rule.getPattern());
+
+        double worst = 0;
+        String worstInput = null;
+        boolean superlinear = false;
+        boolean timedOut = false;
+
+        List<String> seeds = new ArrayList<>(List.of(ADVERSARIAL_SEEDS));
+        seeds.add(randomText(new Random(42), 64));
+
+        for (String seed : seeds) {
+            double shortCost = measure(rule.getPattern(), repeat(seed, SHORT_LENGTH));
+            double longCost = measure(rule.getPattern(), repeat(seed, LONG_LENGTH));
+
+            if (Double.isInfinite(shortCost) || Double.isInfinite(longCost)) {
+                timedOut = true;
+                worst = Double.POSITIVE_INFINITY;
+                worstInput = describe(seed);
+                break;
+            }
+
+            if (longCost > worst) {
+                worst = longCost;
+                worstInput = describe(seed);
+            }
+            if (shortCost > 0 && longCost / shortCost > SUPERLINEAR_RATIO) {
+                superlinear = true;
+            }
+        }
+
+        return new RuleAnalysis(rule.getName(), issues, worst, worstInput, superlinear, timedOut);
+    }
+
+    // *************************************************************************
+    //
+    // Static checks
+    //
+    // *************************************************************************
+
+    private static class Group {
+        final int start;
+        final boolean lookaround;
+        boolean unboundedQuantifier;
+        boolean unboundedDot;
+
+        Group(int start, boolean lookaround) {
+            this.start = start;
+            this.lookaround = lookaround;
+        }
+    }
+
+    public static List<String> findIssues(Pattern pattern) {
+        List<String> issues = new ArrayList<>();
+        if ((pattern.flags() & (Pattern.LITERAL | Pattern.COMMENTS)) != 0) {
+            return issues;
+        }
+
+        String regex = pattern.pattern();
+        Deque<Group> groups = new ArrayDeque<>();
+        groups.push(new Group(0, false));
+        boolean firstAtom = true;
+
+        int i = 0;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            int atomEnd;
+            boolean dot = false;
+            Group closed = null;
+
+            if (c == '\\') {
+                atomEnd = skipEscape(regex, i);
+            } else if (c == '[') {
+                atomEnd = Prefilter.skipClass(regex, i);
+            } else if (c == '(') {
+                groups.push(new Group(i, isLookaround(regex, i)));
+                i = skipGroupPrefix(regex, i);
+                continue;
+            } else if (c == ')') {
+                if (groups.size() == 1) {
+                    return issues;
+                }
+                closed = groups.pop();
+                atomEnd = i + 1;
+            } else if (c == '^' || c == '|') {
+                // An anchored leading .* is only tried once; after '|' a new branch starts
+                firstAtom = (c == '|') && groups.size() == 1;
+                i++;
+                continue;
+            } else {
+                dot = (c == '.');
+                atomEnd = i + 1;
+            }
+
+            if (atomEnd < 0) {
+                return issues;
+            }
+
+            int next = skipQuantifier(regex, atomEnd);
+            boolean unbounded = isUnbounded(regex, atomEnd, next);
+            Group current = groups.peek();
+
+            if (closed != null) {
+                String snippet = snippet(regex, closed.start, atomEnd);
+                if (unbounded && closed.unboundedQuantifier && !closed.lookaround) {
+                    issues.add("nested quantifier " + snippet(regex, closed.start, next)
+                        + " can backtrack exponentially");
+                }
+                if (closed.lookaround && closed.unboundedDot) {
+                    issues.add("lookaround " + snippet
+                        + " contains an unbounded '.' and rescans the rest of the input at every position");
+                }
+                current.unboundedQuantifier |= closed.unboundedQuantifier || unbounded;
+                current.unboundedDot |= closed.unboundedDot;
+            } else {
+                if (dot && unbounded && firstAtom && groups.size() == 1) {
+                    issues.add("leading unanchored " + regex.substring(i, next)
+                        + " is retried from every start position");
+                }
+                current.unboundedQuantifier |= unbounded;
+                current.unboundedDot |= dot && unbounded;
+            }
+
+            if (groups.size() == 1) {
+                firstAtom = false;
+            }
+            i = next;
+        }
+
+        return issues;
+    }
+
+    private static boolean isLookaround(String regex, int i) {
+        return regex.startsWith("(?=", i) || regex.startsWith("(?!", i)
+            || regex.startsWith("(?<=", i) || regex.startsWith("(?<!", i);
+    }
+
+    private static int skipGroupPrefix(String regex, int i) {
+        if (!regex.startsWith("(?", i)) {
+            return i + 1;
+        }
+        if (regex.startsWith("(?<=", i) || regex.startsWith("(?<!", i)) {
+            return i + 4;
+        }
+        if (regex.startsWith("(?<", i)) {
+            int close = regex.indexOf('>', i);
+            return close < 0 ? regex.length() : close + 1;
+        }
+        int j = i + 2;
+        while (j < regex.length() && "idmsuxU-".indexOf(regex.charAt(j)) >= 0) {
+            j++;
+        }
+        if (j < regex.length() && (regex.charAt(j) == ':' || regex.charAt(j) == '=' || regex.charAt(j) == '!'
+                || regex.charAt(j) == '>')) {
+            j++;
+        }
+        return j;
+    }
+
+    private static int skipEscape(String regex, int i) {
+        if (i + 1 >= regex.length()) {
+            return -1;
+        }
+        char e = regex.charAt(i + 1);
+        if (e == 'Q') {
+            int end = regex.indexOf("\\E", i + 2);
+            return end < 0 ? regex.length() : end + 2;
+        }
+        if ((e == 'p' || e == 'P' || e == 'x' || e == 'N') && i + 2 < regex.length() && regex.charAt(i + 2) == '{') {
+            int end = regex.indexOf('}', i);
+            return end < 0 ? -1 : end + 1;
+        }
+        return i + 2;
+    }
+
+    private static int skipQuantifier(String regex, int i) {
+        if (i >= regex.length()) {
+            return i;
+        }
+        char q = regex.charAt(i);
+        int next = i;
+        if (q == '*' || q == '+' || q == '?') {
+            next = i + 1;
+        } else if (q == '{') {
+            int close = regex.indexOf('}', i);
+            next = close < 0 ? i : close + 1;
+        }
+        if (next > i && next < regex.length() && (regex.charAt(next) == '?' || regex.charAt(next) == '+')) {
+            next++;
+        }
+        return next;
+    }
+
+    private static boolean isUnbounded(String regex, int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+        char q = regex.charAt(start);
+        if (q == '*' || q == '+') {
+            return true;
+        }
+        if (q == '{') {
+            String range = regex.substring(start + 1, regex.indexOf('}', start));
+            return range.endsWith(",");
+        }
+        return false;
+    }
+
+    private static String snippet(String regex, int start, int end) {
+        String s = regex.substring(start, Math.min(end, regex.length()));
+        return s.length() > 40 ? s.substring(0, 37) + "..." : s;
+    }
+
+    // *************************************************************************
+    //
+    // Micro-benchmark
+    //
+    // *************************************************************************
+
+    /**
+     * @return ns per input char, or infinity if the run timed out
+     */
+    private static double measure(Pattern pattern, String input) {
+        // A single guarded pass first, so that catastrophic patterns can't hang
+        DeadlineCharSequence guarded = new DeadlineCharSequence(input, System.nanoTime() + TIMEOUT_NANOS);
+        try {
+            Matcher probe = pattern.matcher(guarded);
+            while (probe.find()) {
+                // only the cost of matching is measured
+            }
+        } catch (DeadlineCharSequence.DeadlineExceeded e) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        Matcher matcher = pattern.matcher(input);
+        long iterations = 0;
+        long start = System.nanoTime();
+        long elapsed;
+
+        do {
+            matcher.reset();
+            while (matcher.find()) {
+                // only the cost of matching is measured
+            }
+            iterations++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < BUDGET_NANOS);
+
+        return (double) elapsed / (iterations * input.length());
+    }
+
+    private static String repeat(String seed, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        while (sb.length() < length) {
+            sb.append(seed);
+        }
+        sb.setLength(length);
+        return sb.toString();
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) (' ' + random.nextInt(95)));
+        }
+        return sb.toString();
+    }
+
+    private static String describe(String seed) {
+        String s = seed.length() > 12 ? seed.substring(0, 12) + "..." : seed;
+        return "\"" + s + "\" repeated";
+    }
+
+    /**
+     * Aborts a match that runs longer than its deadline.
+     */
+    private static final class DeadlineCharSequence implements CharSequence {
+
+        static final class DeadlineExceeded extends RuntimeException {
+            private static final long serialVersionUID = 1L;
+
+            DeadlineExceeded() {
+                super(null, null, false, false);
+            }
+        }
+
+        private final String text;
+        private final long deadline;
+        private int calls;
+
+        DeadlineCharSequence(String text, long deadline) {
+            this.text = text;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if ((++calls & 0xFFFF) == 0 && System.nanoTime() > deadline) {
+                throw new DeadlineExceeded();
+            }
+            return text.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return text.subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.gpak.tools.textminator.core;
+
+import java.util.List;
+
+import com.gpak.tools.textminator.jfr.RuleCostEvent;
+import com.gpak.tools.textminator.model.Rule;
+
+/**
+ * Samples the cost of each rule for {@link RuleCostEvent}.
+ *
+ * Every {@value #WINDOW_CALLS} calls a window ends: the rules sampled in it
+ * are emitted, one event per rule, and whether the event is enabled is
+ * checked again for the next window. Within an enabled window every
+ * {@value #SAMPLE_INTERVAL}th call is timed. Without a recording the cost is
+ * a countdown per call. The last, partial window is emitted by {@link #flush()}.
+ */
+final class RuleCostSampler {
+
+    static final int WINDOW_CALLS = 10_000;
+    static final int SAMPLE_INTERVAL = 64;
+
+    private final List<Rule> rules;
+    private final long[] nanos;
+    private final long[] runs;
+    private final long[] matches;
+
+    private int untilWindowEnd = 1;
+    private int untilSample;
+    private boolean enabled;
+
+    RuleCostSampler(List<Rule> rules) {
+        this.rules = rules;
+        this.nanos = new long[rules.size()];
+        this.runs = new long[rules.size()];
+        this.matches = new long[rules.size()];
+    }
+
+    /**
+     * Starts a new call.
+     *
+     * @return whether this call should be timed
+     */
+    boolean startCall() {
+        if (--untilWindowEnd == 0) {
+            if (enabled) {
+                emit(WINDOW_CALLS);
+            }
+            enabled = new RuleCostEvent().isEnabled();
+            untilWindowEnd = WINDOW_CALLS;
+            untilSample = 1;
+        }
+        if (!enabled || --untilSample > 0) {
+            return false;
+        }
+        untilSample = SAMPLE_INTERVAL;
+        return true;
+    }
+
+    void record(int rule, long elapsedNanos, long ruleMatches) {
+        nanos[rule] += elapsedNanos;
+        runs[rule]++;
+        matches[rule] += ruleMatches;
+    }
+
+    /**
+     * Emits the rules sampled in the current window, which ends early. The
+     * next call starts a new window.
+     */
+    void flush() {
+        if (enabled) {
+            emit(WINDOW_CALLS - untilWindowEnd + 1);
+        }
+        enabled = false;
+        untilWindowEnd = 1;
+    }
+
+    private void emit(long windowCalls) {
+        for (int i = 0; i < runs.length; i++) {
+            if (runs[i] == 0) {
+                continue;
+            }
+            RuleCostEvent event = new RuleCostEvent();
+            event.rule = rules.get(i).getName();
+            event.windowCalls = windowCalls;
+            event.sampledRuns = runs[i];
+            event.nanos = nanos[i];
+            event.nanosPerRun = nanos[i] / runs[i];
+            event.matches = matches[i];
+            event.commit();
+
+            nanos[i] = 0;
+            runs[i] = 0;
+            matches[i] = 0;
+        }
+    }
+}
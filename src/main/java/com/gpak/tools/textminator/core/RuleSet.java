@@ -0,0 +1,196 @@
+package com.gpak.tools.textminator.core;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import com.gpak.tools.textminator.model.Rule;
+import com.gpak.tools.textminator.util.ConfigUtil;
+
+/**
+ * Immutable, compiled set of rules in execution order.
+ * 
+ * A rule set is safe to share between threads. Each thread (or stream) should
+ * create its own {@link Sanitizer} through {@link #newSanitizer(boolean)}.
+ */
+public final class RuleSet {
+
+    private final List<Rule> rules;
+    private final Prefilter[] prefilters;
+    private final CandidateScanner[] scanners;
+    private final long version;
+    private final KeyedHash hashKey;
+
+    private RuleSet(List<Rule> rules, KeyedHash hashKey) {
+        this.rules = rules;
+        this.prefilters = new Prefilter[rules.size()];
+        this.scanners = new CandidateScanner[rules.size()];
+        for (int i = 0; i < rules.size(); i++) {
+            Rule rule = rules.get(i);
+            if (rule.getPattern() != null) {
+                prefilters[i] = Prefilter.of(rule.getPattern());
+                scanners[i] = CandidateScanner.of(rule.getPattern());
+            }
+        }
+        this.version = 1;
+        this.hashKey = hashKey;
+    }
+
+    private RuleSet(RuleSet source, long version, KeyedHash hashKey) {
+        this.rules = source.rules;
+        this.prefilters = source.prefilters;
+        this.scanners = source.scanners;
+        this.version = version;
+        this.hashKey = hashKey;
+    }
+
+    /**
+     * Creates a rule set from already compiled rules. The given order is kept.
+     * It has no hash key; rules with {@code ${hash:N}} need one from
+     * {@link #withHashKey(KeyedHash)}.
+     * 
+     * @param rules
+     */
+    public static RuleSet of(List<Rule> rules) {
+        if (rules == null) {
+            return new RuleSet(Collections.emptyList(), null);
+        }
+        return new RuleSet(Collections.unmodifiableList(new ArrayList<>(rules)), null);
+    }
+
+    /**
+     * Loads and validates a rule set using the same resolution order as the CLI.
+     * If a rule uses {@code ${hash:N}}, the key is taken from
+     * {@value KeyedHash#ENV_VAR}.
+     * 
+     * @param configFile custom config file or null for the default locations
+     */
+    public static RuleSet load(File configFile) {
+        List<Rule> rules = ConfigUtil.loadConfigFile(configFile);
+        return of(rules).withHashKey(ConfigUtil.loadHashKey(null, rules, false));
+    }
+
+    /**
+     * Returns the same rules tagged with another version.
+     */
+    public RuleSet withVersion(long version) {
+        return new RuleSet(this, version, hashKey);
+    }
+
+    /**
+     * Returns the same rules with another key for {@code ${hash:N}}.
+     */
+    public RuleSet withHashKey(KeyedHash hashKey) {
+        return new RuleSet(this, version, hashKey);
+    }
+
+    /**
+     * Returns a rule set whose patterns are recompiled with the extra flags,
+     * e.g. {@link java.util.regex.Pattern#MULTILINE} for multi-line records.
+     */
+    public RuleSet withFlags(int flags) {
+        List<Rule> recompiled = new ArrayList<>(rules.size());
+        for (Rule rule : rules) {
+            if (rule.getPattern() == null) {
+                recompiled.add(rule);
+                continue;
+            }
+            Pattern pattern = rule.getPattern();
+            recompiled.add(rule.withPattern(Pattern.compile(pattern.pattern(), pattern.flags() | flags)));
+        }
+        return new RuleSet(Collections.unmodifiableList(recompiled), hashKey).withVersion(version);
+    }
+
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    /**
+     * @return the prefilter of the rule at the given index, or null
+     */
+    public Prefilter getPrefilter(int index) {
+        return prefilters[index];
+    }
+
+    /**
+     * @return the candidate scanner of the rule at the given index, or null
+     */
+    public CandidateScanner getCandidateScanner(int index) {
+        return scanners[index];
+    }
+
+    /**
+     * Version of the configuration this rule set was loaded from. Starts at 1
+     * and increases with every reload.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the key of {@code ${hash:N}}, or null if none was set
+     */
+    public KeyedHash getHashKey() {
+        return hashKey;
+    }
+
+    /**
+     * SHA-256 over everything that decides the output: the rules in execution
+     * order with their patterns and flags, replacements, fields, validators
+     * and dictionary entries, and the hash key if a replacement uses it. Equal
+     * fingerprints give equal output for equal input. The version is not
+     * included.
+     */
+    public byte[] fingerprint() {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available: " + e.getMessage());
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (Rule rule : rules) {
+            sb.setLength(0);
+            sb.append(rule.getName()).append('\0')
+              .append(rule.isEnabled()).append('\0')
+              .append(rule.isIndependent()).append('\0')
+              .append(rule.getReplacement()).append('\0')
+              .append(new TreeSet<>(rule.getFields())).append('\0')
+              .append(rule.getValidator()).append('\0')
+              .append(rule.getBuiltin()).append('\0');
+            if (rule.getPattern() != null) {
+                sb.append(rule.getPattern().pattern()).append('\0').append(rule.getPattern().flags());
+            }
+            sb.append('\n');
+            digest.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+
+            if (rule.getDictionary() != null) {
+                rule.getDictionary().updateDigest(digest);
+            }
+        }
+        if (hashKey != null && rules.stream().anyMatch(rule -> rule.getTemplate().usesHash())) {
+            // The key itself must not end up in the manifest
+            digest.update(Long.toHexString(hashKey.hash("textminator fingerprint", 0, 23)).getBytes(StandardCharsets.UTF_8));
+        }
+        return digest.digest();
+    }
+
+    public int size() {
+        return rules.size();
+    }
+
+    public boolean isEmpty() {
+        return rules.isEmpty();
+    }
+
+    public Sanitizer newSanitizer(boolean calculateStatistics) {
+        return new Sanitizer(this, calculateStatistics);
+    }
+}
@@ -0,0 +1,136 @@
+package com.gpak.tools.textminator.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import com.gpak.tools.textminator.model.Rule;
+import com.gpak.tools.textminator.util.ConfigUtil;
+import com.gpak.tools.textminator.util.Console;
+
+/**
+ * Keeps the current {@link RuleSet} behind an atomic reference and replaces it
+ * when the config file changes.
+ * 
+ * Loading, compiling and validating happen on a background thread. Readers
+ * only do a volatile read through {@link #current()} and decide themselves when
+ * to switch, e.g. between batches. An invalid config is reported and the
+ * previous rule set stays active.
+ */
+public class RuleSetReloader implements Closeable {
+
+    private static final long DEBOUNCE_MILLIS = 200;
+
+    private final Path configFile;
+    private final Function<List<Rule>, RuleSet> factory;
+    private final AtomicReference<RuleSet> current;
+    private final WatchService watchService;
+    private final Thread watcher;
+
+    private byte[] lastContent;
+
+    /**
+     * @param configFile config file to watch
+     * @param initial the rule set currently in use
+     * @param factory turns loaded rules into a rule set (e.g. applies pattern flags)
+     */
+    public RuleSetReloader(File configFile, RuleSet initial, Function<List<Rule>, RuleSet> factory) throws IOException {
+        this.configFile = configFile.getAbsoluteFile().toPath();
+        this.factory = factory;
+        this.current = new AtomicReference<>(initial);
+        this.lastContent = readConfig();
+
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.configFile.getParent().register(watchService,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_MODIFY);
+
+        this.watcher = new Thread(this::watch, "textminator-config-watcher");
+        this.watcher.setDaemon(true);
+        this.watcher.start();
+
+        Console.info("Watching config file: " + this.configFile);
+    }
+
+    public RuleSet current() {
+        return current.get();
+    }
+
+    /**
+     * Loads the config file again and publishes it if it changed and is valid.
+     * 
+     * @return true if a new rule set was published
+     */
+    public synchronized boolean reload() {
+        byte[] content = readConfig();
+        if (content == null || Arrays.equals(content, lastContent)) {
+            return false;
+        }
+
+        try {
+            RuleSet previous = current.get();
+            RuleSet next = factory.apply(ConfigUtil.loadConfigFile(configFile.toFile()))
+                .withVersion(previous.getVersion() + 1);
+
+            lastContent = content;
+            current.set(next);
+            Console.info("Loaded rule set version " + next.getVersion() + " from " + configFile.getFileName());
+            return true;
+        } catch (RuntimeException e) {
+            Console.error("Config reload failed, keeping rule set version "
+                + current.get().getVersion() + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+
+                boolean relevant = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    Object context = event.context();
+                    if (context instanceof Path && configFile.getFileName().equals(context)) {
+                        relevant = true;
+                    }
+                }
+                key.reset();
+
+                if (relevant) {
+                    // Editors often write in several steps; wait for them to finish
+                    Thread.sleep(DEBOUNCE_MILLIS);
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    private byte[] readConfig() {
+        try {
+            return Files.readAllBytes(configFile);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        watcher.interrupt();
+        watchService.close();
+    }
+}
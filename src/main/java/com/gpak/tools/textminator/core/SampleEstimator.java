@@ -0,0 +1,80 @@
+package com.gpak.tools.textminator.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.gpak.tools.textminator.model.Estimate;
+
+/**
+ * Estimates file totals (lines, matches per rule, processing time) from lines
+ * sampled at uniformly random byte offsets.
+ *
+ * Such a line is drawn with probability {@code lineBytes / fileBytes}, so each
+ * observation is weighted by the inverse (Hansen-Hurwitz estimator). The 95%
+ * confidence interval uses the normal approximation, which needs a few
+ * hundred samples to be reliable.
+ *
+ * Draws that can't be observed (lines over the size limit) are left out
+ * rather than counted as zero. The estimate then covers the observable lines,
+ * scaled to the whole file as if the rest were alike per byte.
+ */
+public class SampleEstimator {
+
+    // Quantity names besides the rule names
+    public static final String LINES = " lines";
+    public static final String CHANGED = " changed";
+    public static final String NANOS = " nanos";
+
+    private static final double Z_95 = 1.96;
+
+    private final long fileBytes;
+    private final Map<String, double[]> sums = new LinkedHashMap<>();
+    private long samples;
+
+    public SampleEstimator(long fileBytes) {
+        this.fileBytes = fileBytes;
+    }
+
+    /**
+     * Starts the next sample. Quantities not added for it count as zero.
+     */
+    public void nextSample() {
+        samples++;
+    }
+
+    /**
+     * Adds an observed value of the quantity for the current sample.
+     */
+    public void add(String quantity, double value, long lineBytes) {
+        if (value == 0) {
+            sums.computeIfAbsent(quantity, k -> new double[2]);
+            return;
+        }
+        double y = value * fileBytes / lineBytes;
+        double[] s = sums.computeIfAbsent(quantity, k -> new double[2]);
+        s[0] += y;
+        s[1] += y * y;
+    }
+
+    public long getSamples() {
+        return samples;
+    }
+
+    /**
+     * @return the estimated file total of the quantity with its 95% margin
+     */
+    public Estimate estimate(String quantity) {
+        double[] s = sums.get(quantity);
+        if (s == null || samples == 0) {
+            return new Estimate(quantity, 0, 0);
+        }
+
+        double mean = s[0] / samples;
+        double margin = 0;
+        if (samples > 1) {
+            double variance = Math.max(0, (s[1] - s[0] * s[0] / samples) / (samples - 1));
+            margin = Z_95 * Math.sqrt(variance / samples);
+        }
+        return new Estimate(quantity, mean, margin);
+    }
+}
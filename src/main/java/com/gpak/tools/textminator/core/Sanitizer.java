@@ -1,5 +1,6 @@
 package com.gpak.tools.textminator.core;
 
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -9,71 +10,447 @@ import com.gpak.tools.textminator.model.LineResult;
 import com.gpak.tools.textminator.model.Rule;
 import com.gpak.tools.textminator.util.Console;
 
-public class Sanitizer {
+/**
+ * Applies a {@link RuleSet} to lines of text.
+ * 
+ * A sanitizer keeps per-instance matchers, buffers and statistics and is NOT
+ * thread-safe. Use one instance per thread or per stream; the underlying
+ * rule set can be shared.
+ */
+public class Sanitizer implements LineSanitizer {
 
-    private List<Rule> rules;
-    private Map<String, Long> statistics = null;
-    private boolean calculateStatistics = false;
+    private final RuleSet ruleSet;
+    private final List<Rule> rules;
+    private final Matcher[] matchers;
+    private final long[] counters;
+    private long matchCount;
+    private final boolean calculateStatistics;
+    private final AdaptiveOrder adaptiveOrder;
+    private final RuleCostSampler costSampler;
+    private final KeyedHash hashKey;
+    private final int[] span = new int[2];
+
+    private MatchListener matchListener;
+    private final EditMap edits = new EditMap();
+
+    private LineCache lineCache;
+    // What the current call matched, while it is computed for the cache
+    private boolean capturing;
+    private int[] capturedCounts = new int[16];
+    private int capturedCountsSize;
+    private int[] capturedMatches = new int[48];
+    private long[] capturedHashes = new long[16];
+    private int capturedMatchCount;
+
+    // Two buffers so that each rule reads from one and writes to the other
+    private final StringBuilder front = new StringBuilder();
+    private final StringBuilder back = new StringBuilder();
 
     public Sanitizer(List<Rule> rules, boolean isDryRun, boolean printStats) {
-        this.rules = rules;
-        if (isDryRun || printStats) {
-            calculateStatistics = true;
-            initStatistics();
+        this(RuleSet.of(rules), isDryRun || printStats);
+    }
+
+    public Sanitizer(RuleSet ruleSet, boolean calculateStatistics) {
+        this.ruleSet = ruleSet;
+        this.rules = ruleSet.getRules();
+        this.matchers = new Matcher[rules.size()];
+        this.counters = new long[rules.size()];
+        this.calculateStatistics = calculateStatistics;
+        this.adaptiveOrder = AdaptiveOrder.create(rules);
+        this.costSampler = new RuleCostSampler(rules);
+        this.hashKey = ruleSet.getHashKey();
+
+        if (hashKey == null) {
+            for (Rule rule : rules) {
+                if (rule.isEnabled() && rule.getTemplate().usesHash()) {
+                    throw new IllegalStateException("Rule " + rule.getName() + " uses ${hash:N}, which needs a secret key: set "
+                        + KeyedHash.ENV_VAR + " or use --hash-key-file");
+                }
+            }
+        }
+
+        if (calculateStatistics) {
+            Console.info("Initialize statistics");
         }
     }
     
+    @Override
     public LineResult sanitizeLine(String line) {
-        boolean matchFound = false;
+        if (rules.isEmpty() || line == null || line.isEmpty()) {
+            return new LineResult(line, false);
+        }
+
+        CharSequence result = applyCached(line, null);
+        if (result == line) {
+            return new LineResult(line, false);
+        }
+
+        return new LineResult(result.toString(), true);
+    }
+
+    /**
+     * Sanitizes the given builder in place. Nothing is allocated when no rule
+     * matches.
+     * 
+     * @return true if the text was changed
+     */
+    public boolean sanitize(StringBuilder text) {
+        if (rules.isEmpty() || text == null || text.length() == 0) {
+            return false;
+        }
+
+        CharSequence result = applyCached(text, null);
+        if (result == text) {
+            return false;
+        }
+
+        text.setLength(0);
+        text.append(result);
+        return true;
+    }
+
+    /**
+     * Sanitizes a single field value of a structured record, running only the
+     * rules that target the given field path.
+     * 
+     * @return the value itself if nothing matched, otherwise an internal buffer
+     *         that is only valid until the next call on this sanitizer
+     */
+    public CharSequence sanitizeField(CharSequence value, String fieldPath) {
+        if (rules.isEmpty() || value == null || value.length() == 0) {
+            return value;
+        }
+        return applyCached(value, fieldPath);
+    }
+
+    /**
+     * Same as {@link #apply}, but looks the input up in the line cache first
+     * and replays the counters and matches of a hit.
+     */
+    private CharSequence applyCached(CharSequence input, String fieldPath) {
+        if (lineCache == null) {
+            return apply(input, fieldPath);
+        }
+
+        long hash = LineCache.hash(input, fieldPath);
+        LineCache.Entry entry = lineCache.get(input, fieldPath, hash);
+        if (entry != null) {
+            replay(entry, fieldPath);
+            return (entry.output == null) ? input : entry.output;
+        }
+
+        if (!lineCache.admit(hash)) {
+            return apply(input, fieldPath);
+        }
+
+        capturing = true;
+        capturedCountsSize = 0;
+        capturedMatchCount = 0;
+        CharSequence result;
+        try {
+            result = apply(input, fieldPath);
+        } finally {
+            capturing = false;
+        }
+
+        String output = (result == input) ? null : result.toString();
+        boolean withMatches = matchListener != null;
+        lineCache.put(new LineCache.Entry(hash, fieldPath, input.toString(), output,
+            Arrays.copyOf(capturedCounts, capturedCountsSize),
+            withMatches ? Arrays.copyOf(capturedMatches, capturedMatchCount * 3) : null,
+            withMatches ? Arrays.copyOf(capturedHashes, capturedMatchCount) : null));
+        return (output == null) ? input : output;
+    }
+
+    private void replay(LineCache.Entry entry, String fieldPath) {
+        for (int k = 0; k < entry.counts.length; k += 2) {
+            matchCount += entry.counts[k + 1];
+            if (calculateStatistics) {
+                counters[entry.counts[k]] += entry.counts[k + 1];
+            }
+        }
+        if (matchListener != null && entry.matches != null) {
+            for (int m = 0; m < entry.valueHashes.length; m++) {
+                matchListener.onMatch(rules.get(entry.matches[3 * m]), fieldPath,
+                    entry.matches[3 * m + 1], entry.matches[3 * m + 2], entry.valueHashes[m]);
+            }
+        }
+    }
 
-        if (rules == null || rules.isEmpty() || line == null ||line.isEmpty()) {
-            return new LineResult(line, matchFound);
+    /**
+     * Runs all enabled rules that apply to the field path (null = all).
+     * 
+     * @return the input itself if nothing matched, otherwise an internal buffer
+     */
+    private CharSequence apply(CharSequence input, String fieldPath) {
+        CharSequence current = input;
+        if (matchListener != null) {
+            edits.reset();
         }
+        boolean timed = adaptiveOrder != null && adaptiveOrder.startCall();
+        boolean sampled = costSampler.startCall();
+        int[] order = (adaptiveOrder != null) ? adaptiveOrder.order() : null;
 
-        String result = line;
-        for (Rule rule : rules) {
-            if (!rule.isEnabled()) {
+        for (int k = 0; k < rules.size(); k++) {
+            int i = (order == null) ? k : order[k];
+            Rule rule = rules.get(i);
+            if (!rule.isEnabled() || !rule.appliesTo(fieldPath)) {
                 continue;
             }
 
-            Matcher matcher = rule.getPattern().matcher(result);
-            StringBuffer sb = new StringBuffer();
+            long start = (timed || sampled) ? System.nanoTime() : 0L;
             long matches = 0;
 
-            while (matcher.find()) {
-                matches++;
-                matchFound = true;
-                matcher.appendReplacement(sb, rule.getReplacement());
+            Prefilter prefilter = ruleSet.getPrefilter(i);
+            if (rule.getFinder() != null) {
+                StringBuilder target = (current == front) ? back : front;
+                matches = replaceTokens(i, fieldPath, current, target);
+                if (matches > 0) {
+                    current = target;
+                }
+            } else if (prefilter == null || prefilter.mayMatch(current)) {
+                Validator validator = rule.getValidator();
+                ReplacementTemplate template = rule.getTemplate();
+                CandidateScanner scanner = ruleSet.getCandidateScanner(i);
+                Matcher matcher = matcher(i).reset(current);
+                StringBuilder target = null;
+                int copied = 0;
+                int from = 0;
+
+                while (find(matcher, scanner, current, from)) {
+                    from = matcher.end();
+                    if (validator != null && !validator.isValid(current, matcher.start(), matcher.end())) {
+                        continue;
+                    }
+                    if (target == null) {
+                        target = (current == front) ? back : front;
+                        target.setLength(0);
+                    }
+                    matches++;
+                    target.append(current, copied, matcher.start());
+                    int replacementStart = target.length();
+                    template.appendTo(target, current, matcher, hashKey);
+                    copied = matcher.end();
+
+                    if (matchListener != null) {
+                        report(i, fieldPath, current, matcher.start(), copied, replacementStart, target.length());
+                    }
+                }
+
+                if (target != null) {
+                    target.append(current, copied, current.length());
+                    current = target;
+                }
+            }
+
+            if (matchListener != null) {
+                edits.endPass();
+            }
+
+            long elapsed = (timed || sampled) ? System.nanoTime() - start : 0L;
+            if (adaptiveOrder != null) {
+                adaptiveOrder.record(i, timed ? elapsed : 0L, matches, timed);
+            }
+            if (sampled) {
+                costSampler.record(i, elapsed, matches);
             }
 
             if (matches == 0) {
                 continue;
             }
 
-            matcher.appendTail(sb);
-            result = sb.toString();
-
-            Console.trace("Rule: " + rule.getName() + " matched " + matches + " time(s)");
+            matchCount += matches;
+            if (Console.isTrace()) {
+                Console.trace("Rule: " + rule.getName() + " matched " + matches + " time(s)");
+            }
             if (calculateStatistics) {
-                statistics.merge(rule.getName(), matches, Long::sum);
+                counters[i] += matches;
+            }
+            if (capturing) {
+                capture(i, matches);
             }
         }
 
-        return new LineResult(result, matchFound);
+        return current;
     }
 
-    private Map<String, Long> initStatistics() {
-        Console.info("Initialize statistics");
-        statistics = new LinkedHashMap<>();
+    /**
+     * Finds the next match like {@link Matcher#find()}, but with a scanner
+     * only tries the offsets where a match can start.
+     * 
+     * @param from end of the previous match
+     */
+    private static boolean find(Matcher matcher, CandidateScanner scanner, CharSequence text, int from) {
+        if (scanner == null) {
+            return matcher.find();
+        }
 
-        for (Rule r : rules) {
-            statistics.put(r.getName(), 0L);
+        int len = text.length();
+        for (int p = scanner.next(text, from); p >= 0; p = scanner.next(text, p + 1)) {
+            if (matcher.region(p, len).lookingAt()) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        return statistics;
+    /**
+     * Replaces every match of a dictionary or builtin rule. The target is only
+     * written when a match is found.
+     */
+    private long replaceTokens(int ruleIndex, String fieldPath, CharSequence input, StringBuilder target) {
+        Rule rule = rules.get(ruleIndex);
+        MatchFinder finder = rule.getFinder();
+        Validator validator = rule.getValidator();
+        long matches = 0;
+        int copied = 0;
+        int from = 0;
+
+        while (finder.find(input, from, span)) {
+            from = span[1];
+            if (validator != null && !validator.isValid(input, span[0], span[1])) {
+                continue;
+            }
+            if (matches == 0) {
+                target.setLength(0);
+            }
+            matches++;
+            target.append(input, copied, span[0]);
+            int replacementStart = target.length();
+            rule.getTemplate().appendTo(target, input, span[0], span[1], hashKey);
+            copied = span[1];
+
+            if (matchListener != null) {
+                report(ruleIndex, fieldPath, input, span[0], span[1], replacementStart, target.length());
+            }
+        }
+
+        if (matches > 0) {
+            target.append(input, copied, input.length());
+        }
+        return matches;
+    }
+
+    /**
+     * Passes a replaced match to the listener with its offsets in the original
+     * input, then records the replacement for later matches.
+     */
+    private void report(int ruleIndex, String fieldPath, CharSequence text, int start, int end,
+            int replacementStart, int replacementEnd) {
+        int column = edits.toInput(start, false);
+        int length = edits.toInput(end, true) - column;
+        long valueHash = hashKey.hash(text, start, end);
+        matchListener.onMatch(rules.get(ruleIndex), fieldPath, column, length, valueHash);
+        if (capturing) {
+            captureMatch(ruleIndex, column, length, valueHash);
+        }
+        edits.add(replacementStart, end - start, replacementEnd - replacementStart);
+    }
+
+    private void capture(int ruleIndex, long matches) {
+        if (capturedCountsSize + 2 > capturedCounts.length) {
+            capturedCounts = Arrays.copyOf(capturedCounts, capturedCounts.length * 2);
+        }
+        capturedCounts[capturedCountsSize++] = ruleIndex;
+        capturedCounts[capturedCountsSize++] = (int) matches;
+    }
+
+    private void captureMatch(int ruleIndex, int column, int length, long valueHash) {
+        if (capturedMatchCount == capturedHashes.length) {
+            capturedHashes = Arrays.copyOf(capturedHashes, capturedHashes.length * 2);
+            capturedMatches = Arrays.copyOf(capturedMatches, capturedHashes.length * 3);
+        }
+        capturedMatches[3 * capturedMatchCount] = ruleIndex;
+        capturedMatches[3 * capturedMatchCount + 1] = column;
+        capturedMatches[3 * capturedMatchCount + 2] = length;
+        capturedHashes[capturedMatchCount++] = valueHash;
+    }
+
+    /**
+     * Sets the listener notified of every replaced match (null = none).
+     *
+     * @throws IllegalStateException if the rule set has no hash key, which
+     *         the value hashes of the listener need
+     */
+    public void setMatchListener(MatchListener matchListener) {
+        if (matchListener != null && hashKey == null) {
+            throw new IllegalStateException("Match listeners get keyed value hashes, which need a secret key: set "
+                + KeyedHash.ENV_VAR + " or use --hash-key-file");
+        }
+        this.matchListener = matchListener;
+        if (lineCache != null) {
+            // Cached entries only hold matches if a listener was set
+            lineCache.clear();
+        }
+    }
+
+    /**
+     * Sets the cache of already sanitized lines (null = none). The cache must
+     * not be shared with another sanitizer and must be cleared when the rules
+     * change.
+     */
+    public void setLineCache(LineCache lineCache) {
+        this.lineCache = lineCache;
+    }
+
+    /**
+     * @return the line cache, or null
+     */
+    public LineCache getLineCache() {
+        return lineCache;
+    }
+
+    private Matcher matcher(int index) {
+        Matcher matcher = matchers[index];
+        if (matcher == null) {
+            // Matches tried at a candidate offset still see the text before it
+            matcher = rules.get(index).getPattern().matcher("")
+                .useTransparentBounds(true)
+                .useAnchoringBounds(false);
+            matchers[index] = matcher;
+        }
+        return matcher;
+    }
+
+    public RuleSet getRuleSet() {
+        return ruleSet;
+    }
+
+    @Override
+    public LineSanitizer withSanitizer(Sanitizer sanitizer) {
+        return sanitizer;
+    }
+
+    /**
+     * Emits the rule costs of the calls since the last {@code textminator.RuleCost}
+     * events. Call it when the input is done, otherwise the last, partial
+     * window of up to 10,000 calls is not recorded.
+     */
+    public void flushEvents() {
+        costSampler.flush();
+    }
+
+    /**
+     * @return the number of replacements made so far, also when statistics
+     *         are disabled
+     */
+    public long getMatchCount() {
+        return matchCount;
     }
 
+    /**
+     * Returns per-rule match counts in execution order, or null when
+     * statistics are disabled.
+     */
     public Map<String, Long> getStatistics() {
+        if (!calculateStatistics) {
+            return null;
+        }
+
+        Map<String, Long> statistics = new LinkedHashMap<>();
+        for (int i = 0; i < rules.size(); i++) {
+            statistics.merge(rules.get(i).getName(), counters[i], Long::sum);
+        }
         return statistics;
     }
 }
@@ -76,4 +76,8 @@ public class ToolContext {
     public void incrementTotalNumberOfLines() {
         this.totalNumberOfLines += 1;
     }
+
+    public void addTotalNumberOfLines(long lines) {
+        this.totalNumberOfLines += lines;
+    }
 }
@@ -0,0 +1,186 @@
+package com.gpak.tools.textminator.core;
+
+/**
+ * Cheap checks applied to a match before it is replaced, so that rule
+ * patterns can stay simple while false positives are dropped.
+ *
+ * Validators work directly on the match region of the text and don't
+ * allocate.
+ */
+public enum Validator {
+
+    /**
+     * Luhn checksum (payment card numbers). Spaces and dashes are ignored.
+     */
+    LUHN {
+        @Override
+        public boolean isValid(CharSequence text, int start, int end) {
+            int sum = 0;
+            int digits = 0;
+            for (int i = end - 1; i >= start; i--) {
+                char c = text.charAt(i);
+                if (c == ' ' || c == '-') {
+                    continue;
+                }
+                if (c < '0' || c > '9') {
+                    return false;
+                }
+
+                int d = c - '0';
+                if ((digits & 1) == 1) {
+                    d *= 2;
+                    if (d > 9) {
+                        d -= 9;
+                    }
+                }
+                sum += d;
+                digits++;
+            }
+            return digits >= 2 && sum % 10 == 0;
+        }
+    },
+
+    /**
+     * IBAN structure and ISO 7064 mod-97 check digits. Spaces are ignored,
+     * letters may be lower case.
+     */
+    IBAN {
+        @Override
+        public boolean isValid(CharSequence text, int start, int end) {
+            int length = 0;
+            for (int i = start; i < end; i++) {
+                char c = text.charAt(i);
+                if (c == ' ') {
+                    continue;
+                }
+                if (alphanumeric(c) < 0) {
+                    return false;
+                }
+
+                // Country code, then check digits
+                if ((length < 2 && !Character.isLetter(c)) || (length >= 2 && length < 4 && (c < '0' || c > '9'))) {
+                    return false;
+                }
+                length++;
+            }
+            if (length < 15 || length > 34) {
+                return false;
+            }
+
+            // The first four characters are moved to the end
+            int remainder = 0;
+            for (int pass = 0; pass < 2; pass++) {
+                int seen = 0;
+                for (int i = start; i < end; i++) {
+                    char c = text.charAt(i);
+                    if (c == ' ') {
+                        continue;
+                    }
+                    boolean head = seen++ < 4;
+                    if (head == (pass == 0)) {
+                        continue;
+                    }
+
+                    int value = alphanumeric(c);
+                    remainder = (value > 9)
+                        ? (remainder * 100 + value) % 97
+                        : (remainder * 10 + value) % 97;
+                }
+            }
+            return remainder == 1;
+        }
+    },
+
+    /**
+     * Dotted quad with every octet in 0-255.
+     */
+    IPV4 {
+        @Override
+        public boolean isValid(CharSequence text, int start, int end) {
+            int octets = 0;
+            int value = 0;
+            int digits = 0;
+            for (int i = start; i <= end; i++) {
+                char c = (i < end) ? text.charAt(i) : '.';
+                if (c == '.') {
+                    if (digits == 0 || value > 255) {
+                        return false;
+                    }
+                    octets++;
+                    value = 0;
+                    digits = 0;
+                } else if (c >= '0' && c <= '9' && digits < 3) {
+                    value = value * 10 + (c - '0');
+                    digits++;
+                } else {
+                    return false;
+                }
+            }
+            return octets == 4;
+        }
+    },
+
+    /**
+     * Canonical 8-4-4-4-12 UUID with a known version (1-8) and the RFC 4122
+     * variant.
+     */
+    UUID {
+        @Override
+        public boolean isValid(CharSequence text, int start, int end) {
+            if (end - start != 36) {
+                return false;
+            }
+            for (int i = 0; i < 36; i++) {
+                char c = text.charAt(start + i);
+                if (i == 8 || i == 13 || i == 18 || i == 23) {
+                    if (c != '-') {
+                        return false;
+                    }
+                } else if (hex(c) < 0) {
+                    return false;
+                }
+            }
+
+            int version = hex(text.charAt(start + 14));
+            int variant = hex(text.charAt(start + 19));
+            return version >= 1 && version <= 8 && variant >= 8 && variant <= 11;
+        }
+    };
+
+    /**
+     * @return true if the text in [start, end) passes the check
+     */
+    public abstract boolean isValid(CharSequence text, int start, int end);
+
+    /**
+     * @return the validator for a config value (case-insensitive), or null if unknown
+     */
+    public static Validator of(String name) {
+        for (Validator validator : values()) {
+            if (validator.name().equalsIgnoreCase(name.trim())) {
+                return validator;
+            }
+        }
+        return null;
+    }
+
+    // 0-15 for ASCII hex digits, -1 otherwise
+    private static int hex(char c) {
+        int value = alphanumeric(c);
+        return value < 16 ? value : -1;
+    }
+
+    // 0-9 for digits, 10-35 for ASCII letters, -1 otherwise
+    private static int alphanumeric(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 10;
+        }
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 10;
+        }
+        return -1;
+    }
+}
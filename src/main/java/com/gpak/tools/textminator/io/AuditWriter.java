@@ -0,0 +1,317 @@
+package com.gpak.tools.textminator.io;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import com.gpak.tools.textminator.core.MatchListener;
+import com.gpak.tools.textminator.model.AuditFormat;
+import com.gpak.tools.textminator.model.Rule;
+
+/**
+ * Writes one audit record per replaced match: line, column, length, rule,
+ * field and the keyed hash ({@link com.gpak.tools.textminator.core.KeyedHash})
+ * of the original value. The value itself is never written, and without the
+ * key the hash can't be reversed by hashing candidate values.
+ *
+ * The sanitizing thread only fills a batch of primitive arrays; full batches
+ * are handed to a writer thread and recycled when written. If the writer falls
+ * behind, the sanitizing thread waits for a free batch: records are never
+ * dropped.
+ *
+ * Binary format, all numbers unsigned LEB128 varints unless noted:
+ * <pre>
+ * header: "TXMA" version(byte = 1)
+ * 'N' id length utf-8-bytes               defines a rule or field name (ids start at 1)
+ * 'M' line column length rule field hash  a match; field 0 = none, hash = 8 bytes big-endian
+ * </pre>
+ */
+public class AuditWriter implements MatchListener, Closeable {
+
+    public static final int DEFAULT_BATCH_SIZE = 4096;
+
+    private static final int QUEUED_BATCHES = 4;
+    private static final byte[] MAGIC = { 'T', 'X', 'M', 'A', 1 };
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final OutputStream out;
+    private final Writer text;
+    private final AuditFormat format;
+    private final BlockingQueue<Batch> full = new ArrayBlockingQueue<>(QUEUED_BATCHES + 1);
+    private final BlockingQueue<Batch> free = new ArrayBlockingQueue<>(QUEUED_BATCHES + 1);
+    private final Batch end = new Batch(0);
+    private final Thread writerThread;
+
+    private Batch current;
+    private long line;
+    private long records;
+    private volatile IOException failure;
+
+    // Writer thread only
+    private final Map<String, Integer> nameIds = new HashMap<>();
+    private final StringBuilder json = new StringBuilder();
+    private final byte[] varint = new byte[10];
+
+    public AuditWriter(File file, AuditFormat format) throws IOException {
+        this(file, format, DEFAULT_BATCH_SIZE);
+    }
+
+    public AuditWriter(File file, AuditFormat format, int batchSize) throws IOException {
+        this.out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+        this.format = format;
+        this.text = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        if (format == AuditFormat.BINARY) {
+            out.write(MAGIC);
+        }
+
+        for (int i = 0; i < QUEUED_BATCHES; i++) {
+            free.add(new Batch(batchSize));
+        }
+        this.current = new Batch(batchSize);
+
+        this.writerThread = new Thread(this::writeBatches, "textminator-audit-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Sets the 1-based input line of the following matches.
+     */
+    public void setLine(long line) {
+        this.line = line;
+    }
+
+    /**
+     * @return the number of records written or queued
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    @Override
+    public void onMatch(Rule rule, String fieldPath, int column, int length, long valueHash) {
+        Batch batch = current;
+        int i = batch.size++;
+        batch.lines[i] = line;
+        batch.columns[i] = column;
+        batch.lengths[i] = length;
+        batch.rules[i] = rule.getName();
+        batch.fields[i] = fieldPath;
+        batch.hashes[i] = valueHash;
+        records++;
+
+        if (batch.size == batch.lines.length) {
+            handOff(batch);
+            current = take(free);
+        }
+    }
+
+    /**
+     * Writes the queued records and closes the file.
+     * 
+     * @throws IOException if any record could not be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (current.size > 0) {
+                handOff(current);
+            }
+            put(full, end);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing audit file");
+        } finally {
+            try {
+                out.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+
+        if (failure != null) {
+            throw new IOException("Failed to write audit file: " + failure.getMessage(), failure);
+        }
+    }
+
+    private void handOff(Batch batch) {
+        if (failure != null) {
+            throw new IllegalStateException("Failed to write audit file: " + failure.getMessage());
+        }
+        put(full, batch);
+    }
+
+    private void writeBatches() {
+        while (true) {
+            Batch batch = take(full);
+            if (batch == end) {
+                break;
+            }
+
+            // After a failure keep recycling, so the sanitizing thread isn't blocked
+            if (failure == null) {
+                try {
+                    write(batch);
+                    if (full.isEmpty()) {
+                        text.flush();
+                    }
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            batch.clear();
+            put(free, batch);
+        }
+
+        if (failure == null) {
+            try {
+                text.flush();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+    }
+
+    private void write(Batch batch) throws IOException {
+        for (int i = 0; i < batch.size; i++) {
+            if (format == AuditFormat.BINARY) {
+                writeBinary(batch, i);
+            } else {
+                writeJson(batch, i);
+            }
+        }
+    }
+
+    private void writeJson(Batch batch, int i) throws IOException {
+        json.setLength(0);
+        json.append("{\"line\":").append(batch.lines[i])
+            .append(",\"column\":").append(batch.columns[i])
+            .append(",\"length\":").append(batch.lengths[i])
+            .append(",\"rule\":");
+        appendJsonString(batch.rules[i]);
+        if (batch.fields[i] != null) {
+            json.append(",\"field\":");
+            appendJsonString(batch.fields[i]);
+        }
+        json.append(",\"hash\":\"");
+        for (int shift = 60; shift >= 0; shift -= 4) {
+            json.append(HEX[(int) (batch.hashes[i] >>> shift) & 0xf]);
+        }
+        json.append("\"}\n");
+
+        text.append(json);
+    }
+
+    private void appendJsonString(String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    private void writeBinary(Batch batch, int i) throws IOException {
+        int rule = nameId(batch.rules[i]);
+        int field = (batch.fields[i] == null) ? 0 : nameId(batch.fields[i]);
+
+        out.write('M');
+        writeVarint(batch.lines[i]);
+        writeVarint(batch.columns[i]);
+        writeVarint(batch.lengths[i]);
+        writeVarint(rule);
+        writeVarint(field);
+        long hash = batch.hashes[i];
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            out.write((int) (hash >>> shift));
+        }
+    }
+
+    private int nameId(String name) throws IOException {
+        Integer id = nameIds.get(name);
+        if (id != null) {
+            return id;
+        }
+
+        id = nameIds.size() + 1;
+        nameIds.put(name, id);
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        out.write('N');
+        writeVarint(id);
+        writeVarint(bytes.length);
+        out.write(bytes);
+        return id;
+    }
+
+    private void writeVarint(long value) throws IOException {
+        int n = 0;
+        while ((value & ~0x7fL) != 0) {
+            varint[n++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        varint[n++] = (byte) value;
+        out.write(varint, 0, n);
+    }
+
+    private static Batch take(BlockingQueue<Batch> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing audit file");
+        }
+    }
+
+    private static void put(BlockingQueue<Batch> queue, Batch batch) {
+        try {
+            queue.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while writing audit file");
+        }
+    }
+
+    private static final class Batch {
+        final long[] lines;
+        final int[] columns;
+        final int[] lengths;
+        final String[] rules;
+        final String[] fields;
+        final long[] hashes;
+        int size;
+
+        Batch(int capacity) {
+            lines = new long[capacity];
+            columns = new int[capacity];
+            lengths = new int[capacity];
+            rules = new String[capacity];
+            fields = new String[capacity];
+            hashes = new long[capacity];
+        }
+
+        void clear() {
+            Arrays.fill(fields, 0, size, null);
+            size = 0;
+        }
+    }
+}
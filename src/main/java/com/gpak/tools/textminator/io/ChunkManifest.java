@@ -0,0 +1,133 @@
+package com.gpak.tools.textminator.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What an incremental run wrote: for every chunk of the input, a SHA-256 of
+ * its bytes, the fingerprint of the rule set that sanitized it and the size
+ * of its output. See {@link IncrementalPlan}.
+ *
+ * Format, numbers are unsigned LEB128 varints, hashes 32 raw bytes:
+ * <pre>
+ * header: "TXMC" version(byte = 1) settings-length settings(UTF-8)
+ *         chunk-size output-start output-size output-modified
+ * chunk:  input-bytes input-hash rules-hash output-bytes lines matches
+ * </pre>
+ */
+final class ChunkManifest {
+
+    static final byte[] MAGIC = { 'T', 'X', 'M', 'C', 1 };
+
+    static final int HASH_BYTES = 32;
+
+    // For the truncation errors
+    private static final String FILE_TYPE = "manifest";
+
+    static final class Chunk {
+        final long inputBytes;
+        final byte[] inputHash;
+        final byte[] rulesHash;
+        final long outputBytes;
+        final long lines;
+        final long matches;
+
+        Chunk(long inputBytes, byte[] inputHash, byte[] rulesHash, long outputBytes, long lines, long matches) {
+            this.inputBytes = inputBytes;
+            this.inputHash = inputHash;
+            this.rulesHash = rulesHash;
+            this.outputBytes = outputBytes;
+            this.lines = lines;
+            this.matches = matches;
+        }
+    }
+
+    final String settings;
+    final int chunkSize;
+    final long outputStart;
+    final long outputSize;
+    final long outputModified;
+    final List<Chunk> chunks;
+
+    ChunkManifest(String settings, int chunkSize, long outputStart, long outputSize, long outputModified, List<Chunk> chunks) {
+        this.settings = settings;
+        this.chunkSize = chunkSize;
+        this.outputStart = outputStart;
+        this.outputSize = outputSize;
+        this.outputModified = outputModified;
+        this.chunks = Collections.unmodifiableList(new ArrayList<>(chunks));
+    }
+
+    static ChunkManifest read(Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            byte[] magic = in.readNBytes(MAGIC.length);
+            if (!Arrays.equals(magic, MAGIC)) {
+                throw new IOException("Not a textminator manifest (version 1): " + file);
+            }
+            String settings = new String(readBytes(in, (int) IoUtil.readVarint(in, FILE_TYPE)), StandardCharsets.UTF_8);
+            int chunkSize = (int) IoUtil.readVarint(in, FILE_TYPE);
+            long outputStart = IoUtil.readVarint(in, FILE_TYPE);
+            long outputSize = IoUtil.readVarint(in, FILE_TYPE);
+            long outputModified = IoUtil.readVarint(in, FILE_TYPE);
+
+            List<Chunk> chunks = new ArrayList<>();
+            long inputBytes;
+            while ((inputBytes = IoUtil.readVarintOrEnd(in, FILE_TYPE)) >= 0) {
+                chunks.add(new Chunk(inputBytes, readBytes(in, HASH_BYTES), readBytes(in, HASH_BYTES),
+                                     IoUtil.readVarint(in, FILE_TYPE), IoUtil.readVarint(in, FILE_TYPE),
+                                     IoUtil.readVarint(in, FILE_TYPE)));
+            }
+            return new ChunkManifest(settings, chunkSize, outputStart, outputSize, outputModified, chunks);
+        }
+    }
+
+    /**
+     * Writes the manifest through a temporary file, so that it only appears
+     * complete.
+     */
+    void write(File file) throws IOException {
+        File tempFile = IoUtil.tempFileFor(file);
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+            out.write(MAGIC);
+            byte[] settingsBytes = settings.getBytes(StandardCharsets.UTF_8);
+            IoUtil.writeVarint(out, settingsBytes.length);
+            out.write(settingsBytes);
+            IoUtil.writeVarint(out, chunkSize);
+            IoUtil.writeVarint(out, outputStart);
+            IoUtil.writeVarint(out, outputSize);
+            IoUtil.writeVarint(out, outputModified);
+
+            for (Chunk chunk : chunks) {
+                IoUtil.writeVarint(out, chunk.inputBytes);
+                out.write(chunk.inputHash);
+                out.write(chunk.rulesHash);
+                IoUtil.writeVarint(out, chunk.outputBytes);
+                IoUtil.writeVarint(out, chunk.lines);
+                IoUtil.writeVarint(out, chunk.matches);
+            }
+        }
+
+        IoUtil.moveAtomically(tempFile, file, true, FILE_TYPE);
+    }
+
+    private static byte[] readBytes(InputStream in, int length) throws IOException {
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length < length) {
+            throw new EOFException("Truncated manifest");
+        }
+        return bytes;
+    }
+}
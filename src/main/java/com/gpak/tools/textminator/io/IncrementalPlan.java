@@ -0,0 +1,430 @@
+package com.gpak.tools.textminator.io;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.gpak.tools.textminator.util.Console;
+
+/**
+ * Incremental sanitizing: splits the input into chunks that end at a line
+ * break and compares them with the manifest of the previous run. A chunk
+ * with the same bytes, rule set and settings is copied from the previous
+ * output; only the other chunks are read through {@link #openInput()} and
+ * sanitized.
+ *
+ * A chunk ends at the first {@code '\n'} after {@code chunkSize} bytes, so
+ * its boundaries depend only on the bytes before it: appending to the input
+ * keeps every complete chunk of the previous run. Lines are found by
+ * searching for bytes, which requires an ASCII compatible encoding and one
+ * record per line. For CSV, a chunk only ends at a line break outside quoted
+ * fields, so that each chunk starts where a full run would start a record.
+ *
+ * While the output is written, {@link #add(long, long)} is called after
+ * every sanitized record. When the lines of a chunk are done, the output is
+ * flushed to measure it and the reusable chunks that follow are copied.
+ */
+public final class IncrementalPlan implements Closeable {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final class Chunk {
+        final long inputOffset;
+        final long inputBytes;
+        final byte[] inputHash;
+        final long lines;
+        // Offset in the previous output, or -1 if the chunk is sanitized
+        final long previousOffset;
+        long outputBytes;
+        long matches;
+
+        Chunk(long inputOffset, long inputBytes, byte[] inputHash, long lines, long previousOffset) {
+            this.inputOffset = inputOffset;
+            this.inputBytes = inputBytes;
+            this.inputHash = inputHash;
+            this.lines = lines;
+            this.previousOffset = previousOffset;
+        }
+
+        boolean isReused() {
+            return previousOffset >= 0;
+        }
+    }
+
+    /**
+     * Follows the quoting of {@link com.gpak.tools.textminator.core.CsvLineSanitizer}
+     * byte by byte: a quote opens a quoted field only at the start of a
+     * field, a doubled quote stays inside it.
+     */
+    private static final class QuoteTracker {
+        private final int delimiter;
+        private boolean inQuotes;
+        private boolean quoteInQuotes;
+        private boolean fieldStart = true;
+
+        QuoteTracker(int delimiter) {
+            this.delimiter = delimiter;
+        }
+
+        void update(int b) {
+            if (quoteInQuotes) {
+                quoteInQuotes = false;
+                if (b == '"') {
+                    return;
+                }
+                // The quote closed the field, b is outside of it
+                inQuotes = false;
+            } else if (inQuotes) {
+                quoteInQuotes = b == '"';
+                return;
+            }
+
+            if (b == delimiter || b == '\n' || b == '\r') {
+                fieldStart = true;
+            } else {
+                inQuotes = fieldStart && b == '"';
+                fieldStart = false;
+            }
+        }
+
+        boolean inQuotes() {
+            return inQuotes;
+        }
+    }
+
+    private final String settings;
+    private final byte[] rulesHash;
+    private final int chunkSize;
+    private final FileChannel input;
+    private final FileChannel previousOutput;
+    private final List<Chunk> chunks = new ArrayList<>();
+
+    private Flushable writer;
+    private CountingOutputStream out;
+    private long outputStart;
+    private int current;
+    private long chunkOutputStart;
+    private long remainingLines;
+
+    /**
+     * Reads the whole input once to hash its chunks. Nothing is reused if the
+     * manifest is missing or unreadable, the settings differ or the previous
+     * output was changed since the manifest was written.
+     *
+     * @param inputStart     bytes to skip at the start of the input (a byte order mark)
+     * @param settings       output options other than the rules, e.g. format and encoding
+     * @param rulesHash      the {@link com.gpak.tools.textminator.core.RuleSet#fingerprint()}
+     * @param sanitizeFirst  never reuse the first chunk, e.g. to read a CSV header
+     * @param csvDelimiter   the delimiter of CSV/TSV input, whose quoted fields may
+     *                       span lines, or -1
+     */
+    public IncrementalPlan(File manifestFile, File inputFile, long inputStart, File previousOutputFile, String settings,
+            byte[] rulesHash, int chunkSize, boolean sanitizeFirst, int csvDelimiter) throws IOException {
+        this.settings = settings;
+        this.rulesHash = rulesHash;
+        this.chunkSize = chunkSize;
+
+        ChunkManifest previous = readPrevious(manifestFile, previousOutputFile);
+        this.input = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ);
+        try {
+            this.previousOutput = (previous != null)
+                ? FileChannel.open(previousOutputFile.toPath(), StandardOpenOption.READ)
+                : null;
+            split(inputStart, previous, sanitizeFirst, (csvDelimiter >= 0) ? new QuoteTracker(csvDelimiter) : null);
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private ChunkManifest readPrevious(File manifestFile, File previousOutputFile) throws IOException {
+        ChunkManifest previous;
+        try {
+            previous = ChunkManifest.read(manifestFile.toPath());
+        } catch (NoSuchFileException e) {
+            Console.info("No manifest yet, sanitizing everything");
+            return null;
+        } catch (IOException e) {
+            Console.warn("Ignoring manifest " + manifestFile + ": " + e.getMessage());
+            return null;
+        }
+
+        if (!previous.settings.equals(settings) || previous.chunkSize != chunkSize) {
+            Console.info("Options changed since the manifest was written, sanitizing everything");
+            return null;
+        }
+        if (!previousOutputFile.exists()
+                || previousOutputFile.length() != previous.outputSize
+                || previousOutputFile.lastModified() != previous.outputModified) {
+            Console.warn("Output file " + previousOutputFile + " changed since the manifest was written, sanitizing everything");
+            return null;
+        }
+        return previous;
+    }
+
+    private void split(long inputStart, ChunkManifest previous, boolean sanitizeFirst, QuoteTracker quotes) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available: " + e.getMessage());
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        byte[] bytes = buffer.array();
+        long position = inputStart;
+        long chunkStart = inputStart;
+        long previousOffset = (previous != null) ? previous.outputStart : 0;
+        long lines = 0;
+        int last = -1;
+
+        int n;
+        while ((n = input.read(buffer.clear(), position)) > 0) {
+            int from = 0;
+            for (int i = 0; i < n; i++) {
+                int b = bytes[i];
+                // Same line breaks as BufferedReader.readLine: \n, \r and \r\n
+                if (b == '\r' || (b == '\n' && last != '\r')) {
+                    lines++;
+                }
+                last = b;
+                if (quotes != null) {
+                    quotes.update(b);
+                }
+
+                if (b == '\n' && position + i + 1 - chunkStart >= chunkSize && (quotes == null || !quotes.inQuotes())) {
+                    digest.update(bytes, from, i + 1 - from);
+                    from = i + 1;
+                    previousOffset = addChunk(chunkStart, position + from - chunkStart, digest.digest(), lines,
+                                              previous, previousOffset, sanitizeFirst);
+                    chunkStart = position + from;
+                    lines = 0;
+                }
+            }
+            digest.update(bytes, from, n - from);
+            position += n;
+        }
+
+        if (position > chunkStart) {
+            if (last != '\n' && last != '\r') {
+                lines++;
+            }
+            addChunk(chunkStart, position - chunkStart, digest.digest(), lines, previous, previousOffset, sanitizeFirst);
+        }
+    }
+
+    /**
+     * @return the offset of the next chunk in the previous output
+     */
+    private long addChunk(long inputOffset, long inputBytes, byte[] inputHash, long lines, ChunkManifest previous,
+            long previousOffset, boolean sanitizeFirst) {
+        int index = chunks.size();
+        ChunkManifest.Chunk before = (previous != null && index < previous.chunks.size())
+            ? previous.chunks.get(index)
+            : null;
+
+        boolean reuse = before != null
+            && !(sanitizeFirst && index == 0)
+            && before.inputBytes == inputBytes
+            && before.lines == lines
+            && Arrays.equals(before.inputHash, inputHash)
+            && Arrays.equals(before.rulesHash, rulesHash);
+
+        Chunk chunk = new Chunk(inputOffset, inputBytes, inputHash, lines, reuse ? previousOffset : -1);
+        if (reuse) {
+            chunk.outputBytes = before.outputBytes;
+            chunk.matches = before.matches;
+        }
+        chunks.add(chunk);
+        return (before != null) ? previousOffset + before.outputBytes : previousOffset;
+    }
+
+    /**
+     * @return the bytes of the chunks to sanitize, one after the other
+     */
+    public InputStream openInput() {
+        return new InputStream() {
+            private int index = nextSanitized(0);
+            private long position = (index < chunks.size()) ? chunks.get(index).inputOffset : 0;
+
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return (read(b, 0, 1) < 0) ? -1 : b[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                while (index < chunks.size()) {
+                    Chunk chunk = chunks.get(index);
+                    long remaining = chunk.inputOffset + chunk.inputBytes - position;
+                    if (remaining > 0) {
+                        int n = input.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)), position);
+                        if (n < 0) {
+                            throw new IOException("Input file was truncated while it was read");
+                        }
+                        position += n;
+                        return n;
+                    }
+                    index = nextSanitized(index + 1);
+                    if (index < chunks.size()) {
+                        position = chunks.get(index).inputOffset;
+                    }
+                }
+                return -1;
+            }
+        };
+    }
+
+    private int nextSanitized(int from) {
+        int index = from;
+        while (index < chunks.size() && chunks.get(index).isReused()) {
+            index++;
+        }
+        return index;
+    }
+
+    /**
+     * Starts writing: copies the reusable chunks at the start of the input.
+     * The writer must not have written any record yet.
+     *
+     * @param writer the output writer, flushed at the end of each sanitized chunk
+     * @param out    counts the bytes below the writer; reused chunks are copied here
+     */
+    public void start(Flushable writer, CountingOutputStream out) throws IOException {
+        this.writer = writer;
+        this.out = out;
+
+        // A byte order mark is written before the first line
+        writer.flush();
+        this.outputStart = out.getCount();
+        copyReused();
+    }
+
+    /**
+     * Adds a record that was just sanitized and written to the output.
+     *
+     * @param lines   lines in the record
+     * @param matches replacements made in the record
+     */
+    public void add(long lines, long matches) throws IOException {
+        if (current == chunks.size() || lines > remainingLines) {
+            throw new IllegalStateException("Input file changed while it was read");
+        }
+        chunks.get(current).matches += matches;
+        remainingLines -= lines;
+
+        if (remainingLines == 0) {
+            writer.flush();
+            chunks.get(current).outputBytes = out.getCount() - chunkOutputStart;
+            current++;
+            copyReused();
+        }
+    }
+
+    /**
+     * Checks that every chunk was written.
+     */
+    public void finish() {
+        if (current != chunks.size()) {
+            throw new IllegalStateException("Input file changed while it was read");
+        }
+    }
+
+    private void copyReused() throws IOException {
+        ByteBuffer buffer = null;
+        for (; current < chunks.size() && chunks.get(current).isReused(); current++) {
+            Chunk chunk = chunks.get(current);
+            if (buffer == null) {
+                buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            }
+
+            long position = chunk.previousOffset;
+            long end = position + chunk.outputBytes;
+            while (position < end) {
+                int n = previousOutput.read(buffer.clear().limit((int) Math.min(BUFFER_SIZE, end - position)), position);
+                if (n < 0) {
+                    throw new IOException("Previous output file was truncated while it was copied");
+                }
+                out.write(buffer.array(), 0, n);
+                position += n;
+            }
+        }
+
+        if (current < chunks.size()) {
+            chunkOutputStart = out.getCount();
+            remainingLines = chunks.get(current).lines;
+        }
+    }
+
+    /**
+     * Writes the manifest of this run. Call after the output file is in place,
+     * since its size and modification time are recorded.
+     */
+    public void writeManifest(File manifestFile, File outputFile) throws IOException {
+        List<ChunkManifest.Chunk> entries = new ArrayList<>(chunks.size());
+        for (Chunk chunk : chunks) {
+            entries.add(new ChunkManifest.Chunk(chunk.inputBytes, chunk.inputHash, rulesHash, chunk.outputBytes,
+                                                chunk.lines, chunk.matches));
+        }
+        new ChunkManifest(settings, chunkSize, outputStart, outputFile.length(), outputFile.lastModified(), entries)
+            .write(manifestFile);
+    }
+
+    public int getChunks() {
+        return chunks.size();
+    }
+
+    public int getReusedChunks() {
+        return (int) chunks.stream().filter(Chunk::isReused).count();
+    }
+
+    /**
+     * @return input bytes whose output was copied
+     */
+    public long getReusedBytes() {
+        return chunks.stream().filter(Chunk::isReused).mapToLong(chunk -> chunk.inputBytes).sum();
+    }
+
+    public long getInputBytes() {
+        return chunks.stream().mapToLong(chunk -> chunk.inputBytes).sum();
+    }
+
+    /**
+     * @return lines whose output was copied
+     */
+    public long getReusedLines() {
+        return chunks.stream().filter(Chunk::isReused).mapToLong(chunk -> chunk.lines).sum();
+    }
+
+    /**
+     * @return replacements in the copied output, as recorded by the previous run
+     */
+    public long getReusedMatches() {
+        return chunks.stream().filter(Chunk::isReused).mapToLong(chunk -> chunk.matches).sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            input.close();
+        } finally {
+            if (previousOutput != null) {
+                previousOutput.close();
+            }
+        }
+    }
+}
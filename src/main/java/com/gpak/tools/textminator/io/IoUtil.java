@@ -0,0 +1,106 @@
+package com.gpak.tools.textminator.io;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.CopyOption;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Shared helpers of the binary files (line index, manifest, dictionary index)
+ * and of the outputs that are written through a temporary file.
+ */
+public class IoUtil {
+
+    private IoUtil() { }
+
+    // *************************************************************************
+    //
+    // Varints
+    //
+    // *************************************************************************
+
+    /**
+     * Writes an unsigned LEB128 varint: 7 bits per byte, low bits first.
+     */
+    public static void writeVarint(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /**
+     * @param what name of the file type for the error message, e.g. "index"
+     * @throws EOFException if the input ends inside the varint
+     */
+    public static long readVarint(InputStream in, String what) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("Truncated " + what);
+        }
+        return readVarint(in, b, what);
+    }
+
+    /**
+     * @return the varint, or -1 if the input ends before its first byte
+     */
+    public static long readVarintOrEnd(InputStream in, String what) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            return -1;
+        }
+        return readVarint(in, b, what);
+    }
+
+    private static long readVarint(InputStream in, int first, String what) throws IOException {
+        long value = first & 0x7F;
+        int shift = 7;
+        int b = first;
+        while ((b & 0x80) != 0) {
+            b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated " + what);
+            }
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+
+    // *************************************************************************
+    //
+    // Atomic writes
+    //
+    // *************************************************************************
+
+    /**
+     * @return {@code <file>.tmp}, in the same directory so that it can be
+     *         moved atomically
+     */
+    public static File tempFileFor(File file) {
+        return new File(file.getAbsolutePath() + ".tmp");
+    }
+
+    /**
+     * Moves a completely written temporary file to its target in one step,
+     * so that readers never see a partial file.
+     *
+     * @param replaceExisting whether an existing target is replaced
+     * @param what name of the target for the error message, e.g. "index"
+     */
+    public static void moveAtomically(File tempFile, File target, boolean replaceExisting, String what) throws IOException {
+        CopyOption[] copyOptions = replaceExisting
+            ? new CopyOption[] { StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE }
+            : new CopyOption[] { StandardCopyOption.ATOMIC_MOVE };
+        try {
+            Files.move(tempFile.toPath(), target.toPath(), copyOptions);
+        } catch (IOException e) {
+            throw new IOException("Failed to move temporary file to " + what + ": " + e.getMessage());
+        }
+    }
+}
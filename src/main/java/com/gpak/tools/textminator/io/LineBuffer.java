@@ -0,0 +1,78 @@
+package com.gpak.tools.textminator.io;
+
+import java.io.IOException;
+
+import com.gpak.tools.textminator.core.Sanitizer;
+
+/**
+ * Bounded line accumulator shared by the stream adapters.
+ * 
+ * Characters are collected until a line feed. Completed lines are sanitized
+ * without their terminator, which is then written back unchanged (LF or CRLF).
+ * A line that grows beyond the maximum length is sanitized and emitted as is,
+ * so matches that span the cut are not detected.
+ */
+final class LineBuffer {
+
+    private final Sanitizer sanitizer;
+    private final int maxLineLength;
+    private final StringBuilder line = new StringBuilder();
+
+    LineBuffer(Sanitizer sanitizer, int maxLineLength) {
+        if (sanitizer == null) {
+            throw new IllegalArgumentException("Sanitizer is required!");
+        }
+        if (maxLineLength <= 0) {
+            throw new IllegalArgumentException("Max line length must be positive!");
+        }
+        this.sanitizer = sanitizer;
+        this.maxLineLength = maxLineLength;
+    }
+
+    /**
+     * Consumes characters from {@code src} up to and including the first line
+     * feed, emitting the sanitized line to {@code out} when complete.
+     * 
+     * @return number of characters consumed
+     */
+    int append(char[] src, int off, int len, Appendable out) throws IOException {
+        int end = off + len;
+        for (int i = off; i < end; i++) {
+            char c = src[i];
+            line.append(c);
+            if (c == '\n' || line.length() >= maxLineLength) {
+                emit(out);
+                return i - off + 1;
+            }
+        }
+        return len;
+    }
+
+    boolean isEmpty() {
+        return line.length() == 0;
+    }
+
+    /**
+     * Sanitizes and emits whatever is currently buffered.
+     */
+    void emit(Appendable out) throws IOException {
+        if (line.length() == 0) {
+            return;
+        }
+
+        int contentEnd = line.length();
+        if (contentEnd > 0 && line.charAt(contentEnd - 1) == '\n') {
+            contentEnd--;
+            if (contentEnd > 0 && line.charAt(contentEnd - 1) == '\r') {
+                contentEnd--;
+            }
+        }
+
+        String sanitized = sanitizer.sanitizeLine(line.substring(0, contentEnd)).getLine();
+        if (sanitized != null) {
+            out.append(sanitized);
+        }
+        out.append(line, contentEnd, line.length());
+        line.setLength(0);
+    }
+}
@@ -0,0 +1,119 @@
+package com.gpak.tools.textminator.io;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Reads an index written by {@link LineIndexWriter}: the first line number,
+ * byte offset and number of matches of every block of the sanitized output.
+ *
+ * Line numbers are 1-based; offsets are from the start of the output file.
+ */
+public final class LineIndex {
+
+    // For the truncation errors
+    private static final String FILE_TYPE = "index";
+
+    private final int interval;
+    // Per block, plus one entry for the end of the output
+    private final long[] lines;
+    private final long[] offsets;
+    private final long[] matches;
+
+    private LineIndex(int interval, long[] lines, long[] offsets, long[] matches) {
+        this.interval = interval;
+        this.lines = lines;
+        this.offsets = offsets;
+        this.matches = matches;
+    }
+
+    public static LineIndex read(Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            byte[] magic = in.readNBytes(LineIndexWriter.MAGIC.length);
+            if (!Arrays.equals(magic, LineIndexWriter.MAGIC)) {
+                throw new IOException("Not a textminator index (version 1): " + file);
+            }
+            int interval = (int) IoUtil.readVarint(in, FILE_TYPE);
+            long offset = IoUtil.readVarint(in, FILE_TYPE);
+
+            long[] lines = new long[16];
+            long[] offsets = new long[16];
+            long[] matches = new long[16];
+            int size = 0;
+            long line = 1;
+            long blockLines;
+            while ((blockLines = IoUtil.readVarintOrEnd(in, FILE_TYPE)) >= 0) {
+                if (size + 2 > lines.length) {
+                    lines = Arrays.copyOf(lines, lines.length * 2);
+                    offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                    matches = Arrays.copyOf(matches, matches.length * 2);
+                }
+                lines[size] = line;
+                offsets[size] = offset;
+                offset += IoUtil.readVarint(in, FILE_TYPE);
+                matches[size] = IoUtil.readVarint(in, FILE_TYPE);
+                line += blockLines;
+                size++;
+            }
+            lines[size] = line;
+            offsets[size] = offset;
+
+            return new LineIndex(interval, Arrays.copyOf(lines, size + 1), Arrays.copyOf(offsets, size + 1),
+                                 Arrays.copyOf(matches, size));
+        }
+    }
+
+    /**
+     * @return records per block
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    public int getBlocks() {
+        return matches.length;
+    }
+
+    /**
+     * @return the number of the first line of the block
+     */
+    public long getFirstLine(int block) {
+        return lines[block];
+    }
+
+    /**
+     * @return the byte offset of the block; for {@code getBlocks()} the size of the output
+     */
+    public long getOffset(int block) {
+        return offsets[block];
+    }
+
+    /**
+     * @return the number of replacements in the block
+     */
+    public long getMatches(int block) {
+        return matches[block];
+    }
+
+    /**
+     * @return the total number of lines
+     */
+    public long getLines() {
+        return lines[lines.length - 1] - 1;
+    }
+
+    /**
+     * @return the block that contains the line, or -1 if it is out of range
+     */
+    public int findBlock(long line) {
+        if (line < 1 || line > getLines()) {
+            return -1;
+        }
+        int index = Arrays.binarySearch(lines, line);
+        return (index >= 0) ? index : -index - 2;
+    }
+}
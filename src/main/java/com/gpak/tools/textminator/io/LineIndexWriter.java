@@ -0,0 +1,124 @@
+package com.gpak.tools.textminator.io;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Collects a sidecar index of the sanitized output: for every block of
+ * {@code interval} records, the number of lines, bytes and matches. Readers
+ * add the deltas up to seek to a line or to skip blocks without redactions,
+ * see {@link LineIndex}.
+ *
+ * The byte offsets are taken from a {@link CountingOutputStream} below the
+ * output writer, which is flushed once per block. The entries stay in memory
+ * (24 bytes per block) and are written by {@link #finish()}.
+ *
+ * Format, all numbers unsigned LEB128 varints:
+ * <pre>
+ * header: "TXMI" version(byte = 1) interval start-offset
+ * block:  lines bytes matches      one per block, the last one may be shorter
+ * </pre>
+ */
+public final class LineIndexWriter {
+
+    public static final int DEFAULT_INTERVAL = 1024;
+
+    static final byte[] MAGIC = { 'T', 'X', 'M', 'I', 1 };
+
+    private final File file;
+    private final int interval;
+    private final Flushable writer;
+    private final CountingOutputStream out;
+    private final long startOffset;
+
+    private long[] blocks = new long[3 * 64];
+    private int size;
+    private long blockStart;
+    private int blockRecords;
+    private long blockLines;
+    private long blockMatches;
+
+    /**
+     * @param writer the output writer, flushed at the end of each block
+     * @param out    counts the bytes below the writer
+     */
+    public LineIndexWriter(File file, int interval, Flushable writer, CountingOutputStream out) throws IOException {
+        if (interval <= 0) {
+            throw new IllegalStateException("--index-interval must be positive");
+        }
+        this.file = file;
+        this.interval = interval;
+        this.writer = writer;
+        this.out = out;
+
+        // A byte order mark is written before the first line
+        writer.flush();
+        this.startOffset = out.getCount();
+        this.blockStart = startOffset;
+    }
+
+    /**
+     * Adds a record that was just written to the output.
+     *
+     * @param lines   lines in the record
+     * @param matches replacements made in the record
+     */
+    public void add(long lines, long matches) throws IOException {
+        blockLines += lines;
+        blockMatches += matches;
+        if (++blockRecords == interval) {
+            endBlock();
+        }
+    }
+
+    /**
+     * Ends the last block and writes the index file, through a temporary
+     * file so that it only appears complete.
+     */
+    public void finish() throws IOException {
+        if (blockRecords > 0) {
+            endBlock();
+        }
+
+        File tempFile = IoUtil.tempFileFor(file);
+        try (OutputStream index = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+            index.write(MAGIC);
+            IoUtil.writeVarint(index, interval);
+            IoUtil.writeVarint(index, startOffset);
+            for (int i = 0; i < size; i++) {
+                IoUtil.writeVarint(index, blocks[i]);
+            }
+        }
+
+        IoUtil.moveAtomically(tempFile, file, true, "index");
+    }
+
+    /**
+     * @return the number of blocks so far
+     */
+    public int getBlocks() {
+        return size / 3;
+    }
+
+    private void endBlock() throws IOException {
+        writer.flush();
+        long end = out.getCount();
+
+        if (size + 3 > blocks.length) {
+            blocks = Arrays.copyOf(blocks, blocks.length * 2);
+        }
+        blocks[size++] = blockLines;
+        blocks[size++] = end - blockStart;
+        blocks[size++] = blockMatches;
+
+        blockStart = end;
+        blockRecords = 0;
+        blockLines = 0;
+        blockMatches = 0;
+    }
+}
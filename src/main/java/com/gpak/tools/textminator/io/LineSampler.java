@@ -0,0 +1,162 @@
+package com.gpak.tools.textminator.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+
+/**
+ * Reads single lines of a file by byte offset, without reading what comes
+ * before them.
+ *
+ * {@link #lineAt(long)} returns the line that contains the offset. Drawing
+ * offsets uniformly therefore picks each line with a probability proportional
+ * to its length in bytes ({@link #getLineBytes()}, terminator included), which
+ * estimators have to correct for.
+ */
+public class LineSampler implements Closeable {
+
+    private static final int CHUNK = 8192;
+
+    private final RandomAccessFile file;
+    private final long length;
+    private final int maxLineLength;
+    private final Charset charset;
+    private final int bomBytes;
+    private final byte[] chunk = new byte[CHUNK];
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+    private long lineStart;
+    private long lineBytes;
+
+    public LineSampler(File file, int maxLineLength) throws IOException {
+        this(file, maxLineLength, TextEncoding.UTF_8);
+    }
+
+    /**
+     * @param encoding an ASCII-compatible encoding, see {@link TextEncoding#isAsciiCompatible()}
+     */
+    public LineSampler(File file, int maxLineLength, TextEncoding encoding) throws IOException {
+        this.file = new RandomAccessFile(file, "r");
+        this.length = this.file.length();
+        this.maxLineLength = maxLineLength;
+        this.charset = encoding.getCharset();
+        this.bomBytes = encoding.hasBom() ? 3 : 0;
+    }
+
+    public long length() {
+        return length;
+    }
+
+    /**
+     * @return the line containing the byte offset (without terminator), or null
+     *         if it is longer than the maximum line length
+     */
+    public String lineAt(long offset) throws IOException {
+        lineStart = findLineStart(offset);
+        line.reset();
+
+        long pos = lineStart;
+        boolean terminated = false;
+        while (!terminated && pos < length) {
+            file.seek(pos);
+            int n = file.read(chunk, 0, (int) Math.min(CHUNK, length - pos));
+            if (n <= 0) {
+                break;
+            }
+
+            int end = 0;
+            while (end < n && chunk[end] != '\n') {
+                end++;
+            }
+            terminated = end < n;
+            line.write(chunk, 0, end);
+            pos += terminated ? end + 1 : n;
+
+            if (line.size() > maxLineLength) {
+                skipToLineEnd(pos, terminated);
+                return null;
+            }
+        }
+        lineBytes = pos - lineStart;
+
+        int size = line.size();
+        byte[] bytes = line.toByteArray();
+        if (size > 0 && bytes[size - 1] == '\r') {
+            size--;
+        }
+        int from = (lineStart == 0) ? Math.min(bomBytes, size) : 0;
+        return new String(bytes, from, size - from, charset);
+    }
+
+    /**
+     * Average line length in bytes, measured on the start of the file.
+     */
+    public double averageLineBytes() throws IOException {
+        byte[] head = new byte[(int) Math.min(length, 1 << 16)];
+        file.seek(0);
+        file.readFully(head);
+
+        int lines = 0;
+        int lastEnd = 0;
+        for (int i = 0; i < head.length; i++) {
+            if (head[i] == '\n') {
+                lines++;
+                lastEnd = i + 1;
+            }
+        }
+        return (lines == 0) ? Math.max(1, length) : (double) lastEnd / lines;
+    }
+
+    /**
+     * @return the size of the last line in bytes, including its terminator
+     */
+    public long getLineBytes() {
+        return lineBytes;
+    }
+
+    /**
+     * @return true if the last line is the first line of the file
+     */
+    public boolean isFirstLine() {
+        return lineStart == 0;
+    }
+
+    private void skipToLineEnd(long pos, boolean terminated) throws IOException {
+        while (!terminated && pos < length) {
+            file.seek(pos);
+            int n = file.read(chunk, 0, (int) Math.min(CHUNK, length - pos));
+            int end = 0;
+            while (end < n && chunk[end] != '\n') {
+                end++;
+            }
+            terminated = end < n;
+            pos += terminated ? end + 1 : n;
+        }
+        lineBytes = pos - lineStart;
+    }
+
+    private long findLineStart(long offset) throws IOException {
+        long end = offset;
+        while (end > 0) {
+            long start = Math.max(0, end - CHUNK);
+            file.seek(start);
+            file.readFully(chunk, 0, (int) (end - start));
+
+            for (int i = (int) (end - start) - 1; i >= 0; i--) {
+                if (chunk[i] == '\n') {
+                    return start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,285 @@
+package com.gpak.tools.textminator.io;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.gpak.tools.textminator.model.RecordMode;
+import com.gpak.tools.textminator.util.Console;
+
+/**
+ * Splits input into records that may span multiple lines.
+ * 
+ * Lines inside a record are joined with the platform line separator, matching
+ * what the line-by-line mode writes. The text that followed a record in the
+ * input (line separator, blank line or NUL) is available from
+ * {@link #getTerminator()} so it can be written back unchanged.
+ * 
+ * Memory is bounded by the maximum record size: a record that would grow beyond
+ * it is emitted early, at a line boundary when possible. A single line longer
+ * than the limit is cut at the limit (as in NUL mode), and the rest of it
+ * follows in the next record with an empty terminator in between.
+ */
+public class RecordReader implements Closeable {
+
+    public static final int DEFAULT_MAX_RECORD_SIZE = 1 << 20;
+
+    private static final String LS = System.lineSeparator();
+
+    private final BufferedReader reader;
+    private final RecordMode mode;
+    private final Matcher startMatcher;
+    private final int maxRecordSize;
+
+    private final StringBuilder record = new StringBuilder();
+    private final StringBuilder lineBuffer = new StringBuilder();
+    private final char[] chunk = new char[8192];
+    private int chunkPos;
+    private int chunkLen;
+
+    private String pendingLine;
+    private boolean pendingCut;
+    private boolean lineCut;
+    private String terminator = LS;
+    private int partsInRecord;
+    private long linesInRecord;
+    private long truncatedRecords;
+
+    public RecordReader(BufferedReader reader, RecordMode mode, Pattern recordStart, int maxRecordSize) {
+        if (mode == RecordMode.START && recordStart == null) {
+            throw new IllegalArgumentException("Record start pattern is required!");
+        }
+        if (maxRecordSize <= 0) {
+            throw new IllegalArgumentException("Max record size must be positive!");
+        }
+
+        this.reader = reader;
+        this.mode = mode;
+        this.startMatcher = recordStart != null ? recordStart.matcher("") : null;
+        this.maxRecordSize = maxRecordSize;
+    }
+
+    /**
+     * @return the next record without its terminator, or null at end of input
+     */
+    public String readRecord() throws IOException {
+        switch (mode) {
+            case BLANK:
+                return readBlankSeparated();
+            case START:
+                return readStartDelimited();
+            case NUL:
+                return readNulSeparated();
+            case LINE:
+            default:
+                String line = reader.readLine();
+                linesInRecord = (line == null) ? 0 : 1;
+                return line;
+        }
+    }
+
+    private String readBlankSeparated() throws IOException {
+        record.setLength(0);
+        partsInRecord = 0;
+        linesInRecord = 0;
+        terminator = LS;
+
+        String line;
+        while ((line = nextLine()) != null) {
+            if (!lineCut && line.isBlank()) {
+                linesInRecord++;
+                // The blank line itself is written back as part of the terminator
+                terminator = (record.length() == 0) ? line + LS : LS + line + LS;
+                return record.toString();
+            }
+
+            if (!append(line)) {
+                break;
+            }
+        }
+
+        return (partsInRecord == 0) ? null : record.toString();
+    }
+
+    private String readStartDelimited() throws IOException {
+        record.setLength(0);
+        partsInRecord = 0;
+        linesInRecord = 0;
+
+        String line;
+        while ((line = nextLine()) != null) {
+            if (partsInRecord > 0 && startMatcher.reset(line).find()) {
+                pendingLine = line;
+                pendingCut = lineCut;
+                break;
+            }
+
+            if (!append(line)) {
+                break;
+            }
+        }
+
+        return (partsInRecord == 0) ? null : record.toString();
+    }
+
+    private String readNulSeparated() throws IOException {
+        record.setLength(0);
+        linesInRecord = 0;
+
+        while (true) {
+            if (chunkPos == chunkLen && !fill()) {
+                terminator = "";
+                return (record.length() == 0) ? null : countLines(record.toString());
+            }
+
+            while (chunkPos < chunkLen) {
+                char c = chunk[chunkPos++];
+                if (c == '\0') {
+                    terminator = "\0";
+                    return countLines(record.toString());
+                }
+
+                record.append(c);
+                if (record.length() >= maxRecordSize) {
+                    truncated();
+                    terminator = "";
+                    return countLines(record.toString());
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends a line to the current record unless that would exceed the limit,
+     * in which case the line is kept for the next record. A line that was cut
+     * at the limit ends the record, since its rest follows without a separator.
+     * 
+     * @return false if the record is full
+     */
+    private boolean append(String line) {
+        int needed = record.length() + (partsInRecord > 0 ? LS.length() : 0) + line.length();
+        if (partsInRecord > 0 && needed > maxRecordSize) {
+            truncated();
+            pendingLine = line;
+            pendingCut = lineCut;
+            terminator = LS;
+            return false;
+        }
+
+        if (partsInRecord > 0) {
+            record.append(LS);
+        }
+        record.append(line);
+        partsInRecord++;
+        if (lineCut) {
+            truncated();
+            terminator = "";
+            return false;
+        }
+        // A cut line is counted with its last part
+        linesInRecord++;
+        terminator = LS;
+        return true;
+    }
+
+    /**
+     * Reads a line like {@link BufferedReader#readLine()}, but never more than
+     * the maximum record size: a longer line is returned in parts, with
+     * {@link #lineCut} set on all but the last one.
+     */
+    private String nextLine() throws IOException {
+        if (pendingLine != null) {
+            String line = pendingLine;
+            lineCut = pendingCut;
+            pendingLine = null;
+            return line;
+        }
+
+        lineBuffer.setLength(0);
+        lineCut = false;
+        while (true) {
+            if (chunkPos == chunkLen && !fill()) {
+                return (lineBuffer.length() == 0) ? null : lineBuffer.toString();
+            }
+
+            char c = chunk[chunkPos];
+            if (c == '\n' || c == '\r') {
+                chunkPos++;
+                if (c == '\r' && (chunkPos < chunkLen || fill()) && chunk[chunkPos] == '\n') {
+                    chunkPos++;
+                }
+                return lineBuffer.toString();
+            }
+            if (lineBuffer.length() == maxRecordSize) {
+                lineCut = true;
+                return lineBuffer.toString();
+            }
+
+            int start = chunkPos;
+            int end = Math.min(chunkLen, chunkPos + maxRecordSize - lineBuffer.length());
+            while (chunkPos < end && chunk[chunkPos] != '\n' && chunk[chunkPos] != '\r') {
+                chunkPos++;
+            }
+            lineBuffer.append(chunk, start, chunkPos - start);
+        }
+    }
+
+    /**
+     * @return false at end of input
+     */
+    private boolean fill() throws IOException {
+        chunkLen = reader.read(chunk, 0, chunk.length);
+        chunkPos = 0;
+        if (chunkLen < 0) {
+            chunkLen = 0;
+            return false;
+        }
+        return true;
+    }
+
+    private String countLines(String text) {
+        linesInRecord = 1;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '\n') {
+                linesInRecord++;
+            }
+        }
+        return text;
+    }
+
+    private void truncated() {
+        if (truncatedRecords++ == 0) {
+            Console.warn("Record exceeded " + maxRecordSize + " chars and was split."
+                + " Matches across the split are not detected");
+        }
+    }
+
+    /**
+     * @return the separator that followed the last record in the input
+     */
+    public String getTerminator() {
+        return terminator;
+    }
+
+    /**
+     * @return number of input lines in the last record
+     */
+    public long getLinesInRecord() {
+        return linesInRecord;
+    }
+
+    public long getTruncatedRecords() {
+        return truncatedRecords;
+    }
+
+    public RecordMode getMode() {
+        return mode;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
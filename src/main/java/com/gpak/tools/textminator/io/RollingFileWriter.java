@@ -0,0 +1,142 @@
+package com.gpak.tools.textminator.io;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Writes lines to a file that is rolled over by size and age.
+ *
+ * The current file is written as {@code <file>.tmp}. When it is rolled (or
+ * the writer is closed) it is moved atomically to
+ * {@code <name>-<yyyyMMdd-HHmmss>.<ext>}, stamped with the time it was
+ * opened, so readers only ever see complete files. Existing files are never
+ * replaced: a counter is appended instead. No file is created while there is
+ * nothing to write.
+ *
+ * Thread-safe.
+ */
+public final class RollingFileWriter implements Closeable {
+
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")
+                                                                     .withZone(ZoneId.systemDefault());
+
+    private final File file;
+    private final File tempFile;
+    private final long maxBytes;
+    private final long maxMillis;
+
+    private CountingOutputStream counter;
+    private Writer writer;
+    private long openedMillis;
+    private int rolledFiles;
+    private boolean closed;
+
+    /**
+     * @param file      base name of the rolled files, e.g. {@code /var/log/clean/app.log}
+     * @param maxBytes  size after which the file is rolled, 0 for no limit
+     * @param maxMillis age after which the file is rolled, 0 for no limit
+     */
+    public RollingFileWriter(File file, long maxBytes, long maxMillis) throws IOException {
+        this.file = file.getAbsoluteFile();
+        this.tempFile = IoUtil.tempFileFor(this.file);
+        this.maxBytes = maxBytes;
+        this.maxMillis = maxMillis;
+
+        if (tempFile.exists()) {
+            throw new FileAlreadyExistsException(tempFile.getPath(), null,
+                "left over from a previous run, move or delete it first");
+        }
+    }
+
+    /**
+     * Appends the lines, each followed by a line feed, and flushes them.
+     * Rolls over first if the current file is due.
+     */
+    public synchronized void write(List<String> lines) throws IOException {
+        if (closed) {
+            throw new IOException("Writer closed");
+        }
+        if (lines.isEmpty()) {
+            return;
+        }
+
+        rollIfDue(System.currentTimeMillis());
+        if (writer == null) {
+            open();
+        }
+        for (String line : lines) {
+            writer.write(line);
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    /**
+     * Rolls the current file if it is too large or too old. Called on every
+     * write, and should be called regularly while idle so that old files are
+     * completed even when nothing arrives.
+     */
+    public synchronized void rollIfDue(long nowMillis) throws IOException {
+        if (writer == null) {
+            return;
+        }
+        if ((maxBytes > 0 && counter.getCount() >= maxBytes) || (maxMillis > 0 && nowMillis - openedMillis >= maxMillis)) {
+            roll();
+        }
+    }
+
+    /**
+     * @return number of files completed so far
+     */
+    public synchronized int getRolledFiles() {
+        return rolledFiles;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (writer != null) {
+            roll();
+        }
+    }
+
+    private void open() throws IOException {
+        counter = new CountingOutputStream(new FileOutputStream(tempFile));
+        writer = new BufferedWriter(new OutputStreamWriter(counter, StandardCharsets.UTF_8), 1 << 16);
+        openedMillis = System.currentTimeMillis();
+    }
+
+    private void roll() throws IOException {
+        writer.close();
+        writer = null;
+
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        String base = (dot > 0) ? name.substring(0, dot) : name;
+        String extension = (dot > 0) ? name.substring(dot) : "";
+        String stamp = STAMP.format(Instant.ofEpochMilli(openedMillis));
+
+        // An atomic move replaces an existing target on most systems, so pick a free name first
+        File target = new File(file.getParentFile(), base + "-" + stamp + extension);
+        for (int attempt = 1; target.exists(); attempt++) {
+            target = new File(file.getParentFile(), base + "-" + stamp + "-" + attempt + extension);
+        }
+
+        IoUtil.moveAtomically(tempFile, target, false, "output");
+        rolledFiles++;
+    }
+}
@@ -0,0 +1,130 @@
+package com.gpak.tools.textminator.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import com.gpak.tools.textminator.core.Sanitizer;
+
+/**
+ * Input stream that decodes, sanitizes and re-encodes the underlying bytes.
+ * 
+ * Buffers are fixed in size apart from the current line, which is bounded by
+ * the maximum line length of the internal {@link SanitizingReader}.
+ */
+public class SanitizingInputStream extends FilterInputStream {
+
+    private final SanitizingReader reader;
+    private final CharsetEncoder encoder;
+    private final CharBuffer chars = CharBuffer.allocate(8192);
+    private final ByteBuffer bytes = ByteBuffer.allocate(16384);
+    private boolean eof;
+    private boolean flushed;
+
+    public SanitizingInputStream(InputStream in, Sanitizer sanitizer) {
+        this(in, sanitizer, StandardCharsets.UTF_8, SanitizingReader.DEFAULT_MAX_LINE_LENGTH);
+    }
+
+    public SanitizingInputStream(InputStream in, Sanitizer sanitizer, Charset charset, int maxLineLength) {
+        super(in);
+        this.reader = new SanitizingReader(new InputStreamReader(in, charset), sanitizer, maxLineLength);
+        this.encoder = charset.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.chars.flip();
+        this.bytes.flip();
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return bytes.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+
+        int count = Math.min(len, bytes.remaining());
+        bytes.get(b, off, count);
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && fill()) {
+            int count = (int) Math.min(n - skipped, bytes.remaining());
+            bytes.position(bytes.position() + count);
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return bytes.remaining();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("reset() not supported");
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private boolean fill() throws IOException {
+        while (!bytes.hasRemaining()) {
+            if (flushed) {
+                return false;
+            }
+
+            bytes.clear();
+
+            if (!eof) {
+                chars.compact();
+                int n = reader.read(chars.array(), chars.position(), chars.remaining());
+                if (n < 0) {
+                    eof = true;
+                } else {
+                    chars.position(chars.position() + n);
+                }
+                chars.flip();
+            }
+
+            CoderResult result = encoder.encode(chars, bytes, eof);
+            if (eof && !chars.hasRemaining() && result.isUnderflow()) {
+                flushed = encoder.flush(bytes).isUnderflow();
+            }
+            bytes.flip();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,98 @@
+package com.gpak.tools.textminator.io;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+import com.gpak.tools.textminator.core.Sanitizer;
+
+/**
+ * Output stream that decodes written bytes, sanitizes complete lines and
+ * re-encodes them to the underlying stream.
+ * 
+ * Incomplete multi-byte sequences are kept between writes. Like
+ * {@link SanitizingWriter}, partial lines are only written on close.
+ */
+public class SanitizingOutputStream extends FilterOutputStream {
+
+    private final SanitizingWriter writer;
+    private final CharsetDecoder decoder;
+    private final ByteBuffer bytes = ByteBuffer.allocate(8192);
+    private final CharBuffer chars = CharBuffer.allocate(8192);
+    private boolean closed;
+
+    public SanitizingOutputStream(OutputStream out, Sanitizer sanitizer) {
+        this(out, sanitizer, StandardCharsets.UTF_8, SanitizingReader.DEFAULT_MAX_LINE_LENGTH);
+    }
+
+    public SanitizingOutputStream(OutputStream out, Sanitizer sanitizer, Charset charset, int maxLineLength) {
+        super(out);
+        this.writer = new SanitizingWriter(new OutputStreamWriter(out, charset), sanitizer, maxLineLength);
+        this.decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] { (byte) b }, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+
+        while (len > 0) {
+            int count = Math.min(len, bytes.remaining());
+            bytes.put(b, off, count);
+            off += count;
+            len -= count;
+            decode(false);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            decode(true);
+            decoder.flush(chars);
+            drain();
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void decode(boolean endOfInput) throws IOException {
+        bytes.flip();
+        while (decoder.decode(bytes, chars, endOfInput).isOverflow()) {
+            drain();
+        }
+        drain();
+        bytes.compact();
+    }
+
+    private void drain() throws IOException {
+        chars.flip();
+        writer.write(chars.array(), chars.position(), chars.remaining());
+        chars.clear();
+    }
+}
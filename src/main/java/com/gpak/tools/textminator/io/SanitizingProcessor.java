@@ -0,0 +1,395 @@
+package com.gpak.tools.textminator.io;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.gpak.tools.textminator.core.RuleSet;
+import com.gpak.tools.textminator.core.Sanitizer;
+import com.gpak.tools.textminator.model.Rule;
+
+/**
+ * {@link Flow.Processor} that sanitizes lines (without their terminators) on
+ * an executor and emits them downstream in the order they were received.
+ *
+ * Lines are collected into batches. A batch is handed to the executor when it
+ * is full, or right away when no other batch is running, so a slow source
+ * sees no added latency while a fast one is sanitized in parallel. Each
+ * running batch borrows a {@link Sanitizer} from a pool.
+ *
+ * Memory is bounded: at most {@code batchSize * maxBatches} lines are
+ * requested from upstream that were not emitted downstream yet. No thread
+ * ever waits: when downstream stops requesting, upstream is not requested
+ * either.
+ *
+ * The per-rule statistics of all sanitizers are merged when the processor
+ * completes, see {@link #getStatistics()}. Only one subscriber is supported.
+ */
+public final class SanitizingProcessor implements Flow.Processor<String, String> {
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    public static final int DEFAULT_MAX_BATCHES = 16;
+
+    private final RuleSet ruleSet;
+    private final Executor executor;
+    private final int batchSize;
+    private final long capacity;
+
+    private final ConcurrentLinkedQueue<Sanitizer> idleSanitizers = new ConcurrentLinkedQueue<>();
+    private final List<Sanitizer> sanitizers = new CopyOnWriteArrayList<>();
+    private final CompletableFuture<Map<String, Long>> statistics = new CompletableFuture<>();
+
+    // Serializes drain(): only the thread that raised it from 0 runs the loop
+    private final AtomicInteger wip = new AtomicInteger();
+
+    // Guarded by this
+    private Flow.Subscription upstream;
+    private Flow.Subscriber<? super String> downstream;
+    private boolean downstreamReady;
+    private List<String> pending;
+    private final ArrayDeque<Batch> batches = new ArrayDeque<>();
+    private int running;
+    private long buffered;
+    private long requested;
+    private long demand;
+    private boolean upstreamDone;
+    private boolean cancelled;
+    private Throwable error;
+    private boolean terminated;
+
+    /**
+     * Runs the batches on the common fork-join pool.
+     */
+    public SanitizingProcessor(RuleSet ruleSet) {
+        this(ruleSet, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param executor runs the batches, e.g. a virtual thread per task executor
+     */
+    public SanitizingProcessor(RuleSet ruleSet, Executor executor) {
+        this(ruleSet, executor, DEFAULT_BATCH_SIZE, DEFAULT_MAX_BATCHES);
+    }
+
+    /**
+     * @param batchSize  lines per batch
+     * @param maxBatches batches of lines that may be buffered
+     */
+    public SanitizingProcessor(RuleSet ruleSet, Executor executor, int batchSize, int maxBatches) {
+        if (ruleSet == null || executor == null) {
+            throw new IllegalArgumentException("Rule set and executor are required!");
+        }
+        if (batchSize <= 0 || maxBatches <= 0) {
+            throw new IllegalArgumentException("Batch size and max batches must be positive!");
+        }
+        this.ruleSet = ruleSet;
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.capacity = (long) batchSize * maxBatches;
+    }
+
+    /**
+     * Per-rule match counts in execution order, completed just before
+     * downstream is completed. Completes exceptionally on an error and is
+     * cancelled when downstream cancels.
+     */
+    public CompletableFuture<Map<String, Long>> getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        Objects.requireNonNull(subscription);
+        synchronized (this) {
+            if (upstream != null || terminated) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+        }
+        drain();
+    }
+
+    @Override
+    public void onNext(String line) {
+        Objects.requireNonNull(line);
+        synchronized (this) {
+            if (terminated) {
+                return;
+            }
+            if (pending == null) {
+                pending = new ArrayList<>(batchSize);
+            }
+            pending.add(line);
+            requested--;
+            buffered++;
+        }
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        Objects.requireNonNull(throwable);
+        synchronized (this) {
+            upstreamDone = true;
+            if (error == null) {
+                error = throwable;
+            }
+        }
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (this) {
+            upstreamDone = true;
+        }
+        drain();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super String> subscriber) {
+        Objects.requireNonNull(subscriber);
+        boolean accepted;
+        synchronized (this) {
+            accepted = (downstream == null);
+            if (accepted) {
+                downstream = subscriber;
+            }
+        }
+
+        if (!accepted) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) { }
+
+                @Override
+                public void cancel() { }
+            });
+            subscriber.onError(new IllegalStateException("Only one subscriber is supported"));
+            return;
+        }
+
+        // No signal may reach the subscriber before onSubscribe returns, except
+        // for the ones it requests from within onSubscribe
+        subscriber.onSubscribe(new Downstream());
+        synchronized (this) {
+            downstreamReady = true;
+        }
+        drain();
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+
+        int missed = 1;
+        do {
+            boolean progress = true;
+            while (progress) {
+                Flow.Subscriber<? super String> subscriber;
+                Flow.Subscription subscription;
+                List<String> chunk = null;
+                Batch toRun = null;
+                long toRequest = 0;
+                boolean terminal = false;
+                boolean cancelUpstream = false;
+                boolean complete = false;
+                Throwable failure = null;
+
+                synchronized (this) {
+                    if (terminated) {
+                        return;
+                    }
+                    subscriber = downstreamReady ? downstream : null;
+                    subscription = upstream;
+
+                    if (cancelled || (error != null && subscriber != null)) {
+                        terminated = true;
+                        terminal = true;
+                        failure = cancelled ? null : error;
+                        cancelUpstream = !upstreamDone;
+                        pending = null;
+                        batches.clear();
+                    } else if (error == null) {
+                        Batch head = batches.peek();
+                        if (subscriber != null && head != null && head.output != null && demand > 0) {
+                            int n = (int) Math.min(demand, head.output.length - head.emitted);
+                            chunk = Arrays.asList(head.output).subList(head.emitted, head.emitted + n);
+                            head.emitted += n;
+                            demand -= n;
+                            buffered -= n;
+                            if (head.emitted == head.output.length) {
+                                batches.poll();
+                            }
+                        }
+
+                        if (pending != null && (pending.size() >= batchSize || running == 0 || upstreamDone)) {
+                            toRun = new Batch(pending);
+                            pending = null;
+                            batches.add(toRun);
+                            running++;
+                        }
+
+                        // Request in batch sized steps, not line by line
+                        long free = capacity - buffered - requested;
+                        if (subscriber != null && subscription != null && !upstreamDone && free >= batchSize) {
+                            toRequest = free;
+                            requested += free;
+                        }
+
+                        if (subscriber != null && upstreamDone && pending == null && batches.isEmpty()) {
+                            terminated = true;
+                            complete = true;
+                        }
+                    }
+                }
+
+                if (cancelUpstream && subscription != null) {
+                    subscription.cancel();
+                }
+                if (toRun != null) {
+                    submit(toRun);
+                }
+                if (toRequest > 0) {
+                    subscription.request(toRequest);
+                }
+                if (chunk != null) {
+                    for (String line : chunk) {
+                        subscriber.onNext(line);
+                    }
+                }
+
+                if (terminal) {
+                    if (failure != null) {
+                        statistics.completeExceptionally(failure);
+                        subscriber.onError(failure);
+                    } else {
+                        statistics.cancel(false);
+                    }
+                    return;
+                }
+                if (complete) {
+                    statistics.complete(mergeStatistics());
+                    subscriber.onComplete();
+                    return;
+                }
+
+                progress = (chunk != null || toRun != null || toRequest > 0);
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void submit(Batch batch) {
+        try {
+            executor.execute(() -> run(batch));
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                running--;
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+    }
+
+    private void run(Batch batch) {
+        Sanitizer sanitizer = idleSanitizers.poll();
+        if (sanitizer == null) {
+            sanitizer = ruleSet.newSanitizer(true);
+            sanitizers.add(sanitizer);
+        }
+
+        try {
+            String[] output = new String[batch.lines.size()];
+            for (int i = 0; i < output.length; i++) {
+                output[i] = sanitizer.sanitizeLine(batch.lines.get(i)).getLine();
+            }
+            synchronized (this) {
+                batch.output = output;
+                running--;
+            }
+        } catch (RuntimeException e) {
+            synchronized (this) {
+                running--;
+                if (error == null) {
+                    error = e;
+                }
+            }
+        } finally {
+            idleSanitizers.offer(sanitizer);
+        }
+        drain();
+    }
+
+    /**
+     * Called once all batches are done; also emits the last rule costs of
+     * every sanitizer.
+     */
+    private Map<String, Long> mergeStatistics() {
+        Map<String, Long> merged = new LinkedHashMap<>();
+        for (Rule rule : ruleSet.getRules()) {
+            merged.putIfAbsent(rule.getName(), 0L);
+        }
+        for (Sanitizer sanitizer : sanitizers) {
+            sanitizer.flushEvents();
+            sanitizer.getStatistics().forEach((name, count) -> merged.merge(name, count, Long::sum));
+        }
+        return merged;
+    }
+
+    /**
+     * Lines received together, sanitized by one task.
+     */
+    private static final class Batch {
+        final List<String> lines;
+        // Guarded by the processor
+        String[] output;
+        int emitted;
+
+        Batch(List<String> lines) {
+            this.lines = lines;
+        }
+    }
+
+    private final class Downstream implements Flow.Subscription {
+
+        @Override
+        public void request(long n) {
+            synchronized (SanitizingProcessor.this) {
+                if (terminated) {
+                    return;
+                }
+                if (n <= 0) {
+                    if (error == null) {
+                        error = new IllegalArgumentException("Requested " + n + " lines, must be positive (rule 3.9)");
+                    }
+                } else {
+                    demand = (demand + n < 0) ? Long.MAX_VALUE : demand + n;
+                }
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (SanitizingProcessor.this) {
+                cancelled = true;
+            }
+            drain();
+        }
+    }
+}
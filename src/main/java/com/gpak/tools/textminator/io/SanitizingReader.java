@@ -0,0 +1,125 @@
+package com.gpak.tools.textminator.io;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+
+import com.gpak.tools.textminator.core.Sanitizer;
+
+/**
+ * Reader that sanitizes the underlying character stream line by line.
+ * 
+ * Line terminators are preserved. Memory use is bounded by the maximum line
+ * length; longer lines are sanitized in chunks.
+ */
+public class SanitizingReader extends FilterReader {
+
+    public static final int DEFAULT_MAX_LINE_LENGTH = 1 << 20;
+
+    private final LineBuffer lineBuffer;
+    private final char[] readBuffer = new char[8192];
+    private int readPos;
+    private int readLen;
+    private boolean eof;
+
+    private final StringBuilder pending = new StringBuilder();
+    private int pendingPos;
+
+    public SanitizingReader(Reader in, Sanitizer sanitizer) {
+        this(in, sanitizer, DEFAULT_MAX_LINE_LENGTH);
+    }
+
+    public SanitizingReader(Reader in, Sanitizer sanitizer, int maxLineLength) {
+        super(in);
+        this.lineBuffer = new LineBuffer(sanitizer, maxLineLength);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return pending.charAt(pendingPos++);
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+
+        int count = Math.min(len, pending.length() - pendingPos);
+        pending.getChars(pendingPos, pendingPos + count, cbuf, off);
+        pendingPos += count;
+        return count;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && fill()) {
+            int count = (int) Math.min(n - skipped, pending.length() - pendingPos);
+            pendingPos += count;
+            skipped += count;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        return pendingPos < pending.length() || in.ready();
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readAheadLimit) throws IOException {
+        throw new IOException("mark() not supported");
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("reset() not supported");
+    }
+
+    /**
+     * Makes sure that sanitized output is pending.
+     * 
+     * @return false when the underlying reader is exhausted
+     */
+    private boolean fill() throws IOException {
+        if (pendingPos < pending.length()) {
+            return true;
+        }
+
+        pending.setLength(0);
+        pendingPos = 0;
+
+        while (pending.length() == 0) {
+            if (readPos == readLen) {
+                if (eof) {
+                    return false;
+                }
+
+                readLen = in.read(readBuffer, 0, readBuffer.length);
+                readPos = 0;
+                if (readLen < 0) {
+                    readLen = 0;
+                    eof = true;
+                    lineBuffer.emit(pending);
+                    continue;
+                }
+            }
+
+            readPos += lineBuffer.append(readBuffer, readPos, readLen - readPos, pending);
+        }
+
+        return true;
+    }
+}
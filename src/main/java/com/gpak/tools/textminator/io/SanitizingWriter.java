@@ -0,0 +1,71 @@
+package com.gpak.tools.textminator.io;
+
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import com.gpak.tools.textminator.core.Sanitizer;
+
+/**
+ * Writer that sanitizes complete lines before passing them downstream.
+ * 
+ * An incomplete last line is kept until a line feed is written or the writer is
+ * closed. {@link #flush()} does not force out partial lines, otherwise matches
+ * could be split.
+ */
+public class SanitizingWriter extends FilterWriter {
+
+    private final LineBuffer lineBuffer;
+    private boolean closed;
+
+    public SanitizingWriter(Writer out, Sanitizer sanitizer) {
+        this(out, sanitizer, SanitizingReader.DEFAULT_MAX_LINE_LENGTH);
+    }
+
+    public SanitizingWriter(Writer out, Sanitizer sanitizer, int maxLineLength) {
+        super(out);
+        this.lineBuffer = new LineBuffer(sanitizer, maxLineLength);
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        write(new char[] { (char) c }, 0, 1);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            int consumed = lineBuffer.append(cbuf, off, len, out);
+            off += consumed;
+            len -= consumed;
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        char[] chars = new char[len];
+        str.getChars(off, off + len, chars, 0);
+        write(chars, 0, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            lineBuffer.emit(out);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Writer closed");
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.gpak.tools.textminator.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * Decodes a single-byte charset with a lookup table: one array access per
+ * byte, no CharsetDecoder state.
+ */
+final class SingleByteReader extends Reader {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final InputStream in;
+    private final char[] table;
+    private final byte[] bytes = new byte[BUFFER_SIZE];
+
+    SingleByteReader(InputStream in, char[] table) {
+        this.in = in;
+        this.table = table;
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        int n = in.read(bytes, 0, Math.min(len, bytes.length));
+        if (n < 0) {
+            return -1;
+        }
+        for (int i = 0; i < n; i++) {
+            cbuf[off + i] = table[bytes[i] & 0xff];
+        }
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
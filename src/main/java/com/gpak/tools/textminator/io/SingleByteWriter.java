@@ -0,0 +1,94 @@
+package com.gpak.tools.textminator.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Encodes a single-byte charset with a lookup table. Chars the charset can't
+ * represent are written as '?', like OutputStreamWriter does.
+ */
+final class SingleByteWriter extends Writer {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final char UNMAPPABLE = '\uFFFD';
+
+    private final OutputStream out;
+    private final byte[] table;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final char[] chars = new char[BUFFER_SIZE];
+    private int count;
+
+    SingleByteWriter(OutputStream out, byte[] table) {
+        this.out = out;
+        this.table = table;
+    }
+
+    /**
+     * Inverts a byte -> char table into a char -> byte table covering the
+     * whole BMP (64 KB).
+     */
+    static byte[] encodeTable(char[] decodeTable) {
+        byte[] table = new byte[Character.MAX_VALUE + 1];
+        Arrays.fill(table, (byte) '?');
+
+        // Backwards, so the lowest byte wins if two decode to the same char
+        for (int b = decodeTable.length - 1; b >= 0; b--) {
+            if (decodeTable[b] != UNMAPPABLE) {
+                table[decodeTable[b]] = (byte) b;
+            }
+        }
+        return table;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        if (count == buffer.length) {
+            flushBuffer();
+        }
+        buffer[count++] = table[(char) c];
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        for (int end = off + len; off < end; ) {
+            if (count == buffer.length) {
+                flushBuffer();
+            }
+            int n = Math.min(end - off, buffer.length - count);
+            for (int i = 0; i < n; i++) {
+                buffer[count + i] = table[cbuf[off + i]];
+            }
+            count += n;
+            off += n;
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        for (int end = off + len; off < end; ) {
+            int n = Math.min(end - off, chars.length);
+            str.getChars(off, off + n, chars, 0);
+            write(chars, 0, n);
+            off += n;
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        out.write(buffer, 0, count);
+        count = 0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        out.close();
+    }
+}
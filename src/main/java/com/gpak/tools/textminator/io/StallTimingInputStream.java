@@ -0,0 +1,46 @@
+package com.gpak.tools.textminator.io;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.gpak.tools.textminator.jfr.IoStallEvent;
+
+/**
+ * Emits an {@link IoStallEvent} for every read from the underlying stream
+ * that takes longer than the event threshold. Meant to sit right on top of
+ * the file or stdin, below any buffering, so that each event is a real read.
+ */
+public final class StallTimingInputStream extends FilterInputStream {
+
+    public StallTimingInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        IoStallEvent event = new IoStallEvent();
+        event.begin();
+        int b = in.read();
+        commit(event, (b < 0) ? 0 : 1);
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        IoStallEvent event = new IoStallEvent();
+        event.begin();
+        int n = in.read(b, off, len);
+        commit(event, Math.max(n, 0));
+        return n;
+    }
+
+    private static void commit(IoStallEvent event, long bytes) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = IoStallEvent.READ;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.gpak.tools.textminator.io;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.gpak.tools.textminator.jfr.IoStallEvent;
+
+/**
+ * Emits an {@link IoStallEvent} for every write to, or flush of, the
+ * underlying stream that takes longer than the event threshold, e.g. when a
+ * slow consumer of stdout fills the pipe.
+ */
+public final class StallTimingOutputStream extends FilterOutputStream {
+
+    public StallTimingOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        IoStallEvent event = new IoStallEvent();
+        event.begin();
+        out.write(b);
+        commit(event, IoStallEvent.WRITE, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        IoStallEvent event = new IoStallEvent();
+        event.begin();
+        out.write(b, off, len);
+        commit(event, IoStallEvent.WRITE, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        IoStallEvent event = new IoStallEvent();
+        event.begin();
+        out.flush();
+        commit(event, IoStallEvent.FLUSH, 0);
+    }
+
+    private static void commit(IoStallEvent event, String operation, long bytes) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+}
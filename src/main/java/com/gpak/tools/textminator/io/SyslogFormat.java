@@ -0,0 +1,96 @@
+package com.gpak.tools.textminator.io;
+
+/**
+ * Splits syslog messages into the header, which is kept as is, and the part
+ * the rules run on.
+ *
+ * <ul>
+ * <li>RFC 5424: {@code <PRI>VERSION TIMESTAMP} is kept; host name, app name,
+ * process and message id, structured data and message are sanitized.</li>
+ * <li>RFC 3164: {@code <PRI>Mmm dd hh:mm:ss} is kept; host name, tag and
+ * message are sanitized.</li>
+ * </ul>
+ *
+ * Anything else is sanitized after the priority, or as a whole if there is
+ * none. Keeping the timestamp means that it is not mistaken for an IPv6
+ * address; the host name often is an address, so it goes through the rules.
+ */
+public final class SyslogFormat {
+
+    private SyslogFormat() { }
+
+    /**
+     * @return the index where the part to sanitize starts
+     */
+    public static int headerEnd(CharSequence message) {
+        int pri = priorityEnd(message);
+        if (pri == 0) {
+            return 0;
+        }
+
+        int length = message.length();
+        if (pri < length && isDigit(message.charAt(pri))) {
+            // RFC 5424: VERSION and TIMESTAMP, each followed by a space
+            int i = pri;
+            for (int field = 0; field < 2; field++) {
+                int space = indexOf(message, ' ', i);
+                if (space < 0) {
+                    return pri;
+                }
+                i = space + 1;
+            }
+            return i;
+        }
+
+        // RFC 3164: "Mmm dd hh:mm:ss "
+        int ts = pri;
+        if (ts + 16 <= length && message.charAt(ts + 3) == ' ' && message.charAt(ts + 6) == ' '
+                && message.charAt(ts + 9) == ':' && message.charAt(ts + 12) == ':' && message.charAt(ts + 15) == ' ') {
+            return ts + 16;
+        }
+        return pri;
+    }
+
+    /**
+     * Appends the text with control characters other than tab written as
+     * {@code #ooo} (octal, as rsyslog does), so each message stays on one
+     * line.
+     */
+    public static void appendEscaped(StringBuilder out, CharSequence text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < 0x20 && c != '\t') {
+                out.append('#').append((char) ('0' + (c >> 6))).append((char) ('0' + ((c >> 3) & 7))).append((char) ('0' + (c & 7)));
+            } else {
+                out.append(c);
+            }
+        }
+    }
+
+    /**
+     * @return the index after {@code <PRI>}, or 0 if the message has none
+     */
+    private static int priorityEnd(CharSequence message) {
+        if (message.length() < 3 || message.charAt(0) != '<') {
+            return 0;
+        }
+        int i = 1;
+        while (i < message.length() && i <= 4 && isDigit(message.charAt(i))) {
+            i++;
+        }
+        return (i > 1 && i < message.length() && message.charAt(i) == '>') ? i + 1 : 0;
+    }
+
+    private static int indexOf(CharSequence text, char c, int from) {
+        for (int i = from; i < text.length(); i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
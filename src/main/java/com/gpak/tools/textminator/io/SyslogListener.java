@@ -0,0 +1,488 @@
+package com.gpak.tools.textminator.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.gpak.tools.textminator.core.RuleSet;
+import com.gpak.tools.textminator.core.Sanitizer;
+import com.gpak.tools.textminator.model.LineResult;
+import com.gpak.tools.textminator.model.OverflowPolicy;
+import com.gpak.tools.textminator.model.Rule;
+import com.gpak.tools.textminator.util.Console;
+
+/**
+ * Receives syslog messages over UDP and TCP, sanitizes them on a pool of
+ * workers and writes one message per line to a {@link RollingFileWriter}.
+ *
+ * One thread runs a selector for all sockets and puts each message into a
+ * bounded queue; when the queue is full it either waits or drops the message,
+ * see {@link OverflowPolicy}. Workers take up to a batch of messages at a time,
+ * sanitize them with their own {@link Sanitizer} and write the batch at once.
+ * Order is kept within a batch; batches of different workers may interleave.
+ *
+ * TCP frames may use octet counting (RFC 6587, {@code "<length> <message>"})
+ * or end with a line feed. Messages longer than the maximum size are cut and
+ * counted as truncated. Control characters in messages are escaped as
+ * {@code #ooo}, see {@link SyslogFormat}.
+ */
+public final class SyslogListener implements Closeable {
+
+    public static final int DEFAULT_QUEUE_SIZE = 10_000;
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    public static final int DEFAULT_MAX_MESSAGE_SIZE = 64 * 1024;
+
+    // How often idle threads check for shutdown and files that are due to roll
+    private static final long POLL_MILLIS = 100;
+    private static final int MAX_DATAGRAM = 65_536;
+
+    private final RuleSet ruleSet;
+    private final RollingFileWriter output;
+    private final BlockingQueue<String> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final int workerCount;
+    private final int batchSize;
+    private final int maxMessageSize;
+
+    private final Selector selector;
+    private final List<SelectableChannel> listeners = new ArrayList<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private final List<Sanitizer> sanitizers = new CopyOnWriteArrayList<>();
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private Thread receiver;
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong redacted = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong truncated = new AtomicLong();
+
+    private volatile boolean running;
+    private volatile boolean receiving;
+    private volatile IOException failure;
+    private boolean closed;
+
+    /**
+     * @param queueSize      messages received but not sanitized yet
+     * @param workerCount    sanitizing threads
+     * @param batchSize      messages a worker takes from the queue at once
+     * @param maxMessageSize bytes of a message, longer ones are cut
+     */
+    public SyslogListener(RuleSet ruleSet, RollingFileWriter output, int queueSize, OverflowPolicy overflowPolicy,
+            int workerCount, int batchSize, int maxMessageSize) throws IOException {
+        if (queueSize <= 0 || workerCount <= 0 || batchSize <= 0 || maxMessageSize <= 0) {
+            throw new IllegalStateException("Queue size, workers, batch size and message size must be positive");
+        }
+        this.ruleSet = ruleSet;
+        this.output = output;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.overflowPolicy = overflowPolicy;
+        this.workerCount = workerCount;
+        this.batchSize = batchSize;
+        this.maxMessageSize = maxMessageSize;
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Listens for datagrams, one message each. Must be called before
+     * {@link #start()}.
+     *
+     * @return the bound port, e.g. if 0 was given
+     */
+    public int bindUdp(InetSocketAddress address) throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        channel.bind(address);
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_READ);
+        listeners.add(channel);
+        return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+    }
+
+    /**
+     * Listens for TCP connections. Must be called before {@link #start()}.
+     *
+     * @return the bound port, e.g. if 0 was given
+     */
+    public int bindTcp(InetSocketAddress address) throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        channel.bind(address);
+        channel.configureBlocking(false);
+        channel.register(selector, SelectionKey.OP_ACCEPT);
+        listeners.add(channel);
+        return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+    }
+
+    public synchronized void start() {
+        if (listeners.isEmpty()) {
+            throw new IllegalStateException("Nothing to listen on, bind UDP or TCP first");
+        }
+        running = true;
+        receiving = true;
+
+        for (int i = 0; i < workerCount; i++) {
+            Thread worker = new Thread(this::work, "textminator-listen-worker-" + (i + 1));
+            worker.setDaemon(true);
+            workers.add(worker);
+            worker.start();
+        }
+        receiver = new Thread(this::receive, "textminator-listen-receiver");
+        receiver.setDaemon(true);
+        receiver.start();
+    }
+
+    /**
+     * Waits until the listener stops, either by {@link #close()} or because
+     * the output failed.
+     */
+    public void await() throws InterruptedException {
+        stopped.await();
+    }
+
+    /**
+     * Stops receiving, sanitizes and writes what is queued and completes the
+     * current output file.
+     *
+     * @throws IOException if writing the output failed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        running = false;
+        selector.wakeup();
+
+        try {
+            if (receiver != null) {
+                receiver.join();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+            output.close();
+            stopped.countDown();
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @return messages received from the network
+     */
+    public long getReceived() {
+        return received.get();
+    }
+
+    /**
+     * @return messages sanitized and written
+     */
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    /**
+     * @return messages changed by at least one rule
+     */
+    public long getRedacted() {
+        return redacted.get();
+    }
+
+    /**
+     * @return messages discarded because the queue was full
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return messages cut to the maximum message size
+     */
+    public long getTruncated() {
+        return truncated.get();
+    }
+
+    public int getRolledFiles() {
+        return output.getRolledFiles();
+    }
+
+    /**
+     * @return per-rule match counts of all workers, in execution order
+     */
+    public Map<String, Long> getStatistics() {
+        Map<String, Long> merged = new LinkedHashMap<>();
+        for (Rule rule : ruleSet.getRules()) {
+            merged.putIfAbsent(rule.getName(), 0L);
+        }
+        for (Sanitizer sanitizer : sanitizers) {
+            sanitizer.getStatistics().forEach((name, count) -> merged.merge(name, count, Long::sum));
+        }
+        return merged;
+    }
+
+    private void receive() {
+        ByteBuffer datagram = ByteBuffer.allocate(MAX_DATAGRAM);
+        try {
+            while (running) {
+                selector.select(POLL_MILLIS);
+                for (SelectionKey key : selector.selectedKeys()) {
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept((ServerSocketChannel) key.channel());
+                        } else if (key.channel() instanceof DatagramChannel) {
+                            readDatagrams((DatagramChannel) key.channel(), datagram);
+                        } else {
+                            ((Connection) key.attachment()).read(key);
+                        }
+                    } catch (IOException e) {
+                        // One broken connection does not stop the others
+                        Console.warn("Connection closed: " + e.getMessage());
+                        key.cancel();
+                        key.channel().close();
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            receiving = false;
+            running = false;
+            stopped.countDown();
+        }
+    }
+
+    private void accept(ServerSocketChannel server) throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel != null) {
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ, new Connection());
+        }
+    }
+
+    private void readDatagrams(DatagramChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        while (running && channel.receive(buffer) != null) {
+            buffer.flip();
+            enqueue(buffer.array(), 0, buffer.limit());
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Decodes a message and puts it into the queue, or drops it.
+     */
+    private void enqueue(byte[] bytes, int offset, int length) {
+        // Trailing line feeds and NULs are framing, not content
+        while (length > 0 && (bytes[offset + length - 1] == '\n' || bytes[offset + length - 1] == '\r'
+                || bytes[offset + length - 1] == 0)) {
+            length--;
+        }
+        if (length == 0) {
+            return;
+        }
+        if (length > maxMessageSize) {
+            length = maxMessageSize;
+            truncated.incrementAndGet();
+        }
+
+        String message = new String(bytes, offset, length, StandardCharsets.UTF_8);
+        received.incrementAndGet();
+        if (overflowPolicy == OverflowPolicy.DROP) {
+            if (!queue.offer(message)) {
+                dropped.incrementAndGet();
+            }
+            return;
+        }
+
+        try {
+            while (!queue.offer(message, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (!running) {
+                    dropped.incrementAndGet();
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void work() {
+        Sanitizer sanitizer = ruleSet.newSanitizer(true);
+        sanitizers.add(sanitizer);
+        List<String> batch = new ArrayList<>(batchSize);
+        List<String> lines = new ArrayList<>(batchSize);
+        StringBuilder line = new StringBuilder(256);
+
+        try {
+            while (true) {
+                String first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (!receiving && queue.isEmpty()) {
+                        return;
+                    }
+                    output.rollIfDue(System.currentTimeMillis());
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                for (String message : batch) {
+                    lines.add(sanitize(sanitizer, message, line));
+                }
+                output.write(lines);
+                processed.addAndGet(batch.size());
+                batch.clear();
+                lines.clear();
+            }
+        } catch (IOException e) {
+            failure = e;
+            running = false;
+            selector.wakeup();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            sanitizer.flushEvents();
+        }
+    }
+
+    private String sanitize(Sanitizer sanitizer, String message, StringBuilder line) {
+        int headerEnd = SyslogFormat.headerEnd(message);
+        LineResult result = sanitizer.sanitizeLine((headerEnd == 0) ? message : message.substring(headerEnd));
+        if (result.isChanged()) {
+            redacted.incrementAndGet();
+        }
+
+        String body = result.getLine();
+        line.setLength(0);
+        SyslogFormat.appendEscaped(line, message, 0, headerEnd);
+        SyslogFormat.appendEscaped(line, body, 0, body.length());
+        return line.toString();
+    }
+
+    /**
+     * Reassembles the frames of one TCP connection.
+     */
+    private final class Connection {
+        // Room for a full message and its octet count
+        private final ByteBuffer buffer = ByteBuffer.allocate(maxMessageSize + 12);
+        // Rest of a cut octet-counted frame still to be discarded
+        private long skip;
+        // Rest of a cut line still to be discarded
+        private boolean skipLine;
+
+        void read(SelectionKey key) throws IOException {
+            SocketChannel channel = (SocketChannel) key.channel();
+            int n = channel.read(buffer);
+            buffer.flip();
+            frames(n < 0);
+            buffer.compact();
+
+            if (n < 0) {
+                key.cancel();
+                channel.close();
+            }
+        }
+
+        private void frames(boolean end) {
+            byte[] bytes = buffer.array();
+            while (buffer.hasRemaining()) {
+                int start = buffer.position();
+                int limit = buffer.limit();
+
+                if (skip > 0) {
+                    int n = (int) Math.min(skip, limit - start);
+                    buffer.position(start + n);
+                    skip -= n;
+                    continue;
+                }
+
+                if (!skipLine && bytes[start] >= '1' && bytes[start] <= '9') {
+                    int space = start;
+                    long length = 0;
+                    while (space < limit && space - start < 10 && bytes[space] >= '0' && bytes[space] <= '9') {
+                        length = length * 10 + (bytes[space] - '0');
+                        space++;
+                    }
+                    if (space < limit && bytes[space] == ' ') {
+                        int frame = (int) Math.min(length, maxMessageSize);
+                        if (limit - (space + 1) < frame && !end) {
+                            return;
+                        }
+                        frame = Math.min(frame, limit - (space + 1));
+                        enqueue(bytes, space + 1, frame);
+                        buffer.position(space + 1 + frame);
+                        skip = length - frame;
+                        if (skip > 0) {
+                            truncated.incrementAndGet();
+                        }
+                        continue;
+                    }
+                    if (space == limit && space - start < 10 && !end) {
+                        // The octet count is not complete yet
+                        return;
+                    }
+                    // Not an octet count, so a line that starts with a digit
+                }
+
+                int lf = start;
+                while (lf < limit && bytes[lf] != '\n') {
+                    lf++;
+                }
+                if (lf < limit) {
+                    if (!skipLine) {
+                        enqueue(bytes, start, lf - start);
+                    }
+                    skipLine = false;
+                    buffer.position(lf + 1);
+                } else if (end) {
+                    if (!skipLine) {
+                        enqueue(bytes, start, limit - start);
+                    }
+                    buffer.position(limit);
+                } else if (skipLine) {
+                    buffer.position(limit);
+                } else if (limit - start >= maxMessageSize) {
+                    // Deliver the first part now, discard the rest of the line
+                    enqueue(bytes, start, maxMessageSize);
+                    truncated.incrementAndGet();
+                    skipLine = true;
+                    buffer.position(start + maxMessageSize);
+                } else {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.gpak.tools.textminator.io;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.Set;
+
+/**
+ * The charset of the input (and output) text, and whether it starts with a
+ * byte order mark.
+ *
+ * Single-byte charsets (windows-125x, ISO-8859-2 and later, ...) are decoded
+ * and encoded through lookup tables instead of a CharsetDecoder/CharsetEncoder,
+ * which is about twice as fast. ISO-8859-1 and US-ASCII are left to the JDK,
+ * whose coders for them are intrinsified and faster still.
+ */
+public final class TextEncoding {
+
+    public static final TextEncoding UTF_8 = new TextEncoding(StandardCharsets.UTF_8, false);
+
+    private static final char BOM = '\uFEFF';
+    private static final Set<Charset> INTRINSIFIED = Set.of(StandardCharsets.ISO_8859_1, StandardCharsets.US_ASCII);
+
+    private final Charset charset;
+    private final boolean bom;
+
+    // Single-byte charsets only: byte -> char and char -> byte
+    private final char[] decodeTable;
+    private byte[] encodeTable;
+
+    private TextEncoding(Charset charset, boolean bom) {
+        this.charset = charset;
+        this.bom = bom;
+        this.decodeTable = singleByteTable(charset);
+    }
+
+    /**
+     * @throws IllegalStateException if the charset is unknown
+     */
+    public static TextEncoding of(String name) {
+        try {
+            return new TextEncoding(Charset.forName(name.trim()), false);
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException e) {
+            throw new IllegalStateException("Unsupported encoding: " + name
+                + "\nExamples: utf-8, iso-8859-1, windows-1252, utf-16le");
+        }
+    }
+
+    /**
+     * Consumes a byte order mark at the start of the stream, if any. A BOM
+     * takes precedence over the requested encoding, so UTF-8 and UTF-16 files
+     * are read correctly without --encoding.
+     *
+     * @param in must support mark/reset
+     * @param requested the --encoding, or null
+     */
+    public static TextEncoding detect(BufferedInputStream in, TextEncoding requested) throws IOException {
+        Charset detected = readBom(in);
+        TextEncoding fallback = (requested != null) ? requested : UTF_8;
+
+        if (detected == null) {
+            // Without a BOM, Java's UTF-16 decoder reads big-endian
+            return fallback.charset.equals(StandardCharsets.UTF_16)
+                ? new TextEncoding(StandardCharsets.UTF_16BE, false)
+                : fallback;
+        }
+
+        if (requested != null && !matches(requested.charset, detected)) {
+            throw new IllegalStateException("Input starts with a " + detected.name() + " byte order mark but --encoding is "
+                + requested.charset.name() + "\nRemove --encoding or use --encoding " + detected.name().toLowerCase());
+        }
+        return new TextEncoding(detected, true);
+    }
+
+    private static boolean matches(Charset requested, Charset detected) {
+        return requested.equals(detected)
+            || (requested.equals(StandardCharsets.UTF_16) && !detected.equals(StandardCharsets.UTF_8));
+    }
+
+    private static Charset readBom(BufferedInputStream in) throws IOException {
+        in.mark(3);
+        int b0 = in.read();
+
+        // Only read further if the first byte may start a BOM, so interactive input doesn't block
+        if (b0 == 0xEF && in.read() == 0xBB && in.read() == 0xBF) {
+            return StandardCharsets.UTF_8;
+        }
+        if (b0 == 0xFE && in.read() == 0xFF) {
+            return StandardCharsets.UTF_16BE;
+        }
+        if (b0 == 0xFF && in.read() == 0xFE) {
+            return StandardCharsets.UTF_16LE;
+        }
+
+        in.reset();
+        return null;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public boolean hasBom() {
+        return bom;
+    }
+
+    /**
+     * @return true if every char is encoded in one byte
+     */
+    public boolean isSingleByte() {
+        return decodeTable != null;
+    }
+
+    /**
+     * @return true if lines can be found by searching for the byte '\n'
+     */
+    public boolean isAsciiCompatible() {
+        return isSingleByte() || charset.equals(StandardCharsets.UTF_8);
+    }
+
+    public Reader newReader(InputStream in) {
+        if (useTables()) {
+            return new SingleByteReader(in, decodeTable);
+        }
+        return new InputStreamReader(in, charset);
+    }
+
+    /**
+     * Creates a writer in the same encoding, starting with a BOM if the input
+     * had one.
+     */
+    public Writer newWriter(OutputStream out) throws IOException {
+        Writer writer = useTables()
+            ? new SingleByteWriter(out, encodeTable())
+            : new OutputStreamWriter(out, charset);
+        if (bom) {
+            writer.write(BOM);
+        }
+        return writer;
+    }
+
+    private boolean useTables() {
+        return decodeTable != null && !INTRINSIFIED.contains(charset);
+    }
+
+    private synchronized byte[] encodeTable() {
+        if (encodeTable == null) {
+            encodeTable = SingleByteWriter.encodeTable(decodeTable);
+        }
+        return encodeTable;
+    }
+
+    /**
+     * Decodes all 256 bytes at once; the charset is single-byte if each byte
+     * is one char and every char is encoded as one byte.
+     *
+     * @return the byte -> char table, or null
+     */
+    private static char[] singleByteTable(Charset charset) {
+        if (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1) {
+            return null;
+        }
+
+        byte[] bytes = new byte[256];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+
+        CharsetDecoder decoder = charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        try {
+            CharBuffer chars = decoder.decode(ByteBuffer.wrap(bytes));
+            if (chars.remaining() != 256) {
+                return null;
+            }
+            char[] table = new char[256];
+            chars.get(table);
+            return table;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return charset.name() + (bom ? " (BOM)" : "");
+    }
+}
@@ -0,0 +1,30 @@
+package com.gpak.tools.textminator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A batch of records read, sanitized and written, see {@link BatchRecorder}.
+ */
+@Name("textminator.Batch")
+@Label("Batch Processed")
+@Category("Textminator")
+@Enabled(false)
+@Description("Records read, sanitized and written; the duration is the wall time of the batch")
+@StackTrace(false)
+public class BatchEvent extends jdk.jfr.Event {
+
+    @Label("Lines")
+    public long lines;
+
+    @Label("Characters")
+    @Description("Decoded characters of the records, without line breaks")
+    public long characters;
+
+    @Label("Changed Records")
+    public long changed;
+}
@@ -0,0 +1,56 @@
+package com.gpak.tools.textminator.jfr;
+
+/**
+ * Emits a {@link BatchEvent} every {@value #BATCH_RECORDS} records.
+ *
+ * Adding a record only updates the fields of the current event, so the cost
+ * without a recording is a few additions per record and one short-lived event
+ * per batch. Whether the event is recorded is decided when the batch ends,
+ * so a recording started during a run picks up the next batch.
+ */
+public final class BatchRecorder {
+
+    public static final int BATCH_RECORDS = 8192;
+
+    private BatchEvent event;
+    private int records;
+
+    public BatchRecorder() {
+        start();
+    }
+
+    public void add(long lines, int characters, boolean changed) {
+        event.lines += lines;
+        event.characters += characters;
+        if (changed) {
+            event.changed++;
+        }
+        if (++records == BATCH_RECORDS) {
+            commit();
+            start();
+        }
+    }
+
+    /**
+     * Emits the last, incomplete batch.
+     */
+    public void finish() {
+        if (records > 0) {
+            commit();
+            start();
+        }
+    }
+
+    private void start() {
+        event = new BatchEvent();
+        event.begin();
+        records = 0;
+    }
+
+    private void commit() {
+        event.end();
+        if (event.shouldCommit()) {
+            event.commit();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.gpak.tools.textminator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A read from the input or a write to the output that blocked for at least
+ * the threshold.
+ */
+@Name("textminator.IoStall")
+@Label("I/O Stall")
+@Category("Textminator")
+@Enabled(false)
+@Description("Time the pipeline waited on the underlying input or output stream")
+@Threshold("1 ms")
+@StackTrace(false)
+public class IoStallEvent extends jdk.jfr.Event {
+
+    public static final String READ = "read";
+    public static final String WRITE = "write";
+    public static final String FLUSH = "flush";
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+}
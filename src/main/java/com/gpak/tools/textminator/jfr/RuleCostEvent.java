@@ -0,0 +1,44 @@
+package com.gpak.tools.textminator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The sampled cost of one rule over a window of sanitizer calls.
+ */
+@Name("textminator.RuleCost")
+@Label("Rule Cost")
+@Category("Textminator")
+@Enabled(false)
+@Description("Time spent in a rule on the sampled calls of a window")
+@StackTrace(false)
+public class RuleCostEvent extends jdk.jfr.Event {
+
+    @Label("Rule")
+    public String rule;
+
+    @Label("Window Calls")
+    @Description("Sanitizer calls in the window, sampled or not")
+    public long windowCalls;
+
+    @Label("Sampled Runs")
+    public long sampledRuns;
+
+    @Label("Time")
+    @Description("Time of the sampled runs")
+    @Timespan
+    public long nanos;
+
+    @Label("Time per Run")
+    @Timespan
+    public long nanosPerRun;
+
+    @Label("Matches")
+    @Description("Matches of the sampled runs")
+    public long matches;
+}
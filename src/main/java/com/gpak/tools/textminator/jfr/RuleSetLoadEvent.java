@@ -0,0 +1,26 @@
+package com.gpak.tools.textminator.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Loading the config: reading the properties, compiling the patterns and
+ * reading the dictionaries.
+ */
+@Name("textminator.RuleSetLoad")
+@Label("Rule Set Load")
+@Category("Textminator")
+@Enabled(false)
+@Description("Config read and rules compiled, also on every --watch-config reload")
+public class RuleSetLoadEvent extends jdk.jfr.Event {
+
+    @Label("Config File")
+    @Description("The --config file, or null for the default resolution")
+    public String configFile;
+
+    @Label("Rules")
+    public int rules;
+}
@@ -0,0 +1,96 @@
+package com.gpak.tools.textminator.logging;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.gpak.tools.textminator.core.RuleSet;
+import com.gpak.tools.textminator.core.Sanitizer;
+
+/**
+ * Thread-safe entry point used by the logging integrations.
+ * 
+ * One compiled {@link RuleSet} is shared per config file across all appenders
+ * and threads; every thread gets its own {@link Sanitizer} and scratch buffer.
+ * Messages that don't match any rule are returned as is, without allocation.
+ * 
+ * The config is loaded again whenever the logging framework is (re)configured,
+ * since neither Logback nor Log4j2 stops converters or rewrite policies. An
+ * instance is only shared while its rules are unchanged.
+ */
+public final class LogSanitizer {
+
+    // Scratch buffers above this size are not kept between events
+    private static final int MAX_RETAINED_BUFFER = 16 * 1024;
+
+    private static final String DEFAULT_KEY = "";
+    private static final ConcurrentMap<String, LogSanitizer> INSTANCES = new ConcurrentHashMap<>();
+
+    private final RuleSet ruleSet;
+    private final byte[] fingerprint;
+    private final ThreadLocal<Sanitizer> sanitizers;
+    private final ThreadLocal<StringBuilder> buffers = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    private LogSanitizer(RuleSet ruleSet) {
+        this.ruleSet = ruleSet;
+        this.fingerprint = ruleSet.fingerprint();
+        this.sanitizers = ThreadLocal.withInitial(() -> ruleSet.newSanitizer(false));
+    }
+
+    /**
+     * Loads the config file and returns the shared instance for it. The
+     * instance of an earlier call is reused if the rules are the same,
+     * otherwise it is replaced; appenders that still use it keep working
+     * with the old rules until they are reconfigured.
+     * 
+     * @param configFile path of the config file, or null/blank for the default resolution order
+     */
+    public static LogSanitizer forConfig(String configFile) {
+        String key = (configFile == null || configFile.isBlank()) ? DEFAULT_KEY : configFile.trim();
+        RuleSet loaded = RuleSet.load(key.isEmpty() ? null : new File(key));
+        byte[] fingerprint = loaded.fingerprint();
+        return INSTANCES.compute(key,
+            (k, cached) -> (cached != null && Arrays.equals(cached.fingerprint, fingerprint)) ? cached : new LogSanitizer(loaded));
+    }
+
+    public static LogSanitizer of(RuleSet ruleSet) {
+        return new LogSanitizer(ruleSet);
+    }
+
+    public RuleSet getRuleSet() {
+        return ruleSet;
+    }
+
+    /**
+     * Sanitizes the builder in place.
+     * 
+     * @return true if the text was changed
+     */
+    public boolean sanitize(StringBuilder text) {
+        return sanitizers.get().sanitize(text);
+    }
+
+    /**
+     * @return the same instance if nothing matched, the sanitized copy otherwise
+     */
+    public String sanitize(String text) {
+        if (text == null || text.isEmpty()) {
+            return text;
+        }
+        return sanitizers.get().sanitizeLine(text).getLine();
+    }
+
+    /**
+     * Returns an empty per-thread scratch buffer for formatting messages.
+     */
+    public StringBuilder buffer() {
+        StringBuilder sb = buffers.get();
+        if (sb.capacity() > MAX_RETAINED_BUFFER) {
+            sb = new StringBuilder(256);
+            buffers.set(sb);
+        }
+        sb.setLength(0);
+        return sb;
+    }
+}
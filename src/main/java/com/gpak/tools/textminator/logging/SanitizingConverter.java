@@ -0,0 +1,42 @@
+package com.gpak.tools.textminator.logging;
+
+import com.gpak.tools.textminator.core.ToolContext;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.pattern.CompositeConverter;
+
+/**
+ * Logback converter that sanitizes the output of its child pattern.
+ * 
+ * <pre>
+ * &lt;conversionRule conversionWord="sanitize"
+ *                 converterClass="com.gpak.tools.textminator.logging.SanitizingConverter"/&gt;
+ * &lt;pattern&gt;%d %-5level %logger - %sanitize(%msg){/etc/textminator.properties}%n&lt;/pattern&gt;
+ * </pre>
+ * 
+ * The option is the config file; without it the default resolution order is used.
+ */
+public class SanitizingConverter extends CompositeConverter<ILoggingEvent> {
+
+    private LogSanitizer sanitizer;
+
+    @Override
+    public void start() {
+        try {
+            sanitizer = LogSanitizer.forConfig(getFirstOption());
+        } catch (RuntimeException e) {
+            addError("Failed to load textminator rules: " + e.getMessage(), e);
+            return;
+        }
+        super.start();
+    }
+
+    @Override
+    protected String transform(ILoggingEvent event, String in) {
+        // Never let unsanitized text through when the rules could not be loaded
+        if (sanitizer == null) {
+            return ToolContext.DEFUALT_REPLACEMENT_VALUE;
+        }
+        return sanitizer.sanitize(in);
+    }
+}
@@ -0,0 +1,74 @@
+package com.gpak.tools.textminator.logging;
+
+import org.apache.logging.log4j.core.Core;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.appender.rewrite.RewritePolicy;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginFactory;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.message.Message;
+import org.apache.logging.log4j.message.SimpleMessage;
+import org.apache.logging.log4j.util.StringBuilderFormattable;
+
+/**
+ * Log4j2 rewrite policy that sanitizes the formatted message of each event.
+ * 
+ * <pre>
+ * &lt;Rewrite name="sanitized"&gt;
+ *   &lt;AppenderRef ref="file"/&gt;
+ *   &lt;TextminatorRewritePolicy config="/etc/textminator.properties"/&gt;
+ * &lt;/Rewrite&gt;
+ * </pre>
+ * 
+ * Events whose message doesn't match any rule are passed through unchanged.
+ */
+@Plugin(name = "TextminatorRewritePolicy",
+    category = Core.CATEGORY_NAME,
+    elementType = "rewritePolicy",
+    printObject = true)
+public final class TextminatorRewritePolicy implements RewritePolicy {
+
+    private final LogSanitizer sanitizer;
+
+    private TextminatorRewritePolicy(LogSanitizer sanitizer) {
+        this.sanitizer = sanitizer;
+    }
+
+    @PluginFactory
+    public static TextminatorRewritePolicy createPolicy(@PluginAttribute("config") String config) {
+        return new TextminatorRewritePolicy(LogSanitizer.forConfig(config));
+    }
+
+    public static TextminatorRewritePolicy of(LogSanitizer sanitizer) {
+        return new TextminatorRewritePolicy(sanitizer);
+    }
+
+    @Override
+    public LogEvent rewrite(LogEvent source) {
+        Message message = source.getMessage();
+        if (message == null) {
+            return source;
+        }
+
+        StringBuilder sb = sanitizer.buffer();
+        if (message instanceof StringBuilderFormattable) {
+            ((StringBuilderFormattable) message).formatTo(sb);
+        } else {
+            sb.append(message.getFormattedMessage());
+        }
+
+        if (!sanitizer.sanitize(sb)) {
+            return source;
+        }
+
+        return new Log4jLogEvent.Builder(source)
+            .setMessage(new SimpleMessage(sb.toString()))
+            .build();
+    }
+
+    @Override
+    public String toString() {
+        return "TextminatorRewritePolicy[rules=" + sanitizer.getRuleSet().size() + "]";
+    }
+}
@@ -0,0 +1,11 @@
+package com.gpak.tools.textminator.model;
+
+/**
+ * Record format of the --audit-file.
+ */
+public enum AuditFormat {
+    /** One JSON object per match */
+    JSONL,
+    /** Compact varint-encoded records, see MANUAL.md */
+    BINARY
+}
@@ -0,0 +1,88 @@
+package com.gpak.tools.textminator.model;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Measurements of a bench run.
+ */
+public class BenchResult {
+    private final int lines;
+    private final long bytes;
+    private final long changedLines;
+    private final long[] iterationNanos;
+    private final long[] lineNanos;
+    private final Map<String, Double> ruleNanosPerLine;
+
+    /**
+     * @param iterationNanos duration of each measured pass over the corpus
+     * @param lineNanos duration of every sanitized line of the measured passes
+     * @param ruleNanosPerLine cost of each rule run on its own, in execution order
+     */
+    public BenchResult(int lines, long bytes, long changedLines, long[] iterationNanos, long[] lineNanos,
+            Map<String, Double> ruleNanosPerLine) {
+        this.lines = lines;
+        this.bytes = bytes;
+        this.changedLines = changedLines;
+        this.iterationNanos = iterationNanos.clone();
+        this.lineNanos = lineNanos.clone();
+        this.ruleNanosPerLine = ruleNanosPerLine;
+        Arrays.sort(this.lineNanos);
+    }
+
+    public int getLines() {
+        return lines;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getChangedLines() {
+        return changedLines;
+    }
+
+    public int getIterations() {
+        return iterationNanos.length;
+    }
+
+    /**
+     * @return lines per second of the mean iteration
+     */
+    public double getLinesPerSecond() {
+        return lines / (Arrays.stream(iterationNanos).average().orElse(0) / 1e9);
+    }
+
+    /**
+     * @return lines per second of the fastest iteration
+     */
+    public double getMaxLinesPerSecond() {
+        return lines / (Arrays.stream(iterationNanos).min().orElse(0) / 1e9);
+    }
+
+    /**
+     * @return lines per second of the slowest iteration
+     */
+    public double getMinLinesPerSecond() {
+        return lines / (Arrays.stream(iterationNanos).max().orElse(0) / 1e9);
+    }
+
+    public double getMegabytesPerSecond() {
+        return getLinesPerSecond() * bytes / lines / (1024.0 * 1024.0);
+    }
+
+    /**
+     * @param percentile 0-100
+     * @return per-line latency in nanoseconds
+     */
+    public long getLatency(double percentile) {
+        if (lineNanos.length == 0) {
+            return 0;
+        }
+        return lineNanos[(int) Math.round((lineNanos.length - 1) * percentile / 100)];
+    }
+
+    public Map<String, Double> getRuleNanosPerLine() {
+        return ruleNanosPerLine;
+    }
+}
@@ -0,0 +1,28 @@
+package com.gpak.tools.textminator.model;
+
+public class Estimate {
+    private final String name;
+    private final double value;
+    private final double margin;
+
+    public Estimate(String name, double value, double margin) {
+        this.name = name;
+        this.value = value;
+        this.margin = margin;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * @return half width of the 95% confidence interval
+     */
+    public double getMargin() {
+        return margin;
+    }
+}
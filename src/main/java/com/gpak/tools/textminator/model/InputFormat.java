@@ -0,0 +1,15 @@
+package com.gpak.tools.textminator.model;
+
+/**
+ * How each input line is interpreted.
+ */
+public enum InputFormat {
+    /** Rules run over the whole line */
+    TEXT,
+    /** Each line is a JSON document; rules run over string values only */
+    JSONL,
+    /** Comma separated values (RFC 4180); rules run per field */
+    CSV,
+    /** Tab separated values; rules run per field */
+    TSV
+}
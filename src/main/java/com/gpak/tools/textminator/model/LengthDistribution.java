@@ -0,0 +1,13 @@
+package com.gpak.tools.textminator.model;
+
+/**
+ * Distribution of the line lengths of a synthetic bench corpus.
+ */
+public enum LengthDistribution {
+    /** Every line has the mean length */
+    FIXED,
+    /** Between half and one and a half times the mean */
+    UNIFORM,
+    /** Mostly short lines with a long tail, as in real logs */
+    LOGNORMAL
+}
@@ -0,0 +1,11 @@
+package com.gpak.tools.textminator.model;
+
+/**
+ * What the listener does with a message when its queue is full.
+ */
+public enum OverflowPolicy {
+    /** Stop reading until there is room: TCP senders slow down, UDP datagrams are lost in the kernel */
+    BLOCK,
+    /** Discard the message and count it as dropped */
+    DROP
+}
@@ -0,0 +1,35 @@
+package com.gpak.tools.textminator.model;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Named subset of the configured rules with its own output file, defined by
+ * {@code profile.<name>.rules} and {@code profile.<name>.output}.
+ */
+public class Profile {
+    private final String name;
+    private final List<Rule> rules;
+    private final File outputFile;
+
+    public Profile(String name, List<Rule> rules, File outputFile) {
+        this.name = name;
+        this.rules = List.copyOf(rules);
+        this.outputFile = outputFile;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the rules of the profile in execution order
+     */
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    public File getOutputFile() {
+        return outputFile;
+    }
+}
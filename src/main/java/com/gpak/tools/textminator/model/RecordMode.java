@@ -0,0 +1,15 @@
+package com.gpak.tools.textminator.model;
+
+/**
+ * How input is split into records before sanitization.
+ */
+public enum RecordMode {
+    /** One record per line (default) */
+    LINE,
+    /** Records are separated by blank lines */
+    BLANK,
+    /** Records are separated by NUL characters */
+    NUL,
+    /** A new record starts on each line matching a regex */
+    START
+}
@@ -1,34 +1,162 @@
 package com.gpak.tools.textminator.model;
 
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
 import java.util.regex.Pattern;
 
+import com.gpak.tools.textminator.core.BuiltinRule;
+import com.gpak.tools.textminator.core.Dictionary;
+import com.gpak.tools.textminator.core.MatchFinder;
+import com.gpak.tools.textminator.core.ReplacementTemplate;
+import com.gpak.tools.textminator.core.Validator;
+
 public class Rule {
     private final String name;
     private final Pattern pattern;
     private final String replacement;
     private final int order;
     private final boolean enabled;
+    private final Set<String> fields;
+    private final boolean independent;
+    private final Dictionary dictionary;
+    private final BuiltinRule builtin;
+    private final Validator validator;
+    private final ReplacementTemplate template;
 
     public Rule(String name, Pattern pattern, String replacement, int order, boolean enabled) {
+        this(name, pattern, null, null, replacement, order, enabled, Collections.emptySet(), false, null);
+    }
+
+    /**
+     * Creates a dictionary rule: every token found in the dictionary is
+     * replaced with the literal replacement.
+     */
+    public Rule(String name, Dictionary dictionary, String replacement, int order, boolean enabled) {
+        this(name, null, dictionary, null, replacement, order, enabled, Collections.emptySet(), false, null);
+    }
+
+    /**
+     * Creates a builtin rule: matches are found by the hand-written scanner,
+     * with the same result as its regex.
+     */
+    public Rule(String name, BuiltinRule builtin, String replacement, int order, boolean enabled) {
+        this(name, null, null, builtin, replacement, order, enabled, Collections.emptySet(), false, null);
+    }
+
+    private Rule(String name, Pattern pattern, Dictionary dictionary, BuiltinRule builtin, String replacement, int order,
+            boolean enabled, Set<String> fields, boolean independent, Validator validator) {
         this.name = name;
         this.pattern = pattern;
+        this.dictionary = dictionary;
+        this.builtin = builtin;
         this.replacement = replacement;
         this.order = order;
         this.enabled = enabled;
+        this.fields = fields;
+        this.independent = independent;
+        this.validator = validator;
+
+        try {
+            this.template = ReplacementTemplate.compile(replacement, pattern);
+        } catch (IllegalStateException e) {
+            throw new IllegalStateException(e.getMessage() + " in rule: " + name);
+        }
+    }
+
+    /**
+     * Returns a copy of this rule restricted to the given field paths
+     * (structured formats only). An empty collection means all fields.
+     */
+    public Rule withFields(Set<String> fields) {
+        Set<String> copy = (fields == null || fields.isEmpty())
+            ? Collections.emptySet()
+            : Collections.unmodifiableSet(new LinkedHashSet<>(fields));
+        return new Rule(name, pattern, dictionary, builtin, replacement, order, enabled, copy, independent, validator);
+    }
+
+    /**
+     * Returns a copy of this rule using a different compiled pattern.
+     */
+    public Rule withPattern(Pattern pattern) {
+        return new Rule(name, pattern, dictionary, builtin, replacement, order, enabled, fields, independent, validator);
+    }
+
+    /**
+     * Returns a copy of this rule marked as (in)dependent. Consecutive
+     * independent rules may be reordered among themselves at runtime.
+     */
+    public Rule withIndependent(boolean independent) {
+        return new Rule(name, pattern, dictionary, builtin, replacement, order, enabled, fields, independent, validator);
+    }
+
+    /**
+     * Returns a copy of this rule whose matches are only replaced when they
+     * pass the validator (null = no check).
+     */
+    public Rule withValidator(Validator validator) {
+        return new Rule(name, pattern, dictionary, builtin, replacement, order, enabled, fields, independent, validator);
     }
 
     public String getName() {
         return name;
     }
 
+    /**
+     * @return the compiled regex, or null for dictionary and builtin rules
+     */
     public Pattern getPattern() {
         return pattern;
     }
 
+    /**
+     * @return the dictionary, or null for regex rules
+     */
+    public Dictionary getDictionary() {
+        return dictionary;
+    }
+
+    public boolean isDictionary() {
+        return dictionary != null;
+    }
+
+    /**
+     * @return the builtin scanner, or null for regex and dictionary rules
+     */
+    public BuiltinRule getBuiltin() {
+        return builtin;
+    }
+
+    public boolean isBuiltin() {
+        return builtin != null;
+    }
+
+    /**
+     * @return what finds the matches of a dictionary or builtin rule, or null
+     *         for regex rules
+     */
+    public MatchFinder getFinder() {
+        return (dictionary != null) ? dictionary : builtin;
+    }
+
+    /**
+     * @return the post-match validator, or null
+     */
+    public Validator getValidator() {
+        return validator;
+    }
+
     public String getReplacement() {
         return replacement;
     }
 
+    /**
+     * @return the replacement parsed into literal, group and mask segments
+     */
+    public ReplacementTemplate getTemplate() {
+        return template;
+    }
+
     public int getOrder() {
         return order;
     }
@@ -36,4 +164,20 @@ public class Rule {
     public boolean isEnabled() {
         return enabled;
     }
-}
\ No newline at end of file
+
+    public Set<String> getFields() {
+        return fields;
+    }
+
+    public boolean isIndependent() {
+        return independent;
+    }
+
+    /**
+     * Whether this rule runs on the given field. A null path (plain text
+     * lines) always applies.
+     */
+    public boolean appliesTo(String fieldPath) {
+        return fieldPath == null || fields.isEmpty() || fields.contains(fieldPath);
+    }
+}
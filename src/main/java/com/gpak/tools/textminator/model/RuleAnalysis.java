@@ -0,0 +1,46 @@
+package com.gpak.tools.textminator.model;
+
+import java.util.List;
+
+public class RuleAnalysis {
+    private final String name;
+    private final List<String> issues;
+    private final double nsPerChar;
+    private final String worstInput;
+    private final boolean superlinear;
+    private final boolean timedOut;
+
+    public RuleAnalysis(String name, List<String> issues, double nsPerChar, String worstInput,
+            boolean superlinear, boolean timedOut) {
+        this.name = name;
+        this.issues = issues;
+        this.nsPerChar = nsPerChar;
+        this.worstInput = worstInput;
+        this.superlinear = superlinear;
+        this.timedOut = timedOut;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getIssues() {
+        return issues;
+    }
+
+    public double getNsPerChar() {
+        return nsPerChar;
+    }
+
+    public String getWorstInput() {
+        return worstInput;
+    }
+
+    public boolean isSuperlinear() {
+        return superlinear;
+    }
+
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+}
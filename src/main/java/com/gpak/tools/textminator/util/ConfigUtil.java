@@ -5,21 +5,37 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import com.gpak.tools.textminator.Main;
+import com.gpak.tools.textminator.core.BuiltinRule;
+import com.gpak.tools.textminator.core.Dictionary;
+import com.gpak.tools.textminator.core.KeyedHash;
 import com.gpak.tools.textminator.core.ToolContext;
+import com.gpak.tools.textminator.core.Validator;
+import com.gpak.tools.textminator.jfr.RuleSetLoadEvent;
+import com.gpak.tools.textminator.model.InputFormat;
+import com.gpak.tools.textminator.model.Profile;
+import com.gpak.tools.textminator.model.RecordMode;
 import com.gpak.tools.textminator.model.Rule;
 
 public class ConfigUtil {
 
+    private static final String PROFILE_PREFIX = "profile.";
+
     // *************************************************************************
     //
     // Load configuration
@@ -28,8 +44,131 @@ public class ConfigUtil {
     
     public static List<Rule> loadConfigFile(File userConfigFile) {
         Console.info("Load rules");
-        List<Rule> rules = new ArrayList<>();
+        RuleSetLoadEvent event = new RuleSetLoadEvent();
+        event.begin();
+        Properties properties = loadProperties(userConfigFile);
+
+        // Relative dictionary paths are resolved against the --config directory
+        File baseDir = (userConfigFile != null) ? userConfigFile.getAbsoluteFile().getParentFile() : null;
+        List<Rule> rules = parseProperties(properties, baseDir);
+        validateRules(rules);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.configFile = (userConfigFile != null) ? userConfigFile.getPath() : null;
+            event.rules = rules.size();
+            event.commit();
+        }
+        return rules;
+    }
+
+    /**
+     * Reads the profiles of the config: {@code profile.<name>.rules} lists
+     * rule names ({@code *} for all), {@code profile.<name>.output} the output
+     * file, relative to the working directory. Same resolution order as the
+     * rules.
+     *
+     * @param rules     the loaded rules; a profile keeps their execution order
+     * @param selection comma separated profile names, or "all"
+     */
+    public static List<Profile> loadProfiles(File userConfigFile, List<Rule> rules, String selection) {
+        Console.info("Load profiles");
+        Properties properties = loadProperties(userConfigFile);
+
+        Set<String> defined = new TreeSet<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(PROFILE_PREFIX) && key.endsWith(".rules")) {
+                defined.add(key.substring(PROFILE_PREFIX.length(), key.length() - ".rules".length()));
+            }
+        }
+        if (defined.isEmpty()) {
+            throw new IllegalStateException("No profiles found in config file (profile.<name>.rules and profile.<name>.output)");
+        }
+
+        Set<String> names = "all".equalsIgnoreCase(selection.trim()) ? defined : parseList(selection);
+        List<Profile> profiles = new ArrayList<>();
+        Set<File> outputFiles = new LinkedHashSet<>();
+        for (String name : names) {
+            if (!defined.contains(name)) {
+                throw new IllegalStateException("Unknown profile: " + name + " (defined: " + String.join(", ", defined) + ")");
+            }
+
+            String output = properties.getProperty(PROFILE_PREFIX + name + ".output");
+            if (output == null || output.isBlank()) {
+                throw new IllegalStateException("output is missing from profile: " + name);
+            }
+            File outputFile = new File(output.trim());
+            if (!outputFiles.add(outputFile.getAbsoluteFile())) {
+                throw new IllegalStateException("Profiles can't share an output file: " + outputFile);
+            }
+
+            Set<String> ruleNames = parseList(properties.getProperty(PROFILE_PREFIX + name + ".rules"));
+            boolean allRules = ruleNames.remove("*");
+            for (String ruleName : ruleNames) {
+                if (rules.stream().noneMatch(rule -> rule.getName().equals(ruleName))) {
+                    throw new IllegalStateException("Unknown rule '" + ruleName + "' in profile: " + name);
+                }
+            }
+
+            List<Rule> profileRules = rules.stream()
+                .filter(rule -> allRules || ruleNames.contains(rule.getName()))
+                .collect(Collectors.toList());
+            if (profileRules.isEmpty()) {
+                throw new IllegalStateException("No rules in profile: " + name);
+            }
+            profiles.add(new Profile(name, profileRules, outputFile));
+        }
+        return profiles;
+    }
+
+    /**
+     * Reads the secret key of {@code ${hash:N}} and the audit trail: the
+     * contents of the --hash-key-file, without trailing line breaks, or else
+     * the {@value KeyedHash#ENV_VAR} environment variable.
+     *
+     * @return null if neither is given
+     */
+    public static KeyedHash loadHashKey(File hashKeyFile) {
+        if (hashKeyFile == null) {
+            try {
+                return KeyedHash.fromEnvironment();
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException(e.getMessage());
+            }
+        }
+
+        byte[] key;
+        try {
+            key = Files.readAllBytes(hashKeyFile.toPath());
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read hash key file: " + hashKeyFile);
+        }
+        int length = key.length;
+        while (length > 0 && (key[length - 1] == '\n' || key[length - 1] == '\r')) {
+            length--;
+        }
+        try {
+            return KeyedHash.of(Arrays.copyOf(key, length));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException(e.getMessage() + ": " + hashKeyFile);
+        }
+    }
+
+    /**
+     * Reads the hash key only if it is given explicitly or needed: by the
+     * audit trail or by a rule with {@code ${hash:N}}. An invalid
+     * {@value KeyedHash#ENV_VAR} then doesn't stop runs that don't use it.
+     *
+     * @return null if the key is neither given nor needed
+     */
+    public static KeyedHash loadHashKey(File hashKeyFile, List<Rule> rules, boolean isAuditing) {
+        if (hashKeyFile == null && !isAuditing && rules.stream().noneMatch(rule -> rule.getTemplate().usesHash())) {
+            return null;
+        }
+        return loadHashKey(hashKeyFile);
+    }
 
+    private static Properties loadProperties(File userConfigFile) {
         Properties properties = null;
 
         // 1. Load rules from user config file if provided
@@ -53,10 +192,7 @@ public class ConfigUtil {
             throw new IllegalStateException("No config file found!");
         }
 
-        rules = parseProperties(properties);
-        validateRules(rules);
-
-        return rules;
+        return properties;
     }
 
     private static Properties loadUserConfigFile(File userConfigFile) {
@@ -126,19 +262,33 @@ public class ConfigUtil {
         return properties;
     }
 
-    private static List<Rule> parseProperties(Properties properties) {
+    private static List<Rule> parseProperties(Properties properties, File baseDir) {
         List<Rule> rules = new ArrayList<>();
 
-        // Create rules list
+        // Collect rule names from all rule types
+        Set<String> baseNames = new LinkedHashSet<>();
         for (String key : properties.stringPropertyNames()) {
-            if (!key.endsWith(".regex")) {
-                continue;
+            if (key.endsWith(".regex")) {
+                baseNames.add(key.substring(0, key.length() - ".regex".length()));
+            } else if (key.endsWith(".dictionary")) {
+                baseNames.add(key.substring(0, key.length() - ".dictionary".length()));
+            } else if (key.endsWith(".type")) {
+                baseNames.add(key.substring(0, key.length() - ".type".length()));
             }
+        }
 
-            String baseName = key.substring(0, key.length() - ".regex".length());
+        // Create rules list
+        for (String baseName : baseNames) {
             String regex = properties.getProperty(baseName + ".regex");
+            String dictionaryPath = properties.getProperty(baseName + ".dictionary");
 
-            if (regex == null || regex.isEmpty()) {
+            if (regex != null && dictionaryPath != null) {
+                throw new IllegalStateException("Rule can't have both regex and dictionary: " + baseName);
+            }
+
+            BuiltinRule builtin = parseType(properties, baseName, regex, dictionaryPath);
+
+            if (builtin == null && (regex == null || regex.isEmpty()) && (dictionaryPath == null || dictionaryPath.isBlank())) {
                 continue;
             }
 
@@ -166,7 +316,30 @@ public class ConfigUtil {
                 enabled = Boolean.parseBoolean(enabledString);
             }
             
-            Rule rule = new Rule(baseName, Pattern.compile(regex), replacement, Integer.parseInt(orderString), enabled);
+            String independentString = properties.getProperty(baseName + ".independent", "false");
+            if (!"true".equalsIgnoreCase(independentString) && !"false".equalsIgnoreCase(independentString)) {
+                throw new IllegalStateException("Independent must be true/false for rule: " + baseName);
+            }
+
+            Rule rule = (builtin != null)
+                ? new Rule(baseName, builtin, replacement, Integer.parseInt(orderString), enabled)
+                : (dictionaryPath != null)
+                ? new Rule(baseName, loadDictionary(baseName, dictionaryPath.trim(), baseDir), replacement, Integer.parseInt(orderString), enabled)
+                : new Rule(baseName, Pattern.compile(regex), replacement, Integer.parseInt(orderString), enabled);
+            String validatorName = properties.getProperty(baseName + ".validator");
+            Validator validator = null;
+            if (validatorName != null && !validatorName.isBlank()) {
+                validator = Validator.of(validatorName);
+                if (validator == null) {
+                    throw new IllegalStateException("Unknown validator '" + validatorName.trim() + "' for rule: " + baseName
+                        + " (supported: " + Arrays.stream(Validator.values()).map(v -> v.name().toLowerCase()).collect(Collectors.joining(", ")) + ")");
+                }
+            }
+
+            rule = rule
+                .withValidator(validator)
+                .withFields(parseList(properties.getProperty(baseName + ".fields")))
+                .withIndependent(Boolean.parseBoolean(independentString));
 
             rules.add(rule);
         }
@@ -180,6 +353,71 @@ public class ConfigUtil {
         return rules;
     }
 
+    /**
+     * Reads {@code <name>.type}: regex (default) or builtin. A builtin rule
+     * must be named after one of the builtin scanners and may keep its regex
+     * for reference, as long as the regex is exactly the one it implements.
+     *
+     * @return the builtin scanner, or null for regex and dictionary rules
+     */
+    private static BuiltinRule parseType(Properties properties, String baseName, String regex, String dictionaryPath) {
+        String type = properties.getProperty(baseName + ".type", "regex").trim();
+        if ("regex".equalsIgnoreCase(type)) {
+            return null;
+        }
+        if (!"builtin".equalsIgnoreCase(type)) {
+            throw new IllegalStateException("Type must be regex/builtin for rule: " + baseName);
+        }
+
+        BuiltinRule builtin = BuiltinRule.of(baseName);
+        if (builtin == null) {
+            throw new IllegalStateException("No builtin scanner for rule: " + baseName
+                + " (supported: " + Arrays.stream(BuiltinRule.values()).map(b -> b.name().toLowerCase()).collect(Collectors.joining(", ")) + ")");
+        }
+        if (dictionaryPath != null) {
+            throw new IllegalStateException("Rule can't have both type=builtin and dictionary: " + baseName);
+        }
+        if (regex != null && !regex.equals(builtin.getRegex())) {
+            throw new IllegalStateException("Regex of builtin rule " + baseName + " differs from the one the scanner implements;"
+                + " remove " + baseName + ".type to use the custom regex");
+        }
+        return builtin;
+    }
+
+    private static Dictionary loadDictionary(String ruleName, String path, File baseDir) {
+        File file = new File(path);
+        if (!file.isAbsolute() && baseDir != null) {
+            file = new File(baseDir, path);
+        }
+
+        Console.debug("Loading dictionary " + file + " for rule: " + ruleName);
+        long start = System.nanoTime();
+        Dictionary dictionary = Dictionary.load(file);
+        Console.info(String.format("Loaded dictionary for rule %s: %d entries, %.1f MB off-heap, %.2f s",
+                                    ruleName,
+                                    dictionary.size(),
+                                    dictionary.mappedBytes() / (1024.0 * 1024.0),
+                                    (System.nanoTime() - start) / 1_000_000_000.0));
+        return dictionary;
+    }
+
+    /**
+     * Parses a comma separated property value. Blank entries are ignored.
+     */
+    private static Set<String> parseList(String value) {
+        Set<String> values = new LinkedHashSet<>();
+        if (value == null) {
+            return values;
+        }
+
+        for (String v : value.split(",")) {
+            if (!v.isBlank()) {
+                values.add(v.trim());
+            }
+        }
+        return values;
+    }
+
     // *************************************************************************
     //
     // Validations
@@ -206,6 +444,181 @@ public class ConfigUtil {
         }
     }
 
+    public static void validateAuditOptions(File auditFile, boolean overwriteAuditFile, KeyedHash hashKey)
+            throws FileAlreadyExistsException {
+        if (auditFile == null) {
+            return;
+        }
+        if (hashKey == null) {
+            throw new IllegalStateException("--audit-file needs a secret key for the value hashes\n"
+                + "Use --hash-key-file, or set " + KeyedHash.ENV_VAR);
+        }
+        if (auditFile.exists() && !overwriteAuditFile) {
+            throw new FileAlreadyExistsException("Audit file " + auditFile + " already exists\nUse --force to overwrite, or specify a different --audit-file");
+        }
+    }
+
+    public static void validateIndexOptions(File indexFile, boolean overwriteIndexFile, boolean isDryRun) throws FileAlreadyExistsException {
+        if (indexFile == null) {
+            return;
+        }
+        if (isDryRun) {
+            throw new IllegalStateException("--index-file can't be combined with --dry-run, there is no output to index");
+        }
+        if (indexFile.exists() && !overwriteIndexFile) {
+            throw new FileAlreadyExistsException("Index file " + indexFile + " already exists\nUse --force to overwrite, or specify a different --index-file");
+        }
+    }
+
+    public static void validateManifestOptions(File manifestFile, File inputFile, File outputFile, boolean isDryRun,
+                                               RecordMode recordMode, boolean watchConfig, File auditFile, File indexFile) {
+        if (manifestFile == null) {
+            return;
+        }
+        if (inputFile == null || outputFile == null) {
+            throw new IllegalStateException("--manifest requires --input and --output (stdin and stdout can't be reused)");
+        }
+        if (isDryRun) {
+            throw new IllegalStateException("--manifest can't be combined with --dry-run, there is no output to reuse");
+        }
+        if (recordMode != RecordMode.LINE) {
+            throw new IllegalStateException("--manifest can't be combined with multi-line records");
+        }
+        if (watchConfig || auditFile != null || indexFile != null) {
+            throw new IllegalStateException("--manifest can't be combined with --watch-config, --audit-file or --index-file");
+        }
+    }
+
+    /**
+     * The profiles name their own outputs, so options that belong to a
+     * single output can't be used with --profiles.
+     */
+    public static void validateProfileOptions(String profiles, File outputFile, File auditFile, File indexFile,
+                                              File manifestFile, String lineCache, boolean watchConfig) {
+        if (profiles == null) {
+            return;
+        }
+        if (outputFile != null || auditFile != null || indexFile != null || manifestFile != null
+                || lineCache != null || watchConfig) {
+            throw new IllegalStateException("--profiles writes to the outputs of the profiles and can't be combined with "
+                + "--output, --audit-file, --index-file, --manifest, --line-cache or --watch-config");
+        }
+    }
+
+    /**
+     * Parses a memory size such as 65536, 512k, 64m or 1g.
+     */
+    public static long parseSize(String size, String option) {
+        String value = size.trim().toLowerCase();
+        long unit = 1;
+        if (value.endsWith("k") || value.endsWith("m") || value.endsWith("g")) {
+            unit = value.endsWith("k") ? 1L << 10 : value.endsWith("m") ? 1L << 20 : 1L << 30;
+            value = value.substring(0, value.length() - 1);
+        }
+
+        try {
+            long bytes = Long.parseLong(value);
+            if (bytes > 0 && bytes <= Long.MAX_VALUE / unit) {
+                return bytes * unit;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalStateException(option + " must be a positive size, e.g. 65536, 512k, 64m or 1g: " + size);
+    }
+
+    /**
+     * Parses a duration such as 30s, 15m, 1h or 1d into milliseconds.
+     */
+    public static long parseDuration(String duration, String option) {
+        String value = duration.trim().toLowerCase();
+        long unit = 0;
+        if (!value.isEmpty()) {
+            switch (value.charAt(value.length() - 1)) {
+                case 's': unit = 1000L; break;
+                case 'm': unit = 60_000L; break;
+                case 'h': unit = 3_600_000L; break;
+                case 'd': unit = 86_400_000L; break;
+                default: break;
+            }
+        }
+
+        try {
+            long amount = Long.parseLong(value.substring(0, value.length() - 1));
+            if (unit > 0 && amount > 0 && amount <= Long.MAX_VALUE / unit) {
+                return amount * unit;
+            }
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            // reported below
+        }
+        throw new IllegalStateException(option + " must be a positive duration, e.g. 30s, 15m, 1h or 1d: " + duration);
+    }
+
+    /**
+     * Validates the multi-line record options and returns the effective mode.
+     */
+    public static RecordMode validateRecordOptions(RecordMode mode, String recordStart, int maxRecordSize, InputFormat format) {
+        Console.debug("Validate record options");
+
+        if (recordStart != null) {
+            if (mode != RecordMode.LINE && mode != RecordMode.START) {
+                throw new IllegalStateException("--record-start can't be combined with --record-separator " + mode.name().toLowerCase());
+            }
+            mode = RecordMode.START;
+        } else if (mode == RecordMode.START) {
+            throw new IllegalStateException("--record-separator start requires --record-start");
+        }
+
+        if (mode != RecordMode.LINE && format != InputFormat.TEXT) {
+            throw new IllegalStateException("Multi-line records are supported for --format text only");
+        }
+
+        if (maxRecordSize <= 0) {
+            throw new IllegalStateException("--max-record-size must be positive");
+        }
+
+        return mode;
+    }
+
+    /**
+     * Parses the --sample value.
+     * 
+     * @return a line count (&gt;= 1) or a fraction of the lines (&lt; 1)
+     */
+    public static double parseSample(String sample, File inputFile, RecordMode recordMode) {
+        Console.debug("Validate sample options");
+
+        if (inputFile == null) {
+            throw new IllegalStateException("--sample requires --input (stdin can't be sampled)");
+        }
+        if (recordMode != RecordMode.LINE) {
+            throw new IllegalStateException("--sample can't be combined with multi-line records");
+        }
+
+        String value = sample.trim();
+        try {
+            if (value.endsWith("%")) {
+                double percent = Double.parseDouble(value.substring(0, value.length() - 1));
+                if (percent > 0 && percent < 100) {
+                    return percent / 100;
+                }
+            } else if (value.contains(".")) {
+                double fraction = Double.parseDouble(value);
+                if (fraction > 0 && fraction < 1) {
+                    return fraction;
+                }
+            } else {
+                long count = Long.parseLong(value);
+                if (count >= 1) {
+                    return count;
+                }
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalStateException("--sample must be a line count or a fraction between 0 and 1: " + sample);
+    }
+
     private static void validateRules(List<Rule> rules) {
         Console.debug("Validate rules");
 
@@ -23,6 +23,14 @@ public class Console {
         verbose = v;
     }
 
+    public static boolean isTrace() {
+        return isTrace && !isQuiet;
+    }
+
+    public static boolean isDebug() {
+        return verboseLevel() >= 3 && !isQuiet;
+    }
+
     // Find verbose level
     private static int verboseLevel() {
         return (verbose == null) ? 0 : verbose.length;
@@ -0,0 +1,208 @@
+package com.gpak.tools.textminator.util;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import com.gpak.tools.textminator.model.LengthDistribution;
+
+/**
+ * Generates synthetic log lines for the bench command: a timestamp, level,
+ * thread and logger, then filler words until the line reaches its drawn
+ * length. A fraction of the lines (the PII density) gets one or two values
+ * that the default rules replace: emails, UUIDs, IPv4 and IPv6 addresses.
+ * The filler contains near misses such as version numbers, hex ids and ports.
+ * Nothing outside these values may match a default rule, or the density
+ * would not be the share of changed lines: the timestamp is in the basic
+ * ISO 8601 format and no word has a colon, since the ipv6 rule counts the
+ * colons of the whole rest of the line.
+ *
+ * The corpus only depends on the parameters: {@link Random} is specified to
+ * produce the same sequence for a seed on every JVM. Any change to the output
+ * for the same parameters must increase {@link #VERSION}, which the bench
+ * report prints, so that numbers are only compared on the same corpus.
+ */
+public final class CorpusGenerator {
+
+    public static final int VERSION = 2;
+
+    // 20240501T000000.000Z
+    private static final long START_MILLIS = 1_714_521_600_000L;
+
+    private static final String[] LEVELS = { "INFO ", "INFO ", "INFO ", "INFO ", "DEBUG", "DEBUG", "WARN ", "ERROR" };
+
+    private static final String[] THREADS = {
+        "main", "http-nio-8080-exec-1", "http-nio-8080-exec-7", "scheduler-1", "kafka-consumer-3", "ForkJoinPool-1-worker-5",
+    };
+
+    private static final String[] LOGGERS = {
+        "c.e.api.OrderController", "c.e.api.UserController", "c.e.jobs.Cleanup", "c.e.net.Client",
+        "c.e.auth.TokenService", "o.h.engine.jdbc.spi.SqlExceptionHelper", "c.e.cache.RegionCache",
+    };
+
+    private static final String[] WORDS = {
+        "request", "completed", "started", "user", "order", "session", "retrying", "after", "attempts", "connected",
+        "to", "from", "for", "with", "the", "cache", "miss", "hit", "took=12ms", "took=187ms", "status=200",
+        "status=404", "status=503", "GET", "POST", "/api/v1/orders/42", "/api/v2/users/search?q=smith", "port",
+        "8080", "443", "v1.2.3", "2.14.1", "0x1f3a", "deadbeef", "id=981273", "batch=17/64", "timeout", "exceeded",
+        "retry", "policy", "ok", "failed", "java.net.SocketTimeoutException", "Read", "timed", "out", "-", "|",
+        "key=value", "tenant=acme", "region=eu-west-1", "pool", "size", "3/20", "checksum", "a9f0c2e7", "at",
+        "12h30", "2024-05-01", "ms", "bytes=5120", "heartbeat", "health", "check",
+    };
+
+    // Timestamp, level and separators plus the mean thread and logger length
+    private static final int AVERAGE_HEADER = 20 + 1 + 5 + 2 + 2 + 2
+        + Arrays.stream(THREADS).mapToInt(String::length).sum() / THREADS.length
+        + Arrays.stream(LOGGERS).mapToInt(String::length).sum() / LOGGERS.length;
+
+    private static final String[] DOMAINS = { "example.com", "mail.example.org", "corp.acme.io", "gmail.com" };
+    private static final String[] NAMES = { "john.doe", "jane", "ops+alerts", "a.b.smith", "support", "x_y-z" };
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Random random;
+    private final double piiDensity;
+    private final int meanLength;
+    private final LengthDistribution distribution;
+    private long index;
+
+    /**
+     * @param piiDensity fraction of lines with personal data (0-1)
+     * @param meanLength mean line length in chars
+     */
+    public CorpusGenerator(long seed, double piiDensity, int meanLength, LengthDistribution distribution) {
+        if (piiDensity < 0 || piiDensity > 1) {
+            throw new IllegalStateException("PII density must be between 0 and 1: " + piiDensity);
+        }
+        if (meanLength < 1) {
+            throw new IllegalStateException("Line length must be positive: " + meanLength);
+        }
+        this.random = new Random(seed);
+        this.piiDensity = piiDensity;
+        this.meanLength = meanLength;
+        this.distribution = distribution;
+    }
+
+    public List<String> generate(int lines) {
+        List<String> corpus = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            corpus.add(next());
+        }
+        return corpus;
+    }
+
+    public String next() {
+        StringBuilder line = new StringBuilder(meanLength * 2);
+        appendTimestamp(line, START_MILLIS + index++ * 37);
+        line.append(' ').append(pick(LEVELS))
+            .append(" [").append(pick(THREADS)).append("] ")
+            .append(pick(LOGGERS)).append(" -");
+        int length = line.length() + drawMessageLength(line.length());
+
+        int pii = (random.nextDouble() < piiDensity) ? 1 + (random.nextInt(4) == 0 ? 1 : 0) : 0;
+        // Words until the length is reached (within half a word) and all
+        // values are placed, spread over the estimated number of words
+        int words = (length - line.length()) / 8;
+        for (int w = 0; pii > 0 || line.length() + 4 < length; w++) {
+            line.append(' ');
+            if (pii > 0 && (random.nextInt(Math.max(1, words - w)) < pii)) {
+                appendPii(line);
+                pii--;
+            } else {
+                line.append(pick(WORDS));
+            }
+        }
+        return line.toString();
+    }
+
+    /**
+     * Length of the words after the header, so that whole lines have the
+     * mean length on average (as long as it exceeds the header).
+     */
+    private int drawMessageLength(int headerLength) {
+        int mean = Math.max(8, meanLength - AVERAGE_HEADER);
+        switch (distribution) {
+            case FIXED:
+                return Math.max(8, meanLength - headerLength);
+            case UNIFORM:
+                return mean / 2 + random.nextInt(mean + 1);
+            default: {
+                // Median below the mean, tail up to 16x the mean
+                double sigma = 0.6;
+                double length = mean * Math.exp(sigma * random.nextGaussian() - sigma * sigma / 2);
+                return (int) Math.min(length, 16.0 * mean);
+            }
+        }
+    }
+
+    private void appendPii(StringBuilder line) {
+        switch (random.nextInt(4)) {
+            case 0:
+                line.append("user=").append(pick(NAMES)).append(random.nextInt(1000)).append('@').append(pick(DOMAINS));
+                break;
+            case 1:
+                line.append("trace=");
+                appendHex(line, 8);
+                line.append('-');
+                appendHex(line, 4);
+                line.append("-4");
+                appendHex(line, 3);
+                line.append('-').append(HEX[8 + random.nextInt(4)]);
+                appendHex(line, 3);
+                line.append('-');
+                appendHex(line, 12);
+                break;
+            case 2:
+                line.append("client=").append(1 + random.nextInt(254));
+                for (int i = 0; i < 3; i++) {
+                    line.append('.').append(random.nextInt(256));
+                }
+                break;
+            default: {
+                line.append("peer=fe80:");
+                int groups = 2 + random.nextInt(4);
+                for (int i = 0; i < groups; i++) {
+                    line.append(':');
+                    appendHex(line, 1 + random.nextInt(4));
+                }
+            }
+        }
+    }
+
+    private void appendHex(StringBuilder line, int digits) {
+        for (int i = 0; i < digits; i++) {
+            line.append(HEX[random.nextInt(16)]);
+        }
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    /**
+     * Appends yyyyMMddTHHmmss.SSSZ without java.time formatting, whose
+     * output could change with the locale data of the JDK.
+     */
+    private static void appendTimestamp(StringBuilder line, long millis) {
+        long days = Math.floorDiv(millis, 86_400_000L);
+        long ofDay = Math.floorMod(millis, 86_400_000L);
+        LocalDate date = LocalDate.ofEpochDay(days);
+
+        line.append(date.getYear());
+        pad(line, date.getMonthValue(), 2);
+        pad(line, date.getDayOfMonth(), 2).append('T');
+        pad(line, (int) (ofDay / 3_600_000), 2);
+        pad(line, (int) (ofDay / 60_000 % 60), 2);
+        pad(line, (int) (ofDay / 1000 % 60), 2).append('.');
+        pad(line, (int) (ofDay % 1000), 3).append('Z');
+    }
+
+    private static StringBuilder pad(StringBuilder line, int value, int digits) {
+        String text = Integer.toString(value);
+        for (int i = text.length(); i < digits; i++) {
+            line.append('0');
+        }
+        return line.append(text);
+    }
+}
@@ -8,8 +8,17 @@ import java.util.List;
 import java.util.Map;
 
 import com.gpak.tools.textminator.Main;
+import com.gpak.tools.textminator.core.LineCache;
+import com.gpak.tools.textminator.core.ProfileSanitizer;
+import com.gpak.tools.textminator.core.SampleEstimator;
 import com.gpak.tools.textminator.core.ToolContext;
+import com.gpak.tools.textminator.io.IncrementalPlan;
+import com.gpak.tools.textminator.io.SyslogListener;
+import com.gpak.tools.textminator.model.BenchResult;
+import com.gpak.tools.textminator.model.Estimate;
+import com.gpak.tools.textminator.model.Profile;
 import com.gpak.tools.textminator.model.Rule;
+import com.gpak.tools.textminator.model.RuleAnalysis;
 
 public class PrintUtil {
 
@@ -54,27 +63,224 @@ public class PrintUtil {
             Console.config("  " + rule.getName());
             Console.config("    order  : " + rule.getOrder());
             Console.config("    enabled: " + rule.isEnabled());
-            Console.config("    regex  : " + rule.getPattern());
+            if (rule.isDictionary()) {
+                Console.config("    dict.  : " + rule.getDictionary().size() + " entries");
+            } else if (rule.isBuiltin()) {
+                Console.config("    type   : builtin");
+                Console.config("    regex  : " + rule.getBuiltin().getRegex());
+            } else {
+                Console.config("    regex  : " + rule.getPattern());
+            }
             Console.config("    replace: " + rule.getReplacement());
+            if (rule.getValidator() != null) {
+                Console.config("    valid. : " + rule.getValidator().name().toLowerCase());
+            }
+            if (rule.isIndependent()) {
+                Console.config("    indep. : true");
+            }
+            if (!rule.getFields().isEmpty()) {
+                Console.config("    fields : " + String.join(", ", rule.getFields()));
+            }
         }
     }
 
-    public static void printStatsSummary(Map<String, Long> statistics, long elapsedNanos, long totalNumberOfLines) {
+    /**
+     * Prints the analysis of each rule.
+     * 
+     * @return true if at least one rule exceeds the threshold
+     */
+    public static boolean printRuleAnalysis(List<RuleAnalysis> analysis, double thresholdNsPerChar) {
+        Console.debug("Print rule analysis");
+        Console.config("Rule analysis (threshold: " + thresholdNsPerChar + " ns/char):");
+
+        if (analysis.isEmpty()) {
+            Console.config("  no regex rules (dictionary and builtin rules are linear)");
+        }
+
+        boolean slow = false;
+        for (RuleAnalysis a : analysis) {
+            boolean overThreshold = a.getNsPerChar() > thresholdNsPerChar;
+            slow |= overThreshold;
+
+            Console.config("  " + a.getName());
+            if (a.isTimedOut()) {
+                Console.config("    cost   : timed out on " + a.getWorstInput() + " (catastrophic backtracking)");
+            } else {
+                Console.config(String.format("    cost   : %.1f ns/char (worst: %s)", a.getNsPerChar(), a.getWorstInput()));
+            }
+            if (a.isSuperlinear()) {
+                Console.config("    scaling: cost grows with input length (super-linear)");
+            }
+            for (String issue : a.getIssues()) {
+                Console.config("    issue  : " + issue);
+            }
+            if (overThreshold) {
+                Console.config("    WARNING: exceeds threshold");
+            }
+        }
+
+        return slow;
+    }
+
+    /**
+     * Prints the summary with the rule counters grouped by rule set version.
+     * The version header is shown only when the rules were reloaded.
+     *
+     * @param lineCache the line cache, or null if none was used
+     */
+    public static void printStatsSummary(Map<Long, Map<String, Long>> statistics, long elapsedNanos, long totalNumberOfLines,
+            LineCache lineCache, IncrementalPlan plan) {
         Console.debug("Print summary");
         Console.stats(ToolContext.TOOL_NAME + " stats:");
 
         Console.stats(String.format("  elapsed time:     %.3f s", elapsedNanos / 1_000_000_000.0));
         Console.stats("  total file lines: " + totalNumberOfLines);
+        if (lineCache != null) {
+            Console.stats(String.format("  line cache:       %.1f%% hits (%d of %d), %d entries, %.1f of %.1f MB, %d evicted",
+                                        lineCache.getHitRate() * 100,
+                                        lineCache.getHits(),
+                                        lineCache.getHits() + lineCache.getMisses(),
+                                        lineCache.size(),
+                                        lineCache.getBytes() / (1024.0 * 1024.0),
+                                        lineCache.getMaxBytes() / (1024.0 * 1024.0),
+                                        lineCache.getEvictions()));
+        }
+        if (plan != null) {
+            Console.stats(String.format("  reused chunks:    %d of %d (%.1f of %.1f MB), rules below count sanitized chunks only",
+                                        plan.getReusedChunks(),
+                                        plan.getChunks(),
+                                        plan.getReusedBytes() / (1024.0 * 1024.0),
+                                        plan.getInputBytes() / (1024.0 * 1024.0)));
+        }
         Console.stats("");
 
-        if (statistics.isEmpty()) {
+        if (statistics.values().stream().allMatch(Map::isEmpty)) {
             Console.stats("  no rules and/or no matches");
             return;
         }
 
+        boolean reloaded = statistics.size() > 1;
+        statistics.forEach((version, counters) -> {
+            Console.stats(reloaded ? "  rules (rule set version " + version + "):" : "  rules:");
+            counters.forEach((name, count) -> {
+                Console.stats(String.format("    %-25s %d", name, count));
+            });
+        });
+    }
+
+    /**
+     * Prints the rule counters of every profile written by --profiles.
+     *
+     * @param shared the sanitizer shared by the profiles, or null if each
+     *               profile used its own
+     */
+    public static void printProfileSummary(List<Profile> profiles, List<Map<String, Long>> statistics, long elapsedNanos,
+            long totalNumberOfLines, ProfileSanitizer shared) {
+        Console.debug("Print profile summary");
+        Console.stats(ToolContext.TOOL_NAME + " stats:");
+
+        Console.stats(String.format("  elapsed time:     %.3f s", elapsedNanos / 1_000_000_000.0));
+        Console.stats("  total file lines: " + totalNumberOfLines);
+        if (shared != null) {
+            long runs = shared.getRuleRuns() + shared.getSharedRuns();
+            Console.stats(String.format("  shared rules:     %.1f%% of rule runs (%d of %d) taken from another profile",
+                                        (runs > 0) ? 100.0 * shared.getSharedRuns() / runs : 0,
+                                        shared.getSharedRuns(), runs));
+        }
+
+        for (int p = 0; p < profiles.size(); p++) {
+            Console.stats("");
+            Console.stats("  profile " + profiles.get(p).getName() + " (" + profiles.get(p).getOutputFile().getName() + "):");
+            if (statistics.get(p).values().stream().allMatch(count -> count == 0)) {
+                Console.stats("    no matches");
+                continue;
+            }
+            statistics.get(p).forEach((name, count) -> {
+                Console.stats(String.format("    %-25s %d", name, count));
+            });
+        }
+    }
+
+    /**
+     * Prints the totals estimated by --sample.
+     */
+    public static void printSampleSummary(SampleEstimator estimator, List<String> ruleNames, long fileBytes,
+            long elapsedNanos, long skipped) {
+        Console.debug("Print sample summary");
+        Console.stats(ToolContext.TOOL_NAME + " sample estimate (95% confidence):");
+
+        Estimate lines = estimator.estimate(SampleEstimator.LINES);
+        Estimate changed = estimator.estimate(SampleEstimator.CHANGED);
+        Estimate nanos = estimator.estimate(SampleEstimator.NANOS);
+
+        Console.stats(String.format("  elapsed time:     %.3f s", elapsedNanos / 1_000_000_000.0));
+        Console.stats(String.format("  sampled lines:    %d (file size: %d bytes)%s", estimator.getSamples(), fileBytes,
+                                    skipped > 0 ? " (" + skipped + " more too long, left out)" : ""));
+        Console.stats("  total file lines: " + formatEstimate(lines));
+        Console.stats("  changed lines:    " + formatEstimate(changed));
+        Console.stats(String.format("  projected time:   %.1f s +/- %.1f (rules only, excluding I/O)",
+                                    nanos.getValue() / 1_000_000_000.0, nanos.getMargin() / 1_000_000_000.0));
+        Console.stats("");
+
+        Console.stats("  rules (estimated matches):");
+        for (String name : ruleNames) {
+            Console.stats(String.format("    %-25s %s", name, formatEstimate(estimator.estimate(name))));
+        }
+    }
+
+    /**
+     * Prints the throughput, latency and rule costs measured by the bench
+     * command.
+     *
+     * @param corpus description of the corpus parameters
+     */
+    public static void printBenchSummary(BenchResult result, String corpus, int warmup) {
+        Console.debug("Print bench summary");
+        Console.stats(ToolContext.TOOL_NAME + " bench:");
+
+        Console.stats(String.format("  corpus:           %d lines, %.1f MB, %s", result.getLines(),
+                                    result.getBytes() / (1024.0 * 1024.0), corpus));
+        Console.stats(String.format("  iterations:       %d warm-up, %d measured", warmup, result.getIterations()));
+        Console.stats(String.format("  throughput:       %.0f lines/s (%.0f - %.0f), %.1f MB/s",
+                                    result.getLinesPerSecond(), result.getMinLinesPerSecond(),
+                                    result.getMaxLinesPerSecond(), result.getMegabytesPerSecond()));
+        Console.stats(String.format("  latency per line: p50 %.2f us, p99 %.2f us, max %.2f us",
+                                    result.getLatency(50) / 1000.0, result.getLatency(99) / 1000.0,
+                                    result.getLatency(100) / 1000.0));
+        Console.stats(String.format("  changed lines:    %d (%.1f%%)", result.getChangedLines(),
+                                    100.0 * result.getChangedLines() / result.getLines()));
+        Console.stats("");
+
+        double total = result.getRuleNanosPerLine().values().stream().mapToDouble(Double::doubleValue).sum();
+        Console.stats("  rules (cost per line, each rule run on its own):");
+        result.getRuleNanosPerLine().forEach((name, nanos) -> {
+            Console.stats(String.format("    %-25s %8.1f ns  %5.1f%%", name, nanos, (total > 0) ? 100 * nanos / total : 0));
+        });
+    }
+
+    /**
+     * Prints the message counters and rule statistics of the listen command.
+     */
+    public static void printListenSummary(SyslogListener listener, Map<String, Long> statistics, long elapsedNanos) {
+        Console.debug("Print listen summary");
+        Console.stats(ToolContext.TOOL_NAME + " listen stats:");
+
+        Console.stats(String.format("  elapsed time:     %.3f s", elapsedNanos / 1_000_000_000.0));
+        Console.stats("  received:         " + listener.getReceived());
+        Console.stats("  processed:        " + listener.getProcessed());
+        Console.stats("  redacted:         " + listener.getRedacted());
+        Console.stats("  dropped:          " + listener.getDropped());
+        Console.stats("  truncated:        " + listener.getTruncated());
+        Console.stats("  files written:    " + listener.getRolledFiles());
+        Console.stats("");
+
         Console.stats("  rules:");
         statistics.forEach((name, count) -> {
             Console.stats(String.format("    %-25s %d", name, count));
         });
     }
+
+    private static String formatEstimate(Estimate estimate) {
+        return String.format("%.0f +/- %.0f", estimate.getValue(), estimate.getMargin());
+    }
 }
@@ -0,0 +1,139 @@
+package com.gpak.tools;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.gpak.tools.textminator.core.KeyedHash;
+import com.gpak.tools.textminator.core.RuleSet;
+import com.gpak.tools.textminator.core.Sanitizer;
+import com.gpak.tools.textminator.io.AuditWriter;
+import com.gpak.tools.textminator.model.AuditFormat;
+import com.gpak.tools.textminator.model.Rule;
+import com.gpak.tools.textminator.util.ConfigUtil;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AuditWriterTest {
+
+    private static final Rule EMAIL = new Rule("email", Pattern.compile("[\\w.+-]+@[\\w-]+\\.[\\w.-]+"), "<EMAIL>", 1, true);
+    private static final Rule NAME = new Rule("name", Pattern.compile("bob"), "<NAME>", 2, true);
+    private static final Rule TAG = new Rule("tag", Pattern.compile("<EMAIL>"), "[x]", 3, true);
+
+    @TempDir
+    Path tempDir;
+
+    private static final KeyedHash KEY = KeyedHash.of("0123456789abcdef".getBytes(StandardCharsets.UTF_8));
+
+    private static Sanitizer sanitizer(Rule... rules) {
+        return new Sanitizer(RuleSet.of(List.of(rules)).withHashKey(KEY), false);
+    }
+
+    @Test
+    void reportsColumnsOfTheOriginalLine() {
+        Sanitizer sanitizer = sanitizer(EMAIL, NAME, TAG);
+        List<String> matches = new ArrayList<>();
+        sanitizer.setMatchListener((rule, field, column, length, hash) ->
+            matches.add(rule.getName() + "@" + column + "+" + length));
+
+        assertEquals("<NAME> [x] <NAME>", sanitizer.sanitizeLine("bob a@b.com bob").getLine());
+        assertEquals(List.of("email@4+7", "name@0+3", "name@12+3", "tag@4+7"), matches);
+    }
+
+    @Test
+    void hashMatchesHashReplacement() {
+        Rule hashed = new Rule("email", EMAIL.getPattern(), "${hash:16}", 1, true);
+        Sanitizer sanitizer = sanitizer(hashed);
+        long[] hash = new long[1];
+        sanitizer.setMatchListener((rule, field, column, length, valueHash) -> hash[0] = valueHash);
+
+        String token = sanitizer.sanitizeLine("a@b.com").getLine();
+        assertEquals(token, String.format("%016x", hash[0]));
+    }
+
+    @Test
+    void requiresHashKey() throws Exception {
+        Sanitizer unkeyed = new Sanitizer(RuleSet.of(List.of(EMAIL)).withHashKey(null), false);
+        assertThrows(IllegalStateException.class, () -> unkeyed.setMatchListener((rule, field, column, length, hash) -> { }));
+
+        File file = tempDir.resolve("audit.jsonl").toFile();
+        assertThrows(IllegalStateException.class, () -> ConfigUtil.validateAuditOptions(file, false, null));
+        ConfigUtil.validateAuditOptions(file, false, KEY);
+    }
+
+    @Test
+    void writesJsonLinesAcrossBatches() throws Exception {
+        File file = tempDir.resolve("audit.jsonl").toFile();
+        Sanitizer sanitizer = sanitizer(EMAIL);
+
+        try (AuditWriter audit = new AuditWriter(file, AuditFormat.JSONL, 2)) {
+            sanitizer.setMatchListener(audit);
+            for (int line = 1; line <= 5; line++) {
+                audit.setLine(line);
+                sanitizer.sanitizeLine("x a@b.com");
+            }
+        }
+
+        List<String> lines = Files.readAllLines(file.toPath());
+        assertEquals(5, lines.size());
+        assertEquals("{\"line\":5,\"column\":2,\"length\":7,\"rule\":\"email\",\"hash\":\""
+            + lines.get(0).substring(lines.get(0).indexOf("\"hash\":\"") + 8), lines.get(4));
+        assertTrue(lines.get(0).startsWith("{\"line\":1,"));
+    }
+
+    @Test
+    void writesBinaryRecordsWithNameTable() throws Exception {
+        File file = tempDir.resolve("audit.bin").toFile();
+        Sanitizer sanitizer = sanitizer(EMAIL);
+
+        try (AuditWriter audit = new AuditWriter(file, AuditFormat.BINARY)) {
+            sanitizer.setMatchListener(audit);
+            audit.setLine(300);
+            sanitizer.sanitizeLine("a@b.com c@d.com");
+        }
+
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            byte[] magic = new byte[5];
+            in.readFully(magic);
+            assertEquals("TXMA", new String(magic, 0, 4, StandardCharsets.US_ASCII));
+            assertEquals(1, magic[4]);
+
+            assertEquals('N', in.read());
+            assertEquals(1, in.read());
+            assertEquals(5, in.read());
+            byte[] name = new byte[5];
+            in.readFully(name);
+            assertEquals("email", new String(name, StandardCharsets.UTF_8));
+
+            // line 300 = varint 0xac 0x02
+            assertEquals('M', in.read());
+            assertEquals(0xac, in.read());
+            assertEquals(0x02, in.read());
+            assertEquals(0, in.read());
+            assertEquals(7, in.read());
+            assertEquals(1, in.read());
+            assertEquals(0, in.read());
+            long first = in.readLong();
+
+            assertEquals('M', in.read());
+            in.skipBytes(2);
+            assertEquals(8, in.read());
+            in.skipBytes(3);
+            long second = in.readLong();
+            assertEquals(-1, in.read());
+            assertNotEquals(first, second);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.gpak.tools;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.gpak.tools.textminator.core.BuiltinRule;
+import com.gpak.tools.textminator.core.RuleSet;
+import com.gpak.tools.textminator.core.Sanitizer;
+import com.gpak.tools.textminator.model.Rule;
+import com.gpak.tools.textminator.util.ConfigUtil;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BuiltinRuleTest {
+
+    // Word chars beyond ASCII, a combining mark, a supplementary digit and line terminators
+    private static final String[] EXTRA = { "\u00e9", "\u0301", "\u0663", "\ud835\udfd8", "\n", "\u2028", "\u0085" };
+
+    private static final String[] FRAGMENTS = {
+        "john.doe+tag@mail.example.com", "a@b.c", "@", "..", "x-y", "_",
+        "550e8400-e29b-41d4-a716-446655440000", "550E8400-E29B-41D4-B716-446655440000", "-",
+        "192.168.0.1", "255.255.255.255", "256.1.1.1", "01.2.3.4", "1.2.3", ".", "10",
+        "fe80::1", "2001:db8::ff00:42:8329", "::", ":", "abc:def", "dead:beef:cafe",
+        " ", "=", "/", "[", "]",
+    };
+
+    @Test
+    void matchesLikeTheRegexOnRandomText() {
+        Random random = new Random(42);
+        String alphabet = "0123456789abcdefABCDEFxyz_.+-@: =";
+
+        for (BuiltinRule builtin : BuiltinRule.values()) {
+            Pattern pattern = Pattern.compile(builtin.getRegex());
+            for (int n = 0; n < 20000; n++) {
+                StringBuilder text = new StringBuilder();
+                int length = 1 + random.nextInt(80);
+                while (text.length() < length) {
+                    int pick = random.nextInt(20);
+                    if (pick < 12) {
+                        text.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                    } else if (pick < 18) {
+                        text.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+                    } else {
+                        text.append(EXTRA[random.nextInt(EXTRA.length)]);
+                    }
+                }
+                assertSameMatches(builtin, pattern, text.toString());
+            }
+        }
+    }
+
+    @Test
+    void matchesLikeTheRegexOnEdgeCases() {
+        String[] texts = {
+            "", "@", "a@", "a@b", "a@b.", "a@b.c", ".+-@x-.y", "a@b@c.d", "x@y.z@w.v", "a@-.-",
+            "\u00e9john@x.io", "john@x.io\u00e9",
+            "550e8400-e29b-41d4-a716-446655440000", "x550e8400-e29b-41d4-a716-446655440000",
+            "550e8400-e29b-41d4-a716-4466554400001", "550e8400-e29b-61d4-a716-446655440000",
+            "\u00e9550e8400-e29b-41d4-a716-446655440000", "550e8400-e29b-41d4-a716-446655440000\u0301",
+            "1.2.3.4", "1.2.3.4.5", "0.0.0.0", "00.0.0.0", "1.2.3.256", "a1.2.3.4", "1.2.3.4a", "1.2.3.4\u0663",
+            "\u00e91.2.3.4", "1.2.3.4\u0301", "999.1.2.3 1.2.3.4", "1.2.3.4:80",
+            "::", "::1", "a::", "fe80::1%eth0", "1:2", "1:2:3", "x:y:z", "ab:\n:cd", "ab:\u2028::", "ab ::\r\n",
+            "0123456789abcdef0123456789abcdef01234567:", "0123456789abcdef0123456789abcdef012345678:9",
+            ":::::::::::::::::::::::::::::::::::::::::::::::", "abc:def:\u00e9", "\u00e9ab:cd:ef", "ab:cd:ef\u0301",
+            "\ud835\udfd8ab:cd:ef", "ab:cd:ef\ud835\udfd8", "id=ab:cd:ef; ip=1.2.3.4; id=550e8400-e29b-41d4-a716-446655440000",
+        };
+        for (BuiltinRule builtin : BuiltinRule.values()) {
+            Pattern pattern = Pattern.compile(builtin.getRegex());
+            for (String text : texts) {
+                assertSameMatches(builtin, pattern, text);
+                assertSameMatches(builtin, pattern, "x " + text + " y");
+            }
+        }
+    }
+
+    @Test
+    void sanitizesLikeTheRegexRule() {
+        for (BuiltinRule builtin : BuiltinRule.values()) {
+            Sanitizer regex = sanitizer(new Rule("r", Pattern.compile(builtin.getRegex()), "<${last:2}>", 1, true));
+            Sanitizer scanner = sanitizer(new Rule("r", builtin, "<${last:2}>", 1, true));
+
+            String line = "user john@example.com from 10.0.0.1 / fe80::1 req=550e8400-e29b-41d4-a716-446655440000";
+            assertEquals(regex.sanitizeLine(line).getLine(), scanner.sanitizeLine(line).getLine());
+        }
+
+        Sanitizer scanner = sanitizer(new Rule("ipv4", BuiltinRule.IPV4, "<IPV4>", 1, true));
+        assertEquals("from <IPV4> to <IPV4>", scanner.sanitizeLine("from 10.0.0.1 to 192.168.1.254").getLine());
+        String unchanged = "version 1.2.3";
+        assertSame(unchanged, scanner.sanitizeLine(unchanged).getLine());
+    }
+
+    @Test
+    void shippedRulesUseBuiltinScanners() {
+        List<Rule> rules = ConfigUtil.loadConfigFile(null);
+        for (Rule rule : rules) {
+            assertTrue(rule.isBuiltin(), rule.getName());
+            assertNull(rule.getPattern());
+            assertEquals(BuiltinRule.of(rule.getName()), rule.getBuiltin());
+        }
+    }
+
+    @Test
+    void parsesTypeProperty(@TempDir Path tempDir) throws Exception {
+        Path p = tempDir.resolve("rules.properties");
+        Files.writeString(p, "ipv4.type=builtin\nipv4.order=1\nipv4.replacement=<IP>\n"
+            + "uuid.type=regex\nuuid.regex=[0-9a-f]{8}\nuuid.order=2\n", StandardCharsets.UTF_8);
+
+        List<Rule> rules = ConfigUtil.loadConfigFile(p.toFile());
+        assertEquals(BuiltinRule.IPV4, rules.get(0).getBuiltin());
+        assertFalse(rules.get(1).isBuiltin());
+        assertEquals("[0-9a-f]{8}", rules.get(1).getPattern().pattern());
+
+        assertInvalid(tempDir, "phone.type=builtin\nphone.order=1\n");
+        assertInvalid(tempDir, "ipv4.type=fast\nipv4.regex=x\nipv4.order=1\n");
+        assertInvalid(tempDir, "ipv4.type=builtin\nipv4.regex=\\\\d+\nipv4.order=1\n");
+        assertInvalid(tempDir, "email.type=builtin\nemail.dictionary=emails.txt\nemail.order=1\n");
+    }
+
+    private static void assertInvalid(Path dir, String properties) throws Exception {
+        File bad = dir.resolve("bad.properties").toFile();
+        Files.writeString(bad.toPath(), properties, StandardCharsets.UTF_8);
+        assertThrows(IllegalStateException.class, () -> ConfigUtil.loadConfigFile(bad));
+    }
+
+    private static Sanitizer sanitizer(Rule rule) {
+        return new Sanitizer(RuleSet.of(List.of(rule)), false);
+    }
+
+    private static void assertSameMatches(BuiltinRule builtin, Pattern pattern, String text) {
+        List<String> expected = new ArrayList<>();
+        Matcher matcher = pattern.matcher(text);
+        while (matcher.find()) {
+            expected.add(matcher.start() + "-" + matcher.end());
+        }
+
+        List<String> actual = new ArrayList<>();
+        int[] span = new int[2];
+        int from = 0;
+        while (builtin.find(text, from, span)) {
+            actual.add(span[0] + "-" + span[1]);
+            from = span[1];
+        }
+        assertEquals(expected, actual, builtin + " on: " + text);
+    }
+}
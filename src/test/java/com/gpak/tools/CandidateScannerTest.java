@@ -0,0 +1,93 @@
+package com.gpak.tools;
+
+import org.junit.jupiter.api.Test;
+
+import com.gpak.tools.textminator.core.CandidateScanner;
+import com.gpak.tools.textminator.core.RuleSet;
+import com.gpak.tools.textminator.core.Sanitizer;
+import com.gpak.tools.textminator.model.Rule;
+
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CandidateScannerTest {
+
+    private static final String EMAIL = "[\\w.+-]+@[\\w-]+\\.[\\w.-]+";
+    private static final String UUID = "\\b[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[1-5][0-9a-fA-F]{3}-[89abAB][0-9a-fA-F]{3}-[0-9a-fA-F]{12}\\b";
+    private static final String IPV4 = "\\b(?:(?:25[0-5]|2[0-4]\\d|1\\d{2}|[1-9]?\\d)\\.){3}(?:25[0-5]|2[0-4]\\d|1\\d{2}|[1-9]?\\d)\\b";
+    private static final String IPV6 = "\\b(?=[0-9A-Fa-f:]{2,39}\\b)(?=(?:.*:){2,})[0-9A-Fa-f:]+\\b";
+
+    @Test
+    void derivesFirstCharsOfDefaultRules() {
+        assertNull(CandidateScanner.of(Pattern.compile(EMAIL)));
+
+        CandidateScanner ipv4 = CandidateScanner.of(Pattern.compile(IPV4));
+        assertTrue(ipv4.isFirstChar('1'));
+        assertFalse(ipv4.isFirstChar('a'));
+        assertEquals(7, ipv4.next("ip=abc 10.0.0.1", 0));
+        // "a10" is one word, so the first candidate is after the dot
+        assertEquals(7, ipv4.next("ip=a10.0.0.1", 0));
+
+        CandidateScanner ipv6 = CandidateScanner.of(Pattern.compile(IPV6));
+        assertTrue(ipv6.isFirstChar(':'));
+        assertTrue(ipv6.isFirstChar('F'));
+        assertFalse(ipv6.isFirstChar('g'));
+
+        assertNotNull(CandidateScanner.of(Pattern.compile(UUID)));
+    }
+
+    @Test
+    void optionalAtomsAddTheFollowingChars() {
+        CandidateScanner scanner = CandidateScanner.of(Pattern.compile("(?:x|y)?-?\\d+"));
+
+        assertTrue(scanner.isFirstChar('x'));
+        assertTrue(scanner.isFirstChar('-'));
+        assertTrue(scanner.isFirstChar('7'));
+        assertFalse(scanner.isFirstChar('z'));
+        assertTrue(CandidateScanner.of(Pattern.compile("id", Pattern.CASE_INSENSITIVE)).isFirstChar('I'));
+    }
+
+    @Test
+    void givesUpOnUncertainPatterns() {
+        assertNull(CandidateScanner.of(Pattern.compile("a*")));
+        assertNull(CandidateScanner.of(Pattern.compile("(?i)abc")));
+        assertNull(CandidateScanner.of(Pattern.compile("\\Gabc")));
+        assertNull(CandidateScanner.of(Pattern.compile(".+x")));
+    }
+
+    @Test
+    void sanitizerMatchesLikeMatcherFind() {
+        String[] regexes = { UUID, IPV4, IPV6, "(?<=id=)\\d+", "\\bkey[:=]\\w+", "x|\\d{3}", "[^a-z ]+;",
+                             "(?i)\\btoken\\b", "\\bé\\w*" };
+        String alphabet = "0123456789abcdefABCDEFxyzé:.-=; _\tkeytokenid";
+        Random random = new Random(42);
+
+        for (String regex : regexes) {
+            Pattern pattern = Pattern.compile(regex);
+            Sanitizer sanitizer = new Sanitizer(RuleSet.of(List.of(new Rule("r", pattern, "<$0>", 1, true))), false);
+
+            for (int n = 0; n < 3000; n++) {
+                StringBuilder line = new StringBuilder();
+                int length = 1 + random.nextInt(60);
+                for (int i = 0; i < length; i++) {
+                    line.append(alphabet.charAt(random.nextInt(alphabet.length())));
+                }
+                if (n % 3 == 0) {
+                    line.append(" 192.168.1.").append(random.nextInt(300)).append(" fe80::1:").append(n)
+                        .append(" 123e4567-e89b-12d3-a456-42661417400").append(n % 10);
+                }
+
+                String text = line.toString();
+                assertEquals(pattern.matcher(text).replaceAll("<$0>"), sanitizer.sanitizeLine(text).getLine(),
+                    regex + " on " + text);
+            }
+        }
+    }
+}
@@ -11,6 +11,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -162,4 +163,17 @@ class ConfigUtilTest {
 
         assertThrows(IllegalStateException.class, () -> ConfigUtil.loadConfigFile(cfg));
     }
+
+    @Test
+    void parsesFieldsList() throws Exception {
+        File cfg = writeConfig("""
+            email.regex=aa
+            email.order=1
+            email.fields=user.email, contact ,
+            """);
+
+        List<Rule> rules = ConfigUtil.loadConfigFile(cfg);
+
+        assertEquals(Set.of("user.email", "contact"), rules.get(0).getFields());
+    }
 }
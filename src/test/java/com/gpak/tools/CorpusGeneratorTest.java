@@ -0,0 +1,90 @@
+package com.gpak.tools;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.gpak.tools.textminator.Main;
+import com.gpak.tools.textminator.core.RuleSet;
+import com.gpak.tools.textminator.core.Sanitizer;
+import com.gpak.tools.textminator.model.LengthDistribution;
+import com.gpak.tools.textminator.util.ConfigUtil;
+import com.gpak.tools.textminator.util.CorpusGenerator;
+
+import picocli.CommandLine;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CorpusGeneratorTest {
+
+    private static List<String> generate(long seed, double density, int length, LengthDistribution distribution) {
+        return new CorpusGenerator(seed, density, length, distribution).generate(5000);
+    }
+
+    private static boolean hasPii(String line) {
+        return line.contains(" user=") || line.contains(" trace=") || line.contains(" client=") || line.contains(" peer=");
+    }
+
+    @Test
+    void sameSeedGivesSameCorpus() {
+        List<String> corpus = generate(7, 0.2, 120, LengthDistribution.LOGNORMAL);
+        assertEquals(corpus, generate(7, 0.2, 120, LengthDistribution.LOGNORMAL));
+        assertNotEquals(corpus, generate(8, 0.2, 120, LengthDistribution.LOGNORMAL));
+
+        // Pinned so that an unintended change of the corpus fails here; bump VERSION when changing it
+        assertEquals(2, CorpusGenerator.VERSION);
+        assertEquals("20240501T000000.000Z DEBUG [http-nio-8080-exec-7] c.e.auth.TokenService - timeout status=503"
+            + " bytes=5120 after", corpus.get(0));
+    }
+
+    @Test
+    void followsDensityAndLength() {
+        Sanitizer sanitizer = RuleSet.of(ConfigUtil.loadConfigFile(null)).newSanitizer(false);
+        for (double density : new double[] { 0, 0.2, 1 }) {
+            List<String> corpus = generate(1, density, 120, LengthDistribution.LOGNORMAL);
+            double share = corpus.stream().filter(CorpusGeneratorTest::hasPii).count() / (double) corpus.size();
+            assertEquals(density, share, 0.03);
+
+            // The default rules change exactly the lines with values, nothing in the rest of the line
+            for (String line : corpus) {
+                assertEquals(hasPii(line), sanitizer.sanitizeLine(line).isChanged(), line);
+            }
+        }
+
+        // Values longer than the words they replace add a little at high densities
+        for (LengthDistribution distribution : LengthDistribution.values()) {
+            List<String> corpus = generate(1, 0.2, 120, distribution);
+            double mean = corpus.stream().mapToInt(String::length).average().orElse(0);
+            assertEquals(120, mean, 12, distribution.name());
+        }
+
+        for (String line : generate(1, 0, 200, LengthDistribution.FIXED)) {
+            assertTrue(line.length() >= 190 && line.length() < 250, line);
+        }
+        for (String line : generate(1, 0, 200, LengthDistribution.UNIFORM)) {
+            assertTrue(line.length() >= 100 && line.length() < 360, line);
+        }
+
+        assertThrows(IllegalStateException.class, () -> new CorpusGenerator(1, 1.5, 120, LengthDistribution.FIXED));
+    }
+
+    @Test
+    void benchCommandRunsOnGeneratedCorpus(@TempDir Path tempDir) throws Exception {
+        Path corpus = tempDir.resolve("corpus.log");
+        int exitCode = new CommandLine(new Main())
+            .setCaseInsensitiveEnumValuesAllowed(true)
+            .execute("bench", "--lines", "500", "--warmup", "1", "--iterations", "1", "--length-dist", "uniform",
+                     "--save-corpus", corpus.toString());
+
+        assertEquals(0, exitCode);
+        assertEquals(generate(42, 0.2, 120, LengthDistribution.UNIFORM).subList(0, 500),
+                     Files.readAllLines(corpus, StandardCharsets.UTF_8));
+    }
+}
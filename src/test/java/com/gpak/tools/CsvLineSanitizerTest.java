@@ -0,0 +1,77 @@
+package com.gpak.tools;
+
+import org.junit.jupiter.api.Test;
+
+import com.gpak.tools.textminator.core.CsvLineSanitizer;
+import com.gpak.tools.textminator.core.RuleSet;
+import com.gpak.tools.textminator.core.Sanitizer;
+import com.gpak.tools.textminator.model.Rule;
+
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CsvLineSanitizerTest {
+
+    private static final Rule EMAIL = new Rule("email", Pattern.compile("[\\w.+-]+@[\\w-]+\\.[\\w.-]+"), "<EMAIL>", 1, true);
+    private static final Rule WORDS = new Rule("words", Pattern.compile("a,b"), "<AB>", 2, true);
+
+    private Sanitizer sanitizer(Rule... rules) {
+        return new Sanitizer(RuleSet.of(List.of(rules)), false);
+    }
+
+    @Test
+    void sanitizesOnlySelectedColumnsByName() {
+        CsvLineSanitizer csv = new CsvLineSanitizer(sanitizer(EMAIL), ',', true, Set.of("mail"));
+
+        assertEquals("id,mail,note", csv.sanitizeLine("id,mail,note").getLine());
+        assertEquals("1,<EMAIL>,x@y.com", csv.sanitizeLine("1,a@b.com,x@y.com").getLine());
+    }
+
+    @Test
+    void selectsColumnsByIndexWithoutHeader() {
+        CsvLineSanitizer csv = new CsvLineSanitizer(sanitizer(EMAIL), '\t', false, Set.of("3"));
+
+        assertEquals("a@b.com\t2\t<EMAIL>", csv.sanitizeLine("a@b.com\t2\tc@d.com").getLine());
+    }
+
+    @Test
+    void neverMatchesAcrossDelimiters() {
+        CsvLineSanitizer csv = new CsvLineSanitizer(sanitizer(WORDS), ',', false, Set.of());
+
+        assertEquals("a,b,\"<AB>\"", csv.sanitizeLine("a,b,\"a,b\"").getLine());
+    }
+
+    @Test
+    void handlesQuotedFieldsAndRequotesReplacements() {
+        Rule comma = new Rule("secret", Pattern.compile("secret"), "x,\"y\"", 1, true);
+        CsvLineSanitizer csv = new CsvLineSanitizer(sanitizer(comma), ',', false, Set.of());
+
+        assertEquals("\"say \"\"x,\"\"y\"\"\"\"\",\"x,\"\"y\"\"\"",
+            csv.sanitizeLine("\"say \"\"secret\"\"\",secret").getLine());
+    }
+
+    @Test
+    void continuesQuotedFieldsOnNextLine() {
+        CsvLineSanitizer csv = new CsvLineSanitizer(sanitizer(EMAIL), ',', true, Set.of("note"));
+
+        csv.sanitizeLine("id,note,mail");
+        assertEquals("1,\"first <EMAIL>", csv.sanitizeLine("1,\"first a@b.com").getLine());
+        assertEquals("<EMAIL> end\",c@d.com", csv.sanitizeLine("x@y.com end\",c@d.com").getLine());
+        assertEquals("2,<EMAIL>,e@f.com", csv.sanitizeLine("2,g@h.com,e@f.com").getLine());
+    }
+
+    @Test
+    void usesRuleFieldsAsColumnsAndFailsOnUnknownColumns() {
+        CsvLineSanitizer csv = new CsvLineSanitizer(sanitizer(EMAIL.withFields(Set.of("mail"))), ',', true, Set.of());
+
+        csv.sanitizeLine("mail,other");
+        assertEquals("<EMAIL>,a@b.com", csv.sanitizeLine("a@b.com,a@b.com").getLine());
+
+        CsvLineSanitizer unknown = new CsvLineSanitizer(sanitizer(EMAIL), ',', true, Set.of("missing"));
+        assertThrows(IllegalStateException.class, () -> unknown.sanitizeLine("mail,other"));
+    }
+}
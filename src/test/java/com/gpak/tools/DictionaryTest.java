@@ -0,0 +1,114 @@
+package com.gpak.tools;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.gpak.tools.textminator.core.Dictionary;
+import com.gpak.tools.textminator.core.Sanitizer;
+import com.gpak.tools.textminator.model.Rule;
+import com.gpak.tools.textminator.util.ConfigUtil;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DictionaryTest {
+
+    @TempDir
+    Path tempDir;
+
+    private File write(String name, String content) throws Exception {
+        Path p = tempDir.resolve(name);
+        Files.writeString(p, content, StandardCharsets.UTF_8);
+        return p.toFile();
+    }
+
+    @Test
+    void matchesWholeTokensOnly() throws Exception {
+        Dictionary dictionary = Dictionary.load(write("ids.txt", "# customers\nCUST123\njohn.doe\n\nCUST123\n"));
+
+        assertEquals(2, dictionary.size());
+        assertTrue(dictionary.contains("CUST123", 0, 7));
+        assertFalse(dictionary.contains("CUST1234", 0, 8));
+
+        Sanitizer sanitizer = new Sanitizer(List.of(new Rule("ids", dictionary, "<ID>", 1, true)), false, false);
+
+        assertEquals("id=<ID>, user <ID>.", sanitizer.sanitizeLine("id=CUST123, user john.doe.").getLine());
+        assertEquals("CUST1234 xCUST123", sanitizer.sanitizeLine("CUST1234 xCUST123").getLine());
+    }
+
+    @Test
+    void reusesIndexUntilSourceChanges() throws Exception {
+        File source = write("ids.txt", "alpha\n");
+        Dictionary.load(source);
+
+        File index = new File(source.getPath() + ".idx");
+        assertTrue(index.exists());
+        index.setLastModified(1_000_000L);
+
+        Dictionary mapped = Dictionary.load(source);
+        assertEquals(1_000_000L, index.lastModified(), "index must be mapped, not rebuilt");
+        assertTrue(mapped.contains("alpha", 0, 5));
+
+        Files.writeString(source.toPath(), "alpha\nbeta\n", StandardCharsets.UTF_8);
+        source.setLastModified(source.lastModified() + 2000);
+
+        Dictionary rebuilt = Dictionary.load(source);
+        assertEquals(2, rebuilt.size());
+        assertTrue(rebuilt.contains("beta", 0, 4));
+    }
+
+    @Test
+    void matchesNonAsciiEntries() throws Exception {
+        Dictionary dictionary = Dictionary.load(write("names.txt", "Σωκράτης\nJosé\n"));
+
+        String line = "Σωκράτης met José and Jose";
+        int[] span = new int[2];
+        assertTrue(dictionary.find(line, 0, span));
+        assertEquals("Σωκράτης", line.substring(span[0], span[1]));
+        assertTrue(dictionary.find(line, span[1], span));
+        assertEquals("José", line.substring(span[0], span[1]));
+        assertFalse(dictionary.find(line, span[1], span));
+    }
+
+    @Test
+    void rejectsMultiTokenEntries() throws Exception {
+        File file = write("names.txt", "John Smith\n");
+
+        assertThrows(IllegalStateException.class, () -> Dictionary.load(file));
+    }
+
+    @Test
+    void loadsDictionaryRuleRelativeToConfig() throws Exception {
+        write("users.txt", "alice\nbob\n");
+        File config = write("rules.properties", """
+            users.dictionary=users.txt
+            users.replacement=<USER>
+            users.order=1
+            email.regex=[\\\\w.]+@[\\\\w.]+
+            email.replacement=<EMAIL>
+            email.order=2
+            """);
+
+        List<Rule> rules = ConfigUtil.loadConfigFile(config);
+        Sanitizer sanitizer = new Sanitizer(rules, false, false);
+
+        assertTrue(rules.get(0).isDictionary());
+        assertEquals("<USER> wrote to <EMAIL>", sanitizer.sanitizeLine("bob wrote to alice@example.com").getLine());
+    }
+
+    @Test
+    void rejectsRegexAndDictionaryOnSameRule() throws Exception {
+        write("users.txt", "alice\n");
+        File config = write("rules.properties", "a.dictionary=users.txt\na.regex=x\na.order=1\n");
+
+        assertThrows(IllegalStateException.class, () -> ConfigUtil.loadConfigFile(config));
+    }
+}
@@ -0,0 +1,252 @@
+package com.gpak.tools;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.gpak.tools.textminator.Main;
+import com.gpak.tools.textminator.core.CsvLineSanitizer;
+import com.gpak.tools.textminator.core.LineSanitizer;
+import com.gpak.tools.textminator.core.RuleSet;
+import com.gpak.tools.textminator.core.Sanitizer;
+import com.gpak.tools.textminator.io.CountingOutputStream;
+import com.gpak.tools.textminator.io.IncrementalPlan;
+import com.gpak.tools.textminator.model.Rule;
+
+import java.io.BufferedReader;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import picocli.CommandLine;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class IncrementalPlanTest {
+
+    private static final Pattern EMAIL = Pattern.compile("[\\w.+-]+@[\\w-]+\\.[\\w.-]+");
+    private static final RuleSet RULES = RuleSet.of(List.of(new Rule("email", EMAIL, "<EMAIL>", 1, true)));
+
+    private static final int CHUNK_SIZE = 256;
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Sanitizes the input the way the main command does with --manifest.
+     */
+    private IncrementalPlan sanitize(Path input, Path output, RuleSet rules) throws IOException {
+        return sanitize(input, output, rules, -1);
+    }
+
+    /**
+     * @param csvDelimiter sanitizes the "contact" column of CSV input with a header, or -1
+     */
+    private IncrementalPlan sanitize(Path input, Path output, RuleSet rules, int csvDelimiter) throws IOException {
+        Path manifest = tempDir.resolve("out.txmc");
+        Path temp = tempDir.resolve("out.tmp");
+        Sanitizer sanitizer = rules.newSanitizer(false);
+        LineSanitizer lineSanitizer = (csvDelimiter < 0) ? sanitizer : csv(sanitizer, csvDelimiter);
+
+        IncrementalPlan plan = new IncrementalPlan(manifest.toFile(), input.toFile(), 0, output.toFile(), "test",
+                                                   rules.fingerprint(), CHUNK_SIZE, csvDelimiter >= 0, csvDelimiter);
+        try (plan;
+            BufferedReader reader = new BufferedReader(new InputStreamReader(plan.openInput(), StandardCharsets.UTF_8));
+            CountingOutputStream counter = new CountingOutputStream(new FileOutputStream(temp.toFile()));
+            PrintWriter writer = new PrintWriter(new OutputStreamWriter(counter, StandardCharsets.UTF_8))) {
+            plan.start(writer, counter);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                long before = sanitizer.getMatchCount();
+                writer.println(lineSanitizer.sanitizeLine(line).getLine());
+                plan.add(1, sanitizer.getMatchCount() - before);
+            }
+            plan.finish();
+        }
+
+        Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING);
+        plan.writeManifest(manifest.toFile(), output.toFile());
+        return plan;
+    }
+
+    private static LineSanitizer csv(Sanitizer sanitizer, int delimiter) {
+        return new CsvLineSanitizer(sanitizer, (char) delimiter, true, Set.of("contact"));
+    }
+
+    private static String expected(Path input, String replacement) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        try (BufferedReader reader = Files.newBufferedReader(input)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                sb.append(EMAIL.matcher(line).replaceAll(replacement)).append(System.lineSeparator());
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String lines(int from, int to) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            // Mixed line breaks and empty lines, as BufferedReader sees them
+            sb.append("line ").append(i).append(i % 3 == 0 ? " from user" + i + "@example.com" : "")
+              .append(i % 7 == 0 ? "\r\n" : i % 11 == 0 ? "\n\n" : "\n");
+        }
+        return sb.toString();
+    }
+
+    @Test
+    void copiesUnchangedChunksAfterAppend() throws IOException {
+        Path input = Files.writeString(tempDir.resolve("in.log"), lines(0, 100));
+        Path output = tempDir.resolve("out.log");
+
+        IncrementalPlan first = sanitize(input, output, RULES);
+        assertEquals(0, first.getReusedChunks());
+        assertEquals(expected(input, "<EMAIL>"), Files.readString(output));
+
+        Files.writeString(input, lines(100, 130) + "no line break at the end a@b.com", StandardOpenOption.APPEND);
+        IncrementalPlan second = sanitize(input, output, RULES);
+
+        // All but the last, incomplete chunk of the first run
+        assertEquals(first.getChunks() - 1, second.getReusedChunks());
+        assertNotEquals(0, second.getReusedLines());
+        assertNotEquals(0, second.getReusedMatches());
+        assertEquals(expected(input, "<EMAIL>"), Files.readString(output));
+
+        IncrementalPlan unchanged = sanitize(input, output, RULES);
+        assertEquals(unchanged.getChunks(), unchanged.getReusedChunks());
+        assertEquals(expected(input, "<EMAIL>"), Files.readString(output));
+    }
+
+    @Test
+    void sanitizesChangedChunksAgain() throws IOException {
+        Path input = Files.writeString(tempDir.resolve("in.log"), lines(0, 200));
+        Path output = tempDir.resolve("out.log");
+        IncrementalPlan first = sanitize(input, output, RULES);
+
+        // Same length, so the chunks after it keep their boundaries
+        Files.writeString(input, Files.readString(input).replace("line 43\n", "m x@y.z\n"));
+        IncrementalPlan edited = sanitize(input, output, RULES);
+        assertEquals(first.getChunks() - 1, edited.getReusedChunks());
+        assertEquals(expected(input, "<EMAIL>"), Files.readString(output));
+
+        RuleSet changed = RuleSet.of(List.of(new Rule("email", EMAIL, "[redacted]", 1, true)));
+        assertEquals(0, sanitize(input, output, changed).getReusedChunks());
+        assertEquals(expected(input, "[redacted]"), Files.readString(output));
+    }
+
+    @Test
+    void cutsCsvChunksOutsideQuotedFields() throws IOException {
+        StringBuilder csv = new StringBuilder("id,contact,note\n");
+        for (int i = 0; i < 300; i++) {
+            // Half of the line breaks are inside a quoted field
+            csv.append(i).append(",\"user").append(i).append("@example.com\nalt a").append(i)
+               .append("@b.com\",note n").append(i).append("@c.org\n");
+        }
+        Path input = Files.writeString(tempDir.resolve("in.csv"), csv);
+        Path output = tempDir.resolve("out.csv");
+        sanitize(input, output, RULES, ',');
+
+        // Each edit sanitizes one chunk again, after a reused one
+        for (int i = 10; i < 300; i += 37) {
+            Files.writeString(input, Files.readString(input).replace("user" + i + "@", "USER" + i + "@"));
+            IncrementalPlan edited = sanitize(input, output, RULES, ',');
+            assertEquals(edited.getChunks() - 2, edited.getReusedChunks());
+
+            StringBuilder full = new StringBuilder();
+            LineSanitizer lineSanitizer = csv(RULES.newSanitizer(false), ',');
+            for (String line : Files.readAllLines(input)) {
+                full.append(lineSanitizer.sanitizeLine(line).getLine()).append(System.lineSeparator());
+            }
+            assertEquals(full.toString(), Files.readString(output), "after editing row " + i);
+        }
+    }
+
+    @Test
+    void ignoresManifestWhenOutputChanged() throws IOException {
+        Path input = Files.writeString(tempDir.resolve("in.log"), lines(0, 100));
+        Path output = tempDir.resolve("out.log");
+        sanitize(input, output, RULES);
+
+        Files.writeString(output, "tampered");
+        assertEquals(0, sanitize(input, output, RULES).getReusedChunks());
+        assertEquals(expected(input, "<EMAIL>"), Files.readString(output));
+
+        Files.writeString(tempDir.resolve("out.txmc"), "TXMI");
+        assertEquals(0, sanitize(input, output, RULES).getReusedChunks());
+    }
+
+    @Test
+    void fingerprintsTheRules() {
+        assertArrayEquals(RULES.fingerprint(), RuleSet.of(RULES.getRules()).withVersion(7).fingerprint());
+        RuleSet caseInsensitive = RuleSet.of(List.of(
+            new Rule("email", Pattern.compile(EMAIL.pattern(), Pattern.CASE_INSENSITIVE), "<EMAIL>", 1, true)));
+        assertFalse(Arrays.equals(RULES.fingerprint(), caseInsensitive.fingerprint()));
+    }
+
+    @Test
+    void commandReusesPreviousOutput() throws IOException {
+        Path input = Files.writeString(tempDir.resolve("in.log"), "contact a@b.com\nhealth check ok\n".repeat(50_000));
+        Path output = tempDir.resolve("out.log");
+        Path full = tempDir.resolve("full.log");
+        String manifest = tempDir.resolve("out.txmc").toString();
+
+        assertEquals(0, new CommandLine(new Main()).execute("-i", input.toString(), "-o", output.toString(), "--manifest", manifest));
+        Files.writeString(input, "late entry c@d.org\n", StandardOpenOption.APPEND);
+        assertEquals(0, new CommandLine(new Main()).execute("-i", input.toString(), "-o", output.toString(),
+                                                             "--manifest", manifest, "--force"));
+        assertEquals(0, new CommandLine(new Main()).execute("-i", input.toString(), "-o", full.toString()));
+        assertEquals(Files.readString(full), Files.readString(output));
+
+        assertEquals(1, new CommandLine(new Main()).execute("-i", input.toString(), "--manifest", manifest));
+        assertEquals(1, new CommandLine(new Main()).execute("-i", input.toString(), "-o", output.toString(),
+                                                             "--manifest", manifest, "--force", "--dry-run"));
+    }
+
+    @Test
+    void commandFollowsCsvHeaderAndQuotedFields() throws IOException {
+        StringBuilder rows = new StringBuilder();
+        for (int i = 0; i < 40_000; i++) {
+            rows.append(i).append(",\"user").append(i).append("@example.com\nalt a").append(i)
+                .append("@b.com\",note n").append(i).append("@c.org\n");
+        }
+        Path input = Files.writeString(tempDir.resolve("in.csv"), "id,contact,note\n" + rows);
+        Path output = tempDir.resolve("out.csv");
+        Path full = tempDir.resolve("full.csv");
+        String manifest = tempDir.resolve("out.txmc").toString();
+        String[] csv = { "--format", "CSV", "--columns", "contact" };
+
+        assertEquals(0, run(csv, "-i", input.toString(), "-o", output.toString(), "--manifest", manifest));
+        assertEquals(0, run(csv, "-i", input.toString(), "-o", full.toString()));
+        assertEquals(Files.readString(full), Files.readString(output));
+
+        // Renamed columns change what every chunk redacts, not only the first
+        Files.writeString(input, "id,note,contact\n" + rows);
+        assertEquals(0, run(csv, "-i", input.toString(), "-o", output.toString(), "--manifest", manifest, "--force"));
+        assertEquals(0, run(csv, "-i", input.toString(), "-o", full.toString(), "--force"));
+        assertEquals(Files.readString(full), Files.readString(output));
+
+        Files.writeString(input, "1,\"late x@y.org\nmore z@y.org\",w@y.org\n", StandardOpenOption.APPEND);
+        assertEquals(0, run(csv, "-i", input.toString(), "-o", output.toString(), "--manifest", manifest, "--force"));
+        assertEquals(0, run(csv, "-i", input.toString(), "-o", full.toString(), "--force"));
+        assertEquals(Files.readString(full), Files.readString(output));
+    }
+
+    private static int run(String[] options, String... args) {
+        String[] all = Arrays.copyOf(options, options.length + args.length);
+        System.arraycopy(args, 0, all, options.length, args.length);
+        return new CommandLine(new Main()).execute(all);
+    }
+}
@@ -0,0 +1,86 @@
+package com.gpak.tools;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.gpak.tools.textminator.Main;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import picocli.CommandLine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JfrEventsTest {
+
+    @TempDir
+    Path tempDir;
+
+    private List<RecordedEvent> events(List<RecordedEvent> events, String name) {
+        return events.stream().filter(event -> event.getEventType().getName().equals(name)).collect(Collectors.toList());
+    }
+
+    @Test
+    void recordsBatchesRulesAndIo() throws IOException {
+        int lines = 25_000;
+        Path input = Files.writeString(tempDir.resolve("in.log"), "user a@b.com logged in\nhealth check ok\n".repeat(lines / 2));
+        Path output = tempDir.resolve("out.log");
+        Path dump = tempDir.resolve("run.jfr");
+
+        try (Recording recording = new Recording()) {
+            recording.enable("textminator.Batch");
+            recording.enable("textminator.RuleCost");
+            recording.enable("textminator.RuleSetLoad");
+            recording.enable("textminator.IoStall").withThreshold(Duration.ZERO);
+            recording.start();
+            assertEquals(0, new CommandLine(new Main()).execute("-i", input.toString(), "-o", output.toString()));
+            recording.stop();
+            recording.dump(dump);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+
+        List<RecordedEvent> batches = events(events, "textminator.Batch");
+        assertEquals(lines, batches.stream().mapToLong(event -> event.getLong("lines")).sum());
+        assertEquals(lines / 2, batches.stream().mapToLong(event -> event.getLong("changed")).sum());
+        assertEquals(4, batches.size());
+
+        List<RecordedEvent> costs = events(events, "textminator.RuleCost");
+        assertFalse(costs.isEmpty());
+        assertTrue(costs.stream().anyMatch(event -> event.getString("rule").equals("email") && event.getLong("matches") > 0));
+        // The last, partial window is emitted when the input is done
+        assertEquals(lines, costs.stream().filter(event -> event.getString("rule").equals("email"))
+                                 .mapToLong(event -> event.getLong("windowCalls")).sum());
+
+        assertEquals(1, events(events, "textminator.RuleSetLoad").size());
+        assertTrue(events(events, "textminator.IoStall").stream().anyMatch(event -> event.getString("operation").equals("read")));
+        assertTrue(events(events, "textminator.IoStall").stream().anyMatch(event -> event.getString("operation").equals("write")));
+    }
+
+    @Test
+    void eventsAreOptIn() throws IOException, ParseException {
+        Path input = Files.writeString(tempDir.resolve("in.log"), "user a@b.com logged in\n".repeat(100));
+        Path dump = tempDir.resolve("default.jfr");
+
+        // The JDK's settings don't mention the events, so their own defaults apply
+        try (Recording recording = new Recording(Configuration.getConfiguration("default"))) {
+            recording.start();
+            assertEquals(0, new CommandLine(new Main()).execute("-i", input.toString(), "-o", tempDir.resolve("out.log").toString()));
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        assertTrue(RecordingFile.readAllEvents(dump).stream().noneMatch(event -> event.getEventType().getName().startsWith("textminator.")));
+    }
+}
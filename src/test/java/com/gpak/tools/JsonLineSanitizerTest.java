@@ -0,0 +1,70 @@
+package com.gpak.tools;
+
+import org.junit.jupiter.api.Test;
+
+import com.gpak.tools.textminator.core.JsonLineSanitizer;
+import com.gpak.tools.textminator.core.RuleSet;
+import com.gpak.tools.textminator.core.Sanitizer;
+import com.gpak.tools.textminator.model.LineResult;
+import com.gpak.tools.textminator.model.Rule;
+
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class JsonLineSanitizerTest {
+
+    private static final Rule EMAIL = new Rule("email", Pattern.compile("[\\w.+-]+@[\\w-]+\\.[\\w.-]+"), "<EMAIL>", 1, true);
+    private static final Rule DIGITS = new Rule("digits", Pattern.compile("\\d+"), "<N>", 2, true);
+
+    private JsonLineSanitizer sanitizer(Rule... rules) {
+        return new JsonLineSanitizer(new Sanitizer(RuleSet.of(List.of(rules)), false));
+    }
+
+    @Test
+    void sanitizesStringValuesOnly() {
+        String input = "{\"john@example.com\": \"mail john@example.com\", \"n\": 42, \"s\": \"id 42\"}";
+        String expected = "{\"john@example.com\": \"mail <EMAIL>\", \"n\": 42, \"s\": \"id <N>\"}";
+
+        assertEquals(expected, sanitizer(EMAIL, DIGITS).sanitizeLine(input).getLine());
+    }
+
+    @Test
+    void keepsLineWhenNothingMatches() {
+        String input = "{\"a\": [1, 2.5e3, true, null, \"x\"]}";
+        LineResult result = sanitizer(EMAIL).sanitizeLine(input);
+
+        assertFalse(result.isChanged());
+        assertSame(input, result.getLine());
+    }
+
+    @Test
+    void escapesReplacementAndHandlesEscapedInput() {
+        Rule quote = new Rule("quote", Pattern.compile("secret"), "\"x\"", 1, true);
+        String input = "{\"msg\": \"say \\\"secret\\\"\\n\"}";
+        String expected = "{\"msg\": \"say \\\"\\\"x\\\"\\\"\\n\"}";
+
+        assertEquals(expected, sanitizer(quote).sanitizeLine(input).getLine());
+    }
+
+    @Test
+    void targetsRulesByFieldPath() {
+        Rule digits = DIGITS.withFields(Set.of("user.ids"));
+        String input = "{\"user\": {\"ids\": [\"12\", \"34\"], \"name\": \"bob 7\"}, \"ids\": \"56\"}";
+        String expected = "{\"user\": {\"ids\": [\"<N>\", \"<N>\"], \"name\": \"bob 7\"}, \"ids\": \"56\"}";
+
+        assertEquals(expected, sanitizer(digits).sanitizeLine(input).getLine());
+    }
+
+    @Test
+    void fallsBackToLineSanitizationForInvalidJson() {
+        String input = "plain text john@example.com {\"broken\": ";
+        String expected = "plain text <EMAIL> {\"broken\": ";
+
+        assertEquals(expected, sanitizer(EMAIL).sanitizeLine(input).getLine());
+    }
+}
@@ -0,0 +1,152 @@
+package com.gpak.tools;
+
+import org.junit.jupiter.api.Test;
+
+import com.gpak.tools.textminator.core.JsonLineSanitizer;
+import com.gpak.tools.textminator.core.KeyedHash;
+import com.gpak.tools.textminator.core.LineCache;
+import com.gpak.tools.textminator.core.RuleSet;
+import com.gpak.tools.textminator.core.Sanitizer;
+import com.gpak.tools.textminator.model.Rule;
+import com.gpak.tools.textminator.util.ConfigUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LineCacheTest {
+
+    private static final Rule EMAIL = new Rule("email", Pattern.compile("[\\w.+-]+@[\\w-]+\\.[\\w.-]+"), "<EMAIL>", 1, true);
+    private static final Rule NAME = new Rule("name", Pattern.compile("bob"), "<NAME>", 2, true);
+
+    private static Sanitizer sanitizer(LineCache cache) {
+        KeyedHash key = KeyedHash.of("0123456789abcdef".getBytes(StandardCharsets.UTF_8));
+        Sanitizer sanitizer = new Sanitizer(RuleSet.of(List.of(EMAIL, NAME)).withHashKey(key), true);
+        sanitizer.setLineCache(cache);
+        return sanitizer;
+    }
+
+    @Test
+    void replaysOutputAndStatisticsOfRepeatedLines() {
+        LineCache cache = new LineCache(1 << 20);
+        Sanitizer cached = sanitizer(cache);
+        Sanitizer plain = sanitizer(null);
+
+        String[] lines = { "bob a@b.com bob", "heartbeat ok", "bob a@b.com bob", "heartbeat ok", "c@d.org" };
+        for (int round = 0; round < 3; round++) {
+            for (String line : lines) {
+                assertEquals(plain.sanitizeLine(line).getLine(), cached.sanitizeLine(line).getLine());
+            }
+        }
+
+        assertEquals(plain.getStatistics(), cached.getStatistics());
+        // Stored the second time a line is seen
+        assertEquals(3, cache.size());
+        assertEquals(6, cache.getMisses());
+        assertEquals(9, cache.getHits());
+
+        // An unchanged line is returned as is, also from the cache
+        String unchanged = new String("heartbeat ok");
+        assertSame(unchanged, cached.sanitizeLine(unchanged).getLine());
+        assertFalse(cached.sanitizeLine(unchanged).isChanged());
+        assertTrue(cached.sanitizeLine("c@d.org").isChanged());
+    }
+
+    @Test
+    void replaysMatchesToTheListener() {
+        Sanitizer sanitizer = sanitizer(new LineCache(1 << 20));
+        List<String> matches = new ArrayList<>();
+        sanitizer.setMatchListener((rule, field, column, length, hash) ->
+            matches.add(rule.getName() + "@" + column + "+" + length + "#" + hash));
+
+        sanitizer.sanitizeLine("bob a@b.com");
+        sanitizer.sanitizeLine("bob a@b.com");
+        List<String> computed = new ArrayList<>(matches.subList(2, 4));
+        matches.clear();
+        sanitizer.sanitizeLine("bob a@b.com");
+
+        assertEquals(2, computed.size());
+        assertEquals(computed, matches);
+        assertEquals(1, sanitizer.getLineCache().getHits());
+    }
+
+    @Test
+    void keysFieldValuesByFieldPath() {
+        Rule userEmail = EMAIL.withFields(Set.of("user"));
+        Sanitizer sanitizer = new Sanitizer(RuleSet.of(List.of(userEmail)), false);
+        sanitizer.setLineCache(new LineCache(1 << 20));
+        JsonLineSanitizer json = new JsonLineSanitizer(sanitizer);
+
+        String line = "{\"user\":\"a@b.com\",\"other\":\"a@b.com\"}";
+        String expected = "{\"user\":\"<EMAIL>\",\"other\":\"a@b.com\"}";
+        for (int i = 0; i < 3; i++) {
+            assertEquals(expected, json.sanitizeLine(line).getLine());
+        }
+        assertEquals(2, sanitizer.getLineCache().getHits());
+    }
+
+    @Test
+    void evictsWithinBudgetAndKeepsHitEntries() {
+        LineCache cache = new LineCache(64 * 1024);
+        Sanitizer sanitizer = sanitizer(cache);
+
+        String hot = "health check from bob";
+        for (int i = 0; i < 20000; i++) {
+            sanitizer.sanitizeLine(hot);
+            sanitizer.sanitizeLine("request " + i + " from a@b.com");
+            sanitizer.sanitizeLine("request " + i + " from a@b.com");
+            assertTrue(cache.getBytes() <= cache.getMaxBytes());
+        }
+
+        assertTrue(cache.getEvictions() > 0);
+        long hits = cache.getHits();
+        sanitizer.sanitizeLine(hot);
+        assertEquals(hits + 1, cache.getHits());
+        assertEquals("health check from <NAME>", sanitizer.sanitizeLine(hot).getLine());
+    }
+
+    @Test
+    void doesNotStoreLinesSeenOnce() {
+        LineCache cache = new LineCache(1 << 20);
+        Sanitizer sanitizer = sanitizer(cache);
+        for (int i = 0; i < 1000; i++) {
+            sanitizer.sanitizeLine("request " + i + " from bob");
+        }
+        assertEquals(0, cache.size());
+        assertEquals(1000, cache.getMisses());
+    }
+
+    @Test
+    void clearKeepsCounters() {
+        LineCache cache = new LineCache(1 << 20);
+        Sanitizer sanitizer = sanitizer(cache);
+        for (int i = 0; i < 3; i++) {
+            sanitizer.sanitizeLine("bob");
+        }
+        cache.clear();
+        sanitizer.sanitizeLine("bob");
+
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void parsesSizes() {
+        assertEquals(65536, ConfigUtil.parseSize("65536", "--line-cache"));
+        assertEquals(512 * 1024, ConfigUtil.parseSize("512k", "--line-cache"));
+        assertEquals(64L << 20, ConfigUtil.parseSize(" 64M ", "--line-cache"));
+        assertEquals(1L << 30, ConfigUtil.parseSize("1g", "--line-cache"));
+        assertThrows(IllegalStateException.class, () -> ConfigUtil.parseSize("0", "--line-cache"));
+        assertThrows(IllegalStateException.class, () -> ConfigUtil.parseSize("64mb", "--line-cache"));
+        assertThrows(IllegalStateException.class, () -> new LineCache(100));
+    }
+}
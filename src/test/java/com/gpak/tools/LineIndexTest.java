@@ -0,0 +1,119 @@
+package com.gpak.tools;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.gpak.tools.textminator.core.RuleSet;
+import com.gpak.tools.textminator.core.Sanitizer;
+import com.gpak.tools.textminator.io.CountingOutputStream;
+import com.gpak.tools.textminator.io.LineIndex;
+import com.gpak.tools.textminator.io.LineIndexWriter;
+import com.gpak.tools.textminator.model.Rule;
+import com.gpak.tools.textminator.util.ConfigUtil;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LineIndexTest {
+
+    private static final Rule EMAIL = new Rule("email", Pattern.compile("[\\w.+-]+@[\\w-]+\\.[\\w.-]+"), "<EMAIL>", 1, true);
+
+    @TempDir
+    Path tempDir;
+
+    /**
+     * Sanitizes the lines the way the main command does and returns the index.
+     */
+    private LineIndex sanitize(Path output, List<String> lines, int interval) throws IOException {
+        Path indexFile = tempDir.resolve("out.idx");
+        Sanitizer sanitizer = new Sanitizer(RuleSet.of(List.of(EMAIL)), false);
+
+        CountingOutputStream counter = new CountingOutputStream(new FileOutputStream(output.toFile()));
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(counter, StandardCharsets.UTF_8)))) {
+            // Byte order mark, 3 bytes in UTF-8
+            writer.print('\uFEFF');
+            LineIndexWriter index = new LineIndexWriter(indexFile.toFile(), interval, writer, counter);
+            for (String line : lines) {
+                long before = sanitizer.getMatchCount();
+                writer.println(sanitizer.sanitizeLine(line).getLine());
+                index.add(1, sanitizer.getMatchCount() - before);
+            }
+            index.finish();
+        }
+        assertFalse(Files.exists(tempDir.resolve("out.idx.tmp")));
+        return LineIndex.read(indexFile);
+    }
+
+    private static String lineAt(Path file, long offset) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file.toFile(), "r")) {
+            in.seek(offset);
+            byte[] bytes = new byte[64];
+            int n = in.read(bytes);
+            String text = new String(bytes, 0, n, StandardCharsets.UTF_8);
+            return text.substring(0, text.indexOf(System.lineSeparator()));
+        }
+    }
+
+    @Test
+    void offsetsPointToTheFirstLineOfEachBlock() throws IOException {
+        Path output = tempDir.resolve("out.log");
+        List<String> lines = List.of("line 1 \u00e9t\u00e9", "line 2 a@b.com", "line 3", "line 4 c@d.org e@f.net",
+                                     "line 5", "line 6", "line 7 g@h.io");
+        LineIndex index = sanitize(output, lines, 2);
+
+        assertEquals(2, index.getInterval());
+        assertEquals(4, index.getBlocks());
+        assertEquals(7, index.getLines());
+        assertEquals(Files.size(output), index.getOffset(index.getBlocks()));
+
+        for (int block = 0; block < index.getBlocks(); block++) {
+            long line = index.getFirstLine(block);
+            assertEquals(2 * block + 1, line);
+            assertEquals("line " + line, lineAt(output, index.getOffset(block)).substring(0, 6));
+        }
+        assertEquals(List.of(1L, 2L, 0L, 1L),
+                     List.of(index.getMatches(0), index.getMatches(1), index.getMatches(2), index.getMatches(3)));
+
+        assertEquals(0, index.findBlock(1));
+        assertEquals(1, index.findBlock(4));
+        assertEquals(3, index.findBlock(7));
+        assertEquals(-1, index.findBlock(0));
+        assertEquals(-1, index.findBlock(8));
+    }
+
+    @Test
+    void indexesEmptyOutput() throws IOException {
+        LineIndex index = sanitize(tempDir.resolve("out.log"), List.of(), 4);
+
+        assertEquals(0, index.getBlocks());
+        assertEquals(0, index.getLines());
+        assertEquals(3, index.getOffset(0));
+        assertEquals(-1, index.findBlock(1));
+    }
+
+    @Test
+    void rejectsInvalidOptions() throws IOException {
+        Path existing = Files.writeString(tempDir.resolve("out.idx"), "old");
+
+        assertThrows(FileAlreadyExistsException.class, () -> ConfigUtil.validateIndexOptions(existing.toFile(), false, false));
+        assertThrows(IllegalStateException.class, () -> ConfigUtil.validateIndexOptions(tempDir.resolve("new.idx").toFile(), false, true));
+        ConfigUtil.validateIndexOptions(existing.toFile(), true, false);
+
+        Files.writeString(existing, "TXMA");
+        assertThrows(IOException.class, () -> LineIndex.read(existing));
+    }
+}
@@ -0,0 +1,79 @@
+package com.gpak.tools;
+
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.impl.Log4jLogEvent;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.gpak.tools.textminator.core.RuleSet;
+import com.gpak.tools.textminator.logging.LogSanitizer;
+import com.gpak.tools.textminator.logging.TextminatorRewritePolicy;
+import com.gpak.tools.textminator.model.Rule;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class LoggingIntegrationTest {
+
+    @TempDir
+    Path tempDir;
+
+    private LogSanitizer logSanitizer;
+
+    @BeforeEach
+    void setUp() {
+        Rule email = new Rule("email", Pattern.compile("[\\w.+-]+@[\\w-]+\\.[\\w.-]+"), "<EMAIL>", 1, true);
+        logSanitizer = LogSanitizer.of(RuleSet.of(List.of(email)));
+    }
+
+    @Test
+    void returnsSameStringWhenNothingMatches() {
+        String message = "health check ok";
+
+        assertSame(message, logSanitizer.sanitize(message));
+    }
+
+    @Test
+    void rewritePolicyKeepsCleanEvents() {
+        TextminatorRewritePolicy policy = TextminatorRewritePolicy.of(logSanitizer);
+        LogEvent event = Log4jLogEvent.newBuilder()
+            .setMessage(new ParameterizedMessage("took {} ms", 12))
+            .build();
+
+        assertSame(event, policy.rewrite(event));
+    }
+
+    @Test
+    void rewritePolicySanitizesFormattedMessage() {
+        TextminatorRewritePolicy policy = TextminatorRewritePolicy.of(logSanitizer);
+        LogEvent event = Log4jLogEvent.newBuilder()
+            .setMessage(new ParameterizedMessage("login by {}", "john.doe@example.com"))
+            .build();
+
+        assertEquals("login by <EMAIL>", policy.rewrite(event).getMessage().getFormattedMessage());
+    }
+
+    @Test
+    void forConfigLoadsEditedRules() throws IOException {
+        Path config = tempDir.resolve("logging.properties");
+        Files.writeString(config, "email.regex=[\\\\w.+-]+@[\\\\w-]+\\\\.[\\\\w.-]+\nemail.replacement=<EMAIL>\nemail.order=1\n");
+        LogSanitizer first = LogSanitizer.forConfig(config.toString());
+        assertSame(first, LogSanitizer.forConfig(config.toString()));
+        assertEquals("login by <EMAIL>", first.sanitize("login by john.doe@example.com"));
+
+        // A reconfigure of the logging framework calls forConfig again
+        Files.writeString(config, "email.regex=[\\\\w.+-]+@[\\\\w-]+\\\\.[\\\\w.-]+\nemail.replacement=<MAIL>\nemail.order=1\n");
+        LogSanitizer second = LogSanitizer.forConfig(config.toString());
+        assertNotSame(first, second);
+        assertEquals("login by <MAIL>", second.sanitize("login by john.doe@example.com"));
+    }
+}
@@ -0,0 +1,47 @@
+package com.gpak.tools;
+
+import org.junit.jupiter.api.Test;
+
+import com.gpak.tools.textminator.core.Prefilter;
+
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrefilterTest {
+
+    @Test
+    void derivesRequiredCharsForEmail() {
+        Prefilter prefilter = Prefilter.of(Pattern.compile("[\\w.+-]+@[\\w-]+\\.[\\w.-]+"));
+
+        assertArrayEquals(new char[] { '@', '.' }, prefilter.getRequiredChars());
+        assertFalse(prefilter.mayMatch("no at sign here."));
+        assertTrue(prefilter.mayMatch("a@b.c"));
+    }
+
+    @Test
+    void ignoresOptionalAndGroupedLiterals() {
+        Prefilter prefilter = Prefilter.of(Pattern.compile("a?b*(?:c)d{0,2}e+f{1,3}"));
+
+        assertArrayEquals(new char[] { 'e', 'f' }, prefilter.getRequiredChars());
+    }
+
+    @Test
+    void givesUpOnUncertainPatterns() {
+        assertNull(Prefilter.of(Pattern.compile("a|b")));
+        assertNull(Prefilter.of(Pattern.compile("(?i)abc")));
+        assertNull(Prefilter.of(Pattern.compile("\\Qa.b\\E")));
+        assertNull(Prefilter.of(Pattern.compile("x(a)\\1")));
+        assertNull(Prefilter.of(Pattern.compile("\\b(?:(?:25[0-5]|1\\d{2})\\.){3}\\b")));
+    }
+
+    @Test
+    void skipsLettersWhenCaseInsensitive() {
+        Prefilter prefilter = Prefilter.of(Pattern.compile("key=", Pattern.CASE_INSENSITIVE));
+
+        assertArrayEquals(new char[] { '=' }, prefilter.getRequiredChars());
+    }
+}
@@ -0,0 +1,151 @@
+package com.gpak.tools;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.gpak.tools.textminator.Main;
+import com.gpak.tools.textminator.core.ProfileSanitizer;
+import com.gpak.tools.textminator.core.RuleSet;
+import com.gpak.tools.textminator.core.Sanitizer;
+import com.gpak.tools.textminator.model.Profile;
+import com.gpak.tools.textminator.model.Rule;
+import com.gpak.tools.textminator.util.ConfigUtil;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import picocli.CommandLine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProfileSanitizerTest {
+
+    private static final Rule EMAIL = new Rule("email", Pattern.compile("[\\w.+-]+@[\\w-]+\\.[\\w.-]+"), "<EMAIL>", 1, true);
+    private static final Rule IPV4 = new Rule("ipv4", Pattern.compile("\\b\\d{1,3}(?:\\.\\d{1,3}){3}\\b"), "<IPV4>", 2, true);
+    private static final Rule HOST = new Rule("host", Pattern.compile("host-\\d+"), "<HOST>", 3, true);
+
+    private static final List<String> LINES = List.of(
+        "user a@b.com from 10.0.0.1 on host-7",
+        "user a@b.com logged out",
+        "connection from 192.168.1.20",
+        "nothing to see here",
+        "");
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void matchesSeparateSanitizers() {
+        List<RuleSet> ruleSets = List.of(RuleSet.of(List.of(EMAIL, IPV4, HOST)),
+                                         RuleSet.of(List.of(EMAIL, HOST)),
+                                         RuleSet.of(List.of(IPV4)));
+        ProfileSanitizer profiles = new ProfileSanitizer(ruleSets);
+
+        String[] results = new String[ruleSets.size()];
+        for (String line : LINES) {
+            boolean changed = profiles.sanitizeLine(line, results);
+            boolean expectChanged = false;
+            for (int p = 0; p < ruleSets.size(); p++) {
+                String expected = ruleSets.get(p).newSanitizer(false).sanitizeLine(line).getLine();
+                assertEquals(expected, results[p], "profile " + p + ": " + line);
+                expectChanged |= !expected.equals(line);
+            }
+            assertEquals(expectChanged, changed, line);
+        }
+
+        Sanitizer full = ruleSets.get(0).newSanitizer(true);
+        LINES.forEach(full::sanitizeLine);
+        assertEquals(full.getStatistics(), profiles.getStatistics(0));
+        assertEquals(2L, profiles.getStatistics(1).get("email"));
+        assertEquals(2L, profiles.getStatistics(2).get("ipv4"));
+    }
+
+    @Test
+    void sharesCommonRules() {
+        ProfileSanitizer profiles = new ProfileSanitizer(List.of(RuleSet.of(List.of(EMAIL, HOST)),
+                                                                 RuleSet.of(List.of(EMAIL, IPV4, HOST))));
+        String[] results = new String[2];
+        assertFalse(profiles.sanitizeLine("nothing to see here", results));
+
+        // email is shared; ipv4 matches nothing, so host sees the same text in both
+        assertEquals(3, profiles.getRuleRuns());
+        assertEquals(2, profiles.getSharedRuns());
+
+        assertTrue(profiles.sanitizeLine("10.0.0.1 host-1", results));
+        assertEquals("10.0.0.1 <HOST>", results[0]);
+        assertEquals("<IPV4> <HOST>", results[1]);
+        // host runs on two different texts now
+        assertEquals(7, profiles.getRuleRuns());
+        assertEquals(3, profiles.getSharedRuns());
+    }
+
+    @Test
+    void loadsProfilesFromConfig() throws IOException {
+        Path config = Files.writeString(tempDir.resolve("profiles.properties"), String.join("\n",
+            "email.regex=[\\\\w.+-]+@[\\\\w-]+\\\\.[\\\\w.-]+",
+            "email.replacement=<EMAIL>",
+            "email.order=2",
+            "ipv4.regex=\\\\d+\\\\.\\\\d+\\\\.\\\\d+\\\\.\\\\d+",
+            "ipv4.replacement=<IPV4>",
+            "ipv4.order=1",
+            "profile.vendor.rules=*",
+            "profile.vendor.output=vendor.log",
+            "profile.sre.rules=email",
+            "profile.sre.output=sre.log",
+            "profile.bad.rules=phone",
+            "profile.bad.output=bad.log"));
+        List<Rule> rules = ConfigUtil.loadConfigFile(config.toFile());
+
+        List<Profile> profiles = ConfigUtil.loadProfiles(config.toFile(), rules, "vendor,sre");
+        assertEquals(2, profiles.size());
+        assertEquals("vendor", profiles.get(0).getName());
+        assertEquals(List.of("ipv4", "email"), profiles.get(0).getRules().stream().map(Rule::getName).toList());
+        assertEquals("sre.log", profiles.get(1).getOutputFile().getName());
+
+        assertThrows(IllegalStateException.class, () -> ConfigUtil.loadProfiles(config.toFile(), rules, "all"));
+        assertThrows(IllegalStateException.class, () -> ConfigUtil.loadProfiles(config.toFile(), rules, "ops"));
+
+        ConfigUtil.validateProfileOptions("sre", null, null, null, null, null, false);
+        assertThrows(IllegalStateException.class,
+                     () -> ConfigUtil.validateProfileOptions("sre", null, null, null, tempDir.resolve("out.txmc").toFile(), null, false));
+        assertThrows(IllegalStateException.class, () -> ConfigUtil.validateProfileOptions("sre", null, null, null, null, "64m", false));
+    }
+
+    @Test
+    void commandWritesEveryProfile() throws IOException {
+        Path input = Files.writeString(tempDir.resolve("in.log"), String.join("\n", LINES) + "\n");
+        Path vendor = tempDir.resolve("vendor.log");
+        Path sre = tempDir.resolve("sre.log");
+        Path config = Files.writeString(tempDir.resolve("profiles.properties"), String.join("\n",
+            "email.regex=[\\\\w.+-]+@[\\\\w-]+\\\\.[\\\\w.-]+",
+            "email.replacement=<EMAIL>",
+            "email.order=1",
+            "ipv4.regex=\\\\d+\\\\.\\\\d+\\\\.\\\\d+\\\\.\\\\d+",
+            "ipv4.replacement=<IPV4>",
+            "ipv4.order=2",
+            "profile.vendor.rules=*",
+            "profile.vendor.output=" + vendor.toString().replace("\\", "\\\\"),
+            "profile.sre.rules=email",
+            "profile.sre.output=" + sre.toString().replace("\\", "\\\\")));
+
+        assertEquals(0, new CommandLine(new Main()).execute("-c", config.toString(), "-i", input.toString(), "--profiles"));
+        List<String> vendorLines = Files.readAllLines(vendor);
+        List<String> sreLines = Files.readAllLines(sre);
+        assertEquals("user <EMAIL> from <IPV4> on host-7", vendorLines.get(0));
+        assertEquals("user <EMAIL> from 10.0.0.1 on host-7", sreLines.get(0));
+        assertEquals(LINES.size(), sreLines.size());
+
+        // Existing outputs need --force, and -o has no place next to the profiles
+        assertEquals(1, new CommandLine(new Main()).execute("-c", config.toString(), "-i", input.toString(), "--profiles=sre"));
+        assertEquals(0, new CommandLine(new Main()).execute("-c", config.toString(), "-i", input.toString(),
+                                                             "--profiles=sre", "--force"));
+        assertEquals(1, new CommandLine(new Main()).execute("-c", config.toString(), "-i", input.toString(),
+                                                             "--profiles", "-o", tempDir.resolve("out.log").toString()));
+    }
+}
@@ -0,0 +1,89 @@
+package com.gpak.tools;
+
+import org.junit.jupiter.api.Test;
+
+import com.gpak.tools.textminator.io.RecordReader;
+import com.gpak.tools.textminator.model.RecordMode;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecordReaderTest {
+
+    private static final String LS = System.lineSeparator();
+
+    private List<String> readAll(String input, RecordMode mode, Pattern start, int max) throws Exception {
+        List<String> records = new ArrayList<>();
+        try (RecordReader reader = new RecordReader(new BufferedReader(new StringReader(input)), mode, start, max)) {
+            String record;
+            while ((record = reader.readRecord()) != null) {
+                records.add(record + reader.getTerminator());
+            }
+        }
+        return records;
+    }
+
+    @Test
+    void splitsOnRecordStart() throws Exception {
+        String input = "2024-01-01 error\n  at a\n  at b\n2024-01-02 ok\n";
+
+        List<String> records = readAll(input, RecordMode.START, Pattern.compile("^\\d{4}-"), RecordReader.DEFAULT_MAX_RECORD_SIZE);
+
+        assertEquals(List.of("2024-01-01 error" + LS + "  at a" + LS + "  at b" + LS, "2024-01-02 ok" + LS), records);
+    }
+
+    @Test
+    void splitsOnBlankLinesAndKeepsThem() throws Exception {
+        String input = "a\nb\n\n\nc";
+
+        List<String> records = readAll(input, RecordMode.BLANK, null, RecordReader.DEFAULT_MAX_RECORD_SIZE);
+
+        assertEquals(List.of("a" + LS + "b" + LS + LS, LS, "c" + LS), records);
+    }
+
+    @Test
+    void splitsOnNul() throws Exception {
+        List<String> records = readAll("a\nb\0c\0d", RecordMode.NUL, null, RecordReader.DEFAULT_MAX_RECORD_SIZE);
+
+        assertEquals(List.of("a\nb\0", "c\0", "d"), records);
+    }
+
+    @Test
+    void splitsRunawayRecordsAtLineBoundary() throws Exception {
+        String input = "start\naaaa\nbbbb\ncccc\n";
+
+        List<String> records = readAll(input, RecordMode.START, Pattern.compile("^start"), 12);
+
+        assertEquals(List.of("start" + LS + "aaaa" + LS, "bbbb" + LS + "cccc" + LS), records);
+    }
+
+    @Test
+    void splitsRunawayLines() throws Exception {
+        String input = "start\n" + "x".repeat(30) + "\nend\r\n";
+
+        List<String> records = readAll(input, RecordMode.START, Pattern.compile("^start"), 12);
+
+        assertEquals(List.of("start" + LS, "x".repeat(12), "x".repeat(12), "x".repeat(6) + LS + "end" + LS), records);
+    }
+
+    @Test
+    void countsRunawayLinesOnce() throws Exception {
+        String input = "a\n" + "y".repeat(25) + "\n\nb\n";
+        long lines = 0;
+        try (RecordReader reader = new RecordReader(new BufferedReader(new StringReader(input)), RecordMode.BLANK, null, 10)) {
+            String record;
+            while ((record = reader.readRecord()) != null) {
+                assertTrue(record.length() <= 10, record);
+                lines += reader.getLinesInRecord();
+            }
+            assertEquals(3, reader.getTruncatedRecords());
+        }
+        assertEquals(4, lines);
+    }
+}
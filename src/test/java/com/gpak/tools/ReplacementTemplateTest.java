@@ -0,0 +1,130 @@
+package com.gpak.tools;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.gpak.tools.textminator.core.KeyedHash;
+import com.gpak.tools.textminator.core.ReplacementTemplate;
+import com.gpak.tools.textminator.core.RuleSet;
+import com.gpak.tools.textminator.core.Sanitizer;
+import com.gpak.tools.textminator.model.Rule;
+import com.gpak.tools.textminator.util.ConfigUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ReplacementTemplateTest {
+
+    private static final byte[] KEY = "0123456789abcdef0123".getBytes(StandardCharsets.UTF_8);
+
+    private static String apply(String regex, String replacement, String input) {
+        return apply(regex, replacement, input, KeyedHash.of(KEY));
+    }
+
+    private static String apply(String regex, String replacement, String input, KeyedHash hashKey) {
+        Pattern pattern = Pattern.compile(regex);
+        ReplacementTemplate template = ReplacementTemplate.compile(replacement, pattern);
+        Matcher m = pattern.matcher(input);
+        StringBuilder out = new StringBuilder();
+        int copied = 0;
+        while (m.find()) {
+            out.append(input, copied, m.start());
+            template.appendTo(out, input, m, hashKey);
+            copied = m.end();
+        }
+        return out.append(input, copied, input.length()).toString();
+    }
+
+    @Test
+    void matchesAppendReplacementSemantics() {
+        String regex = "(?<user>[\\w.]+)@([\\w.]+)(x)?";
+        String input = "mail john.doe@example.com and a@b.c";
+        for (String replacement : new String[] {
+                "<EMAIL>", "$1", "${user}@<$2>", "$0!", "\\$1 \\\\", "$12", "$3", "", "$2$1"}) {
+            assertEquals(Pattern.compile(regex).matcher(input).replaceAll(replacement),
+                apply(regex, replacement, input), replacement);
+        }
+    }
+
+    @Test
+    void masksKeepingLastDigits() {
+        assertEquals("card ************1111", apply("\\d{16}", "${last:4}", "card 4111111111111111"));
+        assertEquals("pin 12", apply("\\d+", "${last:4}", "pin 12"));
+        assertEquals("id <********>", apply("\\d+", "<${mask:8}>", "id 42"));
+    }
+
+    @Test
+    void hashesConsistently() {
+        String out = apply("[\\w.]+@[\\w.]+", "user-${hash:8}", "a@b.c x@y.z a@b.c");
+        String[] tokens = out.split(" ");
+
+        assertEquals(tokens[0], tokens[2]);
+        assertEquals(13, tokens[0].length());
+        assertEquals(false, tokens[0].equals(tokens[1]));
+    }
+
+    @Test
+    void hashesWithSecretKey() throws Exception {
+        // The first hex digits of the HMAC-SHA-256 of the UTF-8 bytes
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(KEY, "HmacSHA256"));
+        byte[] expected = mac.doFinal("a@b.c".getBytes(StandardCharsets.UTF_8));
+        assertEquals(String.format("%02x%02x%02x%02x", expected[0], expected[1], expected[2], expected[3]),
+            apply("[\\w.]+@[\\w.]+", "${hash:8}", "a@b.c"));
+
+        KeyedHash otherKey = KeyedHash.of("another secret key!".getBytes(StandardCharsets.UTF_8));
+        assertNotEquals(apply("\\d+", "${hash:16}", "10"), apply("\\d+", "${hash:16}", "10", otherKey));
+
+        assertThrows(IllegalArgumentException.class, () -> KeyedHash.of("short".getBytes(StandardCharsets.UTF_8)));
+        Rule hashed = new Rule("ip", Pattern.compile("\\d+"), "${hash:8}", 1, true);
+        assertThrows(IllegalStateException.class, () -> new Sanitizer(RuleSet.of(List.of(hashed)).withHashKey(null), false));
+    }
+
+    @Test
+    void loadsHashKeyOnlyWhenUsed(@TempDir Path tempDir) throws Exception {
+        Rule plain = new Rule("email", Pattern.compile("[\\w.]+@[\\w.]+"), "<EMAIL>", 1, true);
+        Rule hashed = new Rule("ip", Pattern.compile("\\d+"), "${hash:8}", 2, true);
+        assertNull(RuleSet.of(List.of(hashed)).getHashKey());
+
+        // Neither the environment nor a file is read when nothing needs a key
+        assertNull(ConfigUtil.loadHashKey(null, List.of(plain), false));
+
+        // The file takes precedence over the environment
+        Path keyFile = Files.write(tempDir.resolve("hash.key"), KEY);
+        KeyedHash fromFile = ConfigUtil.loadHashKey(keyFile.toFile(), List.of(plain), false);
+        assertEquals(KeyedHash.of(KEY).hash("10", 0, 2), fromFile.hash("10", 0, 2));
+        assertThrows(IllegalStateException.class, () -> ConfigUtil.loadHashKey(tempDir.resolve("missing.key").toFile(), List.of(plain), false));
+    }
+
+    @Test
+    void rejectsInvalidTemplatesAtLoad() {
+        Pattern pattern = Pattern.compile("(a)");
+        assertThrows(IllegalStateException.class, () -> ReplacementTemplate.compile("$2", pattern));
+        assertThrows(IllegalStateException.class, () -> ReplacementTemplate.compile("${name}", pattern));
+        assertThrows(IllegalStateException.class, () -> ReplacementTemplate.compile("${rot13:1}", pattern));
+        assertThrows(IllegalStateException.class, () -> ReplacementTemplate.compile("${hash:20}", pattern));
+        assertThrows(IllegalStateException.class, () -> ReplacementTemplate.compile("x$", pattern));
+        assertThrows(IllegalStateException.class,
+            () -> new Rule("bad", pattern, "$5", 1, true));
+    }
+
+    @Test
+    void sanitizerUsesTemplates() {
+        Rule card = new Rule("card", Pattern.compile("\\b\\d{16}\\b"), "${last:4}", 1, true);
+        Sanitizer sanitizer = new Sanitizer(List.of(card), false, false);
+
+        assertEquals("paid with ************1111", sanitizer.sanitizeLine("paid with 4111111111111111").getLine());
+    }
+}
@@ -0,0 +1,56 @@
+package com.gpak.tools;
+
+import org.junit.jupiter.api.Test;
+
+import com.gpak.tools.textminator.core.RuleAnalyzer;
+import com.gpak.tools.textminator.model.Rule;
+import com.gpak.tools.textminator.model.RuleAnalysis;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RuleAnalyzerTest {
+
+    private List<String> issues(String regex) {
+        return RuleAnalyzer.findIssues(Pattern.compile(regex));
+    }
+
+    @Test
+    void flagsNestedQuantifiers() {
+        List<String> issues = issues("^(\\w+\\s?)*$");
+
+        assertEquals(1, issues.size());
+        assertTrue(issues.get(0).startsWith("nested quantifier"));
+    }
+
+    @Test
+    void flagsUnboundedLookaroundOfDefaultIpv6Rule() {
+        List<String> issues = issues("\\b(?=[0-9A-Fa-f:]{2,39}\\b)(?=(?:.*:){2,})[0-9A-Fa-f:]+\\b");
+
+        assertTrue(issues.stream().anyMatch(i -> i.startsWith("lookaround (?=(?:.*:){2,})")));
+    }
+
+    @Test
+    void flagsLeadingDotStar() {
+        assertEquals(1, issues(".*password=\\w+").size());
+        assertTrue(issues("^.*password=\\w+").isEmpty());
+    }
+
+    @Test
+    void acceptsBoundedPatterns() {
+        assertTrue(issues("\\b[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[1-5][0-9a-fA-F]{3}-[89abAB][0-9a-fA-F]{3}-[0-9a-fA-F]{12}\\b").isEmpty());
+        assertTrue(issues("\\b(?:(?:25[0-5]|2[0-4]\\d|1\\d{2}|[1-9]?\\d)\\.){3}(?:25[0-5]|2[0-4]\\d|1\\d{2}|[1-9]?\\d)\\b").isEmpty());
+    }
+
+    @Test
+    void detectsCatastrophicBacktracking() {
+        Rule rule = new Rule("evil", Pattern.compile("(.*a){8}b"), "<X>", 1, true);
+
+        RuleAnalysis analysis = RuleAnalyzer.analyze(rule);
+
+        assertTrue(analysis.isTimedOut());
+    }
+}
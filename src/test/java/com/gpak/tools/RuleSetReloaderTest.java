@@ -0,0 +1,96 @@
+package com.gpak.tools;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.gpak.tools.textminator.core.CsvLineSanitizer;
+import com.gpak.tools.textminator.core.LineSanitizer;
+import com.gpak.tools.textminator.core.RuleSet;
+import com.gpak.tools.textminator.core.RuleSetReloader;
+import com.gpak.tools.textminator.util.ConfigUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RuleSetReloaderTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path writeConfig(String content) throws Exception {
+        Path p = tempDir.resolve("rules.properties");
+        Files.writeString(p, content, StandardCharsets.UTF_8);
+        return p;
+    }
+
+    @Test
+    void publishesNewVersionOnChange() throws Exception {
+        Path config = writeConfig("a.regex=foo\na.order=1\n");
+        RuleSet initial = RuleSet.of(ConfigUtil.loadConfigFile(config.toFile()));
+
+        try (RuleSetReloader reloader = new RuleSetReloader(config.toFile(), initial, RuleSet::of)) {
+            assertFalse(reloader.reload(), "unchanged file must not be reloaded");
+            assertSame(initial, reloader.current());
+
+            writeConfig("b.regex=bar\nb.order=1\n");
+            assertTrue(reloader.reload());
+
+            RuleSet next = reloader.current();
+            assertEquals(2, next.getVersion());
+            assertEquals("<REPLACED> foo", next.newSanitizer(false).sanitizeLine("bar foo").getLine());
+        }
+    }
+
+    @Test
+    void keepsPreviousRulesWhenConfigIsInvalid() throws Exception {
+        Path config = writeConfig("a.regex=foo\na.order=1\n");
+        RuleSet initial = RuleSet.of(ConfigUtil.loadConfigFile(config.toFile()));
+
+        try (RuleSetReloader reloader = new RuleSetReloader(config.toFile(), initial, RuleSet::of)) {
+            writeConfig("a.regex=(unclosed\na.order=1\n");
+
+            assertFalse(reloader.reload());
+            assertSame(initial, reloader.current());
+        }
+    }
+
+    @Test
+    void watcherPicksUpChanges() throws Exception {
+        Path config = writeConfig("a.regex=foo\na.order=1\n");
+        RuleSet initial = RuleSet.of(ConfigUtil.loadConfigFile(config.toFile()));
+
+        try (RuleSetReloader reloader = new RuleSetReloader(config.toFile(), initial, RuleSet::of)) {
+            writeConfig("a.regex=bar\na.order=1\n");
+
+            long deadline = System.currentTimeMillis() + 30_000;
+            while (reloader.current() == initial && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+
+            assertEquals(2, reloader.current().getVersion());
+        }
+    }
+
+    @Test
+    void csvSanitizerKeepsHeaderAcrossSwap() throws Exception {
+        Path config = writeConfig("a.regex=foo\na.order=1\na.fields=x\n");
+        RuleSet initial = RuleSet.of(ConfigUtil.loadConfigFile(config.toFile()));
+
+        LineSanitizer csv = new CsvLineSanitizer(initial.newSanitizer(false), ',', true, Set.of());
+        csv.sanitizeLine("x,y");
+        assertEquals("<REPLACED>,foo", csv.sanitizeLine("foo,foo").getLine());
+
+        writeConfig("a.regex=foo\na.order=1\na.fields=y\n");
+        RuleSet next = RuleSet.of(ConfigUtil.loadConfigFile(config.toFile()));
+        csv = csv.withSanitizer(next.newSanitizer(false));
+
+        assertEquals("foo,<REPLACED>", csv.sanitizeLine("foo,foo").getLine());
+    }
+}
@@ -0,0 +1,125 @@
+package com.gpak.tools;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.gpak.tools.textminator.Main;
+import com.gpak.tools.textminator.core.SampleEstimator;
+import com.gpak.tools.textminator.io.LineSampler;
+import com.gpak.tools.textminator.model.Estimate;
+import com.gpak.tools.textminator.util.ConfigUtil;
+import com.gpak.tools.textminator.model.RecordMode;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import picocli.CommandLine;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SampleEstimatorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void readsLineContainingOffset() throws Exception {
+        Path p = tempDir.resolve("in.txt");
+        Files.writeString(p, "first\r\nsecond line\nthird", StandardCharsets.UTF_8);
+
+        try (LineSampler sampler = new LineSampler(p.toFile(), 1 << 20)) {
+            assertEquals("first", sampler.lineAt(3));
+            assertEquals(7, sampler.getLineBytes());
+            assertTrue(sampler.isFirstLine());
+
+            assertEquals("second line", sampler.lineAt(7));
+            assertEquals("second line", sampler.lineAt(18));
+            assertEquals(12, sampler.getLineBytes());
+
+            assertEquals("third", sampler.lineAt(p.toFile().length() - 1));
+        }
+
+        try (LineSampler sampler = new LineSampler(p.toFile(), 5)) {
+            assertNull(sampler.lineAt(10), "lines over the limit are skipped");
+        }
+    }
+
+    @Test
+    void estimatesTotalsOfLengthBiasedSample() throws Exception {
+        // 1,000 short lines with a match and 1,000 long lines without
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            content.append("hit\n").append("x".repeat(95)).append('\n');
+        }
+        Path p = tempDir.resolve("mixed.txt");
+        Files.writeString(p, content, StandardCharsets.UTF_8);
+
+        Random random = new Random(42);
+        try (LineSampler sampler = new LineSampler(p.toFile(), 1 << 20)) {
+            SampleEstimator estimator = new SampleEstimator(sampler.length());
+            for (int i = 0; i < 5000; i++) {
+                estimator.nextSample();
+                String line = sampler.lineAt((long) (random.nextDouble() * sampler.length()));
+                estimator.add(SampleEstimator.LINES, 1, sampler.getLineBytes());
+                estimator.add("hits", line.equals("hit") ? 1 : 0, sampler.getLineBytes());
+            }
+
+            Estimate lines = estimator.estimate(SampleEstimator.LINES);
+            Estimate hits = estimator.estimate("hits");
+            assertEquals(2000, lines.getValue(), 3 * lines.getMargin() + 1);
+            assertEquals(1000, hits.getValue(), 3 * hits.getMargin() + 1);
+            assertTrue(hits.getMargin() > 0 && hits.getMargin() < 200);
+        }
+    }
+
+    @Test
+    void leavesOutLinesOverTheLimit() throws Exception {
+        // Half of the bytes are in lines over --max-record-size, with as many matches per byte
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            content.append("hit xxxx\n");
+            if (i % 20 == 0) {
+                content.append("hit xxxx ".repeat(20)).append('\n');
+            }
+        }
+        Path input = Files.writeString(tempDir.resolve("long.txt"), content, StandardCharsets.UTF_8);
+        Path config = Files.writeString(tempDir.resolve("hit.properties"), "hit.regex=hit\nhit.replacement=<HIT>\nhit.order=1\n");
+
+        PrintStream stderr = System.err;
+        ByteArrayOutputStream stats = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(stats, true, StandardCharsets.UTF_8));
+        try {
+            assertEquals(0, new CommandLine(new Main()).execute("-c", config.toString(), "-i", input.toString(),
+                "--max-record-size", "100", "--sample", "4000", "--sample-seed", "7"));
+        } finally {
+            System.setErr(stderr);
+        }
+
+        Matcher hits = Pattern.compile("hit\\s+(\\d+) \\+/- (\\d+)").matcher(stats.toString(StandardCharsets.UTF_8));
+        assertTrue(hits.find(), stats.toString(StandardCharsets.UTF_8));
+        // 1,000 short lines and 50 long lines with 20 each; counting the long ones as zero gave about 1,000
+        assertEquals(2000, Long.parseLong(hits.group(1)), 3 * Long.parseLong(hits.group(2)) + 20);
+    }
+
+    @Test
+    void parsesSampleOption() {
+        File input = tempDir.resolve("in.txt").toFile();
+
+        assertEquals(2000, ConfigUtil.parseSample("2000", input, RecordMode.LINE));
+        assertEquals(0.001, ConfigUtil.parseSample("0.001", input, RecordMode.LINE));
+        assertEquals(0.005, ConfigUtil.parseSample("0.5%", input, RecordMode.LINE), 1e-12);
+        assertThrows(IllegalStateException.class, () -> ConfigUtil.parseSample("1.5", input, RecordMode.LINE));
+        assertThrows(IllegalStateException.class, () -> ConfigUtil.parseSample("100", null, RecordMode.LINE));
+        assertThrows(IllegalStateException.class, () -> ConfigUtil.parseSample("100", input, RecordMode.BLANK));
+    }
+}
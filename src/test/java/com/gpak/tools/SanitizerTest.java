@@ -7,9 +7,12 @@ import com.gpak.tools.textminator.core.Sanitizer;
 import com.gpak.tools.textminator.model.Rule;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.regex.Pattern;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class SanitizerTest {
 
@@ -103,4 +106,36 @@ class SanitizerTest {
 
         assertEquals(expected, sanitizerRfcIpV6.sanitizeLine(input).getLine());
     }
-}
\ No newline at end of file
+
+    @Test
+    void sanitizesStringBuilderInPlace() {
+        StringBuilder sb = new StringBuilder("user john.doe@example.com from 12.23.45.67");
+
+        assertTrue(sanitizer.sanitize(sb));
+        assertEquals("user <EMAIL> from <IPV4>", sb.toString());
+    }
+
+    @Test
+    void leavesStringBuilderUntouchedWithoutMatch() {
+        StringBuilder sb = new StringBuilder("nothing to see here");
+
+        assertFalse(sanitizer.sanitize(sb));
+        assertEquals("nothing to see here", sb.toString());
+    }
+
+    @Test
+    void adaptiveOrderKeepsOutputOfIndependentRules() {
+        Rule a = new Rule("a", Pattern.compile("aaa"), "<A>", 1, true).withIndependent(true);
+        Rule b = new Rule("b", Pattern.compile("\\d+"), "<B>", 2, true).withIndependent(true);
+        Rule c = new Rule("c", Pattern.compile("<B>"), "<C>", 3, true);
+
+        ArrayList<Rule> rules = new ArrayList<>(List.of(a, b, c));
+        Sanitizer adaptive = new Sanitizer(rules, false, true);
+
+        for (int i = 0; i < 5_000; i++) {
+            assertEquals("<C> x", adaptive.sanitizeLine(i + " x").getLine());
+        }
+        assertEquals("<A> <C>", adaptive.sanitizeLine("aaa 42").getLine());
+        assertEquals(5_001L, adaptive.getStatistics().get("b"));
+    }
+}
@@ -0,0 +1,159 @@
+package com.gpak.tools;
+
+import org.junit.jupiter.api.Test;
+
+import com.gpak.tools.textminator.core.RuleSet;
+import com.gpak.tools.textminator.io.SanitizingProcessor;
+import com.gpak.tools.textminator.model.Rule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SanitizingProcessorTest {
+
+    private static final RuleSet RULES = RuleSet.of(List.of(
+        new Rule("email", Pattern.compile("[\\w.+-]+@[\\w-]+\\.[\\w.-]+"), "<EMAIL>", 1, true)));
+
+    /**
+     * Requests a fixed number of lines at a time and collects them.
+     */
+    private static final class Collector implements Flow.Subscriber<String> {
+        final List<String> lines = new ArrayList<>();
+        final CompletableFuture<List<String>> done = new CompletableFuture<>();
+        final int step;
+        Flow.Subscription subscription;
+
+        Collector(int step) {
+            this.step = step;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (step > 0) {
+                subscription.request(step);
+            }
+        }
+
+        @Override
+        public void onNext(String line) {
+            lines.add(line);
+            if (step > 0 && lines.size() % step == 0) {
+                subscription.request(step);
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            done.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            done.complete(lines);
+        }
+    }
+
+    @Test
+    void keepsOrderAcrossParallelBatches() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            SanitizingProcessor processor = new SanitizingProcessor(RULES, executor, 16, 4);
+            Collector collector = new Collector(7);
+            processor.subscribe(collector);
+
+            List<String> expected = new ArrayList<>();
+            try (SubmissionPublisher<String> publisher = new SubmissionPublisher<>()) {
+                publisher.subscribe(processor);
+                for (int i = 0; i < 20000; i++) {
+                    publisher.submit((i % 3 == 0) ? "line " + i + " user" + i + "@example.com" : "line " + i);
+                    expected.add((i % 3 == 0) ? "line " + i + " <EMAIL>" : "line " + i);
+                }
+            }
+
+            assertEquals(expected, collector.done.get(30, TimeUnit.SECONDS));
+            assertEquals(Map.of("email", 6667L), processor.getStatistics().get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void boundsUpstreamDemandByDownstreamDemand() throws Exception {
+        AtomicLong requested = new AtomicLong();
+        List<Flow.Subscription> subscriptions = new ArrayList<>();
+        SanitizingProcessor processor = new SanitizingProcessor(RULES, Runnable::run, 8, 2);
+
+        Collector collector = new Collector(0);
+        processor.subscribe(collector);
+        processor.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                requested.addAndGet(n);
+            }
+
+            @Override
+            public void cancel() {
+                subscriptions.add(this);
+            }
+        });
+
+        // Nothing is emitted yet, so only the buffer is requested
+        assertEquals(16, requested.get());
+        for (int i = 0; i < 16; i++) {
+            processor.onNext("a@b.com " + i);
+        }
+        assertEquals(16, requested.get());
+        assertTrue(collector.lines.isEmpty());
+
+        // Emitting a batch frees room for another one
+        collector.subscription.request(8);
+        assertEquals(8, collector.lines.size());
+        assertEquals("<EMAIL> 0", collector.lines.get(0));
+        assertEquals(24, requested.get());
+
+        collector.subscription.cancel();
+        assertEquals(1, subscriptions.size());
+        assertTrue(processor.getStatistics().isCancelled());
+    }
+
+    @Test
+    void propagatesErrorsAndRejectsSecondSubscriber() {
+        SanitizingProcessor processor = new SanitizingProcessor(RULES, Runnable::run);
+        Collector collector = new Collector(1);
+        processor.subscribe(collector);
+
+        Collector second = new Collector(1);
+        processor.subscribe(second);
+        assertTrue(second.done.isCompletedExceptionally());
+
+        processor.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) { }
+
+            @Override
+            public void cancel() { }
+        });
+        processor.onNext("a@b.com");
+        processor.onError(new IllegalStateException("source failed"));
+
+        assertEquals(List.of("<EMAIL>"), collector.lines);
+        Exception e = assertThrows(Exception.class, () -> collector.done.get());
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertTrue(processor.getStatistics().isCompletedExceptionally());
+    }
+}
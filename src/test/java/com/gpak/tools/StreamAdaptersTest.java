@@ -0,0 +1,106 @@
+package com.gpak.tools;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.gpak.tools.textminator.core.RuleSet;
+import com.gpak.tools.textminator.core.Sanitizer;
+import com.gpak.tools.textminator.io.SanitizingInputStream;
+import com.gpak.tools.textminator.io.SanitizingOutputStream;
+import com.gpak.tools.textminator.io.SanitizingReader;
+import com.gpak.tools.textminator.io.SanitizingWriter;
+import com.gpak.tools.textminator.model.Rule;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StreamAdaptersTest {
+
+    private static final String INPUT = "mail john.doe@example.com\r\nnothing here\nlast ünïcödé jane@example.org";
+    private static final String EXPECTED = "mail <EMAIL>\r\nnothing here\nlast ünïcödé <EMAIL>";
+
+    private RuleSet ruleSet;
+
+    @BeforeEach
+    void setUp() {
+        Rule email = new Rule("email", Pattern.compile("[\\w.+-]+@[\\w-]+\\.[\\w.-]+"), "<EMAIL>", 1, true);
+        ruleSet = RuleSet.of(List.of(email));
+    }
+
+    @Test
+    void readerSanitizesAndKeepsLineTerminators() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        try (Reader reader = new SanitizingReader(new StringReader(INPUT), ruleSet.newSanitizer(false))) {
+            char[] buf = new char[7];
+            int n;
+            while ((n = reader.read(buf)) != -1) {
+                sb.append(buf, 0, n);
+            }
+        }
+
+        assertEquals(EXPECTED, sb.toString());
+    }
+
+    @Test
+    void writerSanitizesPartialWrites() throws Exception {
+        StringWriter out = new StringWriter();
+        try (SanitizingWriter writer = new SanitizingWriter(out, ruleSet.newSanitizer(false))) {
+            for (int i = 0; i < INPUT.length(); i += 3) {
+                writer.write(INPUT, i, Math.min(3, INPUT.length() - i));
+            }
+        }
+
+        assertEquals(EXPECTED, out.toString());
+    }
+
+    @Test
+    void inputStreamSanitizesUtf8() throws Exception {
+        byte[] in = INPUT.getBytes(StandardCharsets.UTF_8);
+        try (SanitizingInputStream stream = new SanitizingInputStream(new ByteArrayInputStream(in), ruleSet.newSanitizer(false))) {
+            assertEquals(EXPECTED, new String(stream.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void outputStreamHandlesSplitMultiByteSequences() throws Exception {
+        byte[] in = INPUT.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (SanitizingOutputStream stream = new SanitizingOutputStream(out, ruleSet.newSanitizer(false))) {
+            for (byte b : in) {
+                stream.write(b);
+            }
+        }
+
+        assertEquals(EXPECTED, out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void longLinesAreCutAtMaxLength() throws Exception {
+        StringWriter out = new StringWriter();
+        try (SanitizingWriter writer = new SanitizingWriter(out, ruleSet.newSanitizer(false), 8)) {
+            writer.write("aaaaaaaaaaaaaaaaaaaa\n");
+        }
+
+        assertEquals("aaaaaaaaaaaaaaaaaaaa\n", out.toString());
+    }
+
+    @Test
+    void sanitizersFromSameRuleSetKeepSeparateStatistics() {
+        Sanitizer first = ruleSet.newSanitizer(true);
+        Sanitizer second = ruleSet.newSanitizer(true);
+
+        first.sanitizeLine("a@b.cd e@f.gh");
+        second.sanitizeLine("a@b.cd");
+
+        assertEquals(2L, first.getStatistics().get("email"));
+        assertEquals(1L, second.getStatistics().get("email"));
+    }
+}
@@ -0,0 +1,175 @@
+package com.gpak.tools;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.gpak.tools.textminator.core.RuleSet;
+import com.gpak.tools.textminator.io.RollingFileWriter;
+import com.gpak.tools.textminator.io.SyslogFormat;
+import com.gpak.tools.textminator.io.SyslogListener;
+import com.gpak.tools.textminator.model.OverflowPolicy;
+import com.gpak.tools.textminator.model.Rule;
+import com.gpak.tools.textminator.util.ConfigUtil;
+
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SyslogListenerTest {
+
+    private static final RuleSet RULES = RuleSet.of(List.of(
+        new Rule("email", Pattern.compile("[\\w.+-]+@[\\w-]+\\.[\\w.-]+"), "<EMAIL>", 1, true),
+        new Rule("ipv4", Pattern.compile("\\b(?:\\d{1,3}\\.){3}\\d{1,3}\\b"), "<IP>", 2, true)));
+
+    private static final InetSocketAddress LOCALHOST = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+
+    private static List<String> readOutput(Path dir) throws Exception {
+        List<String> lines = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir).sorted()) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                assertFalse(file.toString().endsWith(".tmp"), file.toString());
+                lines.addAll(Files.readAllLines(file, StandardCharsets.UTF_8));
+            }
+        }
+        return lines;
+    }
+
+    @Test
+    void keepsSyslogHeaders() {
+        String rfc5424 = "<34>1 2024-05-01T12:30:45.003Z host.example.com app 123 ID47 [x@1 ip=\"10.0.0.1\"] hi";
+        assertEquals(rfc5424.indexOf("host."), SyslogFormat.headerEnd(rfc5424));
+
+        String rfc3164 = "<13>May  1 12:30:45 myhost sshd[42]: login from 10.0.0.1";
+        assertEquals(rfc3164.indexOf("myhost"), SyslogFormat.headerEnd(rfc3164));
+
+        assertEquals(4, SyslogFormat.headerEnd("<13>just a message"));
+        assertEquals(0, SyslogFormat.headerEnd("no priority"));
+
+        StringBuilder sb = new StringBuilder();
+        SyslogFormat.appendEscaped(sb, "a\nb\tc", 0, 5);
+        assertEquals("a#012b\tc", sb.toString());
+    }
+
+    @Test
+    void sanitizesUdpAndTcpMessages(@TempDir Path dir) throws Exception {
+        RollingFileWriter output = new RollingFileWriter(dir.resolve("clean.log").toFile(), 0, 0);
+        SyslogListener listener = new SyslogListener(RULES, output, 100, OverflowPolicy.BLOCK, 2, 16, 1024);
+        int udpPort = listener.bindUdp(LOCALHOST);
+        int tcpPort = listener.bindTcp(LOCALHOST);
+        listener.start();
+
+        try (DatagramSocket udp = new DatagramSocket()) {
+            byte[] message = "<13>May  1 12:30:45 myhost sshd[42]: login from 10.0.0.1\n".getBytes(StandardCharsets.UTF_8);
+            udp.send(new DatagramPacket(message, message.length, InetAddress.getLoopbackAddress(), udpPort));
+        }
+
+        String octetCounted = "<34>1 2024-05-01T12:30:45Z 10.1.1.1 app - - - mail to a@b.com\nsecond line";
+        byte[] octets = octetCounted.getBytes(StandardCharsets.UTF_8);
+        try (Socket tcp = new Socket(InetAddress.getLoopbackAddress(), tcpPort)) {
+            OutputStream out = tcp.getOutputStream();
+            // Written in pieces so that frames cross reads
+            byte[] data = ("<13>plain line from c@d.org\n" + octets.length + " " + octetCounted
+                + "<13>" + "x".repeat(2000) + "\n<13>after long line\n").getBytes(StandardCharsets.UTF_8);
+            for (int i = 0; i < data.length; i += 7) {
+                out.write(data, i, Math.min(7, data.length - i));
+                out.flush();
+            }
+        }
+
+        // UDP has no acknowledgement, wait until everything arrived
+        for (int i = 0; i < 100 && listener.getProcessed() < 5; i++) {
+            Thread.sleep(50);
+        }
+        listener.close();
+
+        List<String> lines = readOutput(dir);
+        assertEquals(5, lines.size());
+        assertTrue(lines.contains("<13>May  1 12:30:45 myhost sshd[42]: login from <IP>"));
+        assertTrue(lines.contains("<13>plain line from <EMAIL>"));
+        // Only the timestamp is kept: the host address is sanitized, and the message stays on one line
+        assertTrue(lines.contains("<34>1 2024-05-01T12:30:45Z <IP> app - - - mail to <EMAIL>#012second line"));
+        assertTrue(lines.contains("<13>" + "x".repeat(1020)));
+        assertTrue(lines.contains("<13>after long line"));
+
+        assertEquals(5, listener.getReceived());
+        assertEquals(5, listener.getProcessed());
+        assertEquals(3, listener.getRedacted());
+        assertEquals(0, listener.getDropped());
+        assertEquals(1, listener.getTruncated());
+        assertEquals(2L, listener.getStatistics().get("email"));
+        assertEquals(2L, listener.getStatistics().get("ipv4"));
+    }
+
+    private static SyslogListener sendBurst(Path dir, long rollSize, OverflowPolicy policy, int queueSize) throws Exception {
+        RollingFileWriter output = new RollingFileWriter(dir.resolve("clean.log").toFile(), rollSize, 0);
+        SyslogListener listener = new SyslogListener(RULES, output, queueSize, policy, 1, 4, 1024);
+        int tcpPort = listener.bindTcp(LOCALHOST);
+        listener.start();
+
+        try (Socket tcp = new Socket(InetAddress.getLoopbackAddress(), tcpPort)) {
+            StringBuilder data = new StringBuilder();
+            for (int i = 0; i < 2000; i++) {
+                data.append("<13>message ").append(i).append(" from user").append(i).append("@example.com\n");
+            }
+            tcp.getOutputStream().write(data.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        for (int i = 0; i < 100 && listener.getReceived() < 2000; i++) {
+            Thread.sleep(50);
+        }
+        listener.close();
+        return listener;
+    }
+
+    @Test
+    void rollsBySize(@TempDir Path dir) throws Exception {
+        SyslogListener listener = sendBurst(dir, 4096, OverflowPolicy.BLOCK, 8);
+
+        assertEquals(2000, listener.getProcessed());
+        assertEquals(0, listener.getDropped());
+        assertTrue(listener.getRolledFiles() > 1);
+        assertEquals(listener.getRolledFiles(), dir.toFile().list().length);
+
+        List<String> lines = readOutput(dir);
+        assertEquals(2000, lines.size());
+        for (String line : lines) {
+            assertTrue(line.endsWith("from <EMAIL>"), line);
+        }
+    }
+
+    @Test
+    void countsDroppedMessages(@TempDir Path dir) throws Exception {
+        SyslogListener listener = sendBurst(dir, 0, OverflowPolicy.DROP, 1);
+
+        // Every message is either written or counted as dropped
+        assertEquals(2000, listener.getReceived());
+        assertEquals(2000, listener.getProcessed() + listener.getDropped());
+        assertEquals(listener.getProcessed(), readOutput(dir).size());
+    }
+
+    @Test
+    void refusesLeftOverTempFile(@TempDir Path dir) throws Exception {
+        Files.writeString(dir.resolve("clean.log.tmp"), "partial");
+        assertThrows(Exception.class, () -> new RollingFileWriter(dir.resolve("clean.log").toFile(), 0, 0));
+
+        assertEquals(15 * 60_000L, ConfigUtil.parseDuration("15m", "--roll-interval"));
+        assertEquals(86_400_000L, ConfigUtil.parseDuration(" 1D", "--roll-interval"));
+        assertThrows(IllegalStateException.class, () -> ConfigUtil.parseDuration("15", "--roll-interval"));
+        assertThrows(IllegalStateException.class, () -> ConfigUtil.parseDuration("m", "--roll-interval"));
+    }
+}
@@ -0,0 +1,101 @@
+package com.gpak.tools;
+
+import org.junit.jupiter.api.Test;
+
+import com.gpak.tools.textminator.io.TextEncoding;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TextEncodingTest {
+
+    private static BufferedInputStream stream(byte[] bytes) {
+        return new BufferedInputStream(new ByteArrayInputStream(bytes));
+    }
+
+    private static String read(TextEncoding encoding, BufferedInputStream in) throws IOException {
+        StringBuilder text = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(encoding.newReader(in))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                text.append(line).append('\n');
+            }
+        }
+        return text.toString();
+    }
+
+    private static byte[] write(TextEncoding encoding, String text) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (Writer writer = encoding.newWriter(out)) {
+            writer.write(text);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void singleByteCharsetsRoundTrip() throws IOException {
+        for (String name : new String[] { "iso-8859-1", "windows-1252", "iso-8859-15" }) {
+            TextEncoding encoding = TextEncoding.of(name);
+            assertTrue(encoding.isSingleByte(), name);
+
+            String text = "Grüße, café " + (name.equals("iso-8859-1") ? "½" : "€") + "\n";
+            byte[] expected = text.getBytes(Charset.forName(name));
+
+            assertEquals(text, read(encoding, stream(expected)), name);
+            assertArrayEquals(expected, write(encoding, text), name);
+        }
+    }
+
+    @Test
+    void unmappableCharsAreWrittenAsQuestionMarks() throws IOException {
+        assertArrayEquals("a?b".getBytes(StandardCharsets.US_ASCII), write(TextEncoding.of("iso-8859-1"), "a€b"));
+        assertArrayEquals("a?b".getBytes(StandardCharsets.US_ASCII), write(TextEncoding.of("windows-1252"), "a\u0100b"));
+    }
+
+    @Test
+    void byteOrderMarkSelectsEncodingAndIsWrittenBack() throws IOException {
+        byte[] utf16 = "\uFEFFa@b.com\n".getBytes(StandardCharsets.UTF_16LE);
+        BufferedInputStream in = stream(utf16);
+
+        TextEncoding encoding = TextEncoding.detect(in, null);
+        assertEquals(StandardCharsets.UTF_16LE, encoding.getCharset());
+        assertTrue(encoding.hasBom());
+        assertFalse(encoding.isAsciiCompatible());
+        assertEquals("a@b.com\n", read(encoding, in));
+        assertArrayEquals(utf16, write(encoding, "a@b.com\n"));
+
+        BufferedInputStream utf8 = stream(new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF, 'x' });
+        assertEquals("x\n", read(TextEncoding.detect(utf8, TextEncoding.of("utf-8")), utf8));
+    }
+
+    @Test
+    void withoutByteOrderMarkUsesRequestedEncoding() throws IOException {
+        BufferedInputStream in = stream("ÿé".getBytes(StandardCharsets.ISO_8859_1));
+        TextEncoding encoding = TextEncoding.detect(in, TextEncoding.of("latin1"));
+
+        assertFalse(encoding.hasBom());
+        assertEquals("ÿé\n", read(encoding, in));
+        assertEquals(StandardCharsets.UTF_8, TextEncoding.detect(stream(new byte[] { 'a' }), null).getCharset());
+        assertEquals(StandardCharsets.UTF_16BE, TextEncoding.detect(stream(new byte[] { 0, 'a' }), TextEncoding.of("utf-16")).getCharset());
+    }
+
+    @Test
+    void failsOnUnknownEncodingOrConflictingByteOrderMark() {
+        assertThrows(IllegalStateException.class, () -> TextEncoding.of("no-such-charset"));
+
+        byte[] utf8Bom = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF, 'x' };
+        assertThrows(IllegalStateException.class, () -> TextEncoding.detect(stream(utf8Bom), TextEncoding.of("windows-1252")));
+    }
+}
@@ -0,0 +1,96 @@
+package com.gpak.tools;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.gpak.tools.textminator.core.Sanitizer;
+import com.gpak.tools.textminator.core.Validator;
+import com.gpak.tools.textminator.model.Rule;
+import com.gpak.tools.textminator.util.ConfigUtil;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ValidatorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static boolean valid(Validator validator, String value) {
+        String text = "x " + value + " y";
+        return validator.isValid(text, 2, 2 + value.length());
+    }
+
+    @Test
+    void luhn() {
+        assertTrue(valid(Validator.LUHN, "4111111111111111"));
+        assertTrue(valid(Validator.LUHN, "4111 1111-1111 1111"));
+        assertFalse(valid(Validator.LUHN, "4111111111111112"));
+        assertFalse(valid(Validator.LUHN, "41111x1111111111"));
+    }
+
+    @Test
+    void iban() {
+        assertTrue(valid(Validator.IBAN, "GB82WEST12345698765432"));
+        assertTrue(valid(Validator.IBAN, "gb82 west 1234 5698 7654 32"));
+        assertTrue(valid(Validator.IBAN, "DE89370400440532013000"));
+        assertFalse(valid(Validator.IBAN, "GB82WEST12345698765433"));
+        assertFalse(valid(Validator.IBAN, "GB82"));
+    }
+
+    @Test
+    void ipv4() {
+        assertTrue(valid(Validator.IPV4, "192.168.0.1"));
+        assertTrue(valid(Validator.IPV4, "255.255.255.255"));
+        assertFalse(valid(Validator.IPV4, "256.1.1.1"));
+        assertFalse(valid(Validator.IPV4, "1.2.3"));
+        assertFalse(valid(Validator.IPV4, "1.2.3.4.5"));
+        assertFalse(valid(Validator.IPV4, "1..3.4"));
+    }
+
+    @Test
+    void uuid() {
+        assertTrue(valid(Validator.UUID, "123e4567-e89b-42d3-a456-426614174000"));
+        assertFalse(valid(Validator.UUID, "123e4567-e89b-02d3-a456-426614174000"), "version 0");
+        assertFalse(valid(Validator.UUID, "123e4567-e89b-42d3-c456-426614174000"), "variant");
+        assertFalse(valid(Validator.UUID, "123e4567e89b-42d3-a456-426614174000-"));
+    }
+
+    @Test
+    void sanitizerReplacesOnlyValidMatches() {
+        Rule rule = new Rule("card", Pattern.compile("\\b\\d{16}\\b"), "<CARD>", 1, true)
+            .withValidator(Validator.LUHN);
+        Sanitizer sanitizer = new Sanitizer(List.of(rule), false, true);
+
+        assertEquals("order 4111111111111112 paid with <CARD>",
+            sanitizer.sanitizeLine("order 4111111111111112 paid with 4111111111111111").getLine());
+
+        String noValidMatch = "order 4111111111111112";
+        assertSame(noValidMatch, sanitizer.sanitizeLine(noValidMatch).getLine());
+        assertFalse(sanitizer.sanitizeLine(noValidMatch).isChanged());
+        assertEquals(1L, sanitizer.getStatistics().get("card"));
+    }
+
+    @Test
+    void parsesValidatorProperty() throws Exception {
+        Path p = tempDir.resolve("rules.properties");
+        Files.writeString(p, "ip.regex=\\\\d+(?:\\\\.\\\\d+){3}\nip.order=1\nip.validator=IPv4\n", StandardCharsets.UTF_8);
+
+        List<Rule> rules = ConfigUtil.loadConfigFile(p.toFile());
+        assertEquals(Validator.IPV4, rules.get(0).getValidator());
+
+        File bad = tempDir.resolve("bad.properties").toFile();
+        Files.writeString(bad.toPath(), "ip.regex=x\nip.order=1\nip.validator=crc\n", StandardCharsets.UTF_8);
+        assertThrows(IllegalStateException.class, () -> ConfigUtil.loadConfigFile(bad));
+    }
+}